@@ -0,0 +1,115 @@
+/* *****************************************************************************
+* Description: JMH benchmarks of the hot paths of BacterialColonyEngine, for
+* grids from 80 x 80 to 4000 x 4000, each boundary condition and several
+* colony densities. The colony is scattered at random over the grid and is
+* kept at its starting density by turning off cell division and consumption,
+* so every invocation does the same work: the division checks and neighbour
+* counts are still carried out, they just never change the grid. The engine
+* is created again for each iteration, as nutrient still drains out of a grid
+* with absorbent boundaries.
+*
+* Run with "ant benchmark", which saves the results as JSON.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	@Param({"80", "400", "1000", "4000"})
+	public int gridSize;
+
+	@Param({"reflecting", "absorbent", "periodic"})
+	public String boundaryCondition;
+
+	// Fraction of the grid spaces that contain a living bacterium.
+	@Param({"0.01", "0.1", "0.5"})
+	public double colonyDensity;
+
+	private BacterialColonyEngine engine;
+
+	@Setup(Level.Iteration)
+	public void createEngine() throws IOException {
+		engine = createEngine(gridSize, boundaryCondition, colonyDensity);
+	}
+
+	// Creates a square engine with the colony scattered over it at the density given.
+	static BacterialColonyEngine createEngine(int gridSize, String boundaryCondition, double colonyDensity) throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(gridSize)
+				.setGridHeight(gridSize)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientForSustenance(0)
+				.setNutrientForGrowth(0)
+				.setProbabilityOfCellDivision(0)
+				.build();
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 1);
+
+		Random random = new Random(gridSize);
+		for (int y=0; y<gridSize; y++) {
+			for (int x=0; x<gridSize; x++) {
+				if (random.nextDouble() < colonyDensity) engine.setBacteriumAlive(x, y);
+			}
+		}
+		return engine;
+	}
+
+	// A whole time step. Division is only checked on one step in every eight, as in a normal run.
+	@Benchmark
+	public void createUpdatedGrid() {
+		engine.createUpdatedGrid();
+	}
+
+	@Benchmark
+	public void updateNutrientLevelsAfterDiffusion() {
+		engine.updateNutrientLevelsAfterDiffusion();
+	}
+
+	@Benchmark
+	public void updateBacteriaAndNutrientAfterConsumptionAndCellDivision() {
+		engine.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+	}
+
+	// Counts the neighbours of every grid space, so the boundary spaces are included in proportion.
+	@Benchmark
+	public long returnNumberOfAliveNeighbours() {
+		long total = 0;
+		for (int y=0; y<gridSize; y++) {
+			for (int x=0; x<gridSize; x++) {
+				total += engine.returnNumberOfAliveNeighbours(x, y);
+			}
+		}
+		return total;
+	}
+
+	// Setting the boundary condition recreates the diffusion weights, the engine's version of the update
+	// matrix.
+	@Benchmark
+	public void createDiffusionWeights() {
+		engine.setBoundaryCondition(boundaryCondition);
+	}
+}
@@ -0,0 +1,109 @@
+/* *****************************************************************************
+* Description: JMH benchmarks of CellularAutomataBacteriaRules, the la4j
+* version of the model used by the GUI, so it can be compared with the engine.
+* The update matrix has a row for every grid space, so only grids up to
+* 400 x 400 are used. The colony is set up as in EngineBenchmark.
+*
+* Run with "ant benchmark", which saves the results as JSON.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+
+	@Param({"80", "200", "400"})
+	public int gridSize;
+
+	@Param({"reflecting", "absorbent", "periodic"})
+	public String boundaryCondition;
+
+	// Fraction of the grid spaces that contain a living bacterium.
+	@Param({"0.01", "0.1", "0.5"})
+	public double colonyDensity;
+
+	private CellularAutomataBacteriaRules rules;
+	private Grid grid;
+
+	@Setup(Level.Iteration)
+	public void createRules() throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(gridSize)
+				.setGridHeight(gridSize)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientForSustenance(0)
+				.setNutrientForGrowth(0)
+				.setProbabilityOfCellDivision(0)
+				.build();
+		rules = new CellularAutomataBacteriaRules(config);
+		grid = rules.getCellularAutomataGrid();
+
+		Random random = new Random(gridSize);
+		for (int y=0; y<gridSize; y++) {
+			for (int x=0; x<gridSize; x++) {
+				if (random.nextDouble() < colonyDensity) grid.setBacteriumAlive(x, y);
+			}
+		}
+	}
+
+	// A whole time step, without updating the colours of the grid.
+	@Benchmark
+	public void createUpdatedGrid() {
+		rules.createUpdatedGrid(false);
+	}
+
+	@Benchmark
+	public void updateNutrientLevelsAfterDiffusion() {
+		rules.updateNutrientLevelsAfterDiffusion();
+	}
+
+	// Consumption and division, against a grid that doesn't change.
+	@Benchmark
+	public void updateBacteriaAndNutrientAfterConsumptionAndCellDivision() {
+		rules.updateBacteriaAndNutrientAfterConsumptionAndCellDivision(grid);
+	}
+
+	// Counts the neighbours of every grid space.
+	@Benchmark
+	public long returnNumberOfAliveNeighbours() {
+		boolean periodic = boundaryCondition.equals("periodic");
+		long total = 0;
+		for (int y=0; y<gridSize; y++) {
+			for (int x=0; x<gridSize; x++) {
+				total += periodic ? rules.returnNumberOfAliveNeighboursForPeriodicGrid(grid, x, y)
+						: rules.returnNumberOfAliveNeighboursForRelectingOrAbsorbentGrids(grid, x, y);
+			}
+		}
+		return total;
+	}
+
+	// Setting the boundary condition creates the update matrix again.
+	@Benchmark
+	public void createUpdateMatrix() {
+		rules.setBoundaryCondition(boundaryCondition);
+	}
+}
@@ -0,0 +1,299 @@
+/* *****************************************************************************
+* Description: A class used to store the bacteria states of a grid as two bit
+* planes, one with a bit for each grid space holding an alive bacterium and one
+* with a bit for each grid space that is part of the colony, alive or dead.
+* Each row is packed into 64 bit words in the same way as OccupancyBitmap, with
+* bit b of word k holding the grid space at x = 64k + b.
+*
+* The number of alive neighbours of all 64 grid spaces in a word is counted at
+* once, by adding the eight shifted neighbour words with bitwise full adders,
+* as fast Game of Life programs do. The count of each grid space is left as a
+* 4 bit number spread over four words, one for each bit, so the grid spaces
+* with a given count can be picked out with a few more bitwise operations.
+* Other neighbourhoods (see Neighbourhood) are counted in the same way, adding
+* a shifted word for each offset in the neighbourhood into as many words as
+* the largest count needs.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public class BacteriaStatePlanes {
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] alive;
+	private final long[] colony;
+
+	// Bits of the last word of each row that are inside the grid.
+	private final long lastWordMask;
+
+	// Constructor, creates planes with no bacteria.
+	public BacteriaStatePlanes(int width, int height) {
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		alive = new long[wordsPerRow * height];
+		colony = new long[wordsPerRow * height];
+		lastWordMask = -1L >>> ((64 - width) & 63);
+	}
+
+	// Returns planes of the bacteria states given, filled on the calling thread.
+	public static BacteriaStatePlanes create(byte[] bacteriaStates, int width, int height) {
+		BacteriaStatePlanes planes = new BacteriaStatePlanes(width, height);
+		planes.fillRows(bacteriaStates, 0, height);
+		return planes;
+	}
+
+	// Returns the width of the planes, in grid spaces.
+	public int getWidth() {
+		return width;
+	}
+
+	// Returns the height of the planes, in grid spaces.
+	public int getHeight() {
+		return height;
+	}
+
+	// Returns the number of words used for each row.
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	// Returns true if grid space x,y holds an alive bacterium.
+	public boolean isAlive(int x, int y) {
+		return (alive[y*wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	// Returns true if grid space x,y holds an alive or dead bacterium.
+	public boolean isPartOfColony(int x, int y) {
+		return (colony[y*wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	// Fills the rows from firstRow up to, but not including, lastRow from the bacteria states. As ALIVE is 1
+	// and REMAINS is 2, the bits are taken straight from each state without branching.
+	public void fillRows(byte[] bacteriaStates, int firstRow, int lastRow) {
+		for (int y=firstRow; y<lastRow; y++) {
+			int rowStart = y*width;
+			int wordStart = y*wordsPerRow;
+
+			for (int k=0; k<wordsPerRow; k++) {
+				int start = rowStart + (k << 6);
+				int length = Math.min(64, rowStart + width - start);
+				long aliveWord = 0;
+				long colonyWord = 0;
+				for (int b=0; b<length; b++) {
+					int state = bacteriaStates[start + b];
+					aliveWord |= (long) (state & BacterialColonyEngine.ALIVE) << b;
+					colonyWord |= (long) ((state | (state >>> 1)) & 1) << b;
+				}
+				alive[wordStart + k] = aliveWord;
+				colony[wordStart + k] = colonyWord;
+			}
+		}
+	}
+
+	// Fills the rows as above, but with only the alive bacteria of one species in the alive plane, so the
+	// neighbours counted are those of that species. The colony plane still holds the bacteria of every species.
+	public void fillRowsForSpecies(byte[] bacteriaStates, byte[] speciesOfBacteria, int species, int firstRow, int lastRow) {
+		for (int y=firstRow; y<lastRow; y++) {
+			int rowStart = y*width;
+			int wordStart = y*wordsPerRow;
+
+			for (int k=0; k<wordsPerRow; k++) {
+				int start = rowStart + (k << 6);
+				int length = Math.min(64, rowStart + width - start);
+				long aliveWord = 0;
+				long colonyWord = 0;
+				for (int b=0; b<length; b++) {
+					int state = bacteriaStates[start + b];
+					int isSpecies = speciesOfBacteria[start + b] == species ? 1 : 0;
+					aliveWord |= (long) (state & BacterialColonyEngine.ALIVE & isSpecies) << b;
+					colonyWord |= (long) ((state | (state >>> 1)) & 1) << b;
+				}
+				alive[wordStart + k] = aliveWord;
+				colony[wordStart + k] = colonyWord;
+			}
+		}
+	}
+
+	// Returns the bits of word k of row y for the grid spaces inside the grid that aren't part of the colony.
+	public long returnEmptyWord(int y, int k) {
+		long word = ~colony[y*wordsPerRow + k];
+		return k == wordsPerRow - 1 ? word & lastWordMask : word;
+	}
+
+	// Counts the alive neighbours of each grid space in word k of row y, of the 8 around it, and stores the
+	// counts in the four words given, bit 0 of each count in counts[0] up to bit 3 in counts[3]. Neighbours
+	// outside the grid wrap around with periodic boundaries and are empty otherwise. With periodic
+	// boundaries on a grid only one wide or high, a grid space can be its own neighbour, so the counts are
+	// only the same as in CellularAutomataBacteriaRules for grid spaces that aren't alive themselves.
+	public void countAliveNeighbours(int y, int k, boolean periodic, long[] counts) {
+		int rowBelow = y - 1;
+		int rowAbove = y + 1;
+		if (periodic) {
+			if (rowBelow < 0) rowBelow = height - 1;
+			if (rowAbove == height) rowAbove = 0;
+		}
+
+		// The three neighbours in the row below, the two beside the grid space and the three in the row above.
+		long n0 = returnWord(rowBelow, k);
+		long n1 = returnWestWord(rowBelow, k, periodic);
+		long n2 = returnEastWord(rowBelow, k, periodic);
+		long n3 = returnWestWord(y, k, periodic);
+		long n4 = returnEastWord(y, k, periodic);
+		long n5 = returnWord(rowAbove, k);
+		long n6 = returnWestWord(rowAbove, k, periodic);
+		long n7 = returnEastWord(rowAbove, k, periodic);
+
+		// Add them in groups of three with full adders, giving three ones bits and three twos bits.
+		long onesA = n0 ^ n1 ^ n2;
+		long twosA = (n0 & n1) | (n2 & (n0 ^ n1));
+		long onesB = n3 ^ n4 ^ n5;
+		long twosB = (n3 & n4) | (n5 & (n3 ^ n4));
+		long onesC = n6 ^ n7;
+		long twosC = n6 & n7;
+
+		// Add the ones bits, carrying a fourth twos bit, then add the four twos bits.
+		long twosD = (onesA & onesB) | (onesC & (onesA ^ onesB));
+		long twosABC = twosA ^ twosB ^ twosC;
+		long foursA = (twosA & twosB) | (twosC & (twosA ^ twosB));
+		long foursB = twosABC & twosD;
+
+		counts[0] = onesA ^ onesB ^ onesC;
+		counts[1] = twosABC ^ twosD;
+		counts[2] = foursA ^ foursB;
+		counts[3] = foursA & foursB;
+	}
+
+	// Counts the alive neighbours of each grid space in word k of row y in the neighbourhood given, and stores
+	// the counts in the words given, bit j of each count in counts[j], using as many words as the
+	// neighbourhood needs. The default neighbourhood is counted as above.
+	public void countAliveNeighbours(int y, int k, boolean periodic, Neighbourhood neighbourhood, long[] counts) {
+		if (neighbourhood.isDefaultCrowdingNeighbourhood()) {
+			countAliveNeighbours(y, k, periodic, counts);
+			return;
+		}
+
+		int[] xOffsets = neighbourhood.returnXOffsets(y);
+		int[] yOffsets = neighbourhood.returnYOffsets(y);
+		int numberOfCountBits = neighbourhood.getNumberOfCountBits();
+		for (int j=0; j<numberOfCountBits; j++) {
+			counts[j] = 0;
+		}
+
+		// Each neighbour word is added into the counts with a chain of half adders.
+		for (int n=0; n<xOffsets.length; n++) {
+			long carry = returnShiftedWord(y + yOffsets[n], k, xOffsets[n], periodic);
+			for (int j=0; j<numberOfCountBits && carry != 0; j++) {
+				long sum = counts[j] ^ carry;
+				carry &= counts[j];
+				counts[j] = sum;
+			}
+		}
+	}
+
+	// Returns the bits of the grid spaces whose count, in words filled by countAliveNeighbours, is one of
+	// those set in countMask, where bit n of the mask stands for a count of n.
+	public static long returnGridSpacesWithCounts(long[] counts, int countMask) {
+		long gridSpaces = 0;
+		for (int n=0; n<=8; n++) {
+			if ((countMask & (1 << n)) == 0) continue;
+			gridSpaces |= ((n & 1) != 0 ? counts[0] : ~counts[0]) & ((n & 2) != 0 ? counts[1] : ~counts[1])
+					& ((n & 4) != 0 ? counts[2] : ~counts[2]) & ((n & 8) != 0 ? counts[3] : ~counts[3]);
+		}
+		return gridSpaces;
+	}
+
+	// Returns the bits of the grid spaces whose count, in words filled by countAliveNeighbours for any
+	// neighbourhood, is one with countsIncluded set. Whichever of the included and left out counts there are
+	// fewer of are picked out.
+	public static long returnGridSpacesWithCounts(long[] counts, boolean[] countsIncluded) {
+		int numberIncluded = 0;
+		for (boolean included : countsIncluded) {
+			if (included) numberIncluded++;
+		}
+		boolean pickIncluded = 2*numberIncluded <= countsIncluded.length;
+		int numberOfCountBits = 32 - Integer.numberOfLeadingZeros(countsIncluded.length - 1);
+
+		long gridSpaces = 0;
+		for (int n=0; n<countsIncluded.length; n++) {
+			if (countsIncluded[n] != pickIncluded) continue;
+			long withCount = -1L;
+			for (int j=0; j<numberOfCountBits; j++) {
+				withCount &= ((n >>> j) & 1) != 0 ? counts[j] : ~counts[j];
+			}
+			gridSpaces |= withCount;
+		}
+		return pickIncluded ? gridSpaces : ~gridSpaces;
+	}
+
+	// Returns the count of bit b, in words filled by countAliveNeighbours.
+	public static int returnCount(long[] counts, int b) {
+		int count = 0;
+		for (int j=0; j<counts.length; j++) {
+			count |= (int) ((counts[j] >>> b) & 1) << j;
+		}
+		return count;
+	}
+
+	// Returns word k of row y shifted so that each bit holds the grid space dx to the east, x + dx. Rows and
+	// columns outside the grid wrap around with periodic boundaries and are empty otherwise.
+	private long returnShiftedWord(int y, int k, int dx, boolean periodic) {
+		if (periodic) y = Math.floorMod(y, height);
+		else if (y < 0 || y >= height) return 0;
+		int rowStart = y*wordsPerRow;
+		int start = (k << 6) + dx;
+		if (!periodic) return returnBits(rowStart, start);
+
+		// The row is repeated to the west and east, and each copy from the one holding x = start fills the
+		// bits that land on it, as the bits of the row past its end are always clear.
+		long word = 0;
+		for (int copyStart = start - Math.floorMod(start, width); copyStart < start + 64; copyStart += width) {
+			word |= returnBits(rowStart, start - copyStart);
+		}
+		return word;
+	}
+
+	// Returns the 64 bits of the alive plane in the row starting at rowStart from the grid space at x = start,
+	// with those outside the row clear.
+	private long returnBits(int rowStart, int start) {
+		int wordIndex = start >> 6;
+		int shift = start & 63;
+		long low = wordIndex >= 0 && wordIndex < wordsPerRow ? alive[rowStart + wordIndex] : 0;
+		if (shift == 0) return low;
+		long high = wordIndex + 1 >= 0 && wordIndex + 1 < wordsPerRow ? alive[rowStart + wordIndex + 1] : 0;
+		return (low >>> shift) | (high << (64 - shift));
+	}
+
+	// Returns word k of the alive plane in row y, or 0 if the row is outside the grid.
+	private long returnWord(int y, int k) {
+		if (y < 0 || y >= height) return 0;
+		return alive[y*wordsPerRow + k];
+	}
+
+	// Returns word k of row y shifted so that each bit holds the grid space to the west, x - 1.
+	private long returnWestWord(int y, int k, boolean periodic) {
+		if (y < 0 || y >= height) return 0;
+		int rowStart = y*wordsPerRow;
+
+		long word = alive[rowStart + k] << 1;
+		if (k > 0) word |= alive[rowStart + k - 1] >>> 63;
+		else if (periodic) word |= (alive[rowStart + wordsPerRow - 1] >>> ((width - 1) & 63)) & 1;
+		return word;
+	}
+
+	// Returns word k of row y shifted so that each bit holds the grid space to the east, x + 1. The bits past
+	// the end of the row are always clear, so nothing is brought in from outside the grid.
+	private long returnEastWord(int y, int k, boolean periodic) {
+		if (y < 0 || y >= height) return 0;
+		int rowStart = y*wordsPerRow;
+
+		long word = alive[rowStart + k] >>> 1;
+		if (k < wordsPerRow - 1) word |= alive[rowStart + k + 1] << 63;
+		else if (periodic) word |= (alive[rowStart] & 1) << ((width - 1) & 63);
+		return word;
+	}
+}
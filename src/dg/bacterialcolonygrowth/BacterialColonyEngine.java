@@ -0,0 +1,1211 @@
+/* *****************************************************************************
+* Description: A class used to run the cellular automaton model of a bacterial
+* colony without a display. It follows the same rules as
+* CellularAutomataBacteriaRules, but stores the nutrient levels and bacteria in
+* arrays of primitives, so it needs neither JavaFX nor la4j.
+*
+* The grid can be updated by several threads, each updating a band of rows.
+* Every grid space is updated from the previous nutrient levels and bacteria
+* states, and the random numbers are drawn by position, so the grid is the
+* same whatever the number of threads.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class BacterialColonyEngine {
+
+	// The possible states of a grid space.
+	public static final byte EMPTY = 0;
+	public static final byte ALIVE = 1;
+	public static final byte REMAINS = 2;
+
+	// Levels of nutrient a grid space must contain for a bacterium to survive or for cell division to
+	// take place. These are fixed, as they are in CellularAutomataBacteriaRules.
+	static final double NUTRIENT_LEVEL_FOR_SURVIVAL = 10;
+	static final double NUTRIENT_LEVEL_FOR_CELL_DIVISION = 60;
+
+	// Bands with fewer rows than this aren't worth giving to another thread.
+	private static final int MINIMUM_ROWS_PER_BAND = 16;
+
+	private int gridHeight = 80; // Default = 80
+	private int gridWidth = 80; // Default = 80
+	private int cellHeight = 5; // Default = 5
+	private int cellWidth = 5; // Default = 5
+	private int numberOfCellsInGrid;
+
+	// Every m time steps cell division occurs, the following two variables are used to keep track of when
+	// cell division should occur.
+	private int timeStepForCellDivisionCounter = 1; // Default = 1
+	private int numberOfTimeStepsForCellDivision = 8; // Default = 8
+
+	private int nutrientForSustenance = 10; // Default = 10
+	private int nutrientForGrowth = 60; // Default = 60
+	private int thresholdForDivision = 100; // Default = 100
+	private double probabilityOfCellDivision = 0.5; // Default = 0.5 (value should be between 0 and 1).
+
+	private String boundaryType = "reflecting"; // Default = "reflecting"
+	private String initalNutrientPattern = "default"; // Default = "default"
+	private String initialBacteriaImage = null; // Default = none
+	private String initialNutrientImage = null; // Default = none
+
+	// Rate of diffusion (value should be between 0 and 1).
+	private double delta = 0.4; // Default = 0.4
+
+	// Stores a value for each possible number of surrounding cells (0-8 with the default neighbourhood),
+	// which is then used to determine if cell division takes place.
+	private int[] crowdingFunctionValues = {0, 40, 40, 40, 30, 20, 10, 0, 0}; // Default = 0,40,40,40,30,20,10,0,0
+
+	// The grid spaces whose alive bacteria are counted for the crowding function, and those nutrient is
+	// shared with in diffusion.
+	private Neighbourhood crowdingNeighbourhood = Neighbourhood.createDefaultCrowdingNeighbourhood(); // Default = moore radius 1
+	private Neighbourhood diffusionNeighbourhood = Neighbourhood.createDefaultDiffusionNeighbourhood(); // Default = vonneumann radius 1
+
+	// Number of time steps carried out so far, also used to draw the random numbers for each step.
+	private long stepNumber = 0;
+	private CounterBasedRandom random;
+
+	// Number of bacteria born and that died in the last update for consumption and cell division.
+	private int birthsInLastUpdate = 0;
+	private int deathsInLastUpdate = 0;
+
+	// Metrics are only collected if they have been given to the engine.
+	private SimulationMetrics metrics = null;
+
+	// The grid is updated in bands of rows. With a single thread there is one band, updated on the calling
+	// thread, and with more the calling thread updates the first band while a pool of daemon threads updates
+	// the others. The bands are created again whenever the grid or the number of threads changes.
+	private int numberOfThreads = 1;
+	private ExecutorService stepPool = null;
+	private GridBand[] bands = null;
+
+	// The tasks a band can be given. Each runs on every band at once, and the next only starts once they
+	// have all finished.
+	private enum BandTask {DIFFUSION, FILL_STATES_BEFORE_THIS_UPDATE, CONSUMPTION_AND_CELL_DIVISION}
+
+	// The numbers of alive neighbours with which cell division can take place in the current update.
+	private boolean[] countsThatCanDivide = new boolean[crowdingFunctionValues.length];
+
+	// The nutrient level and bacteria state of each grid space, stored in the same order as the nutrient
+	// matrix of CellularAutomataBacteriaRules. Two arrays of nutrient levels are kept so that an update can
+	// read the previous values while writing the new ones. The bacteria states from before a cell division
+	// update are kept as bit planes, which are all that is needed to count neighbours.
+	private double[] nutrientLevels;
+	private double[] updatedNutrientLevels;
+	private byte[] bacteriaStates;
+	private BacteriaStatePlanes statesBeforeThisUpdate;
+
+	// Weights used to update the nutrient levels for diffusion.
+	private NutrientDiffusion diffusion;
+
+	// Statistics of the colony. They are kept up to date by each update from the births, deaths and
+	// nutrient consumed, rather than by scanning the grid, and are only counted from the grid again when
+	// they are next needed after the grid has been changed in any other way.
+	private boolean colonyStatisticsOutOfDate = true;
+	private int numberOfAliveBacteria;
+	private int numberOfRemains;
+	private double totalNutrient;
+	private long largestSquaredDistanceFromStart;
+	private long colonyPerimeter;
+
+	/* ****************************************************************************
+	* Constructors
+	*******************************************************************************/
+
+	// Constructor which creates a new engine with the default parameters.
+	public BacterialColonyEngine() {
+		this(new Random().nextLong());
+		this.applyConfig(new SimulationConfig.Builder().build());
+		this.initialise();
+	}
+
+	// Constructor which creates an engine with the parameters specified in an input file.
+	public BacterialColonyEngine(File inputFile) throws IOException, IllegalArgumentException {
+		this(inputFile, new Random().nextLong());
+	}
+
+	// Constructor which creates an engine with the parameters specified in an input file, using the
+	// seed given for its random numbers.
+	public BacterialColonyEngine(File inputFile, long seed) throws IOException, IllegalArgumentException {
+		this(new InputFileReader(inputFile).readConfig(), seed);
+	}
+
+	// Constructor which creates an engine with the parameters in a config. Throws an IOException if an
+	// initial layout image in the config can't be read.
+	public BacterialColonyEngine(SimulationConfig config) throws IOException {
+		this(config, new Random().nextLong());
+	}
+
+	// Constructor which creates an engine with the parameters in a config, using the seed given for its
+	// random numbers. The grid is created once, after all the parameters have been set.
+	public BacterialColonyEngine(SimulationConfig config, long seed) throws IOException {
+		this(seed);
+		this.applyConfig(config);
+		this.initialise();
+		this.readInitialLayoutImages();
+	}
+
+	// Constructor which creates an engine without a grid, so the parameters can be set before it is
+	// created.
+	private BacterialColonyEngine(long seed) {
+		random = new CounterBasedRandom(seed);
+	}
+
+	// Creates an engine without a grid, for restoring a checkpoint. prepareForRestore must be called
+	// before the engine is used.
+	static BacterialColonyEngine createForRestore(SimulationConfig config, long seed) {
+		BacterialColonyEngine engine = new BacterialColonyEngine(seed);
+		engine.applyConfig(config);
+		return engine;
+	}
+
+	/* ****************************************************************************
+	* Setters
+	*******************************************************************************/
+
+	// Set grid height. As in CellularAutomataBacteriaRules, changing the size of an existing grid creates a
+	// new grid that contains no bacteria.
+	public void setGridHeight(int x) {
+		gridHeight = x;
+		if (nutrientLevels != null) this.createNewGridAfterDimensionChange();
+	}
+
+	// Set grid width.
+	public void setGridWidth(int x) {
+		gridWidth = x;
+		if (nutrientLevels != null) this.createNewGridAfterDimensionChange();
+	}
+
+	// Set cell height.
+	public void setCellHeight(int x) {
+		cellHeight = x;
+	}
+
+	// Set cell width.
+	public void setCellWidth(int x) {
+		cellWidth = x;
+	}
+
+	// Set rate of diffusion (delta).
+	public void setDiffusionRate(double x) {
+		delta = x;
+		if (nutrientLevels != null) this.createDiffusionWeights();
+	}
+
+	// Set nutrient for sustenance.
+	public void setNutrientForSustenance(int x) {
+		nutrientForSustenance = x;
+	}
+
+	// Set nutrient for growth.
+	public void setNutrientForGrowth(int x) {
+		nutrientForGrowth = x;
+	}
+
+	// Set threshold for cell division.
+	public void setThresholdForCellDivision(int x) {
+		thresholdForDivision = x;
+	}
+
+	// Set crowding function.
+	public void setCrowdingFunctionValues(int[] x) {
+		crowdingFunctionValues = x.clone();
+		countsThatCanDivide = new boolean[x.length];
+	}
+
+	// Set number of time steps for cell division.
+	public void setNumberOfTimestepsForCellDivision(int x) {
+		numberOfTimeStepsForCellDivision = x;
+	}
+
+	// Sets the boundary condition to the string specified as an argument.
+	public void setBoundaryCondition(String newBoundaryCondition) {
+		boundaryType = newBoundaryCondition;
+		if (nutrientLevels != null) this.createDiffusionWeights();
+	}
+
+	// Set the neighbourhood whose alive bacteria are counted for the crowding function. The crowding
+	// function must then have a value for each possible number of neighbours.
+	public void setCrowdingNeighbourhood(Neighbourhood neighbourhood) {
+		crowdingNeighbourhood = neighbourhood;
+		if (bands != null) this.createBands();
+	}
+
+	// Set the neighbourhood nutrient is shared with in diffusion.
+	public void setDiffusionNeighbourhood(Neighbourhood neighbourhood) {
+		diffusionNeighbourhood = neighbourhood;
+		if (nutrientLevels != null) this.createDiffusionWeights();
+	}
+
+	// Set initial nutrient pattern string.
+	public void setNutrientLevelPatternChoice(String nutrientPattern) {
+		initalNutrientPattern = nutrientPattern;
+	}
+
+	// Set probability of cell division.
+	public void setProbabilityOfCellDivision(double probability) {
+		probabilityOfCellDivision = probability;
+	}
+
+	// Sets the number of threads used to update the grid. The threads of any previous pool are stopped, so
+	// setting this back to 1 releases them.
+	public void setNumberOfThreads(int x) {
+		if (x < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+
+		if (stepPool != null) {
+			stepPool.shutdown();
+			stepPool = null;
+		}
+		numberOfThreads = x;
+
+		if (numberOfThreads > 1) {
+			stepPool = Executors.newFixedThreadPool(numberOfThreads - 1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "engine-step");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		if (diffusion != null) this.createBands();
+	}
+
+	// Sets the seed used to draw the random numbers for cell division.
+	public void setRandomSeed(long seed) {
+		random = new CounterBasedRandom(seed);
+	}
+
+	// Sets the nutrient levels based on the array of values passes to it.
+	public void setNutrientLevelsToSpecifiedValues(double[] newNutrientLevels) {
+		Arrays.fill(nutrientLevels, 0);
+		System.arraycopy(newNutrientLevels, 0, nutrientLevels, 0, newNutrientLevels.length);
+		colonyStatisticsOutOfDate = true;
+	}
+
+	// Sets the nutrient level of the specified cell, to the amount of nutrient specified.
+	public void setNutrientLevelOfCell(int i, double newNutrientLevel) {
+		nutrientLevels[i] = newNutrientLevel;
+		colonyStatisticsOutOfDate = true;
+	}
+
+	// Sets the grid space x,y to contain an alive bacterium.
+	public void setBacteriumAlive(int x, int y) {
+		bacteriaStates[returnPositionInNutrientMatrix(x, y)] = ALIVE;
+		colonyStatisticsOutOfDate = true;
+	}
+
+	// Sets the grid space x,y to contain the remains of a dead bacterium.
+	public void setBacteriumDead(int x, int y) {
+		bacteriaStates[returnPositionInNutrientMatrix(x, y)] = REMAINS;
+		colonyStatisticsOutOfDate = true;
+	}
+
+	// Sets the grid space x,y to contain no bacteria.
+	public void setBacteriumEmpty(int x, int y) {
+		bacteriaStates[returnPositionInNutrientMatrix(x, y)] = EMPTY;
+		colonyStatisticsOutOfDate = true;
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the height of the grid.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the width of the grid.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the height of a cell in pixels.
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	// Returns the width of a cell in pixels.
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	// Returns the number of time steps carried out so far.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the number of threads used to update the grid.
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	// Returns the number of bands of rows the grid is split into for an update, which is fewer than the
+	// number of threads if the grid hasn't enough rows to go round.
+	public int getNumberOfBands() {
+		return bands.length;
+	}
+
+	// Returns the number of bacteria born in the last update for consumption and cell division.
+	public int getBirthsInLastUpdate() {
+		return birthsInLastUpdate;
+	}
+
+	// Returns the number of bacteria that died in the last update for consumption and cell division.
+	public int getDeathsInLastUpdate() {
+		return deathsInLastUpdate;
+	}
+
+	// Returns the metrics the engine records its steps in, or null if there are none.
+	public SimulationMetrics getMetrics() {
+		return metrics;
+	}
+
+	// Sets the metrics the engine records its steps in. Null turns metrics off.
+	public void setMetrics(SimulationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	// Returns the number of time steps since cell division last occurred, counting the next one.
+	public int getTimeStepForCellDivisionCounter() {
+		return timeStepForCellDivisionCounter;
+	}
+
+	// Returns the number of time steps between cell division.
+	public int getNumberOfTimestepsForCellDivision() {
+		return numberOfTimeStepsForCellDivision;
+	}
+
+	// Returns the nutrient for sustenance.
+	public int getNutrientForSustenance() {
+		return nutrientForSustenance;
+	}
+
+	// Returns the nutrient for growth.
+	public int getNutrientForGrowth() {
+		return nutrientForGrowth;
+	}
+
+	// Returns the threshold for cell division.
+	public int getThresholdForCellDivision() {
+		return thresholdForDivision;
+	}
+
+	// Returns the probability of cell division.
+	public double getProbabilityOfCellDivision() {
+		return probabilityOfCellDivision;
+	}
+
+	// Returns the rate of diffusion (delta).
+	public double getDiffusionRate() {
+		return delta;
+	}
+
+	// Returns the boundary condition.
+	public String getBoundaryCondition() {
+		return boundaryType;
+	}
+
+	// Returns the initial nutrient pattern.
+	public String getNutrientLevelPatternChoice() {
+		return initalNutrientPattern;
+	}
+
+	// Returns the path of the image the initial bacteria were read from, or null if there wasn't one.
+	public String getInitialBacteriaImage() {
+		return initialBacteriaImage;
+	}
+
+	// Returns the path of the image the initial nutrient levels were read from, or null if there wasn't one.
+	public String getInitialNutrientImage() {
+		return initialNutrientImage;
+	}
+
+	// Returns a copy of the crowding function.
+	public int[] getCrowdingFunctionValues() {
+		return crowdingFunctionValues.clone();
+	}
+
+	// Returns the neighbourhood whose alive bacteria are counted for the crowding function.
+	public Neighbourhood getCrowdingNeighbourhood() {
+		return crowdingNeighbourhood;
+	}
+
+	// Returns the neighbourhood nutrient is shared with in diffusion.
+	public Neighbourhood getDiffusionNeighbourhood() {
+		return diffusionNeighbourhood;
+	}
+
+	// Returns a config with the current parameters. Throws an IllegalArgumentException if the parameters
+	// have been set to values a config doesn't allow.
+	public SimulationConfig createConfig() {
+		return new SimulationConfig.Builder()
+				.setGridHeight(gridHeight)
+				.setGridWidth(gridWidth)
+				.setCellHeight(cellHeight)
+				.setCellWidth(cellWidth)
+				.setDiffusionRate(delta)
+				.setNutrientForSustenance(nutrientForSustenance)
+				.setNutrientForGrowth(nutrientForGrowth)
+				.setThresholdForCellDivision(thresholdForDivision)
+				.setCrowdingFunctionValues(crowdingFunctionValues)
+				.setNumberOfTimestepsForCellDivision(numberOfTimeStepsForCellDivision)
+				.setBoundaryCondition(boundaryType)
+				.setNutrientLevelPatternChoice(initalNutrientPattern)
+				.setProbabilityOfCellDivision(probabilityOfCellDivision)
+				.setInitialBacteriaImage(initialBacteriaImage)
+				.setInitialNutrientImage(initialNutrientImage)
+				.setCrowdingNeighbourhood(crowdingNeighbourhood.getType())
+				.setCrowdingNeighbourhoodRadius(crowdingNeighbourhood.getRadius())
+				.setDiffusionNeighbourhood(diffusionNeighbourhood.getType())
+				.setDiffusionNeighbourhoodRadius(diffusionNeighbourhood.getRadius())
+				.build();
+	}
+
+	// Returns the seed used to draw the random numbers.
+	public long getRandomSeed() {
+		return random.getSeed();
+	}
+
+	// Returns the nutrient level in the cell specified as an argument.
+	public double getNutrientLevelOfCell(int i) {
+		return nutrientLevels[i];
+	}
+
+	// Returns the state (EMPTY, ALIVE or REMAINS) of the grid space x,y.
+	public byte getBacteriumState(int x, int y) {
+		return bacteriaStates[returnPositionInNutrientMatrix(x, y)];
+	}
+
+	// Returns 'true' if the grid space x,y contains an alive bacterium.
+	public boolean cellAlive(int x, int y) {
+		return getBacteriumState(x, y) == ALIVE;
+	}
+
+	// Returns the array of nutrient levels. The array is replaced on every update, so it should not be
+	// kept after the next call to createUpdatedGrid.
+	public double[] getNutrientLevels() {
+		return nutrientLevels;
+	}
+
+	// Returns the array of bacteria states.
+	public byte[] getBacteriaStates() {
+		return bacteriaStates;
+	}
+
+	// Returns the number of grid spaces with an alive bacterium.
+	public int getNumberOfAliveBacteria() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return numberOfAliveBacteria;
+	}
+
+	// Returns the number of grid spaces with the remains of a dead bacterium.
+	public int getNumberOfRemains() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return numberOfRemains;
+	}
+
+	// Returns the distance from the grid space the first bacterium is placed in to the furthest grid space
+	// in the colony, alive or dead.
+	public double getColonyRadius() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return Math.sqrt(largestSquaredDistanceFromStart);
+	}
+
+	// Returns the number of grid space edges between the colony, alive or dead, and the grid spaces that
+	// contain no bacteria. With reflecting or absorbent boundaries the edge of the grid counts as empty.
+	public long getColonyPerimeter() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return colonyPerimeter;
+	}
+
+	// Returns the statistics of the colony at the current step.
+	public ColonyStatistics createColonyStatistics() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return new ColonyStatistics(stepNumber, numberOfAliveBacteria, numberOfRemains, totalNutrient,
+				Math.sqrt(largestSquaredDistanceFromStart), colonyPerimeter);
+	}
+
+	// Returns the number of grid spaces in the given state, by counting them in the grid.
+	public int countGridSpacesInState(byte state) {
+		int count = 0;
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (bacteriaStates[i] == state) count++;
+		}
+		return count;
+	}
+
+	// Returns a copy of the current nutrient levels and bacteria states.
+	public SimulationSnapshot createSnapshot() {
+		return new SimulationSnapshot(gridWidth, gridHeight, stepNumber, nutrientLevels.clone(), bacteriaStates.clone());
+	}
+
+	// Returns the total amount of nutrient in the grid. It is kept up to date by each update, so it can
+	// differ from the sum of the nutrient levels by rounding errors.
+	public double getTotalNutrient() {
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+		return totalNutrient;
+	}
+
+	// Counts the statistics of the colony from the grid, for when the grid has been changed other than
+	// by an update.
+	private void countColonyStatistics() {
+		numberOfAliveBacteria = 0;
+		numberOfRemains = 0;
+		totalNutrient = 0;
+		largestSquaredDistanceFromStart = 0;
+		colonyPerimeter = 0;
+
+		for (int y=0; y<gridHeight; y++) {
+			for (int x=0; x<gridWidth; x++) {
+				int i = x + y*gridWidth;
+				totalNutrient += nutrientLevels[i];
+
+				byte state = bacteriaStates[i];
+				if (state == EMPTY) continue;
+
+				if (state == ALIVE) numberOfAliveBacteria++;
+				else numberOfRemains++;
+
+				largestSquaredDistanceFromStart = Math.max(largestSquaredDistanceFromStart, returnSquaredDistanceFromStart(x, y));
+				colonyPerimeter += 4 - this.returnNumberOfColonyNeighboursSharingAnEdge(x, y, 0, gridHeight);
+			}
+		}
+
+		colonyStatisticsOutOfDate = false;
+	}
+
+	// Returns the square of the distance from grid space x,y to the grid space the first bacterium is
+	// placed in.
+	private long returnSquaredDistanceFromStart(int x, int y) {
+		long dx = x - gridWidth/2;
+		long dy = y - gridWidth/2;
+		return dx*dx + dy*dy;
+	}
+
+	// Returns the number of the four grid spaces sharing an edge with x,y that are part of the colony. Rows
+	// from firstRow up to, but not including, lastRow are looked up in the current grid and the others in
+	// the grid from before this update, as they may belong to a band being updated by another thread.
+	private int returnNumberOfColonyNeighboursSharingAnEdge(int x, int y, int firstRow, int lastRow) {
+		return (isPartOfColony(x - 1, y, firstRow, lastRow) ? 1 : 0) + (isPartOfColony(x + 1, y, firstRow, lastRow) ? 1 : 0)
+				+ (isPartOfColony(x, y - 1, firstRow, lastRow) ? 1 : 0) + (isPartOfColony(x, y + 1, firstRow, lastRow) ? 1 : 0);
+	}
+
+	// Returns true if grid space x,y holds an alive or dead bacterium. Positions outside the grid wrap
+	// around with periodic boundaries, and are empty otherwise.
+	private boolean isPartOfColony(int x, int y, int firstRow, int lastRow) {
+		if (boundaryType.equals("periodic")) {
+			x = (x + gridWidth) % gridWidth;
+			y = (y + gridHeight) % gridHeight;
+		}
+		else if (x < 0 || x >= gridWidth || y < 0 || y >= gridHeight) {
+			return false;
+		}
+		if (y >= firstRow && y < lastRow) return bacteriaStates[x + y*gridWidth] != EMPTY;
+		return statesBeforeThisUpdate.isPartOfColony(x, y);
+	}
+
+	// Returns true if a bacterium was born in grid space x,y in this update.
+	private boolean isBirthInThisUpdate(int x, int y) {
+		return bacteriaStates[x + y*gridWidth] != EMPTY && !statesBeforeThisUpdate.isPartOfColony(x, y);
+	}
+
+	// Returns the number of edges between a grid space in the last row of one band and a grid space in the
+	// first row of the next that bacteria were born in on both sides during this update. Each band leaves
+	// these edges out of its change to the perimeter, as it sees the other band as it was before the
+	// update. With periodic boundaries the last band is followed by the first.
+	private int countBirthsSharingAnEdgeAcrossBands() {
+		int numberOfEdges = 0;
+		int numberOfBandEdges = boundaryType.equals("periodic") ? bands.length : bands.length - 1;
+
+		for (int b=0; b<numberOfBandEdges; b++) {
+			int lastRowOfBand = bands[b].lastRow - 1;
+			int firstRowOfNextBand = bands[(b + 1) % bands.length].firstRow;
+			for (int x=0; x<gridWidth; x++) {
+				if (isBirthInThisUpdate(x, lastRowOfBand) && isBirthInThisUpdate(x, firstRowOfNextBand)) numberOfEdges++;
+			}
+		}
+		return numberOfEdges;
+	}
+
+	/* ****************************************************************************
+	* General Methods
+	*******************************************************************************/
+
+	// Creates the grid, sets the initial nutrient levels and places a single bacterium in the middle of
+	// the grid. Anything that is read from an initial layout image is left for readInitialLayoutImages.
+	private void initialise() {
+		this.allocateGrid();
+		if (initialNutrientImage == null) this.setInitialNutrientLevels();
+		this.createDiffusionWeights();
+
+		if (initialBacteriaImage != null) return;
+
+		// The bacterium is placed in the same grid space as in CellularAutomataBacteriaRules.
+		if (gridWidth/2 >= gridHeight) {
+			throw new IllegalArgumentException("Grid height must be greater than half the grid width to place the initial bacterium.");
+		}
+		this.setBacteriumAlive(gridWidth/2, gridWidth/2);
+	}
+
+	// Reads the initial nutrient levels and bacteria from the images in the config, if there are any.
+	// Each image is decoded one row at a time straight into the arrays of the grid, so however large the
+	// grid, only a single row of pixels is in memory at once.
+	private void readInitialLayoutImages() throws IOException {
+		if (initialNutrientImage == null && initialBacteriaImage == null) return;
+		int[] row = new int[gridWidth];
+		colonyStatisticsOutOfDate = true;
+
+		if (initialNutrientImage != null) {
+			try (LayoutImageReader reader = LayoutImageReader.openForGrid(new File(initialNutrientImage), gridWidth, gridHeight)) {
+				int maximumValue = reader.getMaximumValue();
+				for (int y=0; y<gridHeight; y++) {
+					reader.readRow(row);
+					int start = y*gridWidth;
+					for (int x=0; x<gridWidth; x++) {
+						nutrientLevels[start + x] = LayoutImageReader.returnNutrientLevel(row[x], maximumValue);
+					}
+				}
+			}
+		}
+
+		if (initialBacteriaImage != null) {
+			try (LayoutImageReader reader = LayoutImageReader.openForGrid(new File(initialBacteriaImage), gridWidth, gridHeight)) {
+				int maximumValue = reader.getMaximumValue();
+				for (int y=0; y<gridHeight; y++) {
+					reader.readRow(row);
+					int start = y*gridWidth;
+					for (int x=0; x<gridWidth; x++) {
+						bacteriaStates[start + x] = LayoutImageReader.returnBacteriaState(row[x], maximumValue);
+					}
+				}
+			}
+		}
+	}
+
+	// Sets the parameters to those in the config, without creating a grid.
+	private void applyConfig(SimulationConfig config) {
+		gridHeight = config.getGridHeight();
+		gridWidth = config.getGridWidth();
+		cellHeight = config.getCellHeight();
+		cellWidth = config.getCellWidth();
+		delta = config.getDiffusionRate();
+		nutrientForSustenance = config.getNutrientForSustenance();
+		nutrientForGrowth = config.getNutrientForGrowth();
+		thresholdForDivision = config.getThresholdForCellDivision();
+		crowdingFunctionValues = config.getCrowdingFunctionValues();
+		countsThatCanDivide = new boolean[crowdingFunctionValues.length];
+		numberOfTimeStepsForCellDivision = config.getNumberOfTimestepsForCellDivision();
+		boundaryType = config.getBoundaryCondition();
+		initalNutrientPattern = config.getNutrientLevelPatternChoice();
+		probabilityOfCellDivision = config.getProbabilityOfCellDivision();
+		initialBacteriaImage = config.getInitialBacteriaImage();
+		initialNutrientImage = config.getInitialNutrientImage();
+		crowdingNeighbourhood = config.createCrowdingNeighbourhood();
+		diffusionNeighbourhood = config.createDiffusionNeighbourhood();
+	}
+
+	// Creates a new, empty grid after the grid width or height has being changed/set.
+	private void createNewGridAfterDimensionChange() {
+		this.allocateGrid();
+		this.setInitialNutrientLevels();
+		this.createDiffusionWeights();
+	}
+
+	// Creates the arrays for a grid of the current size, with no nutrient or bacteria.
+	private void allocateGrid() {
+		numberOfCellsInGrid = gridWidth*gridHeight;
+
+		nutrientLevels = new double[numberOfCellsInGrid];
+		updatedNutrientLevels = new double[numberOfCellsInGrid];
+		bacteriaStates = new byte[numberOfCellsInGrid];
+		statesBeforeThisUpdate = new BacteriaStatePlanes(gridWidth, gridHeight);
+		colonyStatisticsOutOfDate = true;
+	}
+
+	// Creates an empty grid using the parameters that have been set and sets the step counters, so the
+	// nutrient levels and bacteria states can then be filled in from a checkpoint.
+	void prepareForRestore(long restoredStepNumber, int restoredTimeStepForCellDivisionCounter) {
+		this.allocateGrid();
+		this.createDiffusionWeights();
+
+		stepNumber = restoredStepNumber;
+		timeStepForCellDivisionCounter = restoredTimeStepForCellDivisionCounter;
+	}
+
+	// Creates an engine with the same parameters and grid size which only holds nutrient levels and
+	// bacteria states, to receive copies of this engine's state from copyStateTo. It can be saved as a
+	// checkpoint or exported, but not updated.
+	BacterialColonyEngine createCaptureBuffer() {
+		BacterialColonyEngine buffer = new BacterialColonyEngine(random.getSeed());
+		buffer.applyConfig(this.createConfig());
+		buffer.numberOfCellsInGrid = numberOfCellsInGrid;
+		buffer.nutrientLevels = new double[numberOfCellsInGrid];
+		buffer.bacteriaStates = new byte[numberOfCellsInGrid];
+		return buffer;
+	}
+
+	// Copies the nutrient levels, bacteria states, step counters and seed into a buffer created by
+	// createCaptureBuffer. Only bulk array copies are made, so this is fast enough to call between steps.
+	void copyStateTo(BacterialColonyEngine buffer) {
+		if (buffer.gridWidth != gridWidth || buffer.gridHeight != gridHeight) {
+			throw new IllegalArgumentException("Capture buffer is not the same size as the grid.");
+		}
+
+		System.arraycopy(nutrientLevels, 0, buffer.nutrientLevels, 0, numberOfCellsInGrid);
+		System.arraycopy(bacteriaStates, 0, buffer.bacteriaStates, 0, numberOfCellsInGrid);
+		buffer.stepNumber = stepNumber;
+		buffer.timeStepForCellDivisionCounter = timeStepForCellDivisionCounter;
+		buffer.random = random;
+		buffer.colonyStatisticsOutOfDate = true;
+	}
+
+	// Sets the initial nutrient levels to the pattern that is specified. As in
+	// CellularAutomataBacteriaRules, the absorbing middle pattern starts full and the middle row is only
+	// emptied by the first diffusion update.
+	private void setInitialNutrientLevels() {
+		if (initalNutrientPattern.equals("absorbingmiddle") && gridHeight < 3) {
+			throw new IllegalArgumentException("Grid width not large enough for absorbing middle pattern.");
+		}
+
+		if (initalNutrientPattern.equals("random")) {
+			for (int i=0; i<numberOfCellsInGrid; i++) {
+				nutrientLevels[i] = random.nextInt(CounterBasedRandom.INITIAL_PATTERN_STEP, i, 101);
+			}
+		}
+		else Arrays.fill(nutrientLevels, 100.0);
+	}
+
+	// From 2D coordinates of a grid position, return the position this corresponds to in the 1D nutrient
+	// array.
+	public int returnPositionInNutrientMatrix(int x, int y) {
+		return x + y*gridWidth;
+	}
+
+	// Creates the weights used to update the nutrient levels for diffusion, and the bands that use them.
+	private void createDiffusionWeights() {
+		diffusion = new NutrientDiffusion(gridWidth, gridHeight, delta, boundaryType, diffusionNeighbourhood);
+		this.createBands();
+	}
+
+	// Updates the nutrient levels for diffusion after a single time step.
+	public void updateNutrientLevelsAfterDiffusion() {
+		this.runBands(BandTask.DIFFUSION);
+
+		// Only the nutrient lost out of the grid changes the total.
+		double nutrientLost = 0;
+		for (GridBand band : bands) {
+			nutrientLost += band.nutrientLost;
+		}
+
+		double[] current = nutrientLevels;
+		nutrientLevels = updatedNutrientLevels;
+		updatedNutrientLevels = current;
+
+		// Remove nutrient from the absorbing middle section if that pattern has been selected.
+		if (initalNutrientPattern.equals("absorbingmiddle")) {
+			int startOfMiddleRow = returnPositionInNutrientMatrix(0, gridHeight/2);
+			for (int i=startOfMiddleRow; i<startOfMiddleRow + gridWidth; i++) {
+				nutrientLost += nutrientLevels[i];
+			}
+			Arrays.fill(nutrientLevels, startOfMiddleRow, startOfMiddleRow + gridWidth, 0.0);
+		}
+
+		totalNutrient -= nutrientLost;
+	}
+
+	// Works out the nutrient levels after diffusion for the grid spaces in a band, and the nutrient the band
+	// loses out of the grid.
+	private void updateBandAfterDiffusion(GridBand band) {
+		band.nutrientLost = diffusion.updateRows(nutrientLevels, updatedNutrientLevels, band.firstRow, band.lastRow);
+	}
+
+	// Updates the bacteria and the nutrient levels after bacteria have consumed some nutrient and, on the
+	// time steps where it can occur, after cell division.
+	public void updateBacteriaAndNutrientAfterConsumptionAndCellDivision() {
+		boolean checkForCellDivision = timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision;
+
+		// Neighbours are only counted during cell division, so the previous states are only needed then.
+		if (checkForCellDivision) {
+			this.runBands(BandTask.FILL_STATES_BEFORE_THIS_UPDATE);
+			this.updateCountsThatCanDivide();
+		}
+
+		// The statistics of the colony are updated from the births and deaths, so they must be up to date
+		// beforehand.
+		if (colonyStatisticsOutOfDate) this.countColonyStatistics();
+
+		for (GridBand band : bands) {
+			band.checkForCellDivision = checkForCellDivision;
+		}
+		this.runBands(BandTask.CONSUMPTION_AND_CELL_DIVISION);
+
+		int births = 0;
+		int deaths = 0;
+		double nutrientOfBacteriaThatDied = 0;
+		for (GridBand band : bands) {
+			births += band.births;
+			deaths += band.deaths;
+			nutrientOfBacteriaThatDied += band.nutrientOfBacteriaThatDied;
+			largestSquaredDistanceFromStart = Math.max(largestSquaredDistanceFromStart, band.largestSquaredDistanceFromStart);
+			colonyPerimeter += band.perimeterChange;
+		}
+		if (checkForCellDivision && bands.length > 1) {
+			colonyPerimeter -= 2*this.countBirthsSharingAnEdgeAcrossBands();
+		}
+		birthsInLastUpdate = births;
+		deathsInLastUpdate = deaths;
+
+		// Bacteria that survive eat the nutrient for sustenance, those that die eat all that was left, and
+		// each new bacterium takes the nutrient for growth.
+		totalNutrient -= (double) (numberOfAliveBacteria - deaths)*nutrientForSustenance + nutrientOfBacteriaThatDied
+				+ (double) births*nutrientForGrowth;
+		numberOfAliveBacteria += births - deaths;
+		numberOfRemains += deaths;
+
+		// Reset the cell division counter if necessary, otherwise increment it.
+		if (checkForCellDivision) {
+			timeStepForCellDivisionCounter = 1;
+		}
+		else {
+			timeStepForCellDivisionCounter += 1;
+		}
+	}
+
+
+	// Works out which numbers of alive neighbours the crowding function leaves any chance of cell division
+	// for. With a threshold that isn't negative, a crowding function value of 0 never gives a product above
+	// it, so empty grid spaces with those counts can be passed over. The array is created whenever the crowding
+	// function is set, so a step allocates nothing.
+	private void updateCountsThatCanDivide() {
+		for (int n=0; n<crowdingFunctionValues.length; n++) {
+			countsThatCanDivide[n] = crowdingFunctionValues[n] != 0 || thresholdForDivision < 0;
+		}
+	}
+
+	// Updates the bacteria and nutrient levels of the grid spaces in a band for consumption and cell
+	// division, and works out what the band adds to the statistics of the colony. The alive bacteria in a
+	// row are updated one grid space at a time, then on cell division steps the empty grid spaces of the
+	// row are found and their neighbours counted 64 at a time from the bit planes.
+	private void updateBandAfterConsumptionAndCellDivision(GridBand band) {
+		boolean checkForCellDivision = band.checkForCellDivision;
+		boolean periodic = boundaryType.equals("periodic");
+		int wordsPerRow = statesBeforeThisUpdate.getWordsPerRow();
+		long[] counts = band.neighbourCounts;
+		int births = 0;
+		int deaths = 0;
+		double nutrientOfBacteriaThatDied = 0;
+		long largestSquaredDistance = 0;
+		long perimeterChange = 0;
+
+		for (int y=band.firstRow; y<band.lastRow; y++) {
+			int rowStart = y*gridWidth;
+			for (int i=rowStart; i<rowStart + gridWidth; i++) {
+				if (bacteriaStates[i] == ALIVE) {
+					double nutrientInCell = nutrientLevels[i];
+					if (updateAliveGridSpace(i)) {
+						deaths++;
+						nutrientOfBacteriaThatDied += nutrientInCell;
+					}
+				}
+			}
+
+			if (!checkForCellDivision) continue;
+
+			for (int k=0; k<wordsPerRow; k++) {
+				long candidates = statesBeforeThisUpdate.returnEmptyWord(y, k);
+				if (candidates == 0) continue;
+
+				statesBeforeThisUpdate.countAliveNeighbours(y, k, periodic, crowdingNeighbourhood, counts);
+				candidates &= BacteriaStatePlanes.returnGridSpacesWithCounts(counts, countsThatCanDivide);
+
+				while (candidates != 0) {
+					int b = Long.numberOfTrailingZeros(candidates);
+					candidates &= candidates - 1;
+					int x = (k << 6) + b;
+
+					if (updateEmptyGridSpace(rowStart + x, BacteriaStatePlanes.returnCount(counts, b))) {
+						births++;
+						largestSquaredDistance = Math.max(largestSquaredDistance, returnSquaredDistanceFromStart(x, y));
+
+						// Each edge shared with the colony stops being part of the perimeter, and each other
+						// edge starts.
+						perimeterChange += 4 - 2*this.returnNumberOfColonyNeighboursSharingAnEdge(x, y, band.firstRow, band.lastRow);
+					}
+				}
+			}
+		}
+
+		band.births = births;
+		band.deaths = deaths;
+		band.nutrientOfBacteriaThatDied = nutrientOfBacteriaThatDied;
+		band.largestSquaredDistanceFromStart = largestSquaredDistance;
+		band.perimeterChange = perimeterChange;
+	}
+
+	// Updates the nutrient and bacterium for a grid space that contains an alive bacterium. Returns true
+	// if the bacterium died.
+	private boolean updateAliveGridSpace(int i) {
+		if (nutrientLevels[i] >= NUTRIENT_LEVEL_FOR_SURVIVAL) {
+			nutrientLevels[i] -= nutrientForSustenance;
+			return false;
+		}
+		else {
+			bacteriaStates[i] = REMAINS;
+			nutrientLevels[i] = 0;
+			return true;
+		}
+	}
+
+	// Updates an empty grid space with the number of alive neighbours given, for time steps in which cell
+	// division can occur. Returns true if a bacterium was born in it.
+	private boolean updateEmptyGridSpace(int i, int numberOfNeighbours) {
+		double nutrientInCell = nutrientLevels[i];
+
+		if (crowdingFunctionValues[numberOfNeighbours] * nutrientInCell > thresholdForDivision
+				&& random.nextDouble(stepNumber, i) < probabilityOfCellDivision
+				&& nutrientInCell >= NUTRIENT_LEVEL_FOR_CELL_DIVISION) {
+			bacteriaStates[i] = ALIVE;
+			nutrientLevels[i] = nutrientInCell - nutrientForGrowth;
+			return true;
+		}
+		return false;
+	}
+
+	// Returns the number of alive neighbours of grid space x,y in the current grid.
+	public int returnNumberOfAliveNeighbours(int x, int y) {
+		return returnNumberOfAliveNeighbours(bacteriaStates, x, y);
+	}
+
+	// Returns the number of alive neighbours of grid space x,y in the states passed to this function.
+	private int returnNumberOfAliveNeighbours(byte[] states, int x, int y) {
+		if (!crowdingNeighbourhood.isDefaultCrowdingNeighbourhood()) return returnNumberOfAliveNeighboursInNeighbourhood(states, x, y);
+
+		// Grid spaces away from the boundary have all 8 neighbours inside the grid.
+		if (x > 0 && x < gridWidth-1 && y > 0 && y < gridHeight-1) {
+			int i = x + y*gridWidth;
+			int below = i - gridWidth;
+			int above = i + gridWidth;
+			return (states[below-1] == ALIVE ? 1 : 0) + (states[below] == ALIVE ? 1 : 0) + (states[below+1] == ALIVE ? 1 : 0)
+					+ (states[i-1] == ALIVE ? 1 : 0) + (states[i+1] == ALIVE ? 1 : 0)
+					+ (states[above-1] == ALIVE ? 1 : 0) + (states[above] == ALIVE ? 1 : 0) + (states[above+1] == ALIVE ? 1 : 0);
+		}
+
+		boolean periodic = boundaryType.equals("periodic");
+		int numberOfNeighbours = 0;
+
+		// Loops through 9 cells, the cell in question along with the surrounding 8.
+		for (int col = (x-1); col<(x+2); col++) {
+			for (int row = (y-1); row<(y+2); row++) {
+				int tempRow = row;
+				int tempCol = col;
+
+				if (periodic) {
+					if (tempCol == gridWidth) tempCol = 0;
+					else if (tempCol == -1) tempCol = gridWidth - 1;
+
+					if (tempRow == gridHeight) tempRow = 0;
+					else if (tempRow == -1) tempRow = gridHeight - 1;
+				}
+				// Grid spaces outside the grid have no neighbours for reflecting or absorbent boundaries.
+				else if (tempCol == gridWidth || tempCol == -1 || tempRow == gridHeight || tempRow == -1) {
+					continue;
+				}
+
+				// Make sure it is not the cell itself that is being counted.
+				if (states[tempCol + tempRow*gridWidth] == ALIVE && (tempCol != x || tempRow != y)) {
+					numberOfNeighbours++;
+				}
+			}
+		}
+
+		return numberOfNeighbours;
+	}
+
+	// Returns the number of alive neighbours of grid space x,y in the crowding neighbourhood, from its table
+	// of offsets. Neighbours outside the grid wrap around with periodic boundaries, and are empty otherwise.
+	private int returnNumberOfAliveNeighboursInNeighbourhood(byte[] states, int x, int y) {
+		boolean periodic = boundaryType.equals("periodic");
+		int[] xOffsets = crowdingNeighbourhood.returnXOffsets(y);
+		int[] yOffsets = crowdingNeighbourhood.returnYOffsets(y);
+		int numberOfNeighbours = 0;
+
+		for (int n=0; n<xOffsets.length; n++) {
+			int neighbourX = x + xOffsets[n];
+			int neighbourY = y + yOffsets[n];
+			if (periodic) {
+				neighbourX = Math.floorMod(neighbourX, gridWidth);
+				neighbourY = Math.floorMod(neighbourY, gridHeight);
+			}
+			else if (neighbourX < 0 || neighbourX >= gridWidth || neighbourY < 0 || neighbourY >= gridHeight) {
+				continue;
+			}
+			if (states[neighbourX + neighbourY*gridWidth] == ALIVE) numberOfNeighbours++;
+		}
+		return numberOfNeighbours;
+	}
+
+	// Splits the grid into bands of rows of about the same size, one for each thread unless the grid hasn't
+	// enough rows to go round.
+	private void createBands() {
+		int numberOfBands = Math.max(1, Math.min(numberOfThreads, gridHeight / MINIMUM_ROWS_PER_BAND));
+		bands = new GridBand[numberOfBands];
+		for (int b=0; b<numberOfBands; b++) {
+			bands[b] = new GridBand((int) ((long) gridHeight*b / numberOfBands), (int) ((long) gridHeight*(b + 1) / numberOfBands));
+		}
+	}
+
+	// Carries out a task on each band. The first band is updated on this thread while the pool updates the
+	// others. Every band is waited for, even if this thread is interrupted, so that the grid is never left
+	// part way through an update.
+	private void runBands(BandTask task) {
+		for (int b=1; b<bands.length; b++) {
+			bands[b].task = task;
+			bands[b].future = stepPool.submit(bands[b].update);
+		}
+
+		RuntimeException failure = null;
+		try {
+			this.updateBand(bands[0], task);
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+
+		boolean interrupted = false;
+		for (int b=1; b<bands.length; b++) {
+			while (true) {
+				try {
+					bands[b].future.get();
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new IllegalStateException("Updating a band of the grid failed.", e.getCause());
+					}
+					break;
+				}
+			}
+			bands[b].future = null;
+		}
+
+		if (interrupted) Thread.currentThread().interrupt();
+		if (failure != null) throw failure;
+	}
+
+	// Carries out a task on a single band.
+	private void updateBand(GridBand band, BandTask task) {
+		switch (task) {
+			case DIFFUSION:
+				this.updateBandAfterDiffusion(band);
+				break;
+			case FILL_STATES_BEFORE_THIS_UPDATE:
+				statesBeforeThisUpdate.fillRows(bacteriaStates, band.firstRow, band.lastRow);
+				break;
+			default:
+				this.updateBandAfterConsumptionAndCellDivision(band);
+		}
+	}
+
+	// Creates an updated grid after one iteration of the rules governing the bacterial colony.
+	public void createUpdatedGrid() {
+		Object stepEvent = FlightRecorderEvents.beginStep();
+		if (metrics != null || stepEvent != null) {
+			this.createUpdatedGridAndTimePhases(stepEvent);
+			return;
+		}
+
+		// Update for diffusion.
+		this.updateNutrientLevelsAfterDiffusion();
+
+		// Update for bacteria consuming nutrient and reproducing.
+		this.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+
+		stepNumber++;
+	}
+
+	// Carries out the same update as createUpdatedGrid, timing each phase for the metrics and for the flight
+	// recorder event of the step, whichever are in use. Consumption and cell division are carried out in a
+	// single pass, which is recorded as division on the steps where cell division can occur and as
+	// consumption on the others.
+	private void createUpdatedGridAndTimePhases(Object stepEvent) {
+		boolean cellDivisionStep = timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision;
+
+		long startTime = System.nanoTime();
+		this.updateNutrientLevelsAfterDiffusion();
+		long diffusionEndTime = System.nanoTime();
+		this.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+		long endTime = System.nanoTime();
+
+		stepNumber++;
+
+		if (metrics != null) {
+			metrics.recordPhase(SimulationMetrics.Phase.DIFFUSION, diffusionEndTime - startTime);
+			metrics.recordPhase(cellDivisionStep ? SimulationMetrics.Phase.DIVISION : SimulationMetrics.Phase.CONSUMPTION,
+					endTime - diffusionEndTime);
+			metrics.recordStep(numberOfCellsInGrid, birthsInLastUpdate, deathsInLastUpdate);
+			metrics.recordColonyStatistics(numberOfAliveBacteria, numberOfRemains, totalNutrient,
+					Math.sqrt(largestSquaredDistanceFromStart), colonyPerimeter);
+		}
+		FlightRecorderEvents.endStep(stepEvent, stepNumber, gridWidth, gridHeight, bands.length, cellDivisionStep,
+				birthsInLastUpdate, deathsInLastUpdate, diffusionEndTime - startTime, endTime - diffusionEndTime);
+	}
+
+	/* ****************************************************************************
+	* Bands
+	*******************************************************************************/
+
+	// A band of rows of the grid, from firstRow up to, but not including, lastRow, along with what its part
+	// of the last update added to the statistics of the colony.
+	private final class GridBand {
+
+		private final int firstRow;
+		private final int lastRow;
+
+		private double nutrientLost;
+		private boolean checkForCellDivision;
+		private int births;
+		private int deaths;
+		private double nutrientOfBacteriaThatDied;
+		private long largestSquaredDistanceFromStart;
+		private long perimeterChange;
+
+		// Space for the neighbour counts of a word of grid spaces, as bit planes.
+		private final long[] neighbourCounts = new long[crowdingNeighbourhood.getNumberOfCountBits()];
+
+		// What the band is given to the pool to do, created once so that a step allocates as little as
+		// possible, the task it carries out and the one it is working on.
+		private final Callable<Void> update = new Callable<Void>() {
+			@Override
+			public Void call() {
+				updateBand(GridBand.this, task);
+				return null;
+			}
+		};
+		private BandTask task;
+		private Future<Void> future;
+
+		// Constructor.
+		private GridBand(int firstRow, int lastRow) {
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+	}
+}
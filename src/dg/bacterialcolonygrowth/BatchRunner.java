@@ -0,0 +1,182 @@
+/* *****************************************************************************
+* Description: A command line program that runs every job in a job file
+* without a display, using a fixed number of worker threads in a single JVM,
+* and adds one row of results for each run to a CSV or JSON Lines file.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchRunner {
+
+	private static final String USAGE =
+			"Usage: BatchRunner <job file> <results file> [options]\n"
+			+ "Options:\n"
+			+ "  --threads <n>     Number of runs carried out at the same time (default: number of cores)\n"
+			+ "  --format <f>      'csv' or 'jsonl' (default: jsonl if the results file ends in .jsonl or .json,\n"
+			+ "                    otherwise csv)";
+
+	private File jobFile;
+	private File resultsFile;
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	private ResultsWriter.Format format;
+
+	// Reads the command line arguments.
+	private BatchRunner(String[] args) throws IllegalArgumentException {
+		if (args.length < 2) throw new IllegalArgumentException("A job file and a results file are required.");
+
+		jobFile = new File(args[0]);
+		resultsFile = new File(args[1]);
+
+		for (int i=2; i<args.length; i++) {
+			if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+
+			String option = args[i];
+			String value = args[++i];
+
+			if (option.equals("--threads")) numberOfThreads = Integer.parseInt(value);
+			else if (option.equals("--format")) format = returnFormat(value);
+			else throw new IllegalArgumentException("Unknown option " + option + ".");
+		}
+
+		if (numberOfThreads < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+		if (format == null) format = ResultsWriter.returnFormatForFile(resultsFile);
+	}
+
+	// Returns the results format named on the command line.
+	private static ResultsWriter.Format returnFormat(String value) {
+		if (value.equals("csv")) return ResultsWriter.Format.CSV;
+		if (value.equals("jsonl")) return ResultsWriter.Format.JSON_LINES;
+		throw new IllegalArgumentException("Format must be either 'csv' or 'jsonl'.");
+	}
+
+	// Runs every replicate of every job and writes the results. Returns the number of runs that failed.
+	private int run() throws IOException, InterruptedException {
+		List<SimulationJob> jobs = new JobFileReader(jobFile).readJobs();
+
+		int numberOfRuns = 0;
+		for (SimulationJob job : jobs) {
+			numberOfRuns += job.getNumberOfReplicates();
+		}
+		System.out.println("Running " + numberOfRuns + " runs of " + jobs.size() + " jobs on " + numberOfThreads + " threads.");
+
+		// The engine of each run is only created when the run starts, so at most one grid per thread is in
+		// memory at once.
+		ExecutorService workers = Executors.newFixedThreadPool(numberOfThreads);
+		List<Future<ResultsWriter.RunResult>> runs = new ArrayList<Future<ResultsWriter.RunResult>>();
+		final AtomicInteger runsFinished = new AtomicInteger();
+		final int totalNumberOfRuns = numberOfRuns;
+		int failedRuns = 0;
+
+		try (final ResultsWriter resultsWriter = new ResultsWriter(resultsFile, format)) {
+			try {
+				for (final SimulationJob job : jobs) {
+					for (int replicate=0; replicate<job.getNumberOfReplicates(); replicate++) {
+						final int thisReplicate = replicate;
+						runs.add(workers.submit(new Callable<ResultsWriter.RunResult>() {
+							@Override
+							public ResultsWriter.RunResult call() throws IOException {
+								ResultsWriter.RunResult result = runJob(job, thisReplicate);
+								resultsWriter.writeResult(result);
+								System.out.println(String.format("[%d/%d] %s replicate %d: colony size %d",
+										runsFinished.incrementAndGet(), totalNumberOfRuns, job.getName(), thisReplicate,
+										result.alive + result.remains));
+								return result;
+							}
+						}));
+					}
+				}
+				workers.shutdown();
+
+				for (Future<ResultsWriter.RunResult> run : runs) {
+					try {
+						run.get();
+					}
+					catch (ExecutionException e) {
+						System.err.println("Run failed: " + e.getCause());
+						failedRuns++;
+					}
+				}
+			}
+			finally {
+				// The workers write to the results file, so they must all have stopped before it is closed, even
+				// if this thread was interrupted waiting for the runs.
+				stopWorkers(workers);
+			}
+		}
+
+		return failedRuns;
+	}
+
+	// Stops the runs that haven't finished and waits for the workers to stop. The wait carries on if this
+	// thread is interrupted, and the interrupt is kept for the caller.
+	private static void stopWorkers(ExecutorService workers) {
+		workers.shutdownNow();
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	// Carries out one run of a job and returns its result. The run stops if the workers are stopped.
+	private static ResultsWriter.RunResult runJob(SimulationJob job, int replicate) throws IOException {
+		BacterialColonyEngine engine = new BacterialColonyEngine(job.getConfig(), job.returnSeedForReplicate(replicate));
+		double initialNutrient = engine.getTotalNutrient();
+
+		long startTime = System.nanoTime();
+		for (long step=0; step<job.getNumberOfSteps(); step++) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Interrupted while running " + job.getName() + " replicate " + replicate + ".");
+			}
+			engine.createUpdatedGrid();
+		}
+		long wallTime = System.nanoTime() - startTime;
+
+		return new ResultsWriter.RunResult(job.getName(), replicate, engine, job.getNumberOfSteps(), initialNutrient, wallTime);
+	}
+
+	public static void main(String[] args) {
+		try {
+			int failedRuns = new BatchRunner(args).run();
+			if (failedRuns > 0) {
+				System.err.println(failedRuns + " runs failed.");
+				System.exit(1);
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Cannot read job file or write results: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (InterruptedException e) {
+			System.err.println("Interrupted while running jobs.");
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
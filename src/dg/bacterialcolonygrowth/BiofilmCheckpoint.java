@@ -0,0 +1,314 @@
+/* *****************************************************************************
+* Description: A class used to save the state of a simulation on a 3D lattice
+* to a binary checkpoint file and to restore a simulation from one, in the
+* same way as SimulationCheckpoint does for a 2D grid.
+*
+* The file is made up of a header holding the parameters, the random seed and
+* the step counters, followed by the nutrient levels (4 byte floats) and the
+* bit planes of alive bacteria and remains (8 byte words), all stored
+* little-endian. The bit planes keep the file to about 4 bytes per grid space,
+* so a checkpoint of a 512^3 lattice takes a little over 500 MB. The arrays are
+* copied to and from the file through memory mappings.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class BiofilmCheckpoint {
+
+	// The first bytes of every checkpoint file of a 3D lattice.
+	private static final byte[] MAGIC = {'B', 'C', 'G', '3', 'D', 'C', 'K', 0};
+
+	// Version of the file format. Readers reject files with a newer version.
+	public static final int FORMAT_VERSION = 1;
+
+	// Largest part of the file that is mapped at once, as a mapping can be at most 2 GB.
+	private static final int MAXIMUM_MAPPING_SIZE = 1 << 30;
+
+	private BiofilmCheckpoint() {
+	}
+
+	// Returns true if the file starts like a checkpoint of a 3D lattice.
+	public static boolean isCheckpoint(File file) {
+		if (!file.isFile() || file.length() < MAGIC.length) return false;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return readFully(channel, 0, MAGIC.length).equals(ByteBuffer.wrap(MAGIC));
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	// Saves the state of the engine to the file. The checkpoint is written to a temporary file first and
+	// then renamed, so an existing checkpoint is only replaced once the new one is complete.
+	public static void write(BiofilmEngine engine, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		ByteBuffer header = createHeader(engine);
+		float[] nutrientLevels = engine.getNutrientLevels();
+		long[] alive = engine.getAlivePlane();
+		long[] remains = engine.getRemainsPlane();
+
+		long nutrientStart = header.remaining();
+		long aliveStart = nutrientStart + ((4L*nutrientLevels.length + 7) & ~7L);
+		long remainsStart = aliveStart + 8L*alive.length;
+		long fileLength = remainsStart + 8L*remains.length;
+
+		Path target = file.toPath().toAbsolutePath();
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			int floatsPerMapping = MAXIMUM_MAPPING_SIZE / 4;
+			for (int i=0; i<nutrientLevels.length; i+=floatsPerMapping) {
+				int count = Math.min(floatsPerMapping, nutrientLevels.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, nutrientStart + 4L*i, 4L*count);
+				mapping.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(nutrientLevels, i, count);
+				mapping.force();
+			}
+			writePlane(channel, alive, aliveStart);
+			writePlane(channel, remains, remainsStart);
+
+			if (channel.size() != fileLength) {
+				throw new IOException("Checkpoint " + file + " was not written completely.");
+			}
+			channel.force(true);
+		}
+
+		try {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		FlightRecorderEvents.endInputOutput(event, "3D checkpoint write", file, fileLength);
+	}
+
+	// Creates an engine from a checkpoint file. Throws an IOException if the file isn't a checkpoint of a
+	// 3D lattice, was written by a newer version or is incomplete.
+	public static BiofilmEngine read(File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileLength = channel.size();
+			if (fileLength < MAGIC.length + 8) throw new IOException(file + " is not a 3D checkpoint.");
+
+			// Read the start of the header to find out how long it is.
+			ByteBuffer start = readFully(channel, 0, MAGIC.length + 8);
+			start.limit(MAGIC.length);
+			if (!start.equals(ByteBuffer.wrap(MAGIC))) throw new IOException(file + " is not a 3D checkpoint.");
+			start.limit(start.capacity());
+			start.position(MAGIC.length);
+
+			int version = start.getInt();
+			int headerLength = start.getInt();
+			if (version < 1 || version > FORMAT_VERSION) {
+				throw new IOException("Checkpoint " + file + " has version " + version + ", but only versions up to "
+						+ FORMAT_VERSION + " can be read.");
+			}
+			if (headerLength < start.capacity() || headerLength > fileLength) {
+				throw new IOException("Checkpoint " + file + " has an invalid header.");
+			}
+
+			ByteBuffer header = readFully(channel, 0, headerLength);
+			header.position(MAGIC.length + 8);
+
+			BiofilmEngine engine;
+			long stepNumber;
+			int timeStepForCellDivisionCounter;
+			try {
+				engine = readParameters(header);
+				stepNumber = header.getLong();
+				timeStepForCellDivisionCounter = header.getInt();
+			}
+			catch (RuntimeException e) {
+				throw new IOException("Checkpoint " + file + " has an invalid header: " + e.getMessage(), e);
+			}
+
+			float[] nutrientLevels = engine.getNutrientLevels();
+			long[] alive = engine.getAlivePlane();
+			long[] remains = engine.getRemainsPlane();
+			long aliveStart = headerLength + ((4L*nutrientLevels.length + 7) & ~7L);
+			long remainsStart = aliveStart + 8L*alive.length;
+			if (fileLength != remainsStart + 8L*remains.length) {
+				throw new IOException("Checkpoint " + file + " is incomplete.");
+			}
+
+			int floatsPerMapping = MAXIMUM_MAPPING_SIZE / 4;
+			for (int i=0; i<nutrientLevels.length; i+=floatsPerMapping) {
+				int count = Math.min(floatsPerMapping, nutrientLevels.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, headerLength + 4L*i, 4L*count);
+				mapping.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(nutrientLevels, i, count);
+			}
+			readPlane(channel, alive, aliveStart);
+			readPlane(channel, remains, remainsStart);
+
+			// A grid space can't hold both an alive bacterium and remains, and the bits past the end of each
+			// row must be clear.
+			int wordsPerRow = engine.getWordsPerRow();
+			int gridWidth = engine.getGridWidth();
+			long lastWordMask = (gridWidth & 63) == 0 ? -1L : (1L << (gridWidth & 63)) - 1;
+			for (int w=0; w<alive.length; w++) {
+				long outsideRow = w % wordsPerRow == wordsPerRow - 1 ? ~lastWordMask : 0;
+				if ((alive[w] & remains[w]) != 0 || ((alive[w] | remains[w]) & outsideRow) != 0) {
+					throw new IOException("Checkpoint " + file + " contains an invalid bacteria state.");
+				}
+			}
+
+			engine.prepareForRestore(stepNumber, timeStepForCellDivisionCounter);
+			FlightRecorderEvents.endInputOutput(event, "3D checkpoint read", file, fileLength);
+			return engine;
+		}
+	}
+
+	// Creates the header, which contains everything except the nutrient levels and bit planes. The header
+	// length is rounded up to a multiple of 8 so the arrays are aligned in the file.
+	private static ByteBuffer createHeader(BiofilmEngine engine) {
+		BiofilmConfig config = engine.getConfig();
+		SimulationConfig baseConfig = config.getBaseConfig();
+		byte[] boundaryCondition = baseConfig.getBoundaryCondition().getBytes(StandardCharsets.UTF_8);
+		byte[] nutrientPattern = baseConfig.getNutrientLevelPatternChoice().getBytes(StandardCharsets.UTF_8);
+		int[] crowdingFunctionValues = config.getCrowdingFunctionValues();
+
+		int length = MAGIC.length + 4 + 4		// Magic, version and header length.
+				+ 4*3							// Grid dimensions.
+				+ 8 + 4*3 + 8					// Diffusion rate, nutrient and threshold values, probability.
+				+ 4								// Number of time steps for cell division.
+				+ 4*crowdingFunctionValues.length
+				+ 2 + boundaryCondition.length
+				+ 2 + nutrientPattern.length
+				+ 8								// Random seed.
+				+ 8 + 4;						// Step number and division counter.
+		length = (length + 7) & ~7;
+
+		ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putInt(length);
+
+		header.putInt(config.getGridWidth());
+		header.putInt(config.getGridHeight());
+		header.putInt(config.getGridDepth());
+
+		header.putDouble(baseConfig.getDiffusionRate());
+		header.putInt(baseConfig.getNutrientForSustenance());
+		header.putInt(baseConfig.getNutrientForGrowth());
+		header.putInt(baseConfig.getThresholdForCellDivision());
+		header.putDouble(baseConfig.getProbabilityOfCellDivision());
+		header.putInt(baseConfig.getNumberOfTimestepsForCellDivision());
+
+		for (int value : crowdingFunctionValues) {
+			header.putInt(value);
+		}
+		header.putShort((short) boundaryCondition.length);
+		header.put(boundaryCondition);
+		header.putShort((short) nutrientPattern.length);
+		header.put(nutrientPattern);
+
+		header.putLong(engine.getRandomSeed());
+		header.putLong(engine.getStepNumber());
+		header.putInt(engine.getTimeStepForCellDivisionCounter());
+
+		header.rewind();
+		return header;
+	}
+
+	// Reads the parameters from the header and creates an engine with them and an empty lattice. Throws an
+	// IllegalArgumentException if any of them are not valid.
+	private static BiofilmEngine readParameters(ByteBuffer header) {
+		int gridWidth = header.getInt();
+		int gridHeight = header.getInt();
+		int gridDepth = header.getInt();
+
+		double diffusionRate = header.getDouble();
+		int nutrientForSustenance = header.getInt();
+		int nutrientForGrowth = header.getInt();
+		int thresholdForDivision = header.getInt();
+		double probabilityOfCellDivision = header.getDouble();
+		int numberOfTimeStepsForCellDivision = header.getInt();
+
+		int[] crowdingFunctionValues = new int[BiofilmConfig.NUMBER_OF_NEIGHBOURS + 1];
+		for (int i=0; i<crowdingFunctionValues.length; i++) {
+			crowdingFunctionValues[i] = header.getInt();
+		}
+		String boundaryCondition = readString(header);
+		String nutrientPattern = readString(header);
+		long seed = header.getLong();
+
+		// The configs check the parameters are valid.
+		SimulationConfig baseConfig = new SimulationConfig.Builder()
+				.setGridWidth(gridWidth)
+				.setGridHeight(gridHeight)
+				.setDiffusionRate(diffusionRate)
+				.setNutrientForSustenance(nutrientForSustenance)
+				.setNutrientForGrowth(nutrientForGrowth)
+				.setThresholdForCellDivision(thresholdForDivision)
+				.setProbabilityOfCellDivision(probabilityOfCellDivision)
+				.setNumberOfTimestepsForCellDivision(numberOfTimeStepsForCellDivision)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientLevelPatternChoice(nutrientPattern)
+				.build();
+		BiofilmConfig config = new BiofilmConfig.Builder(baseConfig)
+				.setGridDepth(gridDepth)
+				.setCrowdingFunctionValues(crowdingFunctionValues)
+				.build();
+		return BiofilmEngine.createForRestore(config, seed);
+	}
+
+	// Writes a bit plane to the file, starting at the position given.
+	private static void writePlane(FileChannel channel, long[] plane, long position) throws IOException {
+		int longsPerMapping = MAXIMUM_MAPPING_SIZE / 8;
+		for (int i=0; i<plane.length; i+=longsPerMapping) {
+			int count = Math.min(longsPerMapping, plane.length - i);
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, position + 8L*i, 8L*count);
+			mapping.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(plane, i, count);
+			mapping.force();
+		}
+	}
+
+	// Reads a bit plane from the file, starting at the position given.
+	private static void readPlane(FileChannel channel, long[] plane, long position) throws IOException {
+		int longsPerMapping = MAXIMUM_MAPPING_SIZE / 8;
+		for (int i=0; i<plane.length; i+=longsPerMapping) {
+			int count = Math.min(longsPerMapping, plane.length - i);
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position + 8L*i, 8L*count);
+			mapping.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(plane, i, count);
+		}
+	}
+
+	// Reads a string stored as its length followed by its UTF-8 bytes.
+	private static String readString(ByteBuffer header) {
+		byte[] bytes = new byte[header.getShort() & 0xFFFF];
+		header.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Reads part of the file into a new buffer.
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of checkpoint.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
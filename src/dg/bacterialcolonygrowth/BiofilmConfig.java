@@ -0,0 +1,133 @@
+/* *****************************************************************************
+* Description: A class used to store the parameters of a simulation of a
+* biofilm on a 3D lattice. It wraps a SimulationConfig, which gives the width
+* and height of the lattice, the boundary condition, the nutrient pattern and
+* the parameters of the bacteria, and adds the depth of the lattice and a
+* crowding function for the 26 grid spaces around each grid space in 3D.
+*
+* The 3D lattice only uses the default neighbourhoods, so the base config
+* can't set others, and it can't start from layout images or use the
+* absorbing middle nutrient pattern, which are both made for a 2D grid.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Arrays;
+
+public final class BiofilmConfig {
+
+	// Number of grid spaces around each grid space in 3D, counted for the crowding function.
+	public static final int NUMBER_OF_NEIGHBOURS = 26;
+
+	// Largest number of grid spaces in the lattice, which keeps the position of a grid space in an int.
+	public static final long MAXIMUM_NUMBER_OF_GRID_SPACES = 1L << 30;
+
+	private final SimulationConfig baseConfig;
+	private final int gridDepth;
+	private final int[] crowdingFunctionValues;
+
+	// Constructor, only used by the builder.
+	private BiofilmConfig(Builder builder) {
+		baseConfig = builder.baseConfig;
+		gridDepth = builder.gridDepth;
+		crowdingFunctionValues = builder.crowdingFunctionValues.clone();
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the config giving the width and height of the lattice and the parameters of the bacteria.
+	public SimulationConfig getBaseConfig() {
+		return baseConfig;
+	}
+
+	// Returns the grid width.
+	public int getGridWidth() {
+		return baseConfig.getGridWidth();
+	}
+
+	// Returns the grid height.
+	public int getGridHeight() {
+		return baseConfig.getGridHeight();
+	}
+
+	// Returns the grid depth, the number of layers of the lattice above the surface the biofilm grows on.
+	public int getGridDepth() {
+		return gridDepth;
+	}
+
+	// Returns a copy of the crowding function values, one for each number of alive neighbours from 0 to 26.
+	public int[] getCrowdingFunctionValues() {
+		return crowdingFunctionValues.clone();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof BiofilmConfig)) return false;
+		BiofilmConfig config = (BiofilmConfig) other;
+		return baseConfig.equals(config.baseConfig) && gridDepth == config.gridDepth
+				&& Arrays.equals(crowdingFunctionValues, config.crowdingFunctionValues);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = baseConfig.hashCode();
+		result = 31*result + gridDepth;
+		return 31*result + Arrays.hashCode(crowdingFunctionValues);
+	}
+
+	/* ****************************************************************************
+	* Builder
+	*******************************************************************************/
+
+	public static final class Builder {
+
+		private final SimulationConfig baseConfig;
+		private int gridDepth = 100; // Default = 100
+		private int[] crowdingFunctionValues = {0, 40, 40, 40, 40, 40, 40, 30, 30, 30, 20, 20, 20, 10, 10, 10,
+				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+		// Constructor, which checks the base config only uses what the 3D lattice supports.
+		public Builder(SimulationConfig baseConfig) {
+			if (baseConfig.getInitialBacteriaImage() != null || baseConfig.getInitialNutrientImage() != null) {
+				throw new IllegalArgumentException("Initial layout images can't be used with a 3D lattice.");
+			}
+			if (baseConfig.getNutrientLevelPatternChoice().equals("absorbingmiddle")) {
+				throw new IllegalArgumentException("Initial nutrient pattern can be either 'random' or 'default' with a 3D lattice.");
+			}
+			if (!baseConfig.createCrowdingNeighbourhood().isDefaultCrowdingNeighbourhood()
+					|| !baseConfig.createDiffusionNeighbourhood().isDefaultDiffusionNeighbourhood()) {
+				throw new IllegalArgumentException("A 3D lattice only supports the default neighbourhoods.");
+			}
+			this.baseConfig = baseConfig;
+		}
+
+		// Set grid depth.
+		public Builder setGridDepth(int x) {
+			if (x < 1) throw new IllegalArgumentException("Grid depth must be an integer greater than 0.");
+			gridDepth = x;
+			return this;
+		}
+
+		// Set the crowding function values, one for each number of alive neighbours from 0 to 26.
+		public Builder setCrowdingFunctionValues(int[] x) {
+			if (x.length != NUMBER_OF_NEIGHBOURS + 1) {
+				throw new IllegalArgumentException("There should be " + (NUMBER_OF_NEIGHBOURS + 1) + " values for the 3D crowding function.");
+			}
+			crowdingFunctionValues = x.clone();
+			return this;
+		}
+
+		// Creates the config, after checking the lattice isn't too large.
+		public BiofilmConfig build() {
+			if ((long) baseConfig.getGridWidth()*baseConfig.getGridHeight()*gridDepth > MAXIMUM_NUMBER_OF_GRID_SPACES) {
+				throw new IllegalArgumentException("A 3D lattice can have at most " + MAXIMUM_NUMBER_OF_GRID_SPACES + " grid spaces.");
+			}
+			return new BiofilmConfig(this);
+		}
+	}
+}
@@ -0,0 +1,728 @@
+/* *****************************************************************************
+* Description: A class used to run a simulation of a biofilm on a 3D lattice,
+* from a BiofilmConfig. It follows the same rules as BacterialColonyEngine with
+* the default neighbourhoods extended to 3D: nutrient diffuses to the 6 grid
+* spaces sharing a face with each grid space, and the crowding function is
+* given the number of alive bacteria in the 26 grid spaces around it. The
+* first bacterium is placed in the middle of the bottom layer, the surface the
+* biofilm grows on.
+*
+* Memory is what limits the size of the lattice, so the state of the grid is
+* kept as compact as the rules allow. Nutrient levels are stored as floats
+* rather than doubles, and the bacteria as two bit planes, one for alive
+* bacteria and one for remains, with a row of the lattice packed into 64-bit
+* words. A lattice of 512^3 grid spaces takes 1 GB for the two arrays of
+* nutrient levels and 48 MB for the bit planes. Alive neighbours are counted
+* 64 grid spaces at a time from the bit planes, as in BacteriaStatePlanes.
+* Floats hold about 7 significant figures, so with reflecting or periodic
+* boundaries the total nutrient drifts by about that much rather than staying
+* exactly the same.
+*
+* Each step is carried out in slabs of layers, one for each thread, as
+* BacterialColonyEngine uses bands of rows. Diffusion works through each slab
+* in blocks of rows, updating the same rows of every layer of the slab before
+* moving on, so the rows above and below a row are still in the cache when it
+* is updated. The random numbers only depend on the seed, the step number and
+* the grid space, so the colony doesn't depend on the number of threads.
+*
+* Positions in the arrays of nutrient levels are x + y*gridWidth +
+* z*gridWidth*gridHeight, and rows of the bit planes are y + z*gridHeight.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class BiofilmEngine {
+
+	// Smallest number of layers worth giving a slab of its own.
+	private static final int MINIMUM_LAYERS_PER_SLAB = 4;
+
+	// About how many bytes of nutrient levels a block of rows covers in each layer during diffusion, so
+	// that the rows of three layers fit in the cache of a core.
+	private static final int DIFFUSION_BLOCK_BYTES = 64*1024;
+
+	// Number of bits needed to hold a count of up to 26 alive neighbours.
+	private static final int NUMBER_OF_COUNT_BITS = 5;
+
+	// The parts of a step carried out on every slab in turn.
+	private enum SlabTask {DIFFUSION, FILL_ALIVE_BEFORE_THIS_UPDATE, CONSUMPTION_AND_CELL_DIVISION}
+
+	private final BiofilmConfig config;
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int gridDepth;
+	private final int gridSpacesPerLayer;
+	private final int numberOfGridSpaces;
+	private final boolean periodic;
+	private final boolean reflecting;
+
+	// Parameters of the bacteria.
+	private final int nutrientForSustenance;
+	private final int nutrientForGrowth;
+	private final int thresholdForDivision;
+	private final int numberOfTimeStepsForCellDivision;
+	private final double probabilityOfCellDivision;
+	private final int[] crowdingFunctionValues;
+	private final boolean[] countsThatCanDivide;
+	private final CounterBasedRandom random;
+
+	// Nutrient levels, and the fractions of its nutrient a grid space keeps and gives each neighbour.
+	private float[] nutrientLevels;
+	private float[] updatedNutrientLevels;
+	private final float diffusionKept;
+	private final float diffusionShare;
+	private final int rowsPerDiffusionBlock;
+
+	// Stands in for a row outside the lattice with absorbent boundaries.
+	private final float[] emptyRow;
+
+	// Bit planes of alive bacteria and remains, and of the alive bacteria before this update.
+	private final int wordsPerRow;
+	private final long lastWordMask;
+	private final long[] alive;
+	private final long[] remains;
+	private final long[] aliveBeforeThisUpdate;
+
+	private long stepNumber = 0;
+	private int timeStepForCellDivisionCounter = 1;
+	private int numberOfAliveBacteria = 0;
+	private int numberOfRemains = 0;
+	private int birthsInLastUpdate = 0;
+	private int deathsInLastUpdate = 0;
+	private double nutrientLostInLastUpdate = 0;
+
+	private int numberOfThreads = 1;
+	private ExecutorService slabPool = null;
+	private Slab[] slabs;
+
+	// Constructor, creates the lattice from the config with the first bacterium placed.
+	public BiofilmEngine(BiofilmConfig config, long seed) {
+		this(config, seed, true);
+	}
+
+	// Constructor, which only fills in the lattice if asked to, as a restored checkpoint fills it in itself.
+	private BiofilmEngine(BiofilmConfig config, long seed, boolean fillLattice) {
+		SimulationConfig baseConfig = config.getBaseConfig();
+		this.config = config;
+		gridWidth = config.getGridWidth();
+		gridHeight = config.getGridHeight();
+		gridDepth = config.getGridDepth();
+		gridSpacesPerLayer = gridWidth*gridHeight;
+		numberOfGridSpaces = gridSpacesPerLayer*gridDepth;
+		periodic = baseConfig.getBoundaryCondition().equals("periodic");
+		reflecting = baseConfig.getBoundaryCondition().equals("reflecting");
+
+		nutrientForSustenance = baseConfig.getNutrientForSustenance();
+		nutrientForGrowth = baseConfig.getNutrientForGrowth();
+		thresholdForDivision = baseConfig.getThresholdForCellDivision();
+		numberOfTimeStepsForCellDivision = baseConfig.getNumberOfTimestepsForCellDivision();
+		probabilityOfCellDivision = baseConfig.getProbabilityOfCellDivision();
+		crowdingFunctionValues = config.getCrowdingFunctionValues();
+		countsThatCanDivide = new boolean[crowdingFunctionValues.length];
+		for (int n=0; n<countsThatCanDivide.length; n++) {
+			countsThatCanDivide[n] = crowdingFunctionValues[n] != 0 || thresholdForDivision < 0;
+		}
+		random = new CounterBasedRandom(seed);
+
+		nutrientLevels = new float[numberOfGridSpaces];
+		updatedNutrientLevels = new float[numberOfGridSpaces];
+		diffusionKept = (float) (1 - baseConfig.getDiffusionRate());
+		diffusionShare = (float) (baseConfig.getDiffusionRate()/6);
+		rowsPerDiffusionBlock = Math.max(1, DIFFUSION_BLOCK_BYTES/(4*gridWidth));
+		emptyRow = new float[gridWidth];
+
+		wordsPerRow = (gridWidth + 63) >>> 6;
+		lastWordMask = (gridWidth & 63) == 0 ? -1L : (1L << (gridWidth & 63)) - 1;
+		alive = new long[wordsPerRow*gridHeight*gridDepth];
+		remains = new long[alive.length];
+		aliveBeforeThisUpdate = new long[alive.length];
+
+		this.createSlabs();
+		if (!fillLattice) return;
+
+		if (baseConfig.getNutrientLevelPatternChoice().equals("random")) {
+			for (int i=0; i<numberOfGridSpaces; i++) {
+				nutrientLevels[i] = random.nextInt(CounterBasedRandom.INITIAL_PATTERN_STEP, i, 101);
+			}
+		}
+		else Arrays.fill(nutrientLevels, 100.0f);
+
+		this.setBacteriumAlive(gridWidth/2, gridHeight/2, 0);
+	}
+
+	// Creates an engine with an empty lattice, for restoring a checkpoint. prepareForRestore must be called
+	// once the lattice has been filled in.
+	static BiofilmEngine createForRestore(BiofilmConfig config, long seed) {
+		return new BiofilmEngine(config, seed, false);
+	}
+
+	// Sets the step counters of a restored engine and counts its bacteria.
+	void prepareForRestore(long restoredStepNumber, int restoredTimeStepForCellDivisionCounter) {
+		stepNumber = restoredStepNumber;
+		timeStepForCellDivisionCounter = restoredTimeStepForCellDivisionCounter;
+		numberOfAliveBacteria = 0;
+		numberOfRemains = 0;
+		for (int w=0; w<alive.length; w++) {
+			numberOfAliveBacteria += Long.bitCount(alive[w]);
+			numberOfRemains += Long.bitCount(remains[w]);
+		}
+	}
+
+	/* ****************************************************************************
+	* Setters
+	*******************************************************************************/
+
+	// Sets the number of threads used to update the lattice. The threads of any previous pool are stopped,
+	// so setting this back to 1 releases them.
+	public void setNumberOfThreads(int x) {
+		if (x < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+
+		if (slabPool != null) {
+			slabPool.shutdown();
+			slabPool = null;
+		}
+		numberOfThreads = x;
+
+		if (numberOfThreads > 1) {
+			slabPool = Executors.newFixedThreadPool(numberOfThreads - 1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "biofilm-step");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		this.createSlabs();
+	}
+
+	// Sets grid space x,y,z to contain an alive bacterium.
+	public void setBacteriumAlive(int x, int y, int z) {
+		int w = this.returnWordIndex(x, y, z);
+		long bit = 1L << (x & 63);
+		if ((alive[w] & bit) != 0) return;
+		if ((remains[w] & bit) != 0) numberOfRemains--;
+		alive[w] |= bit;
+		remains[w] &= ~bit;
+		numberOfAliveBacteria++;
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the config the engine was created from.
+	public BiofilmConfig getConfig() {
+		return config;
+	}
+
+	// Returns the grid width.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the grid height.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the grid depth.
+	public int getGridDepth() {
+		return gridDepth;
+	}
+
+	// Returns the seed of the random numbers.
+	public long getRandomSeed() {
+		return random.getSeed();
+	}
+
+	// Returns the number of steps carried out.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the number of time steps since cell division last occurred, as in BacterialColonyEngine.
+	public int getTimeStepForCellDivisionCounter() {
+		return timeStepForCellDivisionCounter;
+	}
+
+	// Returns the number of threads used to update the lattice.
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	// Returns the number of alive bacteria.
+	public int getNumberOfAliveBacteria() {
+		return numberOfAliveBacteria;
+	}
+
+	// Returns the number of grid spaces holding the remains of a bacterium.
+	public int getNumberOfRemains() {
+		return numberOfRemains;
+	}
+
+	// Returns the number of bacteria born in the last update.
+	public int getBirthsInLastUpdate() {
+		return birthsInLastUpdate;
+	}
+
+	// Returns the number of bacteria that died in the last update.
+	public int getDeathsInLastUpdate() {
+		return deathsInLastUpdate;
+	}
+
+	// Returns the nutrient that left the lattice through absorbent boundaries in the last update.
+	public double getNutrientLostInLastUpdate() {
+		return nutrientLostInLastUpdate;
+	}
+
+	// Returns the total nutrient in the lattice.
+	public double getTotalNutrient() {
+		double total = 0;
+		for (float level : nutrientLevels) {
+			total += level;
+		}
+		return total;
+	}
+
+	// Returns the nutrient level of grid space x,y,z.
+	public double getNutrientLevel(int x, int y, int z) {
+		return nutrientLevels[x + y*gridWidth + z*gridSpacesPerLayer];
+	}
+
+	// Returns the state of grid space x,y,z, BacterialColonyEngine.EMPTY, ALIVE or REMAINS.
+	public byte getBacteriumState(int x, int y, int z) {
+		int w = this.returnWordIndex(x, y, z);
+		if (((alive[w] >>> x) & 1) != 0) return BacterialColonyEngine.ALIVE;
+		if (((remains[w] >>> x) & 1) != 0) return BacterialColonyEngine.REMAINS;
+		return BacterialColonyEngine.EMPTY;
+	}
+
+	// Returns the nutrient levels. The array is the one the engine uses, so it must not be changed except
+	// when restoring a checkpoint.
+	float[] getNutrientLevels() {
+		return nutrientLevels;
+	}
+
+	// Returns the bit plane of alive bacteria, for checkpoints.
+	long[] getAlivePlane() {
+		return alive;
+	}
+
+	// Returns the bit plane of remains, for checkpoints.
+	long[] getRemainsPlane() {
+		return remains;
+	}
+
+	// Returns the number of 64-bit words holding each row of the bit planes.
+	int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/* ****************************************************************************
+	* Slices
+	*******************************************************************************/
+
+	// Returns a snapshot of layer z, the grid spaces at height z above the surface, which can be written out
+	// by ImageExporter like the grid of a 2D simulation.
+	public SimulationSnapshot createLayerSnapshot(int z) {
+		if (z < 0 || z >= gridDepth) throw new IllegalArgumentException("Layer must be between 0 and " + (gridDepth - 1) + ".");
+
+		double[] levels = new double[gridSpacesPerLayer];
+		byte[] states = new byte[gridSpacesPerLayer];
+		for (int y=0; y<gridHeight; y++) {
+			for (int x=0; x<gridWidth; x++) {
+				levels[x + y*gridWidth] = this.getNutrientLevel(x, y, z);
+				states[x + y*gridWidth] = this.getBacteriumState(x, y, z);
+			}
+		}
+		return new SimulationSnapshot(gridWidth, gridHeight, stepNumber, levels, states);
+	}
+
+	// Returns a snapshot of the vertical section through row y of every layer, with the surface at the
+	// bottom, which shows how thick the biofilm has grown.
+	public SimulationSnapshot createSectionSnapshot(int y) {
+		if (y < 0 || y >= gridHeight) throw new IllegalArgumentException("Row must be between 0 and " + (gridHeight - 1) + ".");
+
+		double[] levels = new double[gridWidth*gridDepth];
+		byte[] states = new byte[gridWidth*gridDepth];
+		for (int z=0; z<gridDepth; z++) {
+			int rowStart = (gridDepth - 1 - z)*gridWidth;
+			for (int x=0; x<gridWidth; x++) {
+				levels[rowStart + x] = this.getNutrientLevel(x, y, z);
+				states[rowStart + x] = this.getBacteriumState(x, y, z);
+			}
+		}
+		return new SimulationSnapshot(gridWidth, gridDepth, stepNumber, levels, states);
+	}
+
+	/* ****************************************************************************
+	* Update Methods
+	*******************************************************************************/
+
+	// Creates the lattice for the next time step, first diffusing the nutrient, then updating the bacteria.
+	public void createUpdatedGrid() {
+		this.updateNutrientLevelsAfterDiffusion();
+
+		boolean checkForCellDivision = timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision;
+		if (checkForCellDivision) this.runSlabs(SlabTask.FILL_ALIVE_BEFORE_THIS_UPDATE);
+		for (Slab slab : slabs) {
+			slab.checkForCellDivision = checkForCellDivision;
+		}
+		this.runSlabs(SlabTask.CONSUMPTION_AND_CELL_DIVISION);
+
+		int births = 0;
+		int deaths = 0;
+		for (Slab slab : slabs) {
+			births += slab.births;
+			deaths += slab.deaths;
+		}
+		birthsInLastUpdate = births;
+		deathsInLastUpdate = deaths;
+		numberOfAliveBacteria += births - deaths;
+		numberOfRemains += deaths;
+
+		// Reset the cell division counter if necessary, otherwise increment it.
+		if (checkForCellDivision) {
+			timeStepForCellDivisionCounter = 1;
+		}
+		else {
+			timeStepForCellDivisionCounter += 1;
+		}
+		stepNumber++;
+	}
+
+	// Updates the nutrient levels for diffusion after a single time step.
+	void updateNutrientLevelsAfterDiffusion() {
+		this.runSlabs(SlabTask.DIFFUSION);
+		float[] current = nutrientLevels;
+		nutrientLevels = updatedNutrientLevels;
+		updatedNutrientLevels = current;
+
+		double nutrientLost = 0;
+		for (Slab slab : slabs) {
+			nutrientLost += slab.nutrientLost;
+		}
+		nutrientLostInLastUpdate = nutrientLost;
+	}
+
+	// Diffuses the nutrient of a slab into the updated nutrient levels, a block of rows of every layer at a
+	// time.
+	private void updateSlabAfterDiffusion(Slab slab) {
+		double nutrientLost = 0;
+		for (int firstRow=0; firstRow<gridHeight; firstRow+=rowsPerDiffusionBlock) {
+			int lastRow = Math.min(gridHeight, firstRow + rowsPerDiffusionBlock);
+			for (int z=slab.firstLayer; z<slab.lastLayer; z++) {
+				for (int y=firstRow; y<lastRow; y++) {
+					nutrientLost += this.updateRowAfterDiffusion(y, z);
+				}
+			}
+		}
+		slab.nutrientLost = nutrientLost;
+	}
+
+	// Diffuses the nutrient of row y of layer z. Each grid space keeps 1 - delta of its nutrient and gives
+	// delta/6 to each grid space sharing a face with it. Shares that would leave the lattice stay where they
+	// are with reflecting boundaries, wrap around with periodic boundaries and are lost with absorbent
+	// boundaries. Returns the nutrient lost.
+	private double updateRowAfterDiffusion(int y, int z) {
+		float[] current = nutrientLevels;
+		float[] updated = updatedNutrientLevels;
+		float kept = diffusionKept;
+		float share = diffusionShare;
+		int rowStart = y*gridWidth + z*gridSpacesPerLayer;
+		int lastX = gridWidth - 1;
+
+		// The rows sharing a face with this one, or the empty row if they are outside an absorbent boundary.
+		int northStart = this.returnNeighbouringRowStart(y - 1, z, rowStart);
+		int southStart = this.returnNeighbouringRowStart(y + 1, z, rowStart);
+		int belowStart = this.returnNeighbouringRowStart(y, z - 1, rowStart);
+		int aboveStart = this.returnNeighbouringRowStart(y, z + 1, rowStart);
+		float[] north = northStart < 0 ? emptyRow : current;
+		float[] south = southStart < 0 ? emptyRow : current;
+		float[] below = belowStart < 0 ? emptyRow : current;
+		float[] above = aboveStart < 0 ? emptyRow : current;
+		northStart = Math.max(northStart, 0);
+		southStart = Math.max(southStart, 0);
+		belowStart = Math.max(belowStart, 0);
+		aboveStart = Math.max(aboveStart, 0);
+
+		for (int x=1; x<lastX; x++) {
+			int i = rowStart + x;
+			updated[i] = kept*current[i] + share*(current[i - 1] + current[i + 1] + north[northStart + x]
+					+ south[southStart + x] + below[belowStart + x] + above[aboveStart + x]);
+		}
+
+		// The first and last grid spaces of the row, which may be the same one.
+		for (int x=0; x<gridWidth; x+=Math.max(1, lastX)) {
+			int i = rowStart + x;
+			float west = x > 0 ? current[i - 1] : periodic ? current[rowStart + lastX] : reflecting ? current[i] : 0;
+			float east = x < lastX ? current[i + 1] : periodic ? current[rowStart] : reflecting ? current[i] : 0;
+			updated[i] = kept*current[i] + share*(west + east + north[northStart + x] + south[southStart + x]
+					+ below[belowStart + x] + above[aboveStart + x]);
+		}
+
+		if (periodic || reflecting) return 0;
+
+		// Every share given to a grid space outside the lattice is lost.
+		double nutrientLost = share*(double) current[rowStart] + share*(double) current[rowStart + lastX];
+		int rowsOutside = (north == emptyRow ? 1 : 0) + (south == emptyRow ? 1 : 0) + (below == emptyRow ? 1 : 0)
+				+ (above == emptyRow ? 1 : 0);
+		if (rowsOutside > 0) {
+			double rowTotal = 0;
+			for (int i=rowStart; i<rowStart + gridWidth; i++) {
+				rowTotal += current[i];
+			}
+			nutrientLost += rowsOutside*share*rowTotal;
+		}
+		return nutrientLost;
+	}
+
+	// Returns the position of the first grid space of row y of layer z. Rows outside the lattice wrap around
+	// with periodic boundaries, are the row itself, which starts at rowStart, with reflecting boundaries and
+	// are -1 with absorbent boundaries.
+	private int returnNeighbouringRowStart(int y, int z, int rowStart) {
+		if (y >= 0 && y < gridHeight && z >= 0 && z < gridDepth) return y*gridWidth + z*gridSpacesPerLayer;
+		if (periodic) return Math.floorMod(y, gridHeight)*gridWidth + Math.floorMod(z, gridDepth)*gridSpacesPerLayer;
+		return reflecting ? rowStart : -1;
+	}
+
+	// Updates the bacteria of a slab and the nutrient they consume. As in BacterialColonyEngine, each row has
+	// its alive bacteria updated before the empty grid spaces are tested for cell division.
+	private void updateSlabAfterConsumptionAndCellDivision(Slab slab) {
+		int births = 0;
+		int deaths = 0;
+
+		for (int z=slab.firstLayer; z<slab.lastLayer; z++) {
+			for (int y=0; y<gridHeight; y++) {
+				int firstWord = (y + z*gridHeight)*wordsPerRow;
+				int rowStart = y*gridWidth + z*gridSpacesPerLayer;
+
+				for (int k=0; k<wordsPerRow; k++) {
+					long aliveWord = alive[firstWord + k];
+					while (aliveWord != 0) {
+						int b = Long.numberOfTrailingZeros(aliveWord);
+						aliveWord &= aliveWord - 1;
+						int i = rowStart + (k << 6) + b;
+
+						if (nutrientLevels[i] >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_SURVIVAL) {
+							nutrientLevels[i] -= nutrientForSustenance;
+						}
+						else {
+							alive[firstWord + k] &= ~(1L << b);
+							remains[firstWord + k] |= 1L << b;
+							nutrientLevels[i] = 0;
+							deaths++;
+						}
+					}
+				}
+
+				if (!slab.checkForCellDivision) continue;
+
+				for (int k=0; k<wordsPerRow; k++) {
+					long empty = ~(aliveBeforeThisUpdate[firstWord + k] | remains[firstWord + k]);
+					if (k == wordsPerRow - 1) empty &= lastWordMask;
+					if (empty == 0) continue;
+
+					long[] counts = slab.neighbourCounts;
+					this.countAliveNeighbours(y, z, k, counts);
+					long candidates = empty & BacteriaStatePlanes.returnGridSpacesWithCounts(counts, countsThatCanDivide);
+
+					while (candidates != 0) {
+						int b = Long.numberOfTrailingZeros(candidates);
+						candidates &= candidates - 1;
+						int i = rowStart + (k << 6) + b;
+
+						float nutrientInCell = nutrientLevels[i];
+						int numberOfNeighbours = BacteriaStatePlanes.returnCount(counts, b);
+						if (crowdingFunctionValues[numberOfNeighbours] * nutrientInCell > thresholdForDivision
+								&& nutrientInCell >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_CELL_DIVISION
+								&& random.nextDouble(stepNumber, i) < probabilityOfCellDivision) {
+							alive[firstWord + k] |= 1L << b;
+							nutrientLevels[i] -= nutrientForGrowth;
+							births++;
+						}
+					}
+				}
+			}
+		}
+
+		slab.births = births;
+		slab.deaths = deaths;
+	}
+
+	// Counts the alive neighbours, before this update, of the grid spaces in word k of row y of layer z.
+	// The counts are left in the words given as bit planes, counts[j] holding bit j of each count.
+	private void countAliveNeighbours(int y, int z, int k, long[] counts) {
+		Arrays.fill(counts, 0);
+
+		for (int dz=-1; dz<=1; dz++) {
+			int neighbourZ = z + dz;
+			if (neighbourZ < 0 || neighbourZ >= gridDepth) {
+				if (!periodic) continue;
+				neighbourZ = Math.floorMod(neighbourZ, gridDepth);
+			}
+			for (int dy=-1; dy<=1; dy++) {
+				int neighbourY = y + dy;
+				if (neighbourY < 0 || neighbourY >= gridHeight) {
+					if (!periodic) continue;
+					neighbourY = Math.floorMod(neighbourY, gridHeight);
+				}
+
+				int firstWord = (neighbourY + neighbourZ*gridHeight)*wordsPerRow;
+				addToCounts(counts, this.returnShiftedWord(firstWord, k, -1));
+				if (dy != 0 || dz != 0) addToCounts(counts, aliveBeforeThisUpdate[firstWord + k]);
+				addToCounts(counts, this.returnShiftedWord(firstWord, k, 1));
+			}
+		}
+	}
+
+	// Returns word k of the row of alive bacteria before this update starting at firstWord, shifted so that
+	// each bit holds the grid space dx to the east, x + dx, for dx of -1 or 1. The row wraps around with
+	// periodic boundaries and is empty beyond its ends otherwise.
+	private long returnShiftedWord(int firstWord, int k, int dx) {
+		long[] plane = aliveBeforeThisUpdate;
+		int lastWord = wordsPerRow - 1;
+
+		if (dx > 0) {
+			long word = plane[firstWord + k] >>> 1;
+			if (k < lastWord) word |= plane[firstWord + k + 1] << 63;
+			else if (periodic) word |= (plane[firstWord] & 1L) << ((gridWidth - 1) & 63);
+			return word;
+		}
+
+		long word = plane[firstWord + k] << 1;
+		if (k > 0) word |= plane[firstWord + k - 1] >>> 63;
+		else if (periodic) word |= (plane[firstWord + lastWord] >>> ((gridWidth - 1) & 63)) & 1L;
+		return word;
+	}
+
+	// Adds one to the count of each grid space with its bit set in the word.
+	private static void addToCounts(long[] counts, long word) {
+		for (int j=0; j<NUMBER_OF_COUNT_BITS && word != 0; j++) {
+			long carry = counts[j] & word;
+			counts[j] ^= word;
+			word = carry;
+		}
+	}
+
+	// Returns the index of the word of the bit planes holding grid space x,y,z.
+	private int returnWordIndex(int x, int y, int z) {
+		return (y + z*gridHeight)*wordsPerRow + (x >>> 6);
+	}
+
+	/* ****************************************************************************
+	* Slabs
+	*******************************************************************************/
+
+	// Splits the lattice into slabs of layers of about the same size, one for each thread unless the
+	// lattice hasn't enough layers to go round.
+	private void createSlabs() {
+		int numberOfSlabs = Math.max(1, Math.min(numberOfThreads, gridDepth / MINIMUM_LAYERS_PER_SLAB));
+		slabs = new Slab[numberOfSlabs];
+		for (int s=0; s<numberOfSlabs; s++) {
+			slabs[s] = new Slab((int) ((long) gridDepth*s / numberOfSlabs), (int) ((long) gridDepth*(s + 1) / numberOfSlabs));
+		}
+	}
+
+	// Carries out a task on each slab. The first slab is updated on this thread while the pool updates the
+	// others. Every slab is waited for, even if this thread is interrupted, so that the lattice is never
+	// left part way through an update.
+	private void runSlabs(SlabTask task) {
+		for (int s=1; s<slabs.length; s++) {
+			slabs[s].task = task;
+			slabs[s].future = slabPool.submit(slabs[s].update);
+		}
+
+		RuntimeException failure = null;
+		try {
+			this.updateSlab(slabs[0], task);
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+
+		boolean interrupted = false;
+		for (int s=1; s<slabs.length; s++) {
+			while (true) {
+				try {
+					slabs[s].future.get();
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new IllegalStateException("Updating a slab of the lattice failed.", e.getCause());
+					}
+					break;
+				}
+			}
+			slabs[s].future = null;
+		}
+
+		if (interrupted) Thread.currentThread().interrupt();
+		if (failure != null) throw failure;
+	}
+
+	// Carries out a task on a single slab.
+	private void updateSlab(Slab slab, SlabTask task) {
+		switch (task) {
+			case DIFFUSION:
+				this.updateSlabAfterDiffusion(slab);
+				break;
+			case FILL_ALIVE_BEFORE_THIS_UPDATE:
+				int firstWord = slab.firstLayer*gridHeight*wordsPerRow;
+				int lastWord = slab.lastLayer*gridHeight*wordsPerRow;
+				System.arraycopy(alive, firstWord, aliveBeforeThisUpdate, firstWord, lastWord - firstWord);
+				break;
+			default:
+				this.updateSlabAfterConsumptionAndCellDivision(slab);
+		}
+	}
+
+	// A slab of layers of the lattice, from firstLayer up to, but not including, lastLayer, along with what
+	// its part of the last update added to the counts of bacteria.
+	private final class Slab {
+
+		private final int firstLayer;
+		private final int lastLayer;
+
+		private boolean checkForCellDivision;
+		private int births;
+		private int deaths;
+		private double nutrientLost;
+
+		// Space for the neighbour counts of a word of grid spaces, as bit planes.
+		private final long[] neighbourCounts = new long[NUMBER_OF_COUNT_BITS];
+
+		// What the slab is given to the pool to do, created once so that a step allocates nothing, the task
+		// it carries out and the one it is working on.
+		private final Callable<Void> update = new Callable<Void>() {
+			@Override
+			public Void call() {
+				updateSlab(Slab.this, task);
+				return null;
+			}
+		};
+		private SlabTask task;
+		private Future<Void> future;
+
+		// Constructor.
+		private Slab(int firstLayer, int lastLayer) {
+			this.firstLayer = firstLayer;
+			this.lastLayer = lastLayer;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/* *****************************************************************************
+* Description: A command line program that runs a simulation of a biofilm on
+* a 3D lattice without a display, from an input file with a "grid depth" line
+* (see InputFileReader) or from a 3D checkpoint. It prints the number of alive
+* bacteria and remains and the total nutrient, and can save a checkpoint and
+* images of a layer or a vertical section of the lattice at the end of the run.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+public class BiofilmRunner {
+
+	private static final String USAGE =
+			"Usage: BiofilmRunner <input file or 3D checkpoint> <number of steps> [options]\n"
+			+ "Options:\n"
+			+ "  --seed <n>              Seed for the random numbers (default: random, or the seed in the checkpoint)\n"
+			+ "  --threads <n>           Number of threads used to update the lattice (default: 1)\n"
+			+ "  --report-every <n>      Print a line every n steps\n"
+			+ "  --checkpoint <file>     Save a checkpoint of the simulation at the end of the run\n"
+			+ "  --layer <z>             Layer drawn by --layer-image (default: 0, the surface)\n"
+			+ "  --layer-image <file>    Save the bacteria in a layer as a PNG image\n"
+			+ "  --section <y>           Row of each layer drawn by --section-image (default: the middle row)\n"
+			+ "  --section-image <file>  Save the bacteria in a vertical section as a PNG image\n"
+			+ "  --image-scale <n>       Number of pixels along each side of a grid space (default: 1)";
+
+	// Returns a line with the step number, the number of alive bacteria and remains and the total nutrient.
+	static String createSummary(BiofilmEngine engine) {
+		return String.format(Locale.ROOT, "step=%d alive=%d remains=%d nutrient=%.2f", engine.getStepNumber(),
+				engine.getNumberOfAliveBacteria(), engine.getNumberOfRemains(), engine.getTotalNutrient());
+	}
+
+	public static void main(String[] args) {
+		try {
+			if (args.length < 2) throw new IllegalArgumentException("An input file and a number of steps are needed.");
+
+			File inputFile = new File(args[0]);
+			int numberOfSteps = Integer.parseInt(args[1]);
+			Long seed = null;
+			int numberOfThreads = 1;
+			int reportEvery = 0;
+			File checkpointFile = null;
+			int layer = 0;
+			File layerImageFile = null;
+			Integer section = null;
+			File sectionImageFile = null;
+			int imageScale = 1;
+
+			for (int i=2; i<args.length; i++) {
+				if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+				String option = args[i];
+				String value = args[++i];
+
+				if (option.equals("--seed")) seed = Long.parseLong(value);
+				else if (option.equals("--threads")) numberOfThreads = Integer.parseInt(value);
+				else if (option.equals("--report-every")) reportEvery = Integer.parseInt(value);
+				else if (option.equals("--checkpoint")) checkpointFile = new File(value);
+				else if (option.equals("--layer")) layer = Integer.parseInt(value);
+				else if (option.equals("--layer-image")) layerImageFile = new File(value);
+				else if (option.equals("--section")) section = Integer.parseInt(value);
+				else if (option.equals("--section-image")) sectionImageFile = new File(value);
+				else if (option.equals("--image-scale")) imageScale = Integer.parseInt(value);
+				else throw new IllegalArgumentException("Unknown option " + option + ".");
+			}
+			if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must not be negative.");
+			if (imageScale < 1) throw new IllegalArgumentException("Image scale must be an integer greater than 0.");
+
+			BiofilmEngine engine;
+			if (BiofilmCheckpoint.isCheckpoint(inputFile)) {
+				engine = BiofilmCheckpoint.read(inputFile);
+				if (seed != null && seed != engine.getRandomSeed()) {
+					throw new IllegalArgumentException("The seed can't be changed when carrying on from a checkpoint.");
+				}
+				seed = engine.getRandomSeed();
+				System.out.println("Restored " + inputFile + " at step " + engine.getStepNumber() + ".");
+			}
+			else {
+				if (seed == null) seed = new Random().nextLong();
+				engine = new BiofilmEngine(new InputFileReader(inputFile).readBiofilmConfig(), seed);
+			}
+			engine.setNumberOfThreads(numberOfThreads);
+
+			long startTime = System.nanoTime();
+			for (int i=0; i<numberOfSteps; i++) {
+				engine.createUpdatedGrid();
+				if (reportEvery > 0 && (i + 1) % reportEvery == 0 && i + 1 < numberOfSteps) {
+					System.out.println(createSummary(engine));
+				}
+			}
+			double seconds = (System.nanoTime() - startTime)/1e9;
+			System.out.println(createSummary(engine) + String.format(Locale.ROOT, " seed=%d time=%.3fs", seed, seconds));
+
+			if (checkpointFile != null) BiofilmCheckpoint.write(engine, checkpointFile);
+			if (layerImageFile != null) {
+				ImageExporter.writePng(ImageExporter.createBacteriaPatternImage(engine.createLayerSnapshot(layer), imageScale), layerImageFile);
+			}
+			if (sectionImageFile != null) {
+				int y = section != null ? section : engine.getGridHeight()/2;
+				ImageExporter.writePng(ImageExporter.createBacteriaPatternImage(engine.createSectionSnapshot(y), imageScale), sectionImageFile);
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Cannot read or write a file: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
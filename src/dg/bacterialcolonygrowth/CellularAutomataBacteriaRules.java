@@ -42,6 +42,26 @@ public class CellularAutomataBacteriaRules {
     // Stores a value for each possible number of surrounding cells (0-8), which
     // is then used to determine if cell division takes place.
     private int[] crowdingFunctionValues = {0, 40, 40, 40, 30, 20, 10, 0, 0}; // Default = 0,40,40,40,30,20,10,0,0
+    
+    // Number of times the grid has been updated.
+    private long stepNumber = 0;
+    
+    // Generator for the random numbers, drawn by time step and position in the same way as
+    // BacterialColonyEngine, so both give the same colony from the same seed. If no seed has been given
+    // Math.random and java.util.Random are used instead.
+    private CounterBasedRandom random = null;
+    
+    // Time taken, in nanoseconds, by each phase of the most recent call to createUpdatedGrid.
+    private long lastCopyPhaseTime = 0;
+    private long lastDiffusionPhaseTime = 0;
+    private long lastConsumptionPhaseTime = 0;
+    private long lastRenderPhaseTime = 0;
+    
+    // Number of bacteria born and that died during the most recent call to createUpdatedGrid, and whether
+    // cell division could occur during it.
+    private int birthsInLastUpdate = 0;
+    private int deathsInLastUpdate = 0;
+    private boolean lastUpdateCheckedForCellDivision = false;
 
     
     /* ****************************************************************************
@@ -50,24 +70,51 @@ public class CellularAutomataBacteriaRules {
     
     // Constructor which create a new rules object.
 	public CellularAutomataBacteriaRules() {
-        numberOfCellsInGrid = gridWidth * gridHeight;
-        
-    		grid = new Grid(gridHeight, gridWidth, cellHeight, cellWidth);
-        
-        updateMatrix = CRSMatrix.zero(numberOfCellsInGrid, numberOfCellsInGrid);
-        nutrientLevels = DenseVector.zero(numberOfCellsInGrid);
-        
-        this.setInitialDefaultNutrientLevels();        
-        this.createUpdateMatrix();
-        
-        grid.setBacteriumAlive(gridWidth/2, gridWidth/2);
+		this.createFromConfig(new SimulationConfig.Builder().build());
 	}
 	
 	// Constructor which creates a rules object with the parameters specified in an input file.
 	public CellularAutomataBacteriaRules(File inputFile) throws IOException, IllegalArgumentException {
-		// Reads the input file and sets the parameters.
-		InputFileReader inputFileReader = new InputFileReader(inputFile, this);
-		inputFileReader.setParametersFromInputFile();
+		this(new InputFileReader(inputFile).readConfig());
+	}
+	
+	// Constructor which creates a rules object with the parameters in a config. The grid, update matrix
+	// and nutrient levels are only created once, after all the parameters have been set. Throws an
+	// IOException if an initial layout image in the config can't be read.
+	public CellularAutomataBacteriaRules(SimulationConfig config) throws IOException {
+		this.createFromConfig(config);
+		this.readInitialLayoutImages(config);
+	}
+	
+	// Constructor which creates a rules object with the parameters in a config, using the seed given for
+	// its random numbers. The same config and seed give the same colony as BacterialColonyEngine.
+	public CellularAutomataBacteriaRules(SimulationConfig config, long seed) throws IOException {
+		random = new CounterBasedRandom(seed);
+		this.createFromConfig(config);
+		this.readInitialLayoutImages(config);
+	}
+	
+	// Sets the parameters to those in the config and creates the grid. The nutrient levels and bacteria
+	// are left for readInitialLayoutImages if the config has images of them.
+	private void createFromConfig(SimulationConfig config) {
+		// The update matrix and the neighbour counts only follow the default neighbourhoods.
+		if (!config.createCrowdingNeighbourhood().isDefaultCrowdingNeighbourhood()
+				|| !config.createDiffusionNeighbourhood().isDefaultDiffusionNeighbourhood()) {
+			throw new IllegalArgumentException("Only the headless engine supports neighbourhoods other than the default ones.");
+		}
+		gridHeight = config.getGridHeight();
+		gridWidth = config.getGridWidth();
+		cellHeight = config.getCellHeight();
+		cellWidth = config.getCellWidth();
+		delta = config.getDiffusionRate();
+		nutrientForSustenance = config.getNutrientForSustenance();
+		nutrientForGrowth = config.getNutrientForGrowth();
+		thresholdForDivision = config.getThresholdForCellDivision();
+		crowdingFunctionValues = config.getCrowdingFunctionValues();
+		numberOfTimeStepsForCellDivision = config.getNumberOfTimestepsForCellDivision();
+		boundaryType = config.getBoundaryCondition();
+		initalNutrientPattern = config.getNutrientLevelPatternChoice();
+		probabilityOfCellDivision = config.getProbabilityOfCellDivision();
 		
         numberOfCellsInGrid = gridWidth * gridHeight;
         
@@ -76,10 +123,40 @@ public class CellularAutomataBacteriaRules {
         updateMatrix = CRSMatrix.zero(numberOfCellsInGrid, numberOfCellsInGrid);
         nutrientLevels = DenseVector.zero(numberOfCellsInGrid);
         
-        this.setInitialNutrientLevels();        
+        if (config.getInitialNutrientImage() == null) this.setInitialNutrientLevels();        
         this.createUpdateMatrix();
         
-        grid.setBacteriumAlive(gridWidth/2, gridWidth/2);
+        if (config.getInitialBacteriaImage() == null) grid.setBacteriumAlive(gridWidth/2, gridWidth/2);
+	}
+	
+	// Reads the initial nutrient levels and bacteria from the images in the config, if there are any, one
+	// row of pixels at a time.
+	private void readInitialLayoutImages(SimulationConfig config) throws IOException {
+		int[] row = new int[gridWidth];
+		
+		if (config.getInitialNutrientImage() != null) {
+			try (LayoutImageReader reader = LayoutImageReader.openForGrid(new File(config.getInitialNutrientImage()), gridWidth, gridHeight)) {
+				for (int y=0; y<gridHeight; y++) {
+					reader.readRow(row);
+					for (int x=0; x<gridWidth; x++) {
+						nutrientLevels.set(returnPositionInNutrientMatrix(x, y), LayoutImageReader.returnNutrientLevel(row[x], reader.getMaximumValue()));
+					}
+				}
+			}
+		}
+		
+		if (config.getInitialBacteriaImage() != null) {
+			try (LayoutImageReader reader = LayoutImageReader.openForGrid(new File(config.getInitialBacteriaImage()), gridWidth, gridHeight)) {
+				for (int y=0; y<gridHeight; y++) {
+					reader.readRow(row);
+					for (int x=0; x<gridWidth; x++) {
+						byte state = LayoutImageReader.returnBacteriaState(row[x], reader.getMaximumValue());
+						if (state == BacterialColonyEngine.ALIVE) grid.setBacteriumAlive(x, y);
+						else if (state == BacterialColonyEngine.REMAINS) grid.setBacteriumDead(x, y);
+					}
+				}
+			}
+		}
 	}
 	
 	/* ****************************************************************************
@@ -188,9 +265,10 @@ public class CellularAutomataBacteriaRules {
     		}
     		// Set random nutrient level in each cell.
 		if (initalNutrientPattern.equals("random")) {
-			Random random = new Random();
-			for (int i=0; i<nutrientLevels.length(); i++) {			
-				nutrientLevels.set(i, (double)random.nextInt(101));
+			Random unseededRandom = new Random();
+			for (int i=0; i<nutrientLevels.length(); i++) {
+				if (random != null) nutrientLevels.set(i, (double)random.nextInt(CounterBasedRandom.INITIAL_PATTERN_STEP, i, 101));
+				else nutrientLevels.set(i, (double)unseededRandom.nextInt(101));
 			}
 		}
 		else setInitialDefaultNutrientLevels();
@@ -222,6 +300,11 @@ public class CellularAutomataBacteriaRules {
     		probabilityOfCellDivision = probabilty;
     }
     
+    // Sets the seed used to draw the random numbers for cell division.
+    public void setRandomSeed(long seed) {
+    		random = new CounterBasedRandom(seed);
+    }
+    
     /* ****************************************************************************
 	* Getters
 	*******************************************************************************/
@@ -236,6 +319,69 @@ public class CellularAutomataBacteriaRules {
  		return grid;
  	}
     
+    // Returns the number of times the grid has been updated.
+    public long getStepNumber() {
+    		return stepNumber;
+    }
+    
+    // Returns a copy of the current nutrient levels and bacteria, which can be used to save images of the
+    // simulation.
+    public SimulationSnapshot createSnapshot() {
+    		double[] nutrientLevelsCopy = new double[numberOfCellsInGrid];
+    		byte[] bacteriaStates = new byte[numberOfCellsInGrid];
+    		
+    		for (int x=0; x<gridWidth; x++) {
+    			for (int y=0; y<gridHeight; y++) {
+    				int i = returnPositionInNutrientMatrix(x, y);
+    				nutrientLevelsCopy[i] = nutrientLevels.get(i);
+    				
+    				if (grid.cellAlive(x, y)) {
+    					bacteriaStates[i] = BacterialColonyEngine.ALIVE;
+    				}
+    				else if (grid.cellAliveOrContainsRemains(x, y)) {
+    					bacteriaStates[i] = BacterialColonyEngine.REMAINS;
+    				}
+    			}
+    		}
+    		
+    		return new SimulationSnapshot(gridWidth, gridHeight, stepNumber, nutrientLevelsCopy, bacteriaStates);
+    }
+    
+    // Returns the time, in nanoseconds, spent copying the grid during the last update.
+    public long getLastCopyPhaseTime() {
+    		return lastCopyPhaseTime;
+    }
+    
+    // Returns the time, in nanoseconds, spent on nutrient diffusion during the last update.
+    public long getLastDiffusionPhaseTime() {
+    		return lastDiffusionPhaseTime;
+    }
+    
+    // Returns the time, in nanoseconds, spent on consumption and cell division during the last update.
+    public long getLastConsumptionPhaseTime() {
+    		return lastConsumptionPhaseTime;
+    }
+    
+    // Returns the time, in nanoseconds, spent colouring the grid the last time it was rendered.
+    public long getLastRenderPhaseTime() {
+    		return lastRenderPhaseTime;
+    }
+    
+    // Returns the number of bacteria born during the last update.
+    public int getBirthsInLastUpdate() {
+    		return birthsInLastUpdate;
+    }
+    
+    // Returns the number of bacteria that died during the last update.
+    public int getDeathsInLastUpdate() {
+    		return deathsInLastUpdate;
+    }
+    
+    // Returns true if cell division could occur during the last update.
+    public boolean getLastUpdateCheckedForCellDivision() {
+    		return lastUpdateCheckedForCellDivision;
+    }
+    
     /* ****************************************************************************
 	* General Methods
 	*******************************************************************************/
@@ -401,6 +547,9 @@ public class CellularAutomataBacteriaRules {
 		if (timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision) {
 			checkForCellDivision = true;
 		}
+		lastUpdateCheckedForCellDivision = checkForCellDivision;
+		birthsInLastUpdate = 0;
+		deathsInLastUpdate = 0;
 		
 		// Loops through all the grid spaces in the cellular automata.
         for (int x=0; x<gridWidth; x++) {
@@ -418,8 +567,6 @@ public class CellularAutomataBacteriaRules {
 	    					updateEmptyGridSpace(gridBeforeThisUpdate, x, y);
 	    				}
 	    			}
-	    			// Set the colour of the grid cell.
-	    			this.grid.setNutrientLevelColor(x, y, 0, getNutrientLevelOfCell(returnPositionInNutrientMatrix(x, y))/100, 1);
 	    		}
         }
         
@@ -447,6 +594,7 @@ public class CellularAutomataBacteriaRules {
 		else {
 			this.grid.setBacteriumDead(x, y);
 			setNutrientLevelOfCell(returnPositionInNutrientMatrix(x, y),0);
+			deathsInLastUpdate++;
 		}
     }
     
@@ -458,6 +606,7 @@ public class CellularAutomataBacteriaRules {
 			this.grid.setBacteriumAlive(x, y);
 			setNutrientLevelOfCell(returnPositionInNutrientMatrix(x, y), 
 						nutrientLevels.get(returnPositionInNutrientMatrix(x, y))-nutrientForGrowth);
+			birthsInLastUpdate++;
 		}
     }
     
@@ -480,7 +629,8 @@ public class CellularAutomataBacteriaRules {
     		// Check if crowding function * nutrient level is greater than threshold.
     		if (crowdingFunctionValues[numberOfNeighbours] * nutrientInCell > thresholdForDivision) {
     			// If a random number from 0 up to 1 is less than 0.5 then cell division takes place.
-    			if (Math.random() < probabilityOfCellDivision) {
+    			double randomNumber = random != null ? random.nextDouble(stepNumber, returnPositionInNutrientMatrix(x, y)) : Math.random();
+    			if (randomNumber < probabilityOfCellDivision) {
     				return true;
     			}
     		}
@@ -546,15 +696,49 @@ public class CellularAutomataBacteriaRules {
     		return numberOfNeighbours;
     }
 
+    // Sets the colour of every grid cell to show the level of nutrient it contains.
+    public void updateGridColours() {
+    		long renderStartTime = System.nanoTime();
+    		
+    		for (int x=0; x<gridWidth; x++) {
+    			for (int y=0; y<gridHeight; y++) {
+    				this.grid.setNutrientLevelColor(x, y, 0, getNutrientLevelOfCell(returnPositionInNutrientMatrix(x, y))/100, 1);
+    			}
+    		}
+    		
+    		lastRenderPhaseTime = System.nanoTime() - renderStartTime;
+    }
+
 	// Creates an updated grid after one iteration of the rules governing the bacterial colony.
 	public void createUpdatedGrid() {
+		this.createUpdatedGrid(true);
+	}
+	
+	// Creates an updated grid after one iteration of the rules governing the bacterial colony. The grid
+	// colours are only updated if requested, so callers that run several iterations between frames can
+	// leave the rendering until the last one. The time taken by each phase is recorded.
+	public void createUpdatedGrid(boolean updateGridColours) {
+		long phaseStartTime = System.nanoTime();
+		
 		// Creates a copy of the current grid.
 		Grid copyOfCurrentGrid = new Grid(this.grid);
+		long copyFinishTime = System.nanoTime();
 		
 		// Update for diffusion.
         this.updateNutrientLevelsAfterDiffusion();
+        long diffusionFinishTime = System.nanoTime();
         
         // Update for bacteria consuming nutrient and reproducing.
         this.updateBacteriaAndNutrientAfterConsumptionAndCellDivision(copyOfCurrentGrid);
+        long consumptionFinishTime = System.nanoTime();
+        
+        lastCopyPhaseTime = copyFinishTime - phaseStartTime;
+        lastDiffusionPhaseTime = diffusionFinishTime - copyFinishTime;
+        lastConsumptionPhaseTime = consumptionFinishTime - diffusionFinishTime;
+        stepNumber++;
+        
+        if (updateGridColours) {
+        		this.updateGridColours();
+        }
 	}
 }
@@ -7,6 +7,8 @@
 package dg.bacterialcolonygrowth;
 
 import javafx.application.Application;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
@@ -14,7 +16,12 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.control.Spinner;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.FileChooser;
@@ -22,11 +29,9 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import javax.management.JMException;
 
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.util.Duration;
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Insets;
 
 
@@ -34,10 +39,45 @@ public class CellularAutomataGUI extends Application {
 
 	// Properties of the GUI Simulation/visual setup.
 	private GridPane gridPane, buttonPane;
+	private HBox speedControlPane, replayPane;
 	private VBox rootPane;
 	private Stage mainStage;
 	private Scene mainScene;
-	private double gridUpdateRate = 0.001; // In seconds, default = 0.001
+	
+	// Controls for how many updates of the grid are carried out for each frame that is drawn.
+	private Spinner<Integer> stepsPerFrameSpinner;
+	private Spinner<Integer> renderEveryStepsSpinner;
+	private CheckBox maxSpeedCheckBox;
+	
+	// Shows the current speed of the simulation and the time taken by each phase of an update.
+	private Label throughputLabel;
+	private ThroughputMonitor throughputMonitor = new ThroughputMonitor(500);
+	
+	// Metrics published through JMX, which are only collected if the program is started with
+	// -Ddg.bacterialcolonygrowth.metrics=true.
+	private SimulationMetrics metrics = null;
+	
+	// In max speed mode the grid is updated for at most this long during each frame, in nanoseconds, so
+	// that the window stays responsive.
+	private static final long MAX_SPEED_FRAME_BUDGET = 15000000L;
+	
+	// Number of pixels along each side of a grid space in saved images.
+	private static final int SAVED_IMAGE_SCALE = 5;
+	
+	// Used to move back and forth through a recorded trajectory, and shows the step being replayed.
+	private Slider timelineSlider;
+	private Label replayStepLabel;
+	
+	// The trajectory being replayed, if there is one, along with the step shown and its bacteria states.
+	private TrajectoryFrameCache replayFrames;
+	private long displayedReplayStep;
+	private byte[] displayedReplayStates;
+	
+	// Memory used to keep the steps of a trajectory that have already been rebuilt, in bytes.
+	private static final long REPLAY_CACHE_MEMORY = 256L*1024*1024;
+	
+	// Number of updates of the grid since it was last rendered.
+	private int stepsSinceLastRender = 0;
 	
 	// The cellular automata grid.
 	private Grid grid;
@@ -45,10 +85,13 @@ public class CellularAutomataGUI extends Application {
     // Variable used to store the rules governing the bacteria simulation.
     private CellularAutomataBacteriaRules rules;
 
-    // Creates a Timeline that calls a function to continuously updates the grid every "gridUpdateRate" 
-    // seconds. Or as quick as possible if this time can't be achieved.
-    private Timeline timeline = new Timeline(new KeyFrame( Duration.seconds(gridUpdateRate),
-    								timelineEvent -> { this.manageSimulation(); }));
+    // Creates an AnimationTimer that calls a function to update the grid once for every frame drawn.
+    private AnimationTimer simulationLoop = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            manageSimulation();
+        }
+    };
 
 	// Displays the stage and creates the initial scene within it.
     @Override
@@ -59,6 +102,16 @@ public class CellularAutomataGUI extends Application {
 	    
 	    rules = new CellularAutomataBacteriaRules();
 	    
+	    if (Boolean.getBoolean("dg.bacterialcolonygrowth.metrics")) {
+	    		metrics = new SimulationMetrics();
+	    		try {
+	    			metrics.register();
+	    		}
+	    		catch (JMException e) {
+	    			System.err.println("Cannot publish metrics through JMX: " + e.getMessage());
+	    		}
+	    }
+	    
 	    // Creates the grid.
 	    	grid = rules.getCellularAutomataGrid();
 	    	
@@ -66,12 +119,12 @@ public class CellularAutomataGUI extends Application {
 	
 	    	Button startButton = new Button("Start");
 	
-	    	// When the startButton is clicked it plays "timeline" indefinitely.
+	    	// When the startButton is clicked it starts the simulation loop.
 	    startButton.setOnAction(new EventHandler<ActionEvent>() {
 	        @Override
 	        public void handle(ActionEvent event) {
-	            timeline.setCycleCount(Animation.INDEFINITE);
-	            timeline.play();
+	            throughputMonitor.reset(System.nanoTime());
+	            simulationLoop.start();
 	        }
 	    });
 	
@@ -81,7 +134,7 @@ public class CellularAutomataGUI extends Application {
 	    stopButton.setOnAction(new EventHandler<ActionEvent>() {
 	        @Override
 	        public void handle(ActionEvent event) {
-	            timeline.stop();
+	            stopSimulation();
 	        }
 	    });
 	
@@ -91,8 +144,8 @@ public class CellularAutomataGUI extends Application {
 	    showOnlyBacteriaButton.setOnAction(new EventHandler<ActionEvent>() {
 	        @Override
 	        public void handle(ActionEvent event) {
+	            stopSimulation();
 	            grid.showOnlyBacteriaAsSquares();
-	            timeline.stop();
 	            
 	            // Remove start and stop buttons after final pattern is shown.
 	            buttonPane.getChildren().remove(startButton);
@@ -100,6 +153,36 @@ public class CellularAutomataGUI extends Application {
 	        }
 	    });
 	    
+	    Button savePatternImageButton = new Button("Save pattern image");
+	    
+	    // Stops the simulation and saves an image of only the bacteria to a file the user chooses. The
+	    // image is drawn from the state of the simulation, so the grid on screen is left unchanged.
+	    savePatternImageButton.setOnAction(new EventHandler<ActionEvent>() {
+	        @Override
+	        public void handle(ActionEvent event) {
+	            stopSimulation();
+	            
+	            FileChooser fileChooser = new FileChooser();
+	            File selectedFile = fileChooser.showSaveDialog(mainStage);
+	            
+	            if (selectedFile != null) {
+	            		try {
+	            			// When a trajectory is being replayed the step shown is saved.
+	            			SimulationSnapshot snapshot = rules.createSnapshot();
+	            			if (replayFrames != null) {
+	            				snapshot = new SimulationSnapshot(grid.getGridWidth(), grid.getGridHeight(), displayedReplayStep,
+	            						new double[displayedReplayStates.length], displayedReplayStates.clone());
+	            			}
+	            			ImageExporter.writePng(ImageExporter.createBacteriaPatternImage(snapshot, SAVED_IMAGE_SCALE), selectedFile);
+	            		}
+	            		catch(IOException e) {
+	            			Alert alert = new Alert(AlertType.ERROR, "Cannot save image.\n\n" + e.getMessage(), ButtonType.OK);
+	            			alert.showAndWait();
+	            		}
+	            }
+	        }
+	    });
+	    
 	    Button loadInputFile = new Button("Load input file");
 		
 	    // Allows a user to select a file by graphically selecting a file from their directories.
@@ -107,7 +190,7 @@ public class CellularAutomataGUI extends Application {
 	    loadInputFile.setOnAction(new EventHandler<ActionEvent>() {
 	        @Override
 	        public void handle(ActionEvent event) {
-	        		timeline.stop();
+	        		stopSimulation();
 	        		
 	            FileChooser fileChooser = new FileChooser();
 	            File selectedFile = fileChooser.showOpenDialog(null);
@@ -135,6 +218,7 @@ public class CellularAutomataGUI extends Application {
                     }
 	            		
 	            		// Gets the new grid to display graphically in case it has changed.
+	            		stopReplay();
 	            		grid = rules.getCellularAutomataGrid();	            		
 	            		gridPane.getChildren().clear();	            		
 	            		addGridToGridpane();
@@ -142,6 +226,34 @@ public class CellularAutomataGUI extends Application {
 	        }		
 	    });
 	
+	    Button loadTrajectoryButton = new Button("Load trajectory");
+	    
+	    // Stops the simulation and replaces the grid with a trajectory recorded by the headless runner,
+	    // which can then be replayed by moving the timeline slider.
+	    loadTrajectoryButton.setOnAction(new EventHandler<ActionEvent>() {
+	        @Override
+	        public void handle(ActionEvent event) {
+	            stopSimulation();
+	            
+	            FileChooser fileChooser = new FileChooser();
+	            File selectedFile = fileChooser.showOpenDialog(mainStage);
+	            
+	            if (selectedFile != null) {
+	            		try {
+	            			startReplay(new TrajectoryReader(selectedFile));
+	            			
+	            			// The simulation can't be carried on from a trajectory.
+	            			buttonPane.getChildren().remove(startButton);
+	            			buttonPane.getChildren().remove(stopButton);
+	            		}
+	            		catch(IOException e) {
+	            			Alert alert = new Alert(AlertType.ERROR, "Cannot read trajectory.\n\n" + e.getMessage(), ButtonType.OK);
+	            			alert.showAndWait();
+	            		}
+	            }
+	        }
+	    });
+	    
 	    // Adds the buttons to the button pane.
 	    buttonPane = new GridPane();
 	    buttonPane.setHgap(10);
@@ -151,10 +263,46 @@ public class CellularAutomataGUI extends Application {
 	    buttonPane.add(stopButton,2,1);
 	    buttonPane.add(showOnlyBacteriaButton,3,1);
 	    buttonPane.add(loadInputFile,4,1);
+	    buttonPane.add(savePatternImageButton,5,1);
+	    buttonPane.add(loadTrajectoryButton,6,1);
 	
-	    // Add the grid and buttons to the rootPane.
+	    // Adds the controls for the speed of the simulation.
+	    stepsPerFrameSpinner = new Spinner<Integer>(1, 10000, 1);
+	    stepsPerFrameSpinner.setEditable(true);
+	    renderEveryStepsSpinner = new Spinner<Integer>(1, 100000, 10);
+	    renderEveryStepsSpinner.setEditable(true);
+	    maxSpeedCheckBox = new CheckBox("Max speed");
+	    
+	    speedControlPane = new HBox(10);
+	    speedControlPane.getChildren().addAll(new Label("Steps per frame:"), stepsPerFrameSpinner,
+	    		maxSpeedCheckBox, new Label("Render every (steps):"), renderEveryStepsSpinner);
+	    
+	    throughputLabel = new Label("Steps/s: -");
+	    
+	    // Adds the timeline used to replay a trajectory, which is hidden until one is loaded.
+	    timelineSlider = new Slider(0, 1, 0);
+	    timelineSlider.setBlockIncrement(1);
+	    timelineSlider.setPrefWidth(500);
+	    replayStepLabel = new Label();
+	    
+	    // Shows the step the slider has been moved to.
+	    timelineSlider.valueProperty().addListener(new ChangeListener<Number>() {
+	        @Override
+	        public void changed(ObservableValue<? extends Number> value, Number oldValue, Number newValue) {
+	            if (replayFrames != null) {
+	            		showReplayStep(Math.round(newValue.doubleValue()));
+	            }
+	        }
+	    });
+	    
+	    replayPane = new HBox(10);
+	    replayPane.getChildren().addAll(new Label("Step:"), timelineSlider, replayStepLabel);
+	    replayPane.setVisible(false);
+	    replayPane.setManaged(false);
+	
+	    // Add the grid, buttons and speed controls to the rootPane.
 	    rootPane = new VBox(5);
-	    rootPane.getChildren().addAll(buttonPane, gridPane);
+	    rootPane.getChildren().addAll(buttonPane, speedControlPane, throughputLabel, replayPane, gridPane);
 	
 	    // Adds the rootpane to the scene.
 	    mainScene = new Scene(rootPane,700,700);
@@ -165,14 +313,142 @@ public class CellularAutomataGUI extends Application {
 	    mainStage.show();
 	}
     
-    // Manages the simulation by repeatedly calling the update grid method and pausing the simulation
-    // until that method has finished executing.
+    // Manages the simulation by updating the grid a number of times for each frame. Normally the grid is
+    // updated "steps per frame" times and then rendered. In max speed mode the grid is updated for as long
+    // as the frame budget allows and is only rendered every "render every" steps.
     private void manageSimulation() {
-    		timeline.stop();
-		rules.createUpdatedGrid();
-		timeline.play();
+    		throughputMonitor.startFrame();
+    		
+    		if (maxSpeedCheckBox.isSelected()) {
+    			int renderEverySteps = renderEveryStepsSpinner.getValue();
+    			
+    			while (stepsSinceLastRender < renderEverySteps && throughputMonitor.hasTimeLeftInFrame(MAX_SPEED_FRAME_BUDGET)) {
+    				this.updateGridWithoutRendering();
+    			}
+    			if (stepsSinceLastRender >= renderEverySteps) {
+    				this.renderGrid();
+    			}
+    		}
+    		else {
+    			int stepsPerFrame = stepsPerFrameSpinner.getValue();
+    			
+    			for (int i=0; i<stepsPerFrame; i++) {
+    				this.updateGridWithoutRendering();
+    			}
+    			this.renderGrid();
+    		}
+    		
+    		String report = throughputMonitor.finishFrame();
+    		if (report != null) {
+    			throughputLabel.setText(report);
+    		}
 	}
     
+    // Carries out a single update of the grid, leaving the grid colours unchanged.
+    private void updateGridWithoutRendering() {
+    		rules.createUpdatedGrid(false);
+    		throughputMonitor.recordStep(rules.getLastCopyPhaseTime(), rules.getLastDiffusionPhaseTime(),
+    				rules.getLastConsumptionPhaseTime());
+    		if (metrics != null) {
+    			metrics.recordPhase(SimulationMetrics.Phase.DIFFUSION, rules.getLastDiffusionPhaseTime());
+    			metrics.recordPhase(rules.getLastUpdateCheckedForCellDivision() ? SimulationMetrics.Phase.DIVISION
+    					: SimulationMetrics.Phase.CONSUMPTION, rules.getLastConsumptionPhaseTime());
+    			metrics.recordStep(grid.getGridWidth()*grid.getGridHeight(), rules.getBirthsInLastUpdate(),
+    					rules.getDeathsInLastUpdate());
+    		}
+    		stepsSinceLastRender++;
+    }
+    
+    // Updates the grid colours to show the current nutrient levels.
+    private void renderGrid() {
+    		rules.updateGridColours();
+    		throughputMonitor.recordRender(rules.getLastRenderPhaseTime());
+    		if (metrics != null) metrics.recordPhase(SimulationMetrics.Phase.RENDERING, rules.getLastRenderPhaseTime());
+    		stepsSinceLastRender = 0;
+    }
+    
+    // Stops the simulation loop and renders any updates that have not yet been shown.
+    private void stopSimulation() {
+    		simulationLoop.stop();
+    		
+    		if (stepsSinceLastRender > 0) {
+    			this.renderGrid();
+    		}
+    }
+    
+    // Shows the first step of a trajectory on a new grid and shows the timeline used to replay it.
+    private void startReplay(TrajectoryReader reader) {
+    		stopReplay();
+    		
+    		replayFrames = new TrajectoryFrameCache(reader, TrajectoryFrameCache.returnCapacityForMemory(
+    				reader.getGridWidth(), reader.getGridHeight(), REPLAY_CACHE_MEMORY));
+    		
+    		// The new grid uses the same cell size as the current one and starts with no bacteria.
+    		Cell currentCell = grid.getCells()[0][0];
+    		grid = new Grid(reader.getGridHeight(), reader.getGridWidth(), currentCell.returnHeight(), currentCell.returnWidth());
+    		displayedReplayStates = new byte[reader.getGridWidth()*reader.getGridHeight()];
+    		displayedReplayStep = -1;
+    		gridPane.getChildren().clear();
+    		addGridToGridpane();
+    		
+    		timelineSlider.setMin(reader.getFirstStep());
+    		timelineSlider.setMax(reader.getLastStep());
+    		timelineSlider.setMajorTickUnit(Math.max(1, reader.getLastStep() - reader.getFirstStep()));
+    		timelineSlider.setValue(reader.getFirstStep());
+    		showReplayStep(reader.getFirstStep());
+    		
+    		replayPane.setVisible(true);
+    		replayPane.setManaged(true);
+    }
+    
+    // Shows the bacteria at a step of the trajectory being replayed. Only the grid spaces that are
+    // different from the step currently shown are changed.
+    private void showReplayStep(long step) {
+    		if (step == displayedReplayStep) return;
+    		
+    		byte[] states;
+    		try {
+    			states = replayFrames.getBacteriaStates(step);
+    		}
+    		catch(IOException e) {
+    			replayStepLabel.setText("Cannot read step " + step + ": " + e.getMessage());
+    			return;
+    		}
+    		
+    		int gridWidth = grid.getGridWidth();
+    		for (int i=0; i<states.length; i++) {
+    			if (states[i] != displayedReplayStates[i]) {
+    				int x = i % gridWidth;
+    				int y = i / gridWidth;
+    				
+    				if (states[i] == BacterialColonyEngine.ALIVE) grid.setBacteriumAlive(x, y);
+    				else if (states[i] == BacterialColonyEngine.REMAINS) grid.setBacteriumDead(x, y);
+    				else grid.setBacteriumEmpty(x, y);
+    			}
+    		}
+    		System.arraycopy(states, 0, displayedReplayStates, 0, states.length);
+    		displayedReplayStep = step;
+    		
+    		replayStepLabel.setText(step + " / " + replayFrames.getReader().getLastStep());
+    }
+    
+    // Closes the trajectory being replayed, if there is one, and hides the timeline.
+    private void stopReplay() {
+    		if (replayFrames == null) return;
+    		
+    		try {
+    			replayFrames.getReader().close();
+    		}
+    		catch(IOException e) {
+    			// Nothing more is read from the trajectory, so it doesn't matter if it can't be closed.
+    		}
+    		replayFrames = null;
+    		displayedReplayStates = null;
+    		
+    		replayPane.setVisible(false);
+    		replayPane.setManaged(false);
+    }
+    
     // Adds the cellular automata Grid to the gridpane to show them on screen.
     private void addGridToGridpane() {
 	    Cell cellsOfGrid[][] = grid.getCells();
@@ -0,0 +1,113 @@
+/* *****************************************************************************
+* Description: A class used to store the shape of the colony at a single step,
+* as measured by MorphologyAnalyser: the number of boxes of each size needed
+* to cover the colony and the box-counting fractal dimension worked out from
+* them, the density of the colony and the number of branches at each distance
+* from the grid space the first bacterium is placed in.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Locale;
+
+public final class ColonyMorphology {
+
+	private final long stepNumber;
+	private final int[] boxSizes;
+	private final long[] boxCounts;
+	private final double fractalDimension;
+	private final double colonyRadius;
+	private final double[] radialDensity;
+	private final int[] radialBranchCounts;
+
+	// Constructor.
+	public ColonyMorphology(long stepNumber, int[] boxSizes, long[] boxCounts, double fractalDimension, double colonyRadius,
+			double[] radialDensity, int[] radialBranchCounts) {
+		this.stepNumber = stepNumber;
+		this.boxSizes = boxSizes;
+		this.boxCounts = boxCounts;
+		this.fractalDimension = fractalDimension;
+		this.colonyRadius = colonyRadius;
+		this.radialDensity = radialDensity;
+		this.radialBranchCounts = radialBranchCounts;
+	}
+
+	// Returns the step the colony was measured at.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the side lengths of the boxes used for box counting, in grid spaces.
+	public int[] getBoxSizes() {
+		return boxSizes.clone();
+	}
+
+	// Returns the number of boxes of each size that contain part of the colony.
+	public long[] getBoxCounts() {
+		return boxCounts.clone();
+	}
+
+	// Returns the box-counting fractal dimension, or NaN if the colony is too small to measure it.
+	public double getFractalDimension() {
+		return fractalDimension;
+	}
+
+	// Returns the distance from the grid space the first bacterium is placed in to the furthest grid space
+	// in the colony.
+	public double getColonyRadius() {
+		return colonyRadius;
+	}
+
+	// Returns the fraction of the grid spaces in each ring around the starting grid space that are part of
+	// the colony. Ring r holds the grid spaces at a distance of at least r and less than r + 1.
+	public double[] getRadialDensity() {
+		return radialDensity.clone();
+	}
+
+	// Returns the number of separate branches of the colony that cross the circle of each whole number
+	// radius around the starting grid space, up to the radius of the colony.
+	public int[] getRadialBranchCounts() {
+		return radialBranchCounts.clone();
+	}
+
+	// Returns the number of branches crossing the circle at half the radius of the colony.
+	public int getBranchCount() {
+		if (radialBranchCounts.length == 0) return 0;
+		return radialBranchCounts[Math.min(radialBranchCounts.length - 1, (int) Math.round(colonyRadius / 2))];
+	}
+
+	// Returns the measurements as a single line of JSON.
+	public String createJsonLine() {
+		StringBuilder line = new StringBuilder();
+		line.append("{\"step\":").append(stepNumber);
+		line.append(",\"fractal_dimension\":").append(returnJsonNumber(fractalDimension));
+		line.append(",\"colony_radius\":").append(returnJsonNumber(colonyRadius));
+		line.append(",\"branch_count\":").append(getBranchCount());
+
+		line.append(",\"box_sizes\":[");
+		for (int i=0; i<boxSizes.length; i++) {
+			line.append(i > 0 ? "," : "").append(boxSizes[i]);
+		}
+		line.append("],\"box_counts\":[");
+		for (int i=0; i<boxCounts.length; i++) {
+			line.append(i > 0 ? "," : "").append(boxCounts[i]);
+		}
+		line.append("],\"radial_density\":[");
+		for (int i=0; i<radialDensity.length; i++) {
+			line.append(i > 0 ? "," : "").append(returnJsonNumber(radialDensity[i]));
+		}
+		line.append("],\"radial_branch_counts\":[");
+		for (int i=0; i<radialBranchCounts.length; i++) {
+			line.append(i > 0 ? "," : "").append(radialBranchCounts[i]);
+		}
+		return line.append("]}").toString();
+	}
+
+	// Returns a number as JSON, which has no way of writing NaN.
+	private static String returnJsonNumber(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) return "null";
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+}
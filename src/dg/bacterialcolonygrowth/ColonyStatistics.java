@@ -0,0 +1,77 @@
+/* *****************************************************************************
+* Description: A class used to store the statistics of the colony at a single
+* step: the number of alive bacteria and remains, the total nutrient left in
+* the grid, and the radius and perimeter of the colony.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Locale;
+
+public final class ColonyStatistics {
+
+	// Names of the values in a row of statistics.
+	public static final String CSV_HEADER = "step,alive,remains,colony_size,total_nutrient,colony_radius,colony_perimeter";
+
+	private final long stepNumber;
+	private final int numberOfAliveBacteria;
+	private final int numberOfRemains;
+	private final double totalNutrient;
+	private final double colonyRadius;
+	private final long colonyPerimeter;
+
+	// Constructor.
+	public ColonyStatistics(long stepNumber, int numberOfAliveBacteria, int numberOfRemains, double totalNutrient,
+			double colonyRadius, long colonyPerimeter) {
+		this.stepNumber = stepNumber;
+		this.numberOfAliveBacteria = numberOfAliveBacteria;
+		this.numberOfRemains = numberOfRemains;
+		this.totalNutrient = totalNutrient;
+		this.colonyRadius = colonyRadius;
+		this.colonyPerimeter = colonyPerimeter;
+	}
+
+	// Returns the step the statistics were taken at.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the number of grid spaces with an alive bacterium.
+	public int getNumberOfAliveBacteria() {
+		return numberOfAliveBacteria;
+	}
+
+	// Returns the number of grid spaces with the remains of a dead bacterium.
+	public int getNumberOfRemains() {
+		return numberOfRemains;
+	}
+
+	// Returns the number of grid spaces that are part of the colony, alive or dead.
+	public int getColonySize() {
+		return numberOfAliveBacteria + numberOfRemains;
+	}
+
+	// Returns the total amount of nutrient in the grid.
+	public double getTotalNutrient() {
+		return totalNutrient;
+	}
+
+	// Returns the distance from the grid space the first bacterium is placed in to the furthest grid space
+	// in the colony.
+	public double getColonyRadius() {
+		return colonyRadius;
+	}
+
+	// Returns the number of grid space edges between the colony and the rest of the grid.
+	public long getColonyPerimeter() {
+		return colonyPerimeter;
+	}
+
+	// Returns the statistics as a row of comma separated values, in the same order as CSV_HEADER.
+	public String createCsvRow() {
+		return String.format(Locale.ROOT, "%d,%d,%d,%d,%.4f,%.4f,%d", stepNumber, numberOfAliveBacteria, numberOfRemains,
+				getColonySize(), totalNutrient, colonyRadius, colonyPerimeter);
+	}
+}
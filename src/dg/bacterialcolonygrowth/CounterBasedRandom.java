@@ -0,0 +1,63 @@
+/* *****************************************************************************
+* Description: A class used to generate the random numbers used by the
+* simulation. Each number is a function of a seed, the time step and the
+* position in the grid, so the numbers don't depend on the order in which the
+* grid spaces are updated and the whole state of the generator is its seed.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public final class CounterBasedRandom {
+
+	// Time step used for the random numbers drawn when the initial nutrient pattern is created.
+	public static final long INITIAL_PATTERN_STEP = -1;
+
+	private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+	private final long seed;
+
+	// Constructor.
+	public CounterBasedRandom(long seed) {
+		this.seed = seed;
+	}
+
+	// Returns the seed of the generator.
+	public long getSeed() {
+		return seed;
+	}
+
+	// Returns a generator for one of several streams of random numbers drawn from the same seed, such as one
+	// for each species. Stream 0 uses the seed itself. The other streams use the seed mixed with the
+	// stream number, so they don't draw the same numbers as stream 0 of a nearby seed, and runs with
+	// consecutive seeds stay independent.
+	public static CounterBasedRandom createStream(long seed, int stream) {
+		if (stream == 0) return new CounterBasedRandom(seed);
+		return new CounterBasedRandom(mix(seed ^ GOLDEN_RATIO * stream));
+	}
+
+	// Returns a random number from 0 up to 1 for the given time step and grid position.
+	public double nextDouble(long step, int position) {
+		return (next(step, position) >>> 11) * 0x1.0p-53;
+	}
+
+	// Returns a random integer from 0 up to, but not including, bound for the given time step and grid
+	// position.
+	public int nextInt(long step, int position, int bound) {
+		return (int) (nextDouble(step, position) * bound);
+	}
+
+	// Returns 64 random bits for the given time step and grid position.
+	private long next(long step, int position) {
+		long z = mix(seed + GOLDEN_RATIO * (step + 1));
+		return mix(z + GOLDEN_RATIO * (position + 1L));
+	}
+
+	// The finalising function of the SplitMix64 generator.
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
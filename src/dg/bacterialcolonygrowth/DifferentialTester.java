@@ -0,0 +1,266 @@
+/* *****************************************************************************
+* Description: A command line program that checks BacterialColonyEngine
+* against CellularAutomataBacteriaRules, the original implementation using
+* la4j, which is kept as the reference for how the colony should grow.
+*
+* Both are created from the same randomly generated config, with a random grid
+* size, boundary condition, crowding function, nutrient pattern and rates, and
+* the same seed, so they draw the same random numbers. They are then updated
+* together, and after each step the bacteria states must be the same and the
+* nutrient levels the same to within a tolerance. The first grid space where
+* they differ is reported, along with the config and seed to reproduce it.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+public class DifferentialTester {
+
+	private static final String USAGE =
+			"Usage: DifferentialTester [options]\n"
+			+ "Options:\n"
+			+ "  --configs <n>     Number of random configs to test (default: 200)\n"
+			+ "  --steps <n>       Number of steps to compare for each config (default: 100)\n"
+			+ "  --seed <s>        Seed used to generate the configs and seeds (default: random)\n"
+			+ "  --tolerance <t>   Largest difference allowed between nutrient levels, relative to levels above 1\n"
+			+ "                    (default: 1e-9)\n"
+			+ "  --threads <n>     Number of threads the engine updates the grid on (default: 1)";
+
+	private static final String[] BOUNDARY_CONDITIONS = {"reflecting", "absorbent", "periodic"};
+	private static final String[] NUTRIENT_PATTERNS = {"default", "random", "absorbingmiddle"};
+
+	// Largest width and height of the random grids.
+	private static final int MAXIMUM_GRID_SIZE = 40;
+
+	private int numberOfConfigs = 200;
+	private int numberOfSteps = 100;
+	private long seed = new Random().nextLong();
+	private double tolerance = 1e-9;
+	private int numberOfThreads = 1;
+
+	// The first grid space where the engine and the rules differ.
+	public static final class Divergence {
+		private final SimulationConfig config;
+		private final long seed;
+		private final long stepNumber;
+		private final int x;
+		private final int y;
+		private final String quantity;
+		private final String expected;
+		private final String actual;
+
+		// Constructor.
+		Divergence(SimulationConfig config, long seed, long stepNumber, int x, int y, String quantity, String expected,
+				String actual) {
+			this.config = config;
+			this.seed = seed;
+			this.stepNumber = stepNumber;
+			this.x = x;
+			this.y = y;
+			this.quantity = quantity;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		// Returns the config both were created from.
+		public SimulationConfig getConfig() {
+			return config;
+		}
+
+		// Returns the seed both were created with.
+		public long getSeed() {
+			return seed;
+		}
+
+		// Returns the number of steps carried out when they differed, 0 if they differed from the start.
+		public long getStepNumber() {
+			return stepNumber;
+		}
+
+		// Returns the x coordinate of the grid space.
+		public int getX() {
+			return x;
+		}
+
+		// Returns the y coordinate of the grid space.
+		public int getY() {
+			return y;
+		}
+
+		// Returns what differed, "bacterium state" or "nutrient level".
+		public String getQuantity() {
+			return quantity;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("After step %d the %s at (%d, %d) is %s in the reference rules but %s in the engine.%n"
+					+ "Seed: %d%nConfig: %s", stepNumber, quantity, x, y, expected, actual, seed, describeConfig(config));
+		}
+	}
+
+	// Reads the command line arguments.
+	private DifferentialTester(String[] args) throws IllegalArgumentException {
+		for (int i=0; i<args.length; i++) {
+			if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+
+			String option = args[i];
+			String value = args[++i];
+
+			if (option.equals("--configs")) numberOfConfigs = Integer.parseInt(value);
+			else if (option.equals("--steps")) numberOfSteps = Integer.parseInt(value);
+			else if (option.equals("--seed")) seed = Long.parseLong(value);
+			else if (option.equals("--tolerance")) tolerance = Double.parseDouble(value);
+			else if (option.equals("--threads")) numberOfThreads = Integer.parseInt(value);
+			else throw new IllegalArgumentException("Unknown option " + option + ".");
+		}
+
+		if (numberOfConfigs < 1) throw new IllegalArgumentException("Number of configs must be an integer greater than 0.");
+		if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must not be negative.");
+		if (!(tolerance >= 0)) throw new IllegalArgumentException("Tolerance must not be negative.");
+		if (numberOfThreads < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+	}
+
+	// Creates a config with random parameters. The grid is kept small, so the la4j update matrix stays quick
+	// to multiply, and its height is large enough for the first bacterium and the nutrient pattern.
+	static SimulationConfig createRandomConfig(Random random) {
+		String nutrientPattern = NUTRIENT_PATTERNS[random.nextInt(NUTRIENT_PATTERNS.length)];
+		int gridWidth = 1 + random.nextInt(MAXIMUM_GRID_SIZE);
+		int minimumGridHeight = Math.max(gridWidth/2 + 1, nutrientPattern.equals("absorbingmiddle") ? 3 : 1);
+		int gridHeight = minimumGridHeight + random.nextInt(MAXIMUM_GRID_SIZE - minimumGridHeight + 1);
+
+		int[] crowdingFunctionValues = new int[9];
+		for (int i=0; i<crowdingFunctionValues.length; i++) {
+			crowdingFunctionValues[i] = random.nextInt(61);
+		}
+
+		return new SimulationConfig.Builder()
+				.setGridWidth(gridWidth)
+				.setGridHeight(gridHeight)
+				.setDiffusionRate(random.nextDouble())
+				.setNutrientForSustenance(random.nextInt(21))
+				.setNutrientForGrowth(random.nextInt(81))
+				.setThresholdForCellDivision(random.nextInt(3001))
+				.setCrowdingFunctionValues(crowdingFunctionValues)
+				.setNumberOfTimestepsForCellDivision(1 + random.nextInt(10))
+				.setBoundaryCondition(BOUNDARY_CONDITIONS[random.nextInt(BOUNDARY_CONDITIONS.length)])
+				.setNutrientLevelPatternChoice(nutrientPattern)
+				.setProbabilityOfCellDivision(random.nextDouble())
+				.build();
+	}
+
+	// Creates the reference rules and the engine from the config and seed, and updates them together for
+	// the number of steps given. Returns the first grid space where they differ, or null if they never do.
+	static Divergence compare(SimulationConfig config, long seed, int numberOfSteps, double tolerance, int numberOfThreads)
+			throws IOException {
+		CellularAutomataBacteriaRules rules = new CellularAutomataBacteriaRules(config, seed);
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, seed);
+		engine.setNumberOfThreads(numberOfThreads);
+
+		try {
+			Divergence divergence = findDivergence(rules, engine, tolerance);
+			for (int step=0; step<numberOfSteps && divergence == null; step++) {
+				rules.createUpdatedGrid(false);
+				engine.createUpdatedGrid();
+				divergence = findDivergence(rules, engine, tolerance);
+			}
+			return divergence;
+		}
+		finally {
+			engine.setNumberOfThreads(1);
+		}
+	}
+
+	// Returns the first grid space, in the order of the nutrient matrix, where the bacteria states of the
+	// rules and the engine differ or their nutrient levels differ by more than the tolerance, or null if
+	// there isn't one. The tolerance is relative for nutrient levels above 1.
+	static Divergence findDivergence(CellularAutomataBacteriaRules rules, BacterialColonyEngine engine, double tolerance) {
+		Grid grid = rules.getCellularAutomataGrid();
+		SimulationConfig config = engine.createConfig();
+
+		for (int y=0; y<engine.getGridHeight(); y++) {
+			for (int x=0; x<engine.getGridWidth(); x++) {
+				byte expectedState = returnBacteriumState(grid, x, y);
+				byte actualState = engine.getBacteriumState(x, y);
+				if (expectedState != actualState) {
+					return new Divergence(config, engine.getRandomSeed(), engine.getStepNumber(), x, y, "bacterium state",
+							returnStateName(expectedState), returnStateName(actualState));
+				}
+
+				int i = engine.returnPositionInNutrientMatrix(x, y);
+				double expectedNutrient = rules.getNutrientLevelOfCell(i);
+				double actualNutrient = engine.getNutrientLevelOfCell(i);
+				if (!(Math.abs(expectedNutrient - actualNutrient) <= tolerance*Math.max(1, Math.abs(expectedNutrient)))) {
+					return new Divergence(config, engine.getRandomSeed(), engine.getStepNumber(), x, y, "nutrient level",
+							Double.toString(expectedNutrient), Double.toString(actualNutrient));
+				}
+			}
+		}
+		return null;
+	}
+
+	// Returns the state of a grid space of the rules' grid, using the engine's values.
+	private static byte returnBacteriumState(Grid grid, int x, int y) {
+		if (grid.cellAlive(x, y)) return BacterialColonyEngine.ALIVE;
+		if (grid.cellAliveOrContainsRemains(x, y)) return BacterialColonyEngine.REMAINS;
+		return BacterialColonyEngine.EMPTY;
+	}
+
+	// Returns the name of a bacterium state.
+	private static String returnStateName(byte state) {
+		if (state == BacterialColonyEngine.ALIVE) return "alive";
+		if (state == BacterialColonyEngine.REMAINS) return "remains";
+		return "empty";
+	}
+
+	// Returns the parameters of a config on one line, in the form used by input files.
+	static String describeConfig(SimulationConfig config) {
+		return String.format(Locale.ROOT, "gridWidth=%d gridHeight=%d boundaryCondition=%s nutrientPattern=%s diffusionRate=%s "
+				+ "nutrientForSustenance=%d nutrientForGrowth=%d thresholdForCellDivision=%d crowdingFunction=%s "
+				+ "timestepsForCellDivision=%d probabilityOfCellDivision=%s", config.getGridWidth(), config.getGridHeight(),
+				config.getBoundaryCondition(), config.getNutrientLevelPatternChoice(), config.getDiffusionRate(),
+				config.getNutrientForSustenance(), config.getNutrientForGrowth(), config.getThresholdForCellDivision(),
+				Arrays.toString(config.getCrowdingFunctionValues()), config.getNumberOfTimestepsForCellDivision(),
+				config.getProbabilityOfCellDivision());
+	}
+
+	// Compares the engine with the rules on each random config in turn, stopping at the first divergence.
+	// Returns true if there was none.
+	private boolean run() throws IOException {
+		Random random = new Random(seed);
+		System.out.println("Comparing " + numberOfConfigs + " random configs for " + numberOfSteps + " steps, seed " + seed + ".");
+
+		for (int c=0; c<numberOfConfigs; c++) {
+			SimulationConfig config = createRandomConfig(random);
+			Divergence divergence = compare(config, random.nextLong(), numberOfSteps, tolerance, numberOfThreads);
+			if (divergence != null) {
+				System.out.println("Config " + (c + 1) + " diverged. " + divergence);
+				return false;
+			}
+		}
+
+		System.out.println("The engine matched the reference rules for every config.");
+		return true;
+	}
+
+	public static void main(String[] args) {
+		try {
+			if (!new DifferentialTester(args).run()) System.exit(1);
+		}
+		catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* *****************************************************************************
+* Description: A class used to record custom JDK Flight Recorder events for
+* each step of BacterialColonyEngine and for reading and writing checkpoints
+* and exports, so that slow steps can be lined up with garbage collection
+* pauses, safepoints and I/O in a recording.
+*
+* The events themselves are in 'src/jfr', which is only compiled on a JDK that
+* has jdk.jfr, and are loaded here by name, so the rest of the program still
+* builds and runs on a JDK without it. When they can't be loaded the recorder
+* is null, and as it is a static final field every check of it costs nothing
+* once compiled. When they are loaded, an event is only created while a
+* recording that has it enabled is running.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+
+public final class FlightRecorderEvents {
+
+	// Records the events, implemented in 'src/jfr'. Each begin method returns the event that has been
+	// started, or null if that kind of event isn't being recorded, and the end methods fill in the event
+	// and commit it.
+	public interface Recorder {
+		Object beginStep();
+		void endStep(Object event, long stepNumber, int gridWidth, int gridHeight, int numberOfBands, boolean cellDivisionStep,
+				int births, int deaths, long diffusionTime, long consumptionAndCellDivisionTime);
+		Object beginInputOutput();
+		void endInputOutput(Object event, String operation, File file, long bytes);
+	}
+
+	private static final String RECORDER_CLASS = "dg.bacterialcolonygrowth.JfrEventRecorder";
+	private static final Recorder RECORDER = loadRecorder();
+
+	private FlightRecorderEvents() {
+	}
+
+	// Loads the recorder, returning null if it wasn't compiled or the JVM has no flight recorder.
+	private static Recorder loadRecorder() {
+		try {
+			return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	// Returns true if the events can be recorded in this JVM.
+	public static boolean isAvailable() {
+		return RECORDER != null;
+	}
+
+	// Starts the event for a step, returning null if step events aren't being recorded.
+	static Object beginStep() {
+		return RECORDER != null ? RECORDER.beginStep() : null;
+	}
+
+	// Ends and commits the event for a step. The times are in nanoseconds.
+	static void endStep(Object event, long stepNumber, int gridWidth, int gridHeight, int numberOfBands, boolean cellDivisionStep,
+			int births, int deaths, long diffusionTime, long consumptionAndCellDivisionTime) {
+		if (event != null) {
+			RECORDER.endStep(event, stepNumber, gridWidth, gridHeight, numberOfBands, cellDivisionStep, births, deaths,
+					diffusionTime, consumptionAndCellDivisionTime);
+		}
+	}
+
+	// Starts the event for reading or writing a file, returning null if these events aren't being recorded.
+	static Object beginInputOutput() {
+		return RECORDER != null ? RECORDER.beginInputOutput() : null;
+	}
+
+	// Ends and commits the event for reading or writing a file. Operations that fail aren't ended, so they
+	// aren't recorded.
+	static void endInputOutput(Object event, String operation, File file, long bytes) {
+		if (event != null) RECORDER.endInputOutput(event, operation, file, bytes);
+	}
+}
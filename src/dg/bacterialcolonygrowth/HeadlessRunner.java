@@ -0,0 +1,529 @@
+/* *****************************************************************************
+* Description: A command line program that runs the simulation without a
+* display. It only uses BacterialColonyEngine, so neither JavaFX nor la4j are
+* needed to run it.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.management.JMException;
+
+public class HeadlessRunner {
+
+	private static final String USAGE =
+			"Usage: HeadlessRunner <input file or checkpoint> <number of steps> [options]\n"
+			+ "Options:\n"
+			+ "  --seed <n>                Seed for the random numbers (default: random, or the seed in the checkpoint)\n"
+			+ "  --threads <n>             Number of threads used to update the grid (default: 1)\n"
+			+ "  --checkpoint <file>       Save a checkpoint of the simulation at the end of the run\n"
+			+ "  --checkpoint-every <n>    Also save the checkpoint every n steps\n"
+			+ "  --trajectory <file>       Record the bacteria states at every step to a trajectory file\n"
+			+ "  --trajectory-keyframe-every <n>  Steps between full keyframes in the trajectory (default: 100)\n"
+			+ "  --trajectory-queue <n>    Number of steps waiting to be written before the run waits (default: 4)\n"
+			+ "  --report-every <n>        Print a progress line every n steps\n"
+			+ "  --statistics <file>       Write the colony statistics at each step as comma separated values\n"
+			+ "  --statistics-every <n>    Steps between rows of colony statistics (default: 1)\n"
+			+ "  --morphology <file>       Write the fractal dimension, branch counts and radial density of the colony\n"
+			+ "                            at the end of the run, as JSON Lines\n"
+			+ "  --morphology-every <n>    Also measure the colony every n steps\n"
+			+ "  --morphology-threads <n>  Number of threads used to measure the colony (default: number of cores)\n"
+			+ "  --metrics <t>             Collect timing metrics, publish them through JMX and print them every t\n"
+			+ "                            seconds, or only at the end if t is 0\n"
+			+ "  --state-output <file>     Write the final bacteria states (0 empty, 1 alive, 2 remains)\n"
+			+ "  --nutrient-output <file>  Write the final nutrient levels as comma separated rows\n"
+			+ "  --state-npy <file>        Save the final bacteria states as a NumPy .npy array\n"
+			+ "  --nutrient-npy <file>     Save the final nutrient levels as a NumPy .npy array\n"
+			+ "  --npy-every <n>           Save both arrays every n steps into the array directory\n"
+			+ "  --npy-directory <dir>     Directory for the arrays saved every n steps (default: .)\n"
+			+ "  --snapshot-directory <dir>  Save snapshots in the background into this directory\n"
+			+ "  --snapshot-every <n>      Steps between snapshots\n"
+			+ "  --snapshot-seconds <t>    Seconds between snapshots\n"
+			+ "  --snapshot-format <f>     'checkpoint', 'npy' or 'both' (default: checkpoint)\n"
+			+ "  --snapshot-queue <n>      Number of snapshots waiting to be saved before the policy applies (default: 2)\n"
+			+ "  --snapshot-policy <p>     When the queue is full, 'wait' for it, 'drop' the new snapshot or 'coalesce'\n"
+			+ "                            it with the newest waiting snapshot (default: wait)\n"
+			+ "  --pattern-image <file>    Save the final bacteria pattern as a PNG image\n"
+			+ "  --nutrient-image <file>   Save the final nutrient levels as a PNG image\n"
+			+ "  --image-every <n>         Save both images every n steps into the image directory\n"
+			+ "  --image-directory <dir>   Directory for the images saved every n steps (default: .)\n"
+			+ "  --image-scale <n>         Number of pixels along each side of a grid space (default: 1)\n"
+			+ "  --image-threads <n>       Number of threads used to encode images (default: number of cores)\n"
+			+ "  --timelapse <path>        Record a time-lapse to a GIF file, or to a directory of PNG images\n"
+			+ "  --timelapse-every <n>     Steps between the frames of the time-lapse (default: 10)\n"
+			+ "  --timelapse-format <f>    'gif' or 'png' (default: gif if the path ends in .gif, otherwise png)\n"
+			+ "  --timelapse-image <i>     'pattern' or 'nutrient' (default: pattern)\n"
+			+ "  --timelapse-queue <n>     Number of frames waiting to be encoded before frames are dropped (default: 16)\n"
+			+ "  --timelapse-policy <p>    When the queue is full, 'drop' the new frame or 'coalesce' it with the\n"
+			+ "                            newest waiting frame (default: coalesce)\n"
+			+ "  --timelapse-delay <n>     Delay between GIF frames in hundredths of a second (default: 10)";
+
+	private File inputFile;
+	private long numberOfSteps;
+	private Long seed;
+	private int numberOfThreads = 1;
+	private File checkpointFile;
+	private long checkpointEvery = 0;
+	private long reportEvery = 0;
+	private Double metricsSeconds;
+	private File statisticsFile;
+	private long statisticsEvery = 1;
+	private File morphologyFile;
+	private long morphologyEvery = 0;
+	private int morphologyThreads = Runtime.getRuntime().availableProcessors();
+	private File trajectoryFile;
+	private int trajectoryKeyframeEvery = 100;
+	private int trajectoryQueueSize = 4;
+	private File stateOutputFile;
+	private File nutrientOutputFile;
+	private File stateNpyFile;
+	private File nutrientNpyFile;
+	private long npyEvery = 0;
+	private File npyDirectory = new File(".");
+	private File snapshotDirectory;
+	private long snapshotEvery = 0;
+	private double snapshotSeconds = 0;
+	private SnapshotScheduler.OutputFormat snapshotFormat = SnapshotScheduler.OutputFormat.CHECKPOINT;
+	private int snapshotQueueSize = 2;
+	private SnapshotScheduler.BackpressurePolicy snapshotPolicy = SnapshotScheduler.BackpressurePolicy.WAIT;
+	private File patternImageFile;
+	private File nutrientImageFile;
+	private long imageEvery = 0;
+	private File imageDirectory = new File(".");
+	private int imageScale = 1;
+	private int imageThreads = Runtime.getRuntime().availableProcessors();
+	private File timeLapseOutput;
+	private long timeLapseEvery = 10;
+	private TimeLapseRecorder.OutputFormat timeLapseFormat;
+	private TimeLapseRecorder.ImageType timeLapseImage = TimeLapseRecorder.ImageType.BACTERIA_PATTERN;
+	private int timeLapseQueueSize = 16;
+	private TimeLapseRecorder.BackpressurePolicy timeLapsePolicy = TimeLapseRecorder.BackpressurePolicy.COALESCE;
+	private int timeLapseDelay = 10;
+
+	// Reads the command line arguments.
+	private HeadlessRunner(String[] args) throws IllegalArgumentException {
+		if (args.length < 2) throw new IllegalArgumentException("An input file and a number of steps are required.");
+
+		inputFile = new File(args[0]);
+		numberOfSteps = Long.parseLong(args[1]);
+		if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must be a non negative integer.");
+
+		for (int i=2; i<args.length; i++) {
+			if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+
+			String option = args[i];
+			String value = args[++i];
+
+			if (option.equals("--seed")) seed = Long.parseLong(value);
+			else if (option.equals("--threads")) numberOfThreads = Integer.parseInt(value);
+			else if (option.equals("--checkpoint")) checkpointFile = new File(value);
+			else if (option.equals("--checkpoint-every")) checkpointEvery = Long.parseLong(value);
+			else if (option.equals("--trajectory")) trajectoryFile = new File(value);
+			else if (option.equals("--trajectory-keyframe-every")) trajectoryKeyframeEvery = Integer.parseInt(value);
+			else if (option.equals("--trajectory-queue")) trajectoryQueueSize = Integer.parseInt(value);
+			else if (option.equals("--report-every")) reportEvery = Long.parseLong(value);
+			else if (option.equals("--metrics")) metricsSeconds = Double.parseDouble(value);
+			else if (option.equals("--statistics")) statisticsFile = new File(value);
+			else if (option.equals("--statistics-every")) statisticsEvery = Long.parseLong(value);
+			else if (option.equals("--morphology")) morphologyFile = new File(value);
+			else if (option.equals("--morphology-every")) morphologyEvery = Long.parseLong(value);
+			else if (option.equals("--morphology-threads")) morphologyThreads = Integer.parseInt(value);
+			else if (option.equals("--state-output")) stateOutputFile = new File(value);
+			else if (option.equals("--nutrient-output")) nutrientOutputFile = new File(value);
+			else if (option.equals("--state-npy")) stateNpyFile = new File(value);
+			else if (option.equals("--nutrient-npy")) nutrientNpyFile = new File(value);
+			else if (option.equals("--npy-every")) npyEvery = Long.parseLong(value);
+			else if (option.equals("--npy-directory")) npyDirectory = new File(value);
+			else if (option.equals("--snapshot-directory")) snapshotDirectory = new File(value);
+			else if (option.equals("--snapshot-every")) snapshotEvery = Long.parseLong(value);
+			else if (option.equals("--snapshot-seconds")) snapshotSeconds = Double.parseDouble(value);
+			else if (option.equals("--snapshot-format")) snapshotFormat = returnSnapshotFormat(value);
+			else if (option.equals("--snapshot-queue")) snapshotQueueSize = Integer.parseInt(value);
+			else if (option.equals("--snapshot-policy")) snapshotPolicy = returnSnapshotPolicy(value);
+			else if (option.equals("--pattern-image")) patternImageFile = new File(value);
+			else if (option.equals("--nutrient-image")) nutrientImageFile = new File(value);
+			else if (option.equals("--image-every")) imageEvery = Long.parseLong(value);
+			else if (option.equals("--image-directory")) imageDirectory = new File(value);
+			else if (option.equals("--image-scale")) imageScale = Integer.parseInt(value);
+			else if (option.equals("--image-threads")) imageThreads = Integer.parseInt(value);
+			else if (option.equals("--timelapse")) timeLapseOutput = new File(value);
+			else if (option.equals("--timelapse-every")) timeLapseEvery = Long.parseLong(value);
+			else if (option.equals("--timelapse-format")) timeLapseFormat = returnTimeLapseFormat(value);
+			else if (option.equals("--timelapse-image")) timeLapseImage = returnTimeLapseImageType(value);
+			else if (option.equals("--timelapse-queue")) timeLapseQueueSize = Integer.parseInt(value);
+			else if (option.equals("--timelapse-policy")) timeLapsePolicy = returnTimeLapsePolicy(value);
+			else if (option.equals("--timelapse-delay")) timeLapseDelay = Integer.parseInt(value);
+			else throw new IllegalArgumentException("Unknown option " + option + ".");
+		}
+
+		if (checkpointEvery > 0 && checkpointFile == null) throw new IllegalArgumentException("--checkpoint-every needs a checkpoint file.");
+		if (snapshotDirectory != null && snapshotEvery <= 0 && snapshotSeconds <= 0) {
+			throw new IllegalArgumentException("--snapshot-directory needs --snapshot-every or --snapshot-seconds.");
+		}
+		if (snapshotDirectory == null && (snapshotEvery > 0 || snapshotSeconds > 0)) {
+			throw new IllegalArgumentException("--snapshot-every and --snapshot-seconds need a snapshot directory.");
+		}
+		if (numberOfThreads < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+		if (metricsSeconds != null && metricsSeconds < 0) throw new IllegalArgumentException("Metrics interval must not be negative.");
+		if (morphologyEvery > 0 && morphologyFile == null) throw new IllegalArgumentException("--morphology-every needs a morphology file.");
+		if (statisticsEvery < 1) throw new IllegalArgumentException("Statistics interval must be an integer greater than 0.");
+		if (timeLapseEvery < 1) throw new IllegalArgumentException("Time-lapse interval must be an integer greater than 0.");
+		if (timeLapseOutput != null && timeLapseFormat == null) {
+			timeLapseFormat = timeLapseOutput.getName().toLowerCase().endsWith(".gif")
+					? TimeLapseRecorder.OutputFormat.ANIMATED_GIF : TimeLapseRecorder.OutputFormat.PNG_SEQUENCE;
+		}
+	}
+
+	// Returns the time-lapse format named on the command line.
+	private static TimeLapseRecorder.OutputFormat returnTimeLapseFormat(String value) {
+		if (value.equals("gif")) return TimeLapseRecorder.OutputFormat.ANIMATED_GIF;
+		if (value.equals("png")) return TimeLapseRecorder.OutputFormat.PNG_SEQUENCE;
+		throw new IllegalArgumentException("Time-lapse format must be either 'gif' or 'png'.");
+	}
+
+	// Returns the time-lapse image type named on the command line.
+	private static TimeLapseRecorder.ImageType returnTimeLapseImageType(String value) {
+		if (value.equals("pattern")) return TimeLapseRecorder.ImageType.BACTERIA_PATTERN;
+		if (value.equals("nutrient")) return TimeLapseRecorder.ImageType.NUTRIENT_HEATMAP;
+		throw new IllegalArgumentException("Time-lapse image must be either 'pattern' or 'nutrient'.");
+	}
+
+	// Returns the snapshot format named on the command line.
+	private static SnapshotScheduler.OutputFormat returnSnapshotFormat(String value) {
+		if (value.equals("checkpoint")) return SnapshotScheduler.OutputFormat.CHECKPOINT;
+		if (value.equals("npy")) return SnapshotScheduler.OutputFormat.NPY;
+		if (value.equals("both")) return SnapshotScheduler.OutputFormat.BOTH;
+		throw new IllegalArgumentException("Snapshot format must be either 'checkpoint', 'npy' or 'both'.");
+	}
+
+	// Returns the snapshot backpressure policy named on the command line.
+	private static SnapshotScheduler.BackpressurePolicy returnSnapshotPolicy(String value) {
+		if (value.equals("wait")) return SnapshotScheduler.BackpressurePolicy.WAIT;
+		if (value.equals("drop")) return SnapshotScheduler.BackpressurePolicy.DROP;
+		if (value.equals("coalesce")) return SnapshotScheduler.BackpressurePolicy.COALESCE;
+		throw new IllegalArgumentException("Snapshot policy must be either 'wait', 'drop' or 'coalesce'.");
+	}
+
+	// Returns the time-lapse backpressure policy named on the command line.
+	private static TimeLapseRecorder.BackpressurePolicy returnTimeLapsePolicy(String value) {
+		if (value.equals("drop")) return TimeLapseRecorder.BackpressurePolicy.DROP;
+		if (value.equals("coalesce")) return TimeLapseRecorder.BackpressurePolicy.COALESCE;
+		throw new IllegalArgumentException("Time-lapse policy must be either 'drop' or 'coalesce'.");
+	}
+
+	// Runs the simulation for the requested number of steps and writes the outputs. If the input file is
+	// a checkpoint the simulation carries on from the step it was saved at.
+	private void run() throws IOException, InterruptedException {
+		BacterialColonyEngine engine;
+		if (SimulationCheckpoint.isCheckpoint(inputFile)) {
+			engine = SimulationCheckpoint.read(inputFile);
+			if (seed != null) engine.setRandomSeed(seed);
+			System.out.println("Restored " + inputFile + " at step " + engine.getStepNumber() + ".");
+		}
+		else {
+			engine = new BacterialColonyEngine(inputFile, seed != null ? seed : new Random().nextLong());
+		}
+		engine.setNumberOfThreads(numberOfThreads);
+
+		// The outputs are closed after an error too, so the frames, snapshots and images already queued are
+		// still saved and the background threads are stopped before the program exits.
+		ImageExporter imageExporter = null;
+		TimeLapseRecorder timeLapse = null;
+		TrajectoryWriter trajectory = null;
+		SnapshotScheduler snapshots = null;
+		BufferedWriter statistics = null;
+		MorphologyAnalyser morphologyAnalyser = null;
+		BufferedWriter morphology = null;
+		try {
+			// Images are only encoded if they have been asked for.
+			List<Future<File>> savedImages = new ArrayList<Future<File>>();
+			if (imageEvery > 0 || patternImageFile != null || nutrientImageFile != null) {
+				imageExporter = new ImageExporter(imageScale, imageThreads);
+			}
+
+			// The time-lapse starts with the initial state of the grid.
+			if (timeLapseOutput != null) {
+				timeLapse = new TimeLapseRecorder(timeLapseOutput, timeLapseFormat, timeLapseImage, imageScale,
+						timeLapseQueueSize, timeLapsePolicy, timeLapseDelay, imageThreads);
+				timeLapse.recordFrame(engine);
+			}
+
+			// The trajectory starts with the initial state of the grid and then records every step.
+			if (trajectoryFile != null) {
+				trajectory = new TrajectoryWriter(trajectoryFile, engine, trajectoryKeyframeEvery, trajectoryQueueSize);
+			}
+
+			// Snapshots are copied between steps and saved on another thread.
+			if (snapshotDirectory != null) {
+				snapshots = new SnapshotScheduler(snapshotDirectory, snapshotFormat, snapshotEvery, snapshotSeconds,
+						snapshotQueueSize, snapshotPolicy);
+			}
+
+			// Metrics are only collected if they have been asked for, as the engine then times every step.
+			SimulationMetrics metrics = null;
+			if (metricsSeconds != null) {
+				metrics = new SimulationMetrics();
+				engine.setMetrics(metrics);
+				try {
+					metrics.register();
+				}
+				catch (JMException e) {
+					System.err.println("Cannot publish metrics through JMX: " + e.getMessage());
+				}
+			}
+			long metricsInterval = metricsSeconds != null ? (long) (metricsSeconds * 1e9) : 0;
+
+			// The statistics of the colony are kept up to date by the engine, so writing them doesn't scan the
+			// grid. They start with the initial state of the grid.
+			if (statisticsFile != null) {
+				statistics = new BufferedWriter(new FileWriter(statisticsFile));
+				statistics.write(ColonyStatistics.CSV_HEADER);
+				statistics.newLine();
+				statistics.write(engine.createColonyStatistics().createCsvRow());
+				statistics.newLine();
+			}
+
+			// The shape of the colony is measured on a pool of threads while the simulation waits.
+			long lastMorphologyStep = -1;
+			if (morphologyFile != null) {
+				morphologyAnalyser = new MorphologyAnalyser(morphologyThreads);
+				morphology = new BufferedWriter(new FileWriter(morphologyFile));
+			}
+
+			long startTime = System.nanoTime();
+			long lastMetricsTime = startTime;
+			for (long i=0; i<numberOfSteps; i++) {
+				engine.createUpdatedGrid();
+				long step = engine.getStepNumber();
+
+				if (statistics != null && step % statisticsEvery == 0) {
+					long ioStartTime = System.nanoTime();
+					statistics.write(engine.createColonyStatistics().createCsvRow());
+					statistics.newLine();
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (morphologyEvery > 0 && step % morphologyEvery == 0) {
+					morphology.write(morphologyAnalyser.analyse(engine).createJsonLine());
+					morphology.newLine();
+					lastMorphologyStep = step;
+				}
+
+				if (trajectory != null) {
+					long ioStartTime = System.nanoTime();
+					trajectory.recordStep(engine);
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (checkpointEvery > 0 && step % checkpointEvery == 0) {
+					long ioStartTime = System.nanoTime();
+					SimulationCheckpoint.write(engine, checkpointFile);
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (snapshots != null) {
+					long ioStartTime = System.nanoTime();
+					if (snapshots.captureIfDue(engine)) recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (npyEvery > 0 && step % npyEvery == 0) {
+					long ioStartTime = System.nanoTime();
+					NpyExporter.writeBacteriaStates(engine, new File(npyDirectory, String.format("states-%08d.npy", step)));
+					NpyExporter.writeNutrientLevels(engine, new File(npyDirectory, String.format("nutrient-%08d.npy", step)));
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (timeLapse != null && step % timeLapseEvery == 0) {
+					long ioStartTime = System.nanoTime();
+					timeLapse.recordFrame(engine);
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (imageEvery > 0 && step % imageEvery == 0) {
+					long ioStartTime = System.nanoTime();
+					SimulationSnapshot snapshot = engine.createSnapshot();
+					savedImages.add(imageExporter.exportBacteriaPattern(snapshot, new File(imageDirectory, String.format("pattern-%08d.png", step))));
+					savedImages.add(imageExporter.exportNutrientHeatmap(snapshot, new File(imageDirectory, String.format("nutrient-%08d.png", step))));
+					recordInputOutput(metrics, ioStartTime);
+				}
+
+				if (reportEvery > 0 && step % reportEvery == 0) {
+					System.out.println(createSummary(engine, i + 1, System.nanoTime() - startTime));
+				}
+
+				if (metricsInterval > 0) {
+					long currentTime = System.nanoTime();
+					if (currentTime - lastMetricsTime >= metricsInterval) {
+						System.out.println(metrics.createLogLine());
+						lastMetricsTime = currentTime;
+					}
+				}
+			}
+			long runTime = System.nanoTime() - startTime;
+			engine.setNumberOfThreads(1);
+
+			if (trajectory != null) trajectory.close();
+			if (statistics != null) statistics.close();
+
+			if (morphology != null) {
+				if (lastMorphologyStep != engine.getStepNumber()) {
+					morphology.write(morphologyAnalyser.analyse(engine).createJsonLine());
+					morphology.newLine();
+				}
+				morphology.close();
+				morphologyAnalyser.close();
+			}
+			if (checkpointFile != null) SimulationCheckpoint.write(engine, checkpointFile);
+			if (stateOutputFile != null) writeBacteriaStates(engine, stateOutputFile);
+			if (nutrientOutputFile != null) writeNutrientLevels(engine, nutrientOutputFile);
+			if (stateNpyFile != null) NpyExporter.writeBacteriaStates(engine, stateNpyFile);
+			if (nutrientNpyFile != null) NpyExporter.writeNutrientLevels(engine, nutrientNpyFile);
+
+			if (imageExporter != null) {
+				SimulationSnapshot finalSnapshot = engine.createSnapshot();
+				if (patternImageFile != null) savedImages.add(imageExporter.exportBacteriaPattern(finalSnapshot, patternImageFile));
+				if (nutrientImageFile != null) savedImages.add(imageExporter.exportNutrientHeatmap(finalSnapshot, nutrientImageFile));
+
+				imageExporter.close();
+				checkImagesWereSaved(savedImages);
+			}
+
+			if (timeLapse != null) {
+				timeLapse.close();
+				System.out.println(String.format("time-lapse frames written=%d dropped=%d",
+						timeLapse.getFramesWritten(), timeLapse.getFramesDropped()));
+			}
+
+			if (snapshots != null) {
+				snapshots.close();
+				System.out.println(String.format("snapshots written=%d dropped=%d waiting=%.3fs",
+						snapshots.getSnapshotsWritten(), snapshots.getSnapshotsDropped(), snapshots.getTimeWaiting() / 1e9));
+			}
+
+			if (metrics != null) {
+				System.out.println(metrics.createLogLine());
+				try {
+					metrics.unregister();
+				}
+				catch (JMException e) {
+					System.err.println("Cannot remove metrics from JMX: " + e.getMessage());
+				}
+			}
+
+			System.out.println(createSummary(engine, numberOfSteps, runTime));
+		}
+		catch (Throwable e) {
+			closeAfterError(e, trajectory, statistics, morphology, morphologyAnalyser, imageExporter, timeLapse, snapshots);
+			throw e;
+		}
+	}
+
+	// Closes the outputs that were opened, after an error stopped the run. Each output is closed even if
+	// closing another fails, and any error in closing one is added to the error that stopped the run.
+	private static void closeAfterError(Throwable error, AutoCloseable... outputs) {
+		for (AutoCloseable output : outputs) {
+			if (output == null) continue;
+			try {
+				output.close();
+			}
+			catch (Exception e) {
+				error.addSuppressed(e);
+			}
+		}
+	}
+
+	// Records the time taken to save an output, if metrics are being collected.
+	private static void recordInputOutput(SimulationMetrics metrics, long startTime) {
+		if (metrics != null) metrics.recordPhase(SimulationMetrics.Phase.IO, System.nanoTime() - startTime);
+	}
+
+	// Throws the first error that occurred while saving the images.
+	private static void checkImagesWereSaved(List<Future<File>> savedImages) throws IOException, InterruptedException {
+		for (Future<File> savedImage : savedImages) {
+			try {
+				savedImage.get();
+			}
+			catch (ExecutionException e) {
+				throw new IOException("Cannot save image: " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
+
+	// Returns a line describing the current state of the simulation, and how fast the steps run so far
+	// in this run were carried out.
+	private String createSummary(BacterialColonyEngine engine, long stepsRun, long runTime) {
+		double runTimeInSeconds = runTime / 1e9;
+
+		return String.format("step=%d alive=%d remains=%d nutrient=%.2f seed=%d time=%.3fs steps/s=%.1f",
+				engine.getStepNumber(),
+				engine.getNumberOfAliveBacteria(),
+				engine.getNumberOfRemains(),
+				engine.getTotalNutrient(),
+				engine.getRandomSeed(),
+				runTimeInSeconds,
+				runTimeInSeconds > 0 ? stepsRun / runTimeInSeconds : 0);
+	}
+
+	// Writes the state of each grid space, with one line for each row of the grid.
+	private static void writeBacteriaStates(BacterialColonyEngine engine, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			for (int y=0; y<engine.getGridHeight(); y++) {
+				for (int x=0; x<engine.getGridWidth(); x++) {
+					writer.write('0' + engine.getBacteriumState(x, y));
+				}
+				writer.newLine();
+			}
+		}
+		FlightRecorderEvents.endInputOutput(event, "state export", file, file.length());
+	}
+
+	// Writes the nutrient level of each grid space, with one line of comma separated values for each row
+	// of the grid.
+	private static void writeNutrientLevels(BacterialColonyEngine engine, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			for (int y=0; y<engine.getGridHeight(); y++) {
+				for (int x=0; x<engine.getGridWidth(); x++) {
+					if (x > 0) writer.write(',');
+					writer.write(Double.toString(engine.getNutrientLevelOfCell(engine.returnPositionInNutrientMatrix(x, y))));
+				}
+				writer.newLine();
+			}
+		}
+		FlightRecorderEvents.endInputOutput(event, "nutrient export", file, file.length());
+	}
+
+	public static void main(String[] args) {
+		// Images are drawn without a display.
+		System.setProperty("java.awt.headless", "true");
+
+		try {
+			new HeadlessRunner(args).run();
+		}
+		catch (IOException e) {
+			System.err.println("Cannot read input file or checkpoint, or write output: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (InterruptedException e) {
+			System.err.println("Interrupted while saving output.");
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/* *****************************************************************************
+* Description: A class used to save images of the bacteria pattern and of the
+* nutrient levels as PNG files. Images are drawn straight from a snapshot of
+* the simulation, so no window is needed, and can be encoded on a pool of
+* background threads so the simulation doesn't wait for them.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+public class ImageExporter implements AutoCloseable {
+
+	// Colours used for the images. The bacteria pattern only needs black and white, and the nutrient
+	// levels are shown with 256 shades from red to white, so both can be stored as indexed images, which
+	// can also be written to a GIF without any colour conversion.
+	private static final IndexColorModel BACTERIA_PATTERN_COLOURS = new IndexColorModel(8, 2,
+			new byte[] {0, (byte) 0xFF}, new byte[] {0, (byte) 0xFF}, new byte[] {0, (byte) 0xFF});
+	private static final IndexColorModel NUTRIENT_COLOURS = createNutrientColours();
+	private static final int BLACK_INDEX = 0;
+	private static final int WHITE_INDEX = 1;
+
+	// Number of pixels along each side of a grid space.
+	private final int scale;
+	private final ExecutorService encoderPool;
+
+	// Constructor, the images are encoded using the number of threads given.
+	public ImageExporter(int scale, int numberOfThreads) {
+		if (scale < 1) throw new IllegalArgumentException("Image scale must be an integer greater than 0.");
+
+		this.scale = scale;
+		encoderPool = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "image-encoder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// Saves an image of the bacteria pattern in the snapshot on a background thread. Returns a Future that
+	// completes once the file has been written.
+	public Future<File> exportBacteriaPattern(final SimulationSnapshot snapshot, final File file) {
+		return encoderPool.submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				writePng(createBacteriaPatternImage(snapshot, scale), file);
+				return file;
+			}
+		});
+	}
+
+	// Saves an image of the nutrient levels in the snapshot on a background thread. Returns a Future that
+	// completes once the file has been written.
+	public Future<File> exportNutrientHeatmap(final SimulationSnapshot snapshot, final File file) {
+		return encoderPool.submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				writePng(createNutrientHeatmapImage(snapshot, scale), file);
+				return file;
+			}
+		});
+	}
+
+	// Waits for all the images that have been requested to be written and stops the background threads. If
+	// this thread is interrupted while waiting, the interrupt is kept and an IOException is thrown, as the
+	// images may not have all been written.
+	@Override
+	public void close() throws IOException {
+		encoderPool.shutdown();
+		try {
+			encoderPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while saving images.", e);
+		}
+	}
+
+	// Creates an image of only the bacteria, in the same way as Grid.showOnlyBacteriaAsSquares(). Grid
+	// spaces that contain alive or dead bacteria are black and all other spaces are white.
+	public static BufferedImage createBacteriaPatternImage(SimulationSnapshot snapshot, int scale) {
+		int gridWidth = snapshot.getGridWidth();
+		int gridHeight = snapshot.getGridHeight();
+		byte[] states = snapshot.getBacteriaStates();
+
+		BufferedImage image = new BufferedImage(gridWidth*scale, gridHeight*scale, BufferedImage.TYPE_BYTE_INDEXED, BACTERIA_PATTERN_COLOURS);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		int imageWidth = gridWidth*scale;
+
+		for (int y=0; y<gridHeight; y++) {
+			// Draw the first row of pixels for this row of the grid, then copy it for the remaining rows.
+			int rowStart = y*scale*imageWidth;
+			for (int x=0; x<gridWidth; x++) {
+				byte colourIndex = (byte) (states[x + y*gridWidth] == BacterialColonyEngine.EMPTY ? WHITE_INDEX : BLACK_INDEX);
+				for (int p=0; p<scale; p++) {
+					pixels[rowStart + x*scale + p] = colourIndex;
+				}
+			}
+			for (int p=1; p<scale; p++) {
+				System.arraycopy(pixels, rowStart, pixels, rowStart + p*imageWidth, imageWidth);
+			}
+		}
+
+		return image;
+	}
+
+	// Creates an image of the nutrient levels, coloured in the same way as the grid in the GUI, from white
+	// for no nutrient to red for a nutrient level of 100.
+	public static BufferedImage createNutrientHeatmapImage(SimulationSnapshot snapshot, int scale) {
+		int gridWidth = snapshot.getGridWidth();
+		int gridHeight = snapshot.getGridHeight();
+		double[] nutrientLevels = snapshot.getNutrientLevels();
+
+		BufferedImage image = new BufferedImage(gridWidth*scale, gridHeight*scale, BufferedImage.TYPE_BYTE_INDEXED, NUTRIENT_COLOURS);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		int imageWidth = gridWidth*scale;
+
+		for (int y=0; y<gridHeight; y++) {
+			int rowStart = y*scale*imageWidth;
+			for (int x=0; x<gridWidth; x++) {
+				byte colourIndex = (byte) returnNutrientColourIndex(nutrientLevels[x + y*gridWidth]);
+				for (int p=0; p<scale; p++) {
+					pixels[rowStart + x*scale + p] = colourIndex;
+				}
+			}
+			for (int p=1; p<scale; p++) {
+				System.arraycopy(pixels, rowStart, pixels, rowStart + p*imageWidth, imageWidth);
+			}
+		}
+
+		return image;
+	}
+
+	// Returns the index of the colour for a nutrient level. The colours are Color.hsb(0, nutrient/100, 1),
+	// as used by the GUI, with the saturation limited to between 0 and 1. The index is the value of the
+	// green and blue parts of the colour.
+	public static int returnNutrientColourIndex(double nutrientLevel) {
+		double saturation = Math.min(Math.max(nutrientLevel/100, 0), 1);
+		return (int) Math.round((1 - saturation) * 255);
+	}
+
+	// Creates the 256 colours used for the nutrient levels, from red to white.
+	private static IndexColorModel createNutrientColours() {
+		byte[] red = new byte[256];
+		byte[] greenAndBlue = new byte[256];
+		for (int i=0; i<256; i++) {
+			red[i] = (byte) 0xFF;
+			greenAndBlue[i] = (byte) i;
+		}
+		return new IndexColorModel(8, 256, red, greenAndBlue, greenAndBlue);
+	}
+
+	// Writes the image to a PNG file.
+	public static void writePng(BufferedImage image, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		if (!ImageIO.write(image, "png", file)) {
+			throw new IOException("No PNG writer is available.");
+		}
+		FlightRecorderEvents.endInputOutput(event, "image export", file, file.length());
+	}
+}
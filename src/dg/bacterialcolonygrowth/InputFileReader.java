@@ -10,164 +10,204 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class InputFileReader {
-	
+
+	// Lines setting a parameter of one species or nutrient, e.g. "species 2 nutrient for growth: 30".
+	private static final Pattern NUMBERED_PARAMETER = Pattern.compile("(species|nutrient) (\\d+) ([^:]+):(.*)");
+
 	private File inputFile;
-	private CellularAutomataBacteriaRules rules;
-	
+
 	// Constructor.
-	public InputFileReader(File input, CellularAutomataBacteriaRules rulesObject) {
+	public InputFileReader(File input) {
 		inputFile = input;
-		rules = rulesObject;
 	}
-	
-	// Sets the parameters of the CullularAutomataBacteriaRules object that is passed to this method
-	// based on the values specified in the input file passed to this method.
-	public void setParametersFromInputFile() throws IOException, IllegalArgumentException {
+
+	// Reads the input file and returns a config with the parameters specified in it. Parameters that
+	// aren't in the file keep their default values.
+	public SimulationConfig readConfig() throws IOException, IllegalArgumentException {
+		SimulationConfig.Builder builder = new SimulationConfig.Builder();
+
 		// Used to store the contents of an individual line.
         String line = null;
-        
+
         BufferedReader reader = null;
 
         // Uses try catch to ensure reader is closed even if exception is thrown.
         try {
     			reader = new BufferedReader(new FileReader(inputFile));
-    		
-	    		// Reads and interprets each line of the file. Calls the appropriate method to then set the value
-	    		// of the parameter.
+
+	    		// Reads and interprets each line of the file.
 	        while((line = reader.readLine()) != null) {
-	            String[] parts = line.split(":");
-	            
-	            if (parts.length == 2) {
-	            		parts[1] = parts[1].replaceAll("\\s","");
-	            		
-	            		// Check input tag to determine what variable to change. Then check input is valid, before
-	            		// calling a function to set that variable in the simulation. If input is not valid throw
-	            		// illegal argument exception with a reason.
-	                if (parts[0].equals("grid height")) {
-	                		int gridHeight = Integer.parseInt(parts[1]);
-	                		
-	                		if (gridHeight >= 1) {
-	                			rules.setGridHeight(gridHeight);
-	                		}
-	                		else throw new IllegalArgumentException("Grid height must be an integer greater than 0.");
-	                }
-	                else if (parts[0].equals("grid width")) {
-		            		int gridWidth = Integer.parseInt(parts[1]);
-		            		
-		            		if (gridWidth >= 1) {
-		            			rules.setGridWidth(gridWidth);
-		            		}
-		            		else throw new IllegalArgumentException("Grid width must be an integer greater than 0.");
-	                }
-	                else if (parts[0].equals("cell height")) {
-	            			int cellHeight = Integer.parseInt(parts[1]);
-	            			
-	            			if (cellHeight >= 1) {
-	            				rules.setCellHeight(cellHeight);
-	            			}
-	            			else throw new IllegalArgumentException("Cell height must be an integer greater than 0.");
-	                }               
-	                else if (parts[0].equals("cell width")) {
-	            			int cellWidth = Integer.parseInt(parts[1]);
-	            			
-	            			if (cellWidth >= 1) {
-	            				rules.setCellWidth(cellWidth);
-	            			}
-	            			else throw new IllegalArgumentException("Cell width must be an integer greater than 0.");
-	                }                              
-	                else if (parts[0].equals("rate of diffusion")) {
-	            			double diffusionRate = Double.parseDouble(parts[1]);
-	            			
-	            			if (diffusionRate >= 0 && diffusionRate <= 1) {
-	            				rules.setDiffusionRate(diffusionRate);
-	            			}
-	            			else throw new IllegalArgumentException("Rate of diffusion must be between 0 and 1.");
-	                }
-	                else if (parts[0].equals("nutrient for sustenance")) {
-	            			int nutrientForSustenance = Integer.parseInt(parts[1]);
-	            			
-	            			if (nutrientForSustenance >= 0 && nutrientForSustenance <=100) {
-	            				rules.setNutrientForSustenance(nutrientForSustenance);
-	            			}
-	            			else throw new IllegalArgumentException("Nutrient for sustenance must be an integer between 0 and 100.");
-	                }                
-	                else if (parts[0].equals("nutrient for growth")) {
-	            			int nutrientForGrowth = Integer.parseInt(parts[1]);
-	            			
-	            			if (nutrientForGrowth >= 0 && nutrientForGrowth <= 100) {
-	            				rules.setNutrientForGrowth(nutrientForGrowth);
-	            			}
-	            			else throw new IllegalArgumentException("Nutrient for growth must be an integer between 0 and 100.");
-	                }
-	                else if (parts[0].equals("threshold for cell division")) {
-	            			int thresholdForCellDivision = Integer.parseInt(parts[1]);
-	            			
-	            			if (thresholdForCellDivision >= 0) {
-	            				rules.setThresholdForCellDivision(thresholdForCellDivision);
-	            			}
-	            			else throw new IllegalArgumentException("Threshold for cell division must be a non negative integer.");
-	                }
-	                else if (parts[0].equals("number of timesteps for cell division")) {
-	            			int timestepForCellDivision = Integer.parseInt(parts[1]);
-	            			
-	            			if (timestepForCellDivision >= 1) {
-	            				rules.setNumberOfTimestepsForCellDivision(timestepForCellDivision);
-	            			}
-	            			else throw new IllegalArgumentException("Timestep for cell division must be an integer greater than 0.");
-	                }
-	                else if (parts[0].equals("boundary condition")) {
-		        			String boundaryCondition = parts[1];
-		        			
-		        			if (boundaryCondition.equals("reflecting") || boundaryCondition.equals("absorbent") || boundaryCondition.equals("periodic")) {
-		        				rules.setBoundaryCondition(boundaryCondition);
-		        			}
-		        			else throw new IllegalArgumentException("Boundary condition must be either 'reflecting', 'absorbent' or 'periodic'.");
-	                }
-	                else if (parts[0].equals("initial nutrient pattern")) {
-		        			String pattern = parts[1];
-		        			
-		        			if (pattern.equals("absorbingmiddle") || pattern.equals("random") || pattern.equals("default")) {
-		        				rules.setNutrientLevelPatternChoice(pattern);
-		        			}
-		        			else throw new IllegalArgumentException("Initial nutrient pattern can be either 'absorbingmiddle', 'random' or 'default'.");
-	                }
-	                else if (parts[0].equals("probability of cell division")) {
-	            			double probability = Double.parseDouble(parts[1]);
-	            			
-	            			if (probability >= 0 && probability <= 1) {
-	            				rules.setProbabilityOfCellDivision(probability);
-	            			}
-	            			else throw new IllegalArgumentException("probability of cell division must be between 0 and 1.");
-	                }
-	                else if (parts[0].equals("crowding function"))
-						this.checkCrowdingFunctionIsCorrectFormat(parts[1]);
-	            }
+	            setParameterFromLine(builder, line, inputFile.getAbsoluteFile().getParentFile());
 	        }
         }
         finally {
-        		if (reader != null) reader.close(); 
-		}        
+        		if (reader != null) reader.close();
+		}
+
+        return builder.build();
     }
-	
-	// Checks the crowding function specified in the input file is the correct format.
-	private void checkCrowdingFunctionIsCorrectFormat(String crowdingFunctionInput) throws IllegalArgumentException {
-		String values [] = crowdingFunctionInput.split(",");
-		
-		// Check input is correct length i.e. 8, if it is create array of integers of the values and
-		// then call function to set those values.
-		if (values.length != 9) {
-			throw new IllegalArgumentException("There should be 9 values for the crowding function.");
+
+	// Reads the input file and returns a config with several species and nutrients. Lines of the form
+	// "species N name: value" set a parameter of species N and "nutrient N rate of diffusion: value" the rate
+	// of diffusion of nutrient N, both numbered from 1. The other lines set the base config as in readConfig,
+	// which gives species 1 and nutrient 1 unless they are set by numbered lines too.
+	public MultiSpeciesConfig readMultiSpeciesConfig() throws IOException, IllegalArgumentException {
+		SimulationConfig.Builder baseBuilder = new SimulationConfig.Builder();
+		List<String> numberedLines = new ArrayList<String>();
+
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(inputFile));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (NUMBERED_PARAMETER.matcher(line).matches()) numberedLines.add(line);
+				else setParameterFromLine(baseBuilder, line, inputFile.getAbsoluteFile().getParentFile());
+			}
+		}
+		finally {
+			if (reader != null) reader.close();
+		}
+
+		// The species take their default parameters from the base config, so it is built first.
+		MultiSpeciesConfig.Builder builder = new MultiSpeciesConfig.Builder(baseBuilder.build());
+		for (String line : numberedLines) {
+			setSpeciesParameterFromLine(builder, line);
 		}
-		else {
-			int crowdingFunctionValues [] = new int[9];
-			
-			for (int i = 0; i < 9; i++) {
-				crowdingFunctionValues[i] = Integer.parseInt(values[i]);
+		return builder.build();
+	}
+
+	// Reads the input file and returns a config for a 3D lattice. The lines "grid depth: value" and "3d
+	// crowding function: values" set the depth of the lattice and the crowding function for 26 neighbours,
+	// and the other lines set the base config as in readConfig.
+	public BiofilmConfig readBiofilmConfig() throws IOException, IllegalArgumentException {
+		SimulationConfig.Builder baseBuilder = new SimulationConfig.Builder();
+		Integer gridDepth = null;
+		int[] crowdingFunctionValues = null;
+
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(inputFile));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split(":");
+				if (parts.length == 2 && parts[0].equals("grid depth")) {
+					gridDepth = Integer.parseInt(parts[1].replaceAll("\\s",""));
+				}
+				else if (parts.length == 2 && parts[0].equals("3d crowding function")) {
+					crowdingFunctionValues = parseCrowdingFunction(parts[1].replaceAll("\\s",""));
+				}
+				else setParameterFromLine(baseBuilder, line, inputFile.getAbsoluteFile().getParentFile());
 			}
-			
-			rules.setCrowdingFunctionValues(crowdingFunctionValues);
-		}	
+		}
+		finally {
+			if (reader != null) reader.close();
+		}
+
+		BiofilmConfig.Builder builder = new BiofilmConfig.Builder(baseBuilder.build());
+		if (gridDepth != null) builder.setGridDepth(gridDepth);
+		if (crowdingFunctionValues != null) builder.setCrowdingFunctionValues(crowdingFunctionValues);
+		return builder.build();
+	}
+
+	// Sets the parameter of a species or nutrient specified on a line of the form "species N name: value" or
+	// "nutrient N name: value". Returns true if a parameter was set.
+	static boolean setSpeciesParameterFromLine(MultiSpeciesConfig.Builder builder, String line) throws IllegalArgumentException {
+		Matcher matcher = NUMBERED_PARAMETER.matcher(line);
+		if (!matcher.matches()) return false;
+
+		int index = Integer.parseInt(matcher.group(2)) - 1;
+		String name = matcher.group(3).trim();
+		String value = matcher.group(4).replaceAll("\\s","");
+
+		if (matcher.group(1).equals("nutrient")) {
+			if (name.equals("rate of diffusion")) builder.setDiffusionRate(index, Double.parseDouble(value));
+			else return false;
+		}
+		else if (name.equals("nutrient")) builder.setNutrientEaten(index, Integer.parseInt(value) - 1);
+		else if (name.equals("nutrient for sustenance")) builder.setNutrientForSustenance(index, Integer.parseInt(value));
+		else if (name.equals("nutrient for growth")) builder.setNutrientForGrowth(index, Integer.parseInt(value));
+		else if (name.equals("crowding function")) builder.setCrowdingFunctionValues(index, parseCrowdingFunction(value));
+		else if (name.equals("probability of cell division")) builder.setProbabilityOfCellDivision(index, Double.parseDouble(value));
+		else if (name.equals("initial position")) {
+			String[] coordinates = value.split(",");
+			if (coordinates.length != 2) throw new IllegalArgumentException("Initial position should be given as x, y.");
+			builder.setInitialPosition(index, Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]));
+		}
+		else return false;
+
+		return true;
+	}
+
+	// Sets the parameter specified on a line of the form "name: value". Lines that aren't of that form, or
+	// name a parameter that doesn't exist, are ignored. Returns true if a parameter was set.
+	static boolean setParameterFromLine(SimulationConfig.Builder builder, String line) throws IllegalArgumentException {
+		return setParameterFromLine(builder, line, null);
+	}
+
+	// Sets the parameter specified on a line, as above. Relative image paths are taken to be relative to
+	// the directory given, which is the directory of the file being read.
+	static boolean setParameterFromLine(SimulationConfig.Builder builder, String line, File directory) throws IllegalArgumentException {
+		// Image paths can contain spaces and colons, so only the first colon separates the name from the path.
+		String[] nameAndPath = line.split(":", 2);
+		if (nameAndPath.length == 2 && nameAndPath[0].equals("initial bacteria image")) {
+			builder.setInitialBacteriaImage(resolveImagePath(nameAndPath[1].trim(), directory));
+			return true;
+		}
+		if (nameAndPath.length == 2 && nameAndPath[0].equals("initial nutrient image")) {
+			builder.setInitialNutrientImage(resolveImagePath(nameAndPath[1].trim(), directory));
+			return true;
+		}
+
+		String[] parts = line.split(":");
+
+		if (parts.length != 2) return false;
+		parts[1] = parts[1].replaceAll("\\s","");
+
+		// Check input tag to determine what variable to change. The builder checks the value is valid and
+		// throws an illegal argument exception with a reason if it is not.
+		if (parts[0].equals("grid height")) builder.setGridHeight(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("grid width")) builder.setGridWidth(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("cell height")) builder.setCellHeight(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("cell width")) builder.setCellWidth(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("rate of diffusion")) builder.setDiffusionRate(Double.parseDouble(parts[1]));
+		else if (parts[0].equals("nutrient for sustenance")) builder.setNutrientForSustenance(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("nutrient for growth")) builder.setNutrientForGrowth(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("threshold for cell division")) builder.setThresholdForCellDivision(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("number of timesteps for cell division")) builder.setNumberOfTimestepsForCellDivision(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("boundary condition")) builder.setBoundaryCondition(parts[1]);
+		else if (parts[0].equals("initial nutrient pattern")) builder.setNutrientLevelPatternChoice(parts[1]);
+		else if (parts[0].equals("probability of cell division")) builder.setProbabilityOfCellDivision(Double.parseDouble(parts[1]));
+		else if (parts[0].equals("crowding function")) builder.setCrowdingFunctionValues(parseCrowdingFunction(parts[1]));
+		else if (parts[0].equals("crowding neighbourhood")) builder.setCrowdingNeighbourhood(parts[1]);
+		else if (parts[0].equals("crowding neighbourhood radius")) builder.setCrowdingNeighbourhoodRadius(Integer.parseInt(parts[1]));
+		else if (parts[0].equals("diffusion neighbourhood")) builder.setDiffusionNeighbourhood(parts[1]);
+		else if (parts[0].equals("diffusion neighbourhood radius")) builder.setDiffusionNeighbourhoodRadius(Integer.parseInt(parts[1]));
+		else return false;
+
+		return true;
+	}
+
+	// Returns the path of an image, relative to the directory given unless it is absolute.
+	private static String resolveImagePath(String path, File directory) {
+		if (path.isEmpty() || new File(path).isAbsolute() || directory == null) return path;
+		return new File(directory, path).getPath();
+	}
+
+	// Returns the values of a crowding function given as comma separated integers. The config checks there is
+	// one for each possible number of neighbours.
+	private static int[] parseCrowdingFunction(String crowdingFunctionInput) throws IllegalArgumentException {
+		String values [] = crowdingFunctionInput.split(",");
+
+		int crowdingFunctionValues [] = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			crowdingFunctionValues[i] = Integer.parseInt(values[i]);
+		}
+		return crowdingFunctionValues;
 	}
 }
@@ -0,0 +1,118 @@
+/* *****************************************************************************
+* Description: A class used to read a job file, which describes a number of
+* simulations to run. Each job starts with a "job: <name>" line and is followed
+* by its parameters, in the same "name: value" form as an input file. The
+* parameters before the first job apply to every job unless a job sets them
+* itself. As well as the input file parameters, the following can be set:
+*
+*   steps: <n>        Number of steps each run is carried out for (required)
+*   replicates: <n>   Number of times the job is run (default: 1)
+*   seed: <n>         Seed of the first run, the next run uses seed + 1 and so
+*                     on (default: random)
+*
+* Blank lines and lines starting with '#' are ignored.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class JobFileReader {
+
+	private File jobFile;
+
+	// Values used by a job, either the defaults at the top of the file or those of a single job.
+	private static class JobSettings {
+		String name;
+		SimulationConfig.Builder builder;
+		Long numberOfSteps;
+		int numberOfReplicates = 1;
+		Long firstSeed;
+		int lineNumber;
+
+		// Creates a copy of these settings for a new job.
+		JobSettings copyForJob(String jobName, int jobLineNumber) {
+			JobSettings settings = new JobSettings();
+			settings.name = jobName;
+			settings.builder = builder.copy();
+			settings.numberOfSteps = numberOfSteps;
+			settings.numberOfReplicates = numberOfReplicates;
+			settings.firstSeed = firstSeed;
+			settings.lineNumber = jobLineNumber;
+			return settings;
+		}
+	}
+
+	// Constructor.
+	public JobFileReader(File input) {
+		jobFile = input;
+	}
+
+	// Reads the job file and returns its jobs, in the order they appear. Throws an IllegalArgumentException
+	// giving the line number if a line can't be read or a job isn't valid.
+	public List<SimulationJob> readJobs() throws IOException, IllegalArgumentException {
+		List<SimulationJob> jobs = new ArrayList<SimulationJob>();
+		Random seedGenerator = new Random();
+
+		JobSettings defaults = new JobSettings();
+		defaults.builder = new SimulationConfig.Builder();
+		JobSettings current = defaults;
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(jobFile))) {
+			String line;
+			int lineNumber = 0;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				String trimmedLine = line.trim();
+				if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) continue;
+
+				try {
+					String[] parts = trimmedLine.split(":", 2);
+					String value = parts.length == 2 ? parts[1].trim() : "";
+
+					if (parts[0].equals("job")) {
+						if (value.isEmpty()) throw new IllegalArgumentException("A job must have a name.");
+						if (current != defaults) jobs.add(createJob(current, seedGenerator));
+						current = defaults.copyForJob(value, lineNumber);
+					}
+					else if (parts[0].equals("steps")) current.numberOfSteps = Long.parseLong(value);
+					else if (parts[0].equals("replicates")) current.numberOfReplicates = Integer.parseInt(value);
+					else if (parts[0].equals("seed")) current.firstSeed = Long.parseLong(value);
+					else if (!InputFileReader.setParameterFromLine(current.builder, trimmedLine, jobFile.getAbsoluteFile().getParentFile())) {
+						throw new IllegalArgumentException("Unknown parameter '" + parts[0] + "'.");
+					}
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+
+		if (current != defaults) jobs.add(createJob(current, seedGenerator));
+		if (jobs.isEmpty()) throw new IllegalArgumentException("The job file contains no jobs.");
+		return jobs;
+	}
+
+	// Creates a job from its settings, checking they are valid.
+	private static SimulationJob createJob(JobSettings settings, Random seedGenerator) {
+		try {
+			if (settings.numberOfSteps == null) throw new IllegalArgumentException("The number of steps must be given.");
+
+			long firstSeed = settings.firstSeed != null ? settings.firstSeed : seedGenerator.nextLong();
+			return new SimulationJob(settings.name, settings.builder.build(), settings.numberOfSteps,
+					settings.numberOfReplicates, firstSeed);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Job '" + settings.name + "' on line " + settings.lineNumber + ": " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,540 @@
+/* *****************************************************************************
+* Description: A class used to read a greyscale layout from a PGM or PNG image
+* one row at a time, so a simulation can be started from an image of its
+* initial bacteria or nutrient levels. Only a single row of the image is held
+* in memory, so the size of the image is only limited by the size of the grid
+* it is read into.
+*
+* PGM images can be binary (P5) or plain text (P2), with up to 16 bits per
+* sample. PNG images can be of any colour type and bit depth, but must not be
+* interlaced, as the rows of an interlaced image can't be read in order. Colour
+* images are converted to grey and transparency is ignored.
+*
+* In an image of bacteria, dark pixels are living bacteria, mid grey pixels
+* are remains and light pixels are empty, as in the pattern images that are
+* saved. In an image of nutrient levels, black is no nutrient and white is a
+* full grid space (100).
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public abstract class LayoutImageReader implements Closeable {
+
+	// The first bytes of every PNG image.
+	private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	final File file;
+	int width;
+	int height;
+	int maximumValue;
+	int rowsRead = 0;
+
+	// Constructor.
+	private LayoutImageReader(File file) {
+		this.file = file;
+	}
+
+	// Opens an image, choosing how to read it from its first bytes rather than its name. Throws an
+	// IOException if the image isn't a PGM or PNG image, or can't be read.
+	public static LayoutImageReader open(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		try {
+			input.mark(PNG_SIGNATURE.length);
+			byte[] start = new byte[PNG_SIGNATURE.length];
+			int length = 0;
+			int count;
+			while (length < start.length && (count = input.read(start, length, start.length - length)) > 0) {
+				length += count;
+			}
+			input.reset();
+
+			LayoutImageReader reader;
+			if (length == PNG_SIGNATURE.length && Arrays.equals(start, PNG_SIGNATURE)) reader = new PngReader(file, input);
+			else if (length >= 2 && start[0] == 'P' && (start[1] == '5' || start[1] == '2')) reader = new PgmReader(file, input);
+			else throw new IOException(file + " is not a PGM or PNG image.");
+
+			if (reader.width < 1 || reader.height < 1) throw new IOException(file + " has no pixels.");
+			return reader;
+		}
+		catch (IOException | RuntimeException e) {
+			input.close();
+			throw e;
+		}
+	}
+
+	// Opens an image that must be the same size as the grid it is read into. Throws an
+	// IllegalArgumentException if it isn't.
+	public static LayoutImageReader openForGrid(File file, int gridWidth, int gridHeight) throws IOException {
+		LayoutImageReader reader = open(file);
+		if (reader.width != gridWidth || reader.height != gridHeight) {
+			reader.close();
+			throw new IllegalArgumentException("Image " + file + " is " + reader.width + "x" + reader.height
+					+ " pixels, but the grid is " + gridWidth + "x" + gridHeight + ".");
+		}
+		return reader;
+	}
+
+	// Returns the bacteria state of a pixel in an image of bacteria.
+	public static byte returnBacteriaState(int value, int maximumValue) {
+		if (3L*value < maximumValue) return BacterialColonyEngine.ALIVE;
+		if (3L*value < 2L*maximumValue) return BacterialColonyEngine.REMAINS;
+		return BacterialColonyEngine.EMPTY;
+	}
+
+	// Returns the nutrient level of a pixel in an image of nutrient levels.
+	public static double returnNutrientLevel(int value, int maximumValue) {
+		return 100.0*value / maximumValue;
+	}
+
+	// Returns the width of the image in pixels.
+	public int getWidth() {
+		return width;
+	}
+
+	// Returns the height of the image in pixels.
+	public int getHeight() {
+		return height;
+	}
+
+	// Returns the value of a white pixel. Black pixels have the value 0.
+	public int getMaximumValue() {
+		return maximumValue;
+	}
+
+	// Reads the next row of the image, from top to bottom, into the array given, which must hold at least
+	// one value per pixel. Each value is between 0 and the maximum value.
+	public void readRow(int[] row) throws IOException {
+		if (row.length < width) throw new IllegalArgumentException("Row array is shorter than the image width.");
+		if (rowsRead >= height) throw new IOException("All the rows of " + file + " have already been read.");
+
+		this.readNextRow(row);
+		rowsRead++;
+	}
+
+	// Reads the next row of the image into the array.
+	abstract void readNextRow(int[] row) throws IOException;
+
+	/* ****************************************************************************
+	* PGM
+	*******************************************************************************/
+
+	// Reads binary (P5) and plain (P2) PGM images.
+	private static final class PgmReader extends LayoutImageReader {
+		private final DataInputStream input;
+		private final boolean plain;
+		private final byte[] rowBytes;
+
+		// Constructor, reads the header.
+		PgmReader(File file, DataInputStream input) throws IOException {
+			super(file);
+			this.input = input;
+
+			input.readByte();
+			plain = input.readByte() == '2';
+			width = readHeaderValue();
+			height = readHeaderValue();
+			maximumValue = readHeaderValue();
+			if (maximumValue < 1 || maximumValue > 65535) throw new IOException(file + " has an invalid maximum value.");
+			if ((long) width*2 > Integer.MAX_VALUE - 8) throw new IOException(file + " is too large.");
+
+			rowBytes = plain ? null : new byte[width * (maximumValue > 255 ? 2 : 1)];
+		}
+
+		@Override
+		void readNextRow(int[] row) throws IOException {
+			if (plain) {
+				for (int x=0; x<width; x++) {
+					row[x] = checkValue(readHeaderValue());
+				}
+				return;
+			}
+
+			try {
+				input.readFully(rowBytes);
+			}
+			catch (EOFException e) {
+				throw new IOException(file + " ends before its last row.");
+			}
+
+			if (maximumValue > 255) {
+				for (int x=0; x<width; x++) {
+					row[x] = checkValue(((rowBytes[2*x] & 0xFF) << 8) | (rowBytes[2*x + 1] & 0xFF));
+				}
+			}
+			else {
+				for (int x=0; x<width; x++) {
+					row[x] = checkValue(rowBytes[x] & 0xFF);
+				}
+			}
+		}
+
+		// Returns a value, after checking it isn't larger than the maximum value.
+		private int checkValue(int value) throws IOException {
+			if (value > maximumValue) throw new IOException(file + " has a value larger than its maximum value.");
+			return value;
+		}
+
+		// Reads a decimal number, skipping the whitespace and comments before it. In a binary image the
+		// single whitespace character after the last header value is also read.
+		private int readHeaderValue() throws IOException {
+			int c = input.read();
+			while (c == '#' || Character.isWhitespace(c)) {
+				if (c == '#') {
+					while (c != '\n' && c != '\r' && c != -1) {
+						c = input.read();
+					}
+				}
+				c = input.read();
+			}
+
+			if (c < '0' || c > '9') throw new IOException(file + " is not a valid PGM image.");
+
+			long value = 0;
+			while (c >= '0' && c <= '9') {
+				value = 10*value + (c - '0');
+				if (value > Integer.MAX_VALUE) throw new IOException(file + " is not a valid PGM image.");
+				c = input.read();
+			}
+			if (c != -1 && !Character.isWhitespace(c)) throw new IOException(file + " is not a valid PGM image.");
+			return (int) value;
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+
+	/* ****************************************************************************
+	* PNG
+	*******************************************************************************/
+
+	// Reads PNG images. The image data is inflated as it is read from the IDAT chunks, and each row is
+	// unfiltered using only the row before it.
+	private static final class PngReader extends LayoutImageReader {
+		private static final int GREY = 0;
+		private static final int RGB = 2;
+		private static final int PALETTE = 3;
+		private static final int GREY_ALPHA = 4;
+		private static final int RGBA = 6;
+
+		private final DataInputStream input;
+		private final InflaterInputStream imageData;
+		private final Inflater inflater = new Inflater();
+		private final int colourType;
+		private final int bitDepth;
+		private final int bytesPerPixel;
+		private byte[] currentRow;
+		private byte[] previousRow;
+		private int[] palette;
+
+		// Constructor, reads the chunks up to the start of the image data.
+		PngReader(File file, DataInputStream input) throws IOException {
+			super(file);
+			this.input = input;
+			input.skipBytes(PNG_SIGNATURE.length);
+
+			ChunkHeader chunk = readChunkHeader();
+			if (!chunk.type.equals("IHDR") || chunk.length != 13) throw new IOException(file + " is not a valid PNG image.");
+			byte[] ihdr = readChunkData(chunk);
+			width = readInt(ihdr, 0);
+			height = readInt(ihdr, 4);
+			bitDepth = ihdr[8] & 0xFF;
+			colourType = ihdr[9] & 0xFF;
+			if (width < 0 || height < 0) throw new IOException(file + " is too large.");
+			if (ihdr[10] != 0 || ihdr[11] != 0) throw new IOException(file + " is not a valid PNG image.");
+			if (ihdr[12] != 0) throw new IOException(file + " is interlaced, which isn't supported.");
+
+			int samplesPerPixel;
+			switch (colourType) {
+				case GREY: samplesPerPixel = 1; break;
+				case RGB: samplesPerPixel = 3; break;
+				case PALETTE: samplesPerPixel = 1; break;
+				case GREY_ALPHA: samplesPerPixel = 2; break;
+				case RGBA: samplesPerPixel = 4; break;
+				default: throw new IOException(file + " has an unknown colour type.");
+			}
+			boolean validDepth = colourType == GREY ? (bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16)
+					: colourType == PALETTE ? (bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8)
+					: (bitDepth == 8 || bitDepth == 16);
+			if (!validDepth) throw new IOException(file + " has an invalid bit depth.");
+
+			long bitsPerRow = (long) width * samplesPerPixel * bitDepth;
+			if ((bitsPerRow + 7)/8 + 1 > Integer.MAX_VALUE - 8) throw new IOException(file + " is too large.");
+			int bytesPerRow = (int) ((bitsPerRow + 7)/8);
+			bytesPerPixel = Math.max(1, samplesPerPixel * bitDepth / 8);
+			currentRow = new byte[bytesPerRow];
+			previousRow = new byte[bytesPerRow];
+			maximumValue = colourType == PALETTE ? 255 : (1 << bitDepth) - 1;
+
+			// Skip the chunks before the image data, keeping the palette.
+			chunk = readChunkHeader();
+			while (!chunk.type.equals("IDAT")) {
+				if (chunk.type.equals("IEND")) throw new IOException(file + " contains no image data.");
+				if (chunk.type.equals("PLTE")) palette = readPalette(readChunkData(chunk));
+				else skipChunk(chunk);
+				chunk = readChunkHeader();
+			}
+			if (colourType == PALETTE && palette == null) throw new IOException(file + " has no palette.");
+
+			imageData = new InflaterInputStream(new ImageDataStream(chunk), inflater, BUFFER_SIZE);
+		}
+
+		@Override
+		void readNextRow(int[] row) throws IOException {
+			byte[] swap = previousRow;
+			previousRow = currentRow;
+			currentRow = swap;
+
+			int filter = imageData.read();
+			int length = 0;
+			int count;
+			while (length < currentRow.length && (count = imageData.read(currentRow, length, currentRow.length - length)) > 0) {
+				length += count;
+			}
+			if (filter < 0 || length < currentRow.length) throw new IOException(file + " ends before its last row.");
+
+			this.unfilter(filter);
+			this.convertToGrey(row);
+		}
+
+		// Reverses the filter applied to the current row. The row above the first row is all zero, as
+		// the arrays start empty.
+		private void unfilter(int filter) throws IOException {
+			byte[] row = currentRow;
+			byte[] above = previousRow;
+			int n = bytesPerPixel;
+
+			switch (filter) {
+				case 0:
+					break;
+				case 1:
+					for (int i=n; i<row.length; i++) row[i] += row[i - n];
+					break;
+				case 2:
+					for (int i=0; i<row.length; i++) row[i] += above[i];
+					break;
+				case 3:
+					for (int i=0; i<row.length; i++) {
+						int left = i >= n ? row[i - n] & 0xFF : 0;
+						row[i] += (left + (above[i] & 0xFF)) >>> 1;
+					}
+					break;
+				case 4:
+					for (int i=0; i<row.length; i++) {
+						int a = i >= n ? row[i - n] & 0xFF : 0;
+						int b = above[i] & 0xFF;
+						int c = i >= n ? above[i - n] & 0xFF : 0;
+						int p = a + b - c;
+						int pa = Math.abs(p - a);
+						int pb = Math.abs(p - b);
+						int pc = Math.abs(p - c);
+						row[i] += (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+					}
+					break;
+				default:
+					throw new IOException(file + " has an unknown row filter.");
+			}
+		}
+
+		// Converts the pixels of the current row to grey values.
+		private void convertToGrey(int[] grey) {
+			byte[] row = currentRow;
+
+			if (bitDepth < 8) {
+				int pixelsPerByte = 8 / bitDepth;
+				int mask = (1 << bitDepth) - 1;
+				for (int x=0; x<width; x++) {
+					int shift = 8 - bitDepth*(x % pixelsPerByte + 1);
+					int value = ((row[x / pixelsPerByte] & 0xFF) >>> shift) & mask;
+					grey[x] = colourType == PALETTE ? paletteGrey(value) : value;
+				}
+				return;
+			}
+
+			if (bitDepth == 8) {
+				switch (colourType) {
+					case GREY:
+						for (int x=0; x<width; x++) grey[x] = row[x] & 0xFF;
+						break;
+					case PALETTE:
+						for (int x=0; x<width; x++) grey[x] = paletteGrey(row[x] & 0xFF);
+						break;
+					case GREY_ALPHA:
+						for (int x=0; x<width; x++) grey[x] = row[2*x] & 0xFF;
+						break;
+					default:
+						for (int x=0, i=0; x<width; x++, i+=bytesPerPixel) {
+							grey[x] = returnLuminance(row[i] & 0xFF, row[i + 1] & 0xFF, row[i + 2] & 0xFF);
+						}
+				}
+				return;
+			}
+
+			for (int x=0, i=0; x<width; x++, i+=bytesPerPixel) {
+				if (colourType == GREY || colourType == GREY_ALPHA) grey[x] = readShort(row, i);
+				else grey[x] = returnLuminance(readShort(row, i), readShort(row, i + 2), readShort(row, i + 4));
+			}
+		}
+
+		// Returns the grey value of a palette entry, or 0 if the palette doesn't have that entry.
+		private int paletteGrey(int index) {
+			return index < palette.length ? palette[index] : 0;
+		}
+
+		// Returns the grey values of the colours in a palette.
+		private int[] readPalette(byte[] data) throws IOException {
+			if (data.length % 3 != 0 || data.length > 3*256) throw new IOException(file + " has an invalid palette.");
+			int[] grey = new int[data.length / 3];
+			for (int i=0; i<grey.length; i++) {
+				grey[i] = returnLuminance(data[3*i] & 0xFF, data[3*i + 1] & 0xFF, data[3*i + 2] & 0xFF);
+			}
+			return grey;
+		}
+
+		// Returns the grey value of a colour, using the same weights as ITU-R BT.601.
+		private static int returnLuminance(int red, int green, int blue) {
+			return (int) ((299L*red + 587L*green + 114L*blue + 500) / 1000);
+		}
+
+		// Returns the big-endian unsigned 16 bit value at a position in an array.
+		private static int readShort(byte[] bytes, int i) {
+			return ((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF);
+		}
+
+		// Returns the big-endian 32 bit value at a position in an array.
+		private static int readInt(byte[] bytes, int i) {
+			return ((bytes[i] & 0xFF) << 24) | ((bytes[i + 1] & 0xFF) << 16) | ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
+		}
+
+		// The length and type of a chunk, and the checksum of the data read from it so far.
+		private static final class ChunkHeader {
+			int length;
+			String type;
+			CRC32 crc = new CRC32();
+		}
+
+		// Reads the length and type of the next chunk.
+		private ChunkHeader readChunkHeader() throws IOException {
+			ChunkHeader chunk = new ChunkHeader();
+			byte[] type = new byte[4];
+			try {
+				chunk.length = input.readInt();
+				input.readFully(type);
+			}
+			catch (EOFException e) {
+				throw new IOException(file + " ends before its last chunk.");
+			}
+			if (chunk.length < 0) throw new IOException(file + " is not a valid PNG image.");
+
+			chunk.type = new String(type, StandardCharsets.US_ASCII);
+			chunk.crc.update(type);
+			return chunk;
+		}
+
+		// Reads the data of a chunk and checks its checksum.
+		private byte[] readChunkData(ChunkHeader chunk) throws IOException {
+			if (chunk.length > BUFFER_SIZE) throw new IOException(file + " has a " + chunk.type + " chunk that is too large.");
+			byte[] data = new byte[chunk.length];
+			try {
+				input.readFully(data);
+			}
+			catch (EOFException e) {
+				throw new IOException(file + " ends before its last chunk.");
+			}
+			chunk.crc.update(data);
+			this.checkChunkCrc(chunk);
+			return data;
+		}
+
+		// Skips the data of a chunk that isn't needed, without checking its checksum.
+		private void skipChunk(ChunkHeader chunk) throws IOException {
+			long remaining = chunk.length + 4L;
+			while (remaining > 0) {
+				long skipped = input.skip(remaining);
+				if (skipped <= 0) {
+					if (input.read() < 0) throw new IOException(file + " ends before its last chunk.");
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+		}
+
+		// Reads the checksum at the end of a chunk and checks it matches the data read.
+		private void checkChunkCrc(ChunkHeader chunk) throws IOException {
+			int crc;
+			try {
+				crc = input.readInt();
+			}
+			catch (EOFException e) {
+				throw new IOException(file + " ends before its last chunk.");
+			}
+			if (crc != (int) chunk.crc.getValue()) throw new IOException(file + " has a damaged " + chunk.type + " chunk.");
+		}
+
+		// The data of consecutive IDAT chunks, read as a single stream.
+		private final class ImageDataStream extends InputStream {
+			private final byte[] single = new byte[1];
+			private ChunkHeader chunk;
+			private int remaining;
+
+			ImageDataStream(ChunkHeader firstChunk) {
+				chunk = firstChunk;
+				remaining = firstChunk.length;
+			}
+
+			@Override
+			public int read() throws IOException {
+				return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				if (length == 0) return 0;
+
+				// Moves on to the next IDAT chunk when the current one has been read.
+				while (remaining == 0) {
+					if (chunk == null) return -1;
+					checkChunkCrc(chunk);
+					ChunkHeader next = readChunkHeader();
+					if (!next.type.equals("IDAT")) {
+						chunk = null;
+						return -1;
+					}
+					chunk = next;
+					remaining = next.length;
+				}
+
+				int count = input.read(buffer, offset, Math.min(length, remaining));
+				if (count < 0) throw new IOException(file + " ends before its last chunk.");
+				chunk.crc.update(buffer, offset, count);
+				remaining -= count;
+				return count;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			inflater.end();
+			input.close();
+		}
+	}
+}
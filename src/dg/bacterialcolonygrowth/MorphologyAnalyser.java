@@ -0,0 +1,307 @@
+/* *****************************************************************************
+* Description: A class used to measure the shape of the branching patterns the
+* colony grows into, without exporting images to analyse elsewhere. The grid
+* is packed into an OccupancyBitmap, in which a grid space is set if it holds
+* an alive or dead bacterium, and then measured in three ways:
+*
+* - Box counting: the bitmap is coarsened again and again by combining each
+*   2 x 2 box of bits into one, and the bits set at each size are counted with
+*   popcount. The fractal dimension is minus the slope of log(count) against
+*   log(box size), fitted by least squares over the box sizes up to half the
+*   radius of the colony, as larger boxes only see the colony's outline.
+* - Radial density: the fraction of each one grid space wide ring around the
+*   grid space the first bacterium is placed in that is part of the colony.
+* - Branch counts: the number of separate arcs of colony on the circle of each
+*   whole number radius, up to the radius of the colony.
+*
+* Each measurement is split into bands of rows, or sets of radii, which are
+* worked on by a pool of threads.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class MorphologyAnalyser implements AutoCloseable {
+
+	// Bands with fewer rows than this aren't worth giving to another thread.
+	private static final int MINIMUM_ROWS_PER_TASK = 32;
+
+	private final int numberOfThreads;
+	private final ExecutorService pool;
+
+	// Constructor, the measurements are split between the number of threads given.
+	public MorphologyAnalyser(int numberOfThreads) {
+		if (numberOfThreads < 1) throw new IllegalArgumentException("Number of threads must be an integer greater than 0.");
+
+		this.numberOfThreads = numberOfThreads;
+		pool = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "morphology-analyser");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// Measures the colony in the engine at its current step. The engine must not be updated until this
+	// returns.
+	public ColonyMorphology analyse(BacterialColonyEngine engine) throws InterruptedException {
+		return analyse(engine.getStepNumber(), engine.getBacteriaStates(), engine.getGridWidth(), engine.getGridHeight());
+	}
+
+	// Measures the colony in a snapshot.
+	public ColonyMorphology analyse(SimulationSnapshot snapshot) throws InterruptedException {
+		return analyse(snapshot.getStepNumber(), snapshot.getBacteriaStates(), snapshot.getGridWidth(), snapshot.getGridHeight());
+	}
+
+	// Measures the colony in the bacteria states given, which are stored in the same order as the engine's.
+	public ColonyMorphology analyse(long stepNumber, final byte[] bacteriaStates, int gridWidth, int gridHeight) throws InterruptedException {
+		final OccupancyBitmap bitmap = new OccupancyBitmap(gridWidth, gridHeight);
+		runInBands(gridHeight, new BandTask() {
+			@Override
+			public long run(int firstRow, int lastRow) {
+				bitmap.fillRows(bacteriaStates, firstRow, lastRow);
+				return 0;
+			}
+		});
+
+		// Box counting, halving the resolution until a single box covers the whole grid.
+		List<Long> counts = new ArrayList<Long>();
+		counts.add(bitmap.count());
+		OccupancyBitmap level = bitmap;
+		while (level.getWidth() > 1 || level.getHeight() > 1) {
+			final OccupancyBitmap finer = level;
+			final OccupancyBitmap coarser = level.createCoarserBitmap();
+			counts.add(runInBands(coarser.getHeight(), new BandTask() {
+				@Override
+				public long run(int firstRow, int lastRow) {
+					return finer.coarsenRowsInto(coarser, firstRow, lastRow);
+				}
+			}));
+			level = coarser;
+		}
+
+		int[] boxSizes = new int[counts.size()];
+		long[] boxCounts = new long[counts.size()];
+		for (int i=0; i<boxSizes.length; i++) {
+			boxSizes[i] = 1 << i;
+			boxCounts[i] = counts.get(i);
+		}
+
+		// The colony is measured from the grid space the first bacterium is placed in.
+		final int startX = gridWidth/2;
+		final int startY = gridWidth/2;
+		long farthestX = Math.max(startX, gridWidth - 1 - startX);
+		long farthestY = Math.max(startY, gridHeight - 1 - startY);
+		final int numberOfRings = (int) Math.sqrt(farthestX*farthestX + farthestY*farthestY) + 1;
+
+		final List<long[]> ringTotals = new ArrayList<long[]>();
+		final List<long[]> ringCounts = new ArrayList<long[]>();
+		final long[] largestSquaredDistance = new long[1];
+		runInBands(gridHeight, new BandTask() {
+			@Override
+			public long run(int firstRow, int lastRow) {
+				long[] totals = new long[numberOfRings];
+				long[] colony = new long[numberOfRings];
+				long largest = 0;
+
+				long[] words = bitmap.getWords();
+				int wordsPerRow = bitmap.getWordsPerRow();
+
+				for (int y=firstRow; y<lastRow; y++) {
+					long dy = y - startY;
+
+					// Along a row the ring only changes by a little from one grid space to the next, so it is
+					// moved on from the last one rather than worked out with a square root each time.
+					long dx = -startX;
+					long squaredDistance = dx*dx + dy*dy;
+					int ring = (int) Math.sqrt(squaredDistance);
+					for (int x=0; x<bitmap.getWidth(); x++) {
+						while ((long) ring*ring > squaredDistance) ring--;
+						while ((long) (ring + 1)*(ring + 1) <= squaredDistance) ring++;
+						totals[ring]++;
+						squaredDistance += 2*dx + 1;
+						dx++;
+					}
+
+					// Only the grid spaces in the colony are visited, by picking out the bits set in each word.
+					for (int k=0; k<wordsPerRow; k++) {
+						long word = words[y*wordsPerRow + k];
+						while (word != 0) {
+							long colonyDx = (k << 6) + Long.numberOfTrailingZeros(word) - startX;
+							long colonySquaredDistance = colonyDx*colonyDx + dy*dy;
+							colony[(int) Math.sqrt(colonySquaredDistance)]++;
+							largest = Math.max(largest, colonySquaredDistance);
+							word &= word - 1;
+						}
+					}
+				}
+
+				synchronized (ringTotals) {
+					ringTotals.add(totals);
+					ringCounts.add(colony);
+					largestSquaredDistance[0] = Math.max(largestSquaredDistance[0], largest);
+				}
+				return 0;
+			}
+		});
+
+		final double colonyRadius = Math.sqrt(largestSquaredDistance[0]);
+		int colonyRings = boxCounts[0] > 0 ? (int) colonyRadius + 1 : 0;
+		double[] radialDensity = new double[colonyRings];
+		for (int ring=0; ring<colonyRings; ring++) {
+			long total = 0;
+			long colony = 0;
+			for (int band=0; band<ringTotals.size(); band++) {
+				total += ringTotals.get(band)[ring];
+				colony += ringCounts.get(band)[ring];
+			}
+			radialDensity[ring] = total > 0 ? (double) colony / total : 0;
+		}
+
+		// The work of counting branches grows with the radius, so each thread takes every nth radius.
+		final int[] radialBranchCounts = new int[colonyRings];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t=0; t<Math.min(numberOfThreads, Math.max(1, colonyRings)); t++) {
+			final int firstRadius = t;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int radius=firstRadius; radius<radialBranchCounts.length; radius+=numberOfThreads) {
+						radialBranchCounts[radius] = returnNumberOfBranches(bitmap, startX, startY, radius);
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		return new ColonyMorphology(stepNumber, boxSizes, boxCounts, returnFractalDimension(boxSizes, boxCounts, colonyRadius),
+				colonyRadius, radialDensity, radialBranchCounts);
+	}
+
+	// Returns the number of separate arcs of the colony on the circle of the given radius. The circle is
+	// sampled at about two points for every grid space it passes through.
+	static int returnNumberOfBranches(OccupancyBitmap bitmap, int centreX, int centreY, int radius) {
+		if (radius == 0) return isSetInGrid(bitmap, centreX, centreY) ? 1 : 0;
+
+		int numberOfSamples = Math.max(8, (int) Math.ceil(4 * Math.PI * radius));
+		boolean first = false;
+		boolean previous = false;
+		int numberOfBranches = 0;
+
+		// The point is turned around the circle by a fixed rotation, rather than working out the sine and
+		// cosine of every angle.
+		double rotationCos = Math.cos(2 * Math.PI / numberOfSamples);
+		double rotationSin = Math.sin(2 * Math.PI / numberOfSamples);
+		double pointX = radius;
+		double pointY = 0;
+
+		for (int s=0; s<numberOfSamples; s++) {
+			boolean set = isSetInGrid(bitmap, (int) Math.floor(centreX + pointX + 0.5), (int) Math.floor(centreY + pointY + 0.5));
+			double nextX = pointX*rotationCos - pointY*rotationSin;
+			pointY = pointX*rotationSin + pointY*rotationCos;
+			pointX = nextX;
+
+			if (s == 0) first = set;
+			else if (set && !previous) numberOfBranches++;
+			previous = set;
+		}
+
+		// The circle joins up, so the first sample can start a branch too, and a circle that is entirely
+		// colony is a single branch.
+		if (first && !previous) numberOfBranches++;
+		if (numberOfBranches == 0 && first) numberOfBranches = 1;
+		return numberOfBranches;
+	}
+
+	// Returns true if x,y is inside the grid and part of the colony.
+	private static boolean isSetInGrid(OccupancyBitmap bitmap, int x, int y) {
+		return x >= 0 && x < bitmap.getWidth() && y >= 0 && y < bitmap.getHeight() && bitmap.isSet(x, y);
+	}
+
+	// Returns minus the slope of the least squares line through log(count) against log(box size), for the
+	// box sizes up to half the radius of the colony. Returns NaN if there are fewer than two such sizes.
+	static double returnFractalDimension(int[] boxSizes, long[] boxCounts, double colonyRadius) {
+		double largestBoxSize = Math.max(1, colonyRadius / 2);
+		int n = 0;
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+
+		for (int i=0; i<boxSizes.length; i++) {
+			if (boxSizes[i] > largestBoxSize || boxCounts[i] == 0) continue;
+			double x = Math.log(boxSizes[i]);
+			double y = Math.log(boxCounts[i]);
+			n++;
+			sumX += x;
+			sumY += y;
+			sumXX += x*x;
+			sumXY += x*y;
+		}
+
+		if (n < 2) return Double.NaN;
+		return -(n*sumXY - sumX*sumY) / (n*sumXX - sumX*sumX);
+	}
+
+	// Stops the threads.
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	// A piece of work on a band of rows, from firstRow up to, but not including, lastRow.
+	private interface BandTask {
+		long run(int firstRow, int lastRow);
+	}
+
+	// Splits the rows into a band for each thread and returns the sum of the results for each band. Small
+	// grids are worked on by the calling thread.
+	private long runInBands(int numberOfRows, final BandTask task) throws InterruptedException {
+		int numberOfBands = Math.max(1, Math.min(numberOfThreads, numberOfRows / MINIMUM_ROWS_PER_TASK));
+		if (numberOfBands == 1) return task.run(0, numberOfRows);
+
+		List<Callable<Long>> bands = new ArrayList<Callable<Long>>();
+		for (int b=0; b<numberOfBands; b++) {
+			final int firstRow = (int) ((long) numberOfRows * b / numberOfBands);
+			final int lastRow = (int) ((long) numberOfRows * (b + 1) / numberOfBands);
+			bands.add(new Callable<Long>() {
+				@Override
+				public Long call() {
+					return task.run(firstRow, lastRow);
+				}
+			});
+		}
+
+		long total = 0;
+		for (Long result : invokeAll(bands)) {
+			total += result;
+		}
+		return total;
+	}
+
+	// Runs the tasks on the threads and returns their results once they have all finished.
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+		List<T> results = new ArrayList<T>();
+		for (Future<T> future : pool.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error) throw (Error) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,332 @@
+/* *****************************************************************************
+* Description: A class used to store the parameters of a simulation with
+* several species of bacteria competing for several nutrients. It wraps a
+* SimulationConfig, which gives the grid, boundary condition, nutrient pattern,
+* threshold and time steps for cell division, and the parameters of species 0
+* and nutrient 0. Each further species has its own nutrient for sustenance and
+* growth, crowding function, probability of cell division, the nutrient it eats
+* and the grid space its first bacterium is placed in, and each further
+* nutrient its own rate of diffusion.
+*
+* The parameters are stored as one array for each parameter, indexed by
+* species or nutrient, rather than as an object for each species, so the
+* engine can copy them straight into the arrays it uses. Species and nutrients
+* are numbered from 0 here, and from 1 in input files and messages.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class MultiSpeciesConfig {
+
+	// Species are stored in a byte for each grid space.
+	public static final int MAXIMUM_NUMBER_OF_SPECIES = 127;
+
+	private final SimulationConfig baseConfig;
+	private final double[] diffusionRates;
+	private final int[] nutrientEaten;
+	private final int[] nutrientForSustenance;
+	private final int[] nutrientForGrowth;
+	private final int[][] crowdingFunctionValues;
+	private final double[] probabilityOfCellDivision;
+	private final int[] initialX;
+	private final int[] initialY;
+
+	// Constructor, only used by the builder.
+	private MultiSpeciesConfig(Builder builder) {
+		baseConfig = builder.baseConfig;
+		int numberOfSpecies = builder.species.size();
+
+		diffusionRates = new double[builder.diffusionRates.size()];
+		for (int n=0; n<diffusionRates.length; n++) {
+			diffusionRates[n] = builder.diffusionRates.get(n);
+		}
+
+		nutrientEaten = new int[numberOfSpecies];
+		nutrientForSustenance = new int[numberOfSpecies];
+		nutrientForGrowth = new int[numberOfSpecies];
+		crowdingFunctionValues = new int[numberOfSpecies][];
+		probabilityOfCellDivision = new double[numberOfSpecies];
+		initialX = new int[numberOfSpecies];
+		initialY = new int[numberOfSpecies];
+		for (int s=0; s<numberOfSpecies; s++) {
+			SpeciesParameters species = builder.species.get(s);
+			nutrientEaten[s] = species.nutrientEaten;
+			nutrientForSustenance[s] = species.nutrientForSustenance;
+			nutrientForGrowth[s] = species.nutrientForGrowth;
+			crowdingFunctionValues[s] = species.crowdingFunctionValues.clone();
+			probabilityOfCellDivision[s] = species.probabilityOfCellDivision;
+			initialX[s] = species.initialX;
+			initialY[s] = species.initialY;
+		}
+	}
+
+	// Returns a config with a single species and nutrient, the same as the base config.
+	public static MultiSpeciesConfig create(SimulationConfig baseConfig) {
+		return new Builder(baseConfig).build();
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the config giving the grid and the parameters shared by all species.
+	public SimulationConfig getBaseConfig() {
+		return baseConfig;
+	}
+
+	// Returns the number of species.
+	public int getNumberOfSpecies() {
+		return nutrientEaten.length;
+	}
+
+	// Returns the number of nutrients.
+	public int getNumberOfNutrients() {
+		return diffusionRates.length;
+	}
+
+	// Returns the rate of diffusion of a nutrient.
+	public double getDiffusionRate(int nutrient) {
+		return diffusionRates[nutrient];
+	}
+
+	// Returns the nutrient a species eats.
+	public int getNutrientEaten(int species) {
+		return nutrientEaten[species];
+	}
+
+	// Returns the nutrient a bacterium of a species eats each time step to survive.
+	public int getNutrientForSustenance(int species) {
+		return nutrientForSustenance[species];
+	}
+
+	// Returns the nutrient a new bacterium of a species takes when it is born.
+	public int getNutrientForGrowth(int species) {
+		return nutrientForGrowth[species];
+	}
+
+	// Returns a copy of the crowding function values of a species.
+	public int[] getCrowdingFunctionValues(int species) {
+		return crowdingFunctionValues[species].clone();
+	}
+
+	// Returns the probability of cell division of a species.
+	public double getProbabilityOfCellDivision(int species) {
+		return probabilityOfCellDivision[species];
+	}
+
+	// Returns the x coordinate of the grid space the first bacterium of a species is placed in.
+	public int getInitialX(int species) {
+		return initialX[species];
+	}
+
+	// Returns the y coordinate of the grid space the first bacterium of a species is placed in.
+	public int getInitialY(int species) {
+		return initialY[species];
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof MultiSpeciesConfig)) return false;
+		MultiSpeciesConfig config = (MultiSpeciesConfig) other;
+		return baseConfig.equals(config.baseConfig)
+				&& Arrays.equals(diffusionRates, config.diffusionRates)
+				&& Arrays.equals(nutrientEaten, config.nutrientEaten)
+				&& Arrays.equals(nutrientForSustenance, config.nutrientForSustenance)
+				&& Arrays.equals(nutrientForGrowth, config.nutrientForGrowth)
+				&& Arrays.deepEquals(crowdingFunctionValues, config.crowdingFunctionValues)
+				&& Arrays.equals(probabilityOfCellDivision, config.probabilityOfCellDivision)
+				&& Arrays.equals(initialX, config.initialX)
+				&& Arrays.equals(initialY, config.initialY);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = baseConfig.hashCode();
+		result = 31*result + Arrays.hashCode(diffusionRates);
+		result = 31*result + Arrays.hashCode(nutrientEaten);
+		result = 31*result + Arrays.hashCode(nutrientForSustenance);
+		result = 31*result + Arrays.hashCode(nutrientForGrowth);
+		result = 31*result + Arrays.deepHashCode(crowdingFunctionValues);
+		result = 31*result + Arrays.hashCode(probabilityOfCellDivision);
+		result = 31*result + Arrays.hashCode(initialX);
+		return 31*result + Arrays.hashCode(initialY);
+	}
+
+	/* ****************************************************************************
+	* Builder
+	*******************************************************************************/
+
+	// The parameters of one species while the config is being built.
+	private static final class SpeciesParameters {
+		private int nutrientEaten;
+		private int nutrientForSustenance;
+		private int nutrientForGrowth;
+		private int[] crowdingFunctionValues;
+		private double probabilityOfCellDivision;
+		private int initialX = -1;
+		private int initialY = -1;
+	}
+
+	public static final class Builder {
+
+		private final SimulationConfig baseConfig;
+		private final List<Double> diffusionRates = new ArrayList<Double>();
+		private final List<SpeciesParameters> species = new ArrayList<SpeciesParameters>();
+
+		// Constructor which starts with the single species and nutrient of the base config, its first
+		// bacterium in the same grid space as in BacterialColonyEngine.
+		public Builder(SimulationConfig baseConfig) {
+			if (baseConfig.getInitialBacteriaImage() != null || baseConfig.getInitialNutrientImage() != null) {
+				throw new IllegalArgumentException("Initial layout images can't be used with several species.");
+			}
+			this.baseConfig = baseConfig;
+			diffusionRates.add(baseConfig.getDiffusionRate());
+
+			SpeciesParameters first = returnSpecies(0);
+			first.initialX = baseConfig.getGridWidth()/2;
+			first.initialY = baseConfig.getGridWidth()/2;
+		}
+
+		// Set the rate of diffusion of a nutrient. Nutrients between the last one and this one are added
+		// with the rate of diffusion of the base config.
+		public Builder setDiffusionRate(int nutrient, double x) {
+			checkIndex(nutrient, "Nutrient");
+			try {
+				new SimulationConfig.Builder().setDiffusionRate(x);
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Nutrient " + (nutrient + 1) + ": " + e.getMessage());
+			}
+			while (diffusionRates.size() <= nutrient) diffusionRates.add(baseConfig.getDiffusionRate());
+			diffusionRates.set(nutrient, x);
+			return this;
+		}
+
+		// Set the nutrient a species eats, for sustenance and growth.
+		public Builder setNutrientEaten(int speciesIndex, int nutrient) {
+			checkIndex(nutrient, "Nutrient");
+			returnSpecies(speciesIndex).nutrientEaten = nutrient;
+			return this;
+		}
+
+		// Set nutrient for sustenance of a species.
+		public Builder setNutrientForSustenance(int speciesIndex, int x) {
+			SpeciesParameters parameters = returnSpecies(speciesIndex);
+			try {
+				new SimulationConfig.Builder().setNutrientForSustenance(x);
+			}
+			catch (IllegalArgumentException e) {
+				throw returnSpeciesException(speciesIndex, e);
+			}
+			parameters.nutrientForSustenance = x;
+			return this;
+		}
+
+		// Set nutrient for growth of a species.
+		public Builder setNutrientForGrowth(int speciesIndex, int x) {
+			SpeciesParameters parameters = returnSpecies(speciesIndex);
+			try {
+				new SimulationConfig.Builder().setNutrientForGrowth(x);
+			}
+			catch (IllegalArgumentException e) {
+				throw returnSpeciesException(speciesIndex, e);
+			}
+			parameters.nutrientForGrowth = x;
+			return this;
+		}
+
+		// Set the crowding function values of a species.
+		public Builder setCrowdingFunctionValues(int speciesIndex, int[] x) {
+			SpeciesParameters parameters = returnSpecies(speciesIndex);
+			try {
+				new SimulationConfig.Builder().setCrowdingFunctionValues(x);
+			}
+			catch (IllegalArgumentException e) {
+				throw returnSpeciesException(speciesIndex, e);
+			}
+			parameters.crowdingFunctionValues = x.clone();
+			return this;
+		}
+
+		// Set the probability of cell division of a species.
+		public Builder setProbabilityOfCellDivision(int speciesIndex, double probability) {
+			SpeciesParameters parameters = returnSpecies(speciesIndex);
+			try {
+				new SimulationConfig.Builder().setProbabilityOfCellDivision(probability);
+			}
+			catch (IllegalArgumentException e) {
+				throw returnSpeciesException(speciesIndex, e);
+			}
+			parameters.probabilityOfCellDivision = probability;
+			return this;
+		}
+
+		// Set the grid space the first bacterium of a species is placed in.
+		public Builder setInitialPosition(int speciesIndex, int x, int y) {
+			SpeciesParameters parameters = returnSpecies(speciesIndex);
+			if (x < 0 || x >= baseConfig.getGridWidth() || y < 0 || y >= baseConfig.getGridHeight()) {
+				throw new IllegalArgumentException("Species " + (speciesIndex + 1) + ": Initial position must be inside the grid.");
+			}
+			parameters.initialX = x;
+			parameters.initialY = y;
+			return this;
+		}
+
+		// Creates the config, after checking every species has a first bacterium, eats a nutrient that exists
+		// and has a crowding function value for each possible number of neighbours.
+		public MultiSpeciesConfig build() {
+			int numberOfNeighbours = baseConfig.createCrowdingNeighbourhood().getNumberOfNeighbours();
+			for (int s=0; s<species.size(); s++) {
+				SpeciesParameters parameters = species.get(s);
+				if (parameters.crowdingFunctionValues.length != numberOfNeighbours + 1) {
+					throw new IllegalArgumentException("Species " + (s + 1) + ": There should be " + (numberOfNeighbours + 1)
+							+ " values for the crowding function.");
+				}
+				if (parameters.initialX < 0) {
+					throw new IllegalArgumentException("Species " + (s + 1) + " needs an initial position.");
+				}
+				if (parameters.nutrientEaten >= diffusionRates.size()) {
+					throw new IllegalArgumentException("Species " + (s + 1) + " eats nutrient " + (parameters.nutrientEaten + 1)
+							+ ", which has no rate of diffusion.");
+				}
+			}
+			return new MultiSpeciesConfig(this);
+		}
+
+		// Returns the parameters of a species, adding it and any species before it with the parameters of
+		// the base config if they don't exist yet.
+		private SpeciesParameters returnSpecies(int speciesIndex) {
+			checkIndex(speciesIndex, "Species");
+			if (speciesIndex >= MAXIMUM_NUMBER_OF_SPECIES) {
+				throw new IllegalArgumentException("There can be at most " + MAXIMUM_NUMBER_OF_SPECIES + " species.");
+			}
+			while (species.size() <= speciesIndex) {
+				SpeciesParameters parameters = new SpeciesParameters();
+				parameters.nutrientForSustenance = baseConfig.getNutrientForSustenance();
+				parameters.nutrientForGrowth = baseConfig.getNutrientForGrowth();
+				parameters.crowdingFunctionValues = baseConfig.getCrowdingFunctionValues();
+				parameters.probabilityOfCellDivision = baseConfig.getProbabilityOfCellDivision();
+				species.add(parameters);
+			}
+			return species.get(speciesIndex);
+		}
+
+		// Checks a species or nutrient number isn't negative.
+		private static void checkIndex(int index, String name) {
+			if (index < 0) throw new IllegalArgumentException(name + " numbers must start from 1.");
+		}
+
+		// Returns an exception with the message of one thrown by SimulationConfig.Builder, saying which
+		// species it is about.
+		private static IllegalArgumentException returnSpeciesException(int speciesIndex, IllegalArgumentException e) {
+			return new IllegalArgumentException("Species " + (speciesIndex + 1) + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/* *****************************************************************************
+* Description: A class used to run a simulation with several species of
+* bacteria competing for several nutrients, from a MultiSpeciesConfig. It
+* follows the same rules as BacterialColonyEngine, and with a single species
+* and nutrient gives exactly the same colony for the same seed.
+*
+* Each nutrient diffuses at its own rate and each species eats one of them. A
+* bacterium survives while the nutrient it eats is at least 10 in its grid
+* space, and on cell division steps each empty grid space is tested for each
+* species in turn, using that species' crowding function and its own alive
+* neighbours. If several species could divide into the same grid space, the
+* one that drew the smallest random number takes it.
+*
+* The grid is stored as one primitive array for each quantity: the state and
+* the species of the bacterium in each grid space, and the levels of each
+* nutrient. The species parameters are stored the same way, one array for each
+* parameter, so each part of the update only reads the arrays it needs. The
+* alive neighbours of each species are counted 64 grid spaces at a time from
+* bit planes, so the work of cell division grows linearly with the number of
+* species.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Arrays;
+
+public class MultiSpeciesEngine {
+
+	private final MultiSpeciesConfig config;
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int numberOfCellsInGrid;
+	private final int numberOfSpecies;
+	private final int numberOfNutrients;
+	private final boolean periodic;
+	private final Neighbourhood crowdingNeighbourhood;
+	private final boolean absorbingMiddle;
+	private final int thresholdForDivision;
+	private final int numberOfTimeStepsForCellDivision;
+
+	// Species parameters, one array for each parameter indexed by species.
+	private final int[] nutrientEaten;
+	private final int[] nutrientForSustenance;
+	private final int[] nutrientForGrowth;
+	private final int[][] crowdingFunctionValues;
+	private final double[] probabilityOfCellDivision;
+
+	// Nutrient levels, one array for each nutrient, and the weights each nutrient diffuses with.
+	private double[][] nutrientLevels;
+	private double[][] updatedNutrientLevels;
+	private final NutrientDiffusion[] diffusion;
+
+	// The state of each grid space and the species of the bacterium in it, alive or dead.
+	private final byte[] bacteriaStates;
+	private final byte[] speciesOfBacteria;
+
+	// Each species draws its random numbers from its own generator, species 0 from the seed itself and the
+	// others from streams of it for their species number (see CounterBasedRandom.createStream).
+	private final long seed;
+	private final CounterBasedRandom[] random;
+
+	// The states before this update, with the alive plane of each holding one species.
+	private final BacteriaStatePlanes[] statesBeforeThisUpdate;
+	private final boolean[][] countsThatCanDivide;
+	private final long[][] neighbourCounts;
+	private final long[] candidatesOfSpecies;
+
+	private long stepNumber = 0;
+	private int timeStepForCellDivisionCounter = 1;
+	private final int[] numberOfAliveBacteria;
+	private int birthsInLastUpdate = 0;
+	private int deathsInLastUpdate = 0;
+
+	// Constructor, creates the grid from the config with the first bacterium of each species placed.
+	public MultiSpeciesEngine(MultiSpeciesConfig config, long seed) {
+		SimulationConfig baseConfig = config.getBaseConfig();
+		this.config = config;
+		this.seed = seed;
+		gridWidth = baseConfig.getGridWidth();
+		gridHeight = baseConfig.getGridHeight();
+		numberOfCellsInGrid = gridWidth*gridHeight;
+		numberOfSpecies = config.getNumberOfSpecies();
+		numberOfNutrients = config.getNumberOfNutrients();
+		periodic = baseConfig.getBoundaryCondition().equals("periodic");
+		crowdingNeighbourhood = baseConfig.createCrowdingNeighbourhood();
+		absorbingMiddle = baseConfig.getNutrientLevelPatternChoice().equals("absorbingmiddle");
+		thresholdForDivision = baseConfig.getThresholdForCellDivision();
+		numberOfTimeStepsForCellDivision = baseConfig.getNumberOfTimestepsForCellDivision();
+
+		nutrientEaten = new int[numberOfSpecies];
+		nutrientForSustenance = new int[numberOfSpecies];
+		nutrientForGrowth = new int[numberOfSpecies];
+		crowdingFunctionValues = new int[numberOfSpecies][];
+		probabilityOfCellDivision = new double[numberOfSpecies];
+		random = new CounterBasedRandom[numberOfSpecies];
+		statesBeforeThisUpdate = new BacteriaStatePlanes[numberOfSpecies];
+		countsThatCanDivide = new boolean[numberOfSpecies][];
+		neighbourCounts = new long[numberOfSpecies][crowdingNeighbourhood.getNumberOfCountBits()];
+		candidatesOfSpecies = new long[numberOfSpecies];
+		numberOfAliveBacteria = new int[numberOfSpecies];
+		for (int s=0; s<numberOfSpecies; s++) {
+			nutrientEaten[s] = config.getNutrientEaten(s);
+			nutrientForSustenance[s] = config.getNutrientForSustenance(s);
+			nutrientForGrowth[s] = config.getNutrientForGrowth(s);
+			crowdingFunctionValues[s] = config.getCrowdingFunctionValues(s);
+			probabilityOfCellDivision[s] = config.getProbabilityOfCellDivision(s);
+			random[s] = CounterBasedRandom.createStream(seed, s);
+			statesBeforeThisUpdate[s] = new BacteriaStatePlanes(gridWidth, gridHeight);
+			countsThatCanDivide[s] = returnCountsThatCanDivide(s);
+		}
+
+		nutrientLevels = new double[numberOfNutrients][numberOfCellsInGrid];
+		updatedNutrientLevels = new double[numberOfNutrients][numberOfCellsInGrid];
+		diffusion = new NutrientDiffusion[numberOfNutrients];
+		Neighbourhood diffusionNeighbourhood = baseConfig.createDiffusionNeighbourhood();
+		for (int n=0; n<numberOfNutrients; n++) {
+			this.setInitialNutrientLevels(n, baseConfig.getNutrientLevelPatternChoice());
+
+			// Nutrients that diffuse at the same rate share their weights.
+			for (int m=0; m<n && diffusion[n] == null; m++) {
+				if (config.getDiffusionRate(m) == config.getDiffusionRate(n)) diffusion[n] = diffusion[m];
+			}
+			if (diffusion[n] == null) {
+				diffusion[n] = new NutrientDiffusion(gridWidth, gridHeight, config.getDiffusionRate(n), baseConfig.getBoundaryCondition(),
+						diffusionNeighbourhood);
+			}
+		}
+
+		// Later species replace earlier ones placed in the same grid space.
+		bacteriaStates = new byte[numberOfCellsInGrid];
+		speciesOfBacteria = new byte[numberOfCellsInGrid];
+		for (int s=0; s<numberOfSpecies; s++) {
+			int i = config.getInitialX(s) + config.getInitialY(s)*gridWidth;
+			if (bacteriaStates[i] == BacterialColonyEngine.ALIVE) numberOfAliveBacteria[speciesOfBacteria[i]]--;
+			bacteriaStates[i] = BacterialColonyEngine.ALIVE;
+			speciesOfBacteria[i] = (byte) s;
+			numberOfAliveBacteria[s]++;
+		}
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the config the engine was created from.
+	public MultiSpeciesConfig getConfig() {
+		return config;
+	}
+
+	// Returns the grid width.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the grid height.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the number of species.
+	public int getNumberOfSpecies() {
+		return numberOfSpecies;
+	}
+
+	// Returns the number of nutrients.
+	public int getNumberOfNutrients() {
+		return numberOfNutrients;
+	}
+
+	// Returns the seed of the random numbers.
+	public long getRandomSeed() {
+		return seed;
+	}
+
+	// Returns the number of steps carried out.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the number of bacteria born in the last update, of all species.
+	public int getBirthsInLastUpdate() {
+		return birthsInLastUpdate;
+	}
+
+	// Returns the number of bacteria that died in the last update, of all species.
+	public int getDeathsInLastUpdate() {
+		return deathsInLastUpdate;
+	}
+
+	// Returns the number of alive bacteria of a species.
+	public int getNumberOfAliveBacteria(int species) {
+		return numberOfAliveBacteria[species];
+	}
+
+	// Returns the levels of a nutrient, indexed as in BacterialColonyEngine. The array is the one the engine
+	// uses, so it must not be changed.
+	public double[] getNutrientLevels(int nutrient) {
+		return nutrientLevels[nutrient];
+	}
+
+	// Returns the total of a nutrient over the grid.
+	public double getTotalNutrient(int nutrient) {
+		double total = 0;
+		for (double level : nutrientLevels[nutrient]) {
+			total += level;
+		}
+		return total;
+	}
+
+	// Returns the bacteria states, indexed as in BacterialColonyEngine. The array is the one the engine
+	// uses, so it must not be changed.
+	public byte[] getBacteriaStates() {
+		return bacteriaStates;
+	}
+
+	// Returns the species of the bacterium in each grid space, which is only meaningful where there is one.
+	// The array is the one the engine uses, so it must not be changed.
+	public byte[] getSpeciesOfBacteria() {
+		return speciesOfBacteria;
+	}
+
+	// Returns the state of grid space x,y.
+	public byte getBacteriumState(int x, int y) {
+		return bacteriaStates[x + y*gridWidth];
+	}
+
+	// Returns the species of the bacterium in grid space x,y, or -1 if it is empty.
+	public int getSpeciesOfBacterium(int x, int y) {
+		int i = x + y*gridWidth;
+		return bacteriaStates[i] == BacterialColonyEngine.EMPTY ? -1 : speciesOfBacteria[i];
+	}
+
+	/* ****************************************************************************
+	* Update Methods
+	*******************************************************************************/
+
+	// Creates the grid for the next time step, first diffusing the nutrients, then updating the bacteria.
+	public void createUpdatedGrid() {
+		this.updateNutrientLevelsAfterDiffusion();
+		this.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+		stepNumber++;
+	}
+
+	// Updates the levels of each nutrient for diffusion after a single time step.
+	private void updateNutrientLevelsAfterDiffusion() {
+		for (int n=0; n<numberOfNutrients; n++) {
+			diffusion[n].update(nutrientLevels[n], updatedNutrientLevels[n]);
+
+			double[] current = nutrientLevels[n];
+			nutrientLevels[n] = updatedNutrientLevels[n];
+			updatedNutrientLevels[n] = current;
+
+			// The absorbing middle row takes up every nutrient.
+			if (absorbingMiddle) {
+				int startOfMiddleRow = (gridHeight/2)*gridWidth;
+				Arrays.fill(nutrientLevels[n], startOfMiddleRow, startOfMiddleRow + gridWidth, 0.0);
+			}
+		}
+	}
+
+	// Updates the bacteria and the nutrient levels after bacteria have consumed some nutrient and, on the
+	// time steps where it can occur, after cell division. As in BacterialColonyEngine, each row has its
+	// alive bacteria updated before the empty grid spaces are tested for cell division.
+	private void updateBacteriaAndNutrientAfterConsumptionAndCellDivision() {
+		boolean checkForCellDivision = timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision;
+		int wordsPerRow = statesBeforeThisUpdate[0].getWordsPerRow();
+		int births = 0;
+		int deaths = 0;
+
+		if (checkForCellDivision) {
+			for (int s=0; s<numberOfSpecies; s++) {
+				statesBeforeThisUpdate[s].fillRowsForSpecies(bacteriaStates, speciesOfBacteria, s, 0, gridHeight);
+			}
+		}
+
+		for (int y=0; y<gridHeight; y++) {
+			int rowStart = y*gridWidth;
+			for (int i=rowStart; i<rowStart + gridWidth; i++) {
+				if (bacteriaStates[i] == BacterialColonyEngine.ALIVE && this.updateAliveGridSpace(i)) deaths++;
+			}
+
+			if (!checkForCellDivision) continue;
+
+			for (int k=0; k<wordsPerRow; k++) {
+				long empty = statesBeforeThisUpdate[0].returnEmptyWord(y, k);
+				if (empty == 0) continue;
+
+				// Find the empty grid spaces each species has enough neighbours to divide into.
+				long candidates = 0;
+				for (int s=0; s<numberOfSpecies; s++) {
+					statesBeforeThisUpdate[s].countAliveNeighbours(y, k, periodic, crowdingNeighbourhood, neighbourCounts[s]);
+					candidatesOfSpecies[s] = empty & BacteriaStatePlanes.returnGridSpacesWithCounts(neighbourCounts[s], countsThatCanDivide[s]);
+					candidates |= candidatesOfSpecies[s];
+				}
+
+				while (candidates != 0) {
+					int b = Long.numberOfTrailingZeros(candidates);
+					candidates &= candidates - 1;
+					if (this.updateEmptyGridSpace(rowStart + (k << 6) + b, b)) births++;
+				}
+			}
+		}
+
+		birthsInLastUpdate = births;
+		deathsInLastUpdate = deaths;
+
+		// Reset the cell division counter if necessary, otherwise increment it.
+		if (checkForCellDivision) {
+			timeStepForCellDivisionCounter = 1;
+		}
+		else {
+			timeStepForCellDivisionCounter += 1;
+		}
+	}
+
+	// Updates the nutrient and bacterium for a grid space that contains an alive bacterium. Returns true
+	// if the bacterium died.
+	private boolean updateAliveGridSpace(int i) {
+		int species = speciesOfBacteria[i];
+		double[] nutrient = nutrientLevels[nutrientEaten[species]];
+
+		if (nutrient[i] >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_SURVIVAL) {
+			nutrient[i] -= nutrientForSustenance[species];
+			return false;
+		}
+		else {
+			bacteriaStates[i] = BacterialColonyEngine.REMAINS;
+			nutrient[i] = 0;
+			numberOfAliveBacteria[species]--;
+			return true;
+		}
+	}
+
+	// Updates an empty grid space, bit b of the words of neighbour counts, for time steps in which cell
+	// division can occur. Of the species that could divide into it, the one that drew the smallest random
+	// number does. Returns true if a bacterium was born in it.
+	private boolean updateEmptyGridSpace(int i, int b) {
+		int winner = -1;
+		double smallestRandomNumber = 1;
+
+		for (int s=0; s<numberOfSpecies; s++) {
+			if (((candidatesOfSpecies[s] >>> b) & 1) == 0) continue;
+
+			double nutrientInCell = nutrientLevels[nutrientEaten[s]][i];
+			int numberOfNeighbours = BacteriaStatePlanes.returnCount(neighbourCounts[s], b);
+			if (crowdingFunctionValues[s][numberOfNeighbours] * nutrientInCell > thresholdForDivision
+					&& nutrientInCell >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_CELL_DIVISION) {
+				double randomNumber = random[s].nextDouble(stepNumber, i);
+				if (randomNumber < probabilityOfCellDivision[s] && randomNumber < smallestRandomNumber) {
+					winner = s;
+					smallestRandomNumber = randomNumber;
+				}
+			}
+		}
+
+		if (winner < 0) return false;
+		bacteriaStates[i] = BacterialColonyEngine.ALIVE;
+		speciesOfBacteria[i] = (byte) winner;
+		nutrientLevels[nutrientEaten[winner]][i] -= nutrientForGrowth[winner];
+		numberOfAliveBacteria[winner]++;
+		return true;
+	}
+
+	// Returns which numbers of alive neighbours the crowding function of a species leaves any chance of cell
+	// division for, as in BacterialColonyEngine.
+	private boolean[] returnCountsThatCanDivide(int species) {
+		boolean[] counts = new boolean[crowdingFunctionValues[species].length];
+		for (int n=0; n<counts.length; n++) {
+			counts[n] = crowdingFunctionValues[species][n] != 0 || thresholdForDivision < 0;
+		}
+		return counts;
+	}
+
+	// Sets the initial levels of a nutrient to the pattern given. Each nutrient draws its random pattern from
+	// a different step before the first, so nutrient 0 has the same pattern as in BacterialColonyEngine.
+	private void setInitialNutrientLevels(int nutrient, String pattern) {
+		if (pattern.equals("random")) {
+			for (int i=0; i<numberOfCellsInGrid; i++) {
+				nutrientLevels[nutrient][i] = random[0].nextInt(CounterBasedRandom.INITIAL_PATTERN_STEP - nutrient, i, 101);
+			}
+		}
+		else Arrays.fill(nutrientLevels[nutrient], 100.0);
+	}
+}
@@ -0,0 +1,76 @@
+/* *****************************************************************************
+* Description: A command line program that runs a simulation with several
+* species and nutrients without a display, reading the species and nutrients
+* from the numbered lines of the input file (see InputFileReader). It prints
+* the number of alive bacteria of each species and the total of each nutrient.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+public class MultiSpeciesRunner {
+
+	private static final String USAGE =
+			"Usage: MultiSpeciesRunner <input file> <number of steps> [options]\n"
+			+ "Options:\n"
+			+ "  --seed <n>            Seed for the random numbers (default: random)\n"
+			+ "  --report-every <n>    Print a line every n steps";
+
+	// Returns a line with the step number, the alive bacteria of each species and the total of each nutrient.
+	static String createSummary(MultiSpeciesEngine engine) {
+		StringBuilder summary = new StringBuilder("step=" + engine.getStepNumber());
+		for (int s=0; s<engine.getNumberOfSpecies(); s++) {
+			summary.append(" species").append(s + 1).append("=").append(engine.getNumberOfAliveBacteria(s));
+		}
+		for (int n=0; n<engine.getNumberOfNutrients(); n++) {
+			summary.append(String.format(Locale.ROOT, " nutrient%d=%.2f", n + 1, engine.getTotalNutrient(n)));
+		}
+		return summary.toString();
+	}
+
+	public static void main(String[] args) {
+		try {
+			if (args.length < 2) throw new IllegalArgumentException("An input file and a number of steps are needed.");
+
+			File inputFile = new File(args[0]);
+			int numberOfSteps = Integer.parseInt(args[1]);
+			long seed = new Random().nextLong();
+			int reportEvery = 0;
+
+			for (int i=2; i<args.length; i++) {
+				if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+				String option = args[i];
+				String value = args[++i];
+
+				if (option.equals("--seed")) seed = Long.parseLong(value);
+				else if (option.equals("--report-every")) reportEvery = Integer.parseInt(value);
+				else throw new IllegalArgumentException("Unknown option " + option + ".");
+			}
+			if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must not be negative.");
+
+			MultiSpeciesEngine engine = new MultiSpeciesEngine(new InputFileReader(inputFile).readMultiSpeciesConfig(), seed);
+			for (int i=0; i<numberOfSteps; i++) {
+				engine.createUpdatedGrid();
+				if (reportEvery > 0 && (i + 1) % reportEvery == 0 && i + 1 < numberOfSteps) {
+					System.out.println(createSummary(engine));
+				}
+			}
+			System.out.println(createSummary(engine) + " seed=" + seed);
+		}
+		catch (IOException e) {
+			System.err.println("Cannot read input file: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
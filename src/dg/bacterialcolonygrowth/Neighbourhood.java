@@ -0,0 +1,164 @@
+/* *****************************************************************************
+* Description: A class used to describe which grid spaces are neighbours of a
+* grid space, for counting the alive neighbours used by the crowding function
+* and for sharing out nutrient in diffusion.
+*
+* A neighbourhood has a type and a radius. Moore neighbourhoods hold the grid
+* spaces within the radius in both x and y (8 for radius 1, 24 for radius 2),
+* von Neumann neighbourhoods those within the radius in x and y added together
+* (4 for radius 1, 12 for radius 2), and hexagonal neighbourhoods those within
+* the radius on a hexagonal lattice (6 for radius 1, 18 for radius 2). The
+* hexagonal lattice is stored on the square grid with every odd row shifted
+* half a grid space to the east, so the offsets of the neighbours depend on
+* whether a row is even or odd.
+*
+* The offsets are worked out once, in order of row and then column, and kept
+* in tables for even and odd rows, so the inner loops that use them only add
+* the offsets to a position.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Neighbourhood {
+
+	public static final String MOORE = "moore";
+	public static final String VON_NEUMANN = "vonneumann";
+	public static final String HEXAGONAL = "hexagonal";
+
+	// Largest radius of a neighbourhood, which keeps the count of a Moore neighbourhood below 81.
+	public static final int MAXIMUM_RADIUS = 4;
+
+	private final String type;
+	private final int radius;
+
+	// Offsets of the neighbours of a grid space in an even row (index 0) and in an odd row (index 1).
+	private final int[][] xOffsets = new int[2][];
+	private final int[][] yOffsets = new int[2][];
+
+	// Constructor, works out the offset tables. Throws an IllegalArgumentException if the type or radius
+	// aren't valid.
+	public Neighbourhood(String type, int radius) {
+		checkType(type);
+		checkRadius(radius);
+		this.type = type;
+		this.radius = radius;
+
+		for (int parity=0; parity<2; parity++) {
+			List<int[]> offsets = new ArrayList<int[]>();
+			for (int dy=-radius; dy<=radius; dy++) {
+				for (int dx=-radius; dx<=radius; dx++) {
+					if ((dx != 0 || dy != 0) && isWithinRadius(dx, dy, parity)) offsets.add(new int[] {dx, dy});
+				}
+			}
+
+			xOffsets[parity] = new int[offsets.size()];
+			yOffsets[parity] = new int[offsets.size()];
+			for (int n=0; n<offsets.size(); n++) {
+				xOffsets[parity][n] = offsets.get(n)[0];
+				yOffsets[parity][n] = offsets.get(n)[1];
+			}
+		}
+	}
+
+	// Throws an IllegalArgumentException if the type of neighbourhood isn't valid.
+	public static void checkType(String type) {
+		if (!(type.equals(MOORE) || type.equals(VON_NEUMANN) || type.equals(HEXAGONAL))) {
+			throw new IllegalArgumentException("Neighbourhood must be either 'moore', 'vonneumann' or 'hexagonal'.");
+		}
+	}
+
+	// Throws an IllegalArgumentException if the radius of a neighbourhood isn't valid.
+	public static void checkRadius(int radius) {
+		if (radius < 1 || radius > MAXIMUM_RADIUS) {
+			throw new IllegalArgumentException("Neighbourhood radius must be an integer between 1 and " + MAXIMUM_RADIUS + ".");
+		}
+	}
+
+	// Returns the default neighbourhood for counting alive neighbours, the 8 grid spaces around a grid space.
+	public static Neighbourhood createDefaultCrowdingNeighbourhood() {
+		return new Neighbourhood(MOORE, 1);
+	}
+
+	// Returns the default neighbourhood for diffusion, the 4 grid spaces sharing an edge with a grid space.
+	public static Neighbourhood createDefaultDiffusionNeighbourhood() {
+		return new Neighbourhood(VON_NEUMANN, 1);
+	}
+
+	// Returns true if the grid space at dx,dy from a grid space in a row of the parity given is within the
+	// radius. Hexagonal distances are worked out by converting both grid spaces to axial coordinates.
+	private boolean isWithinRadius(int dx, int dy, int parity) {
+		if (type.equals(MOORE)) return Math.max(Math.abs(dx), Math.abs(dy)) <= radius;
+		if (type.equals(VON_NEUMANN)) return Math.abs(dx) + Math.abs(dy) <= radius;
+
+		int y = parity + dy;
+		int dq = dx - (y - (y & 1))/2;
+		return (Math.abs(dq) + Math.abs(dy) + Math.abs(dq + dy))/2 <= radius;
+	}
+
+	// Returns the type, 'moore', 'vonneumann' or 'hexagonal'.
+	public String getType() {
+		return type;
+	}
+
+	// Returns the radius, which is also the largest offset in x or y of any neighbour.
+	public int getRadius() {
+		return radius;
+	}
+
+	// Returns the number of neighbours of each grid space.
+	public int getNumberOfNeighbours() {
+		return xOffsets[0].length;
+	}
+
+	// Returns the number of bits needed to hold a count of neighbours, from 0 up to the number of neighbours.
+	public int getNumberOfCountBits() {
+		return 32 - Integer.numberOfLeadingZeros(getNumberOfNeighbours());
+	}
+
+	// Returns true if this is the default neighbourhood for counting alive neighbours, which is the only one
+	// CellularAutomataBacteriaRules supports.
+	public boolean isDefaultCrowdingNeighbourhood() {
+		return type.equals(MOORE) && radius == 1;
+	}
+
+	// Returns true if this is the default neighbourhood for diffusion, which is the only one
+	// CellularAutomataBacteriaRules supports.
+	public boolean isDefaultDiffusionNeighbourhood() {
+		return type.equals(VON_NEUMANN) && radius == 1;
+	}
+
+	// Returns the x offsets of the neighbours of a grid space in row y. The array is the one used by the
+	// neighbourhood, so it must not be changed.
+	int[] returnXOffsets(int y) {
+		return xOffsets[y & 1];
+	}
+
+	// Returns the y offsets of the neighbours of a grid space in row y, in the same order as the x offsets.
+	// The array is the one used by the neighbourhood, so it must not be changed.
+	int[] returnYOffsets(int y) {
+		return yOffsets[y & 1];
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof Neighbourhood)) return false;
+		Neighbourhood neighbourhood = (Neighbourhood) other;
+		return type.equals(neighbourhood.type) && radius == neighbourhood.radius;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31*type.hashCode() + radius;
+	}
+
+	@Override
+	public String toString() {
+		return type + " radius " + radius;
+	}
+}
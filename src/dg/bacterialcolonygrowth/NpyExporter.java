@@ -0,0 +1,132 @@
+/* *****************************************************************************
+* Description: A class used to save the nutrient levels and bacteria states of
+* a simulation as NumPy .npy files, so they can be loaded with numpy.load.
+* Each file holds a two dimensional array with one row for each row of the
+* grid: float64 nutrient levels, or uint8 bacteria states (0 empty, 1 alive,
+* 2 remains).
+*
+* The arrays are copied straight from the engine into memory mappings of the
+* file, so nothing is boxed or formatted as text and no buffer the size of the
+* grid is created.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+public class NpyExporter {
+
+	// The first bytes of every .npy file, followed by the format version (1.0).
+	private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+
+	// The header is padded so the array starts at a multiple of this many bytes.
+	private static final int HEADER_ALIGNMENT = 64;
+
+	// Largest part of the file that is mapped at once, as a mapping can be at most 2 GB.
+	private static final int MAXIMUM_MAPPING_SIZE = 1 << 30;
+
+	private NpyExporter() {
+	}
+
+	// Saves the current nutrient levels of the engine.
+	public static void writeNutrientLevels(BacterialColonyEngine engine, File file) throws IOException {
+		writeNutrientLevels(engine.getNutrientLevels(), engine.getGridWidth(), engine.getGridHeight(), file);
+	}
+
+	// Saves the current bacteria states of the engine.
+	public static void writeBacteriaStates(BacterialColonyEngine engine, File file) throws IOException {
+		writeBacteriaStates(engine.getBacteriaStates(), engine.getGridWidth(), engine.getGridHeight(), file);
+	}
+
+	// Saves the nutrient levels of a snapshot.
+	public static void writeNutrientLevels(SimulationSnapshot snapshot, File file) throws IOException {
+		writeNutrientLevels(snapshot.getNutrientLevels(), snapshot.getGridWidth(), snapshot.getGridHeight(), file);
+	}
+
+	// Saves the bacteria states of a snapshot.
+	public static void writeBacteriaStates(SimulationSnapshot snapshot, File file) throws IOException {
+		writeBacteriaStates(snapshot.getBacteriaStates(), snapshot.getGridWidth(), snapshot.getGridHeight(), file);
+	}
+
+	// Saves nutrient levels, stored in the order x + y*gridWidth, as a little-endian float64 array.
+	private static void writeNutrientLevels(double[] nutrientLevels, int gridWidth, int gridHeight, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		ByteBuffer header = createHeader("<f8", gridWidth, gridHeight);
+		long arrayStart = header.remaining();
+
+		try (FileChannel channel = openForWriting(file)) {
+			writeHeader(channel, header);
+
+			// Each mapping covers a whole number of doubles.
+			int doublesPerMapping = MAXIMUM_MAPPING_SIZE / 8;
+			for (int i=0; i<nutrientLevels.length; i+=doublesPerMapping) {
+				int count = Math.min(doublesPerMapping, nutrientLevels.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, arrayStart + 8L*i, 8L*count);
+				mapping.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(nutrientLevels, i, count);
+			}
+		}
+		FlightRecorderEvents.endInputOutput(event, "npy export", file, arrayStart + 8L*nutrientLevels.length);
+	}
+
+	// Saves bacteria states, stored in the order x + y*gridWidth, as a uint8 array.
+	private static void writeBacteriaStates(byte[] bacteriaStates, int gridWidth, int gridHeight, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		ByteBuffer header = createHeader("|u1", gridWidth, gridHeight);
+		long arrayStart = header.remaining();
+
+		try (FileChannel channel = openForWriting(file)) {
+			writeHeader(channel, header);
+
+			for (int i=0; i<bacteriaStates.length; i+=MAXIMUM_MAPPING_SIZE) {
+				int count = Math.min(MAXIMUM_MAPPING_SIZE, bacteriaStates.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, arrayStart + i, count);
+				mapping.put(bacteriaStates, i, count);
+			}
+		}
+		FlightRecorderEvents.endInputOutput(event, "npy export", file, arrayStart + bacteriaStates.length);
+	}
+
+	// Creates the header of a two dimensional array with one row for each row of the grid. The header is
+	// the magic string, its length and a Python dictionary describing the array, padded with spaces and
+	// ended with a new line.
+	static ByteBuffer createHeader(String type, int gridWidth, int gridHeight) {
+		String description = "{'descr': '" + type + "', 'fortran_order': False, 'shape': (" + gridHeight + ", " + gridWidth + "), }";
+		int unpaddedLength = MAGIC.length + 2 + description.length() + 1;
+		int paddedLength = (unpaddedLength + HEADER_ALIGNMENT - 1) / HEADER_ALIGNMENT * HEADER_ALIGNMENT;
+
+		StringBuilder dictionary = new StringBuilder(description);
+		for (int i=unpaddedLength; i<paddedLength; i++) {
+			dictionary.append(' ');
+		}
+		dictionary.append('\n');
+
+		ByteBuffer header = ByteBuffer.allocate(paddedLength).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putShort((short) (paddedLength - MAGIC.length - 2));
+		header.put(dictionary.toString().getBytes(StandardCharsets.US_ASCII));
+		header.flip();
+		return header;
+	}
+
+	// Opens a file for writing, removing anything already in it.
+	private static FileChannel openForWriting(File file) throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	// Writes the header at the start of the file.
+	private static void writeHeader(FileChannel channel, ByteBuffer header) throws IOException {
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+}
@@ -0,0 +1,431 @@
+/* *****************************************************************************
+* Description: A class used to update nutrient levels for diffusion. It holds
+* the weights of the update matrix of CellularAutomataBacteriaRules for a grid
+* of a given size, rate of diffusion and boundary condition: two for every grid
+* space away from the boundary, and a list for each grid space on it, along
+* with the positions that lose nutrient out of the grid.
+*
+* It holds no nutrient levels itself, so the same weights can be used for any
+* number of nutrients that diffuse at the same rate.
+*
+* Other neighbourhoods than the 4 grid spaces sharing an edge can be used (see
+* Neighbourhood). Each grid space then keeps 1 - delta of its nutrient and
+* gives delta divided by the number of neighbours to each of them. What would
+* go out of the grid stays in the grid space with reflecting boundaries,
+* wraps around with periodic boundaries and is lost with absorbent ones. Grid
+* spaces away from the boundary take their nutrient from the positions in a
+* table of offsets, and those within the radius of the boundary from lists
+* worked out in the constructor, in the same way as the default weights.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class NutrientDiffusion {
+
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int numberOfCellsInGrid;
+	private final double delta;
+	private final String boundaryType;
+
+	// Number of rows and columns in from each edge whose grid spaces use the boundary weights.
+	private int boundaryDistance = 1;
+
+	// Offsets and weights of the positions grid spaces away from the boundary take nutrient from, for even
+	// rows (index 0) and odd rows (index 1), in increasing order of offset. Null for the default
+	// neighbourhood, whose grid spaces away from the boundary are updated with weightOfCellItself and
+	// weightOfNeighbour.
+	private int[][] interiorOffsets;
+	private double[][] interiorWeights;
+
+	// Weights for grid spaces that are not on the boundary.
+	private double weightOfCellItself;
+	private double weightOfNeighbour;
+
+	// Weights for the grid spaces on the boundary. The weights for boundaryPositions[k] are stored from
+	// boundaryWeightStart[k] up to boundaryWeightStart[k+1], in order of the position they are applied to.
+	private int[] boundaryPositions;
+	private int[] boundaryWeightStart;
+	private int[] boundaryWeightPositions;
+	private double[] boundaryWeights;
+
+	// Positions that lose some of their nutrient out of the grid in an update, which only happens with
+	// absorbent boundaries, along with the fraction of their nutrient that is lost.
+	private int[] leakingPositions;
+	private double[] leakingFractions;
+
+	// Constructor, creates the weights for a grid of the size given with the rate of diffusion (delta) and
+	// boundary condition given. The grid spaces on the boundary use the same weights as the update matrix
+	// of CellularAutomataBacteriaRules, applied in the same order, so both give the same nutrient levels.
+	public NutrientDiffusion(int gridWidth, int gridHeight, double delta, String boundaryType) {
+		this(gridWidth, gridHeight, delta, boundaryType, Neighbourhood.createDefaultDiffusionNeighbourhood());
+	}
+
+	// Constructor, creates the weights as above for nutrient shared with the neighbourhood given.
+	public NutrientDiffusion(int gridWidth, int gridHeight, double delta, String boundaryType, Neighbourhood neighbourhood) {
+		this.gridWidth = gridWidth;
+		this.gridHeight = gridHeight;
+		this.delta = delta;
+		this.boundaryType = boundaryType;
+		numberOfCellsInGrid = gridWidth*gridHeight;
+
+		if (neighbourhood.isDefaultDiffusionNeighbourhood()) this.createDefaultWeights();
+		else this.createNeighbourhoodWeights(neighbourhood);
+	}
+
+	// Creates the weights of the update matrix of CellularAutomataBacteriaRules, for nutrient shared with
+	// the 4 grid spaces sharing an edge.
+	private void createDefaultWeights() {
+		weightOfCellItself = 1 - delta;
+		weightOfNeighbour = delta/4;
+
+		int numberOfBoundaryPositions = 0;
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (isOnBoundary(i)) numberOfBoundaryPositions++;
+		}
+
+		boundaryPositions = new int[numberOfBoundaryPositions];
+		boundaryWeightStart = new int[numberOfBoundaryPositions + 1];
+		boundaryWeightPositions = new int[numberOfBoundaryPositions * 5];
+		boundaryWeights = new double[numberOfBoundaryPositions * 5];
+
+		int k = 0;
+		int numberOfWeights = 0;
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (!isOnBoundary(i)) continue;
+
+			boundaryPositions[k] = i;
+			boundaryWeightStart[k] = numberOfWeights;
+			numberOfWeights += fillBoundaryWeights(i, gridWidth, gridHeight, delta, boundaryType, boundaryWeightPositions,
+					boundaryWeights, numberOfWeights);
+			k++;
+		}
+		boundaryWeightStart[numberOfBoundaryPositions] = numberOfWeights;
+
+		this.createLeakingPositions();
+	}
+
+	// Puts the positions and weights that give the nutrient of boundary position i after an update into the
+	// arrays given from index start, in increasing order of position, and returns how many there are. This
+	// is the row of the update matrix for position i, with the values that are 0 left out. It depends on
+	// nothing but its arguments, so SparseColonyEngine can work out the weights of only the grid spaces it
+	// needs.
+	static int fillBoundaryWeights(int i, int gridWidth, int gridHeight, double delta, String boundaryType,
+			int[] positions, double[] weights, int start) {
+		int numberOfCellsInGrid = gridWidth*gridHeight;
+
+		// Positions whose nutrient can reach position i in one update, in increasing order.
+		int[] candidates = {i - numberOfCellsInGrid + gridWidth, i - gridWidth, i - gridWidth + 1, i - 1, i,
+				i + 1, i + gridWidth - 1, i + gridWidth, i + numberOfCellsInGrid - gridWidth};
+		Arrays.sort(candidates);
+
+		int numberOfWeights = 0;
+		for (int c=0; c<candidates.length; c++) {
+			int position = candidates[c];
+			if (position < 0 || position >= numberOfCellsInGrid || (c > 0 && position == candidates[c-1])) continue;
+
+			double weight = returnUpdateMatrixValue(i, position, gridWidth, numberOfCellsInGrid, delta, boundaryType);
+			if (weight != 0) {
+				positions[start + numberOfWeights] = position;
+				weights[start + numberOfWeights] = weight;
+				numberOfWeights++;
+			}
+		}
+		return numberOfWeights;
+	}
+
+	// Creates the weights for nutrient shared with the neighbourhood given. Each grid space takes the share
+	// each of its neighbours gives it, which, as every neighbourhood is symmetric, comes from the positions
+	// at its own offsets. The grid spaces near the boundary also keep the shares that would go out of the
+	// grid with reflecting boundaries, and lose them with absorbent ones.
+	private void createNeighbourhoodWeights(Neighbourhood neighbourhood) {
+		boundaryDistance = neighbourhood.getRadius();
+		double share = delta/neighbourhood.getNumberOfNeighbours();
+		boolean periodic = boundaryType.equals("periodic");
+		boolean reflecting = boundaryType.equals("reflecting");
+
+		interiorOffsets = new int[2][];
+		interiorWeights = new double[2][];
+		for (int parity=0; parity<2; parity++) {
+			int[] xOffsets = neighbourhood.returnXOffsets(parity);
+			int[] yOffsets = neighbourhood.returnYOffsets(parity);
+
+			// The offsets are in order of row and then column, so the offset of the grid space itself goes
+			// between those in the rows above it and those below.
+			int itself = 0;
+			while (itself < xOffsets.length && (yOffsets[itself] < 0 || (yOffsets[itself] == 0 && xOffsets[itself] < 0))) itself++;
+
+			interiorOffsets[parity] = new int[xOffsets.length + 1];
+			interiorWeights[parity] = new double[xOffsets.length + 1];
+			interiorWeights[parity][itself] = 1 - delta;
+			for (int n=0; n<xOffsets.length; n++) {
+				int k = n < itself ? n : n + 1;
+				interiorOffsets[parity][k] = xOffsets[n] + yOffsets[n]*gridWidth;
+				interiorWeights[parity][k] = share;
+			}
+		}
+
+		// A boundary position takes nutrient from at most itself and each of its neighbours, so the arrays
+		// are sized for that and cut down to what was used at the end.
+		int numberOfBoundaryPositions = 0;
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (isWithinDistanceOfBoundary(i, boundaryDistance)) numberOfBoundaryPositions++;
+		}
+		int maximumSources = neighbourhood.getNumberOfNeighbours() + 1;
+		boundaryPositions = new int[numberOfBoundaryPositions];
+		boundaryWeightStart = new int[numberOfBoundaryPositions + 1];
+		boundaryWeightPositions = new int[numberOfBoundaryPositions*maximumSources];
+		boundaryWeights = new double[numberOfBoundaryPositions*maximumSources];
+		leakingPositions = new int[numberOfBoundaryPositions];
+		leakingFractions = new double[numberOfBoundaryPositions];
+		int[] sourcePositions = new int[maximumSources];
+		double[] sourceWeights = new double[maximumSources];
+
+		int numberOfPositions = 0;
+		int numberOfWeights = 0;
+		int numberLeaking = 0;
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (!isWithinDistanceOfBoundary(i, boundaryDistance)) continue;
+			int x = i % gridWidth;
+			int y = i / gridWidth;
+			int[] xOffsets = neighbourhood.returnXOffsets(y);
+			int[] yOffsets = neighbourhood.returnYOffsets(y);
+
+			// Sources of the nutrient of position i. A source can be reached more than once when a small
+			// periodic grid wraps around onto itself, so its weights are added together.
+			sourcePositions[0] = i;
+			sourceWeights[0] = 1 - delta;
+			int numberOfSources = 1;
+			int numberOutside = 0;
+			for (int n=0; n<xOffsets.length; n++) {
+				int neighbourX = x + xOffsets[n];
+				int neighbourY = y + yOffsets[n];
+				if (neighbourX < 0 || neighbourX >= gridWidth || neighbourY < 0 || neighbourY >= gridHeight) {
+					if (!periodic) {
+						numberOutside++;
+						continue;
+					}
+					neighbourX = Math.floorMod(neighbourX, gridWidth);
+					neighbourY = Math.floorMod(neighbourY, gridHeight);
+				}
+				int source = neighbourX + neighbourY*gridWidth;
+				int s = 0;
+				while (s < numberOfSources && sourcePositions[s] != source) s++;
+				if (s == numberOfSources) {
+					sourcePositions[s] = source;
+					sourceWeights[s] = 0;
+					numberOfSources++;
+				}
+				sourceWeights[s] += share;
+			}
+
+			if (numberOutside > 0 && reflecting) sourceWeights[0] += numberOutside*share;
+			if (numberOutside > 0 && !reflecting) {
+				leakingPositions[numberLeaking] = i;
+				leakingFractions[numberLeaking] = numberOutside*share;
+				numberLeaking++;
+			}
+
+			// The sources are kept in increasing order of position.
+			for (int s=1; s<numberOfSources; s++) {
+				int sourcePosition = sourcePositions[s];
+				double sourceWeight = sourceWeights[s];
+				int t = s;
+				while (t > 0 && sourcePositions[t - 1] > sourcePosition) {
+					sourcePositions[t] = sourcePositions[t - 1];
+					sourceWeights[t] = sourceWeights[t - 1];
+					t--;
+				}
+				sourcePositions[t] = sourcePosition;
+				sourceWeights[t] = sourceWeight;
+			}
+
+			boundaryPositions[numberOfPositions] = i;
+			boundaryWeightStart[numberOfPositions] = numberOfWeights;
+			numberOfPositions++;
+			System.arraycopy(sourcePositions, 0, boundaryWeightPositions, numberOfWeights, numberOfSources);
+			System.arraycopy(sourceWeights, 0, boundaryWeights, numberOfWeights, numberOfSources);
+			numberOfWeights += numberOfSources;
+		}
+		boundaryWeightStart[numberOfPositions] = numberOfWeights;
+
+		boundaryWeightPositions = Arrays.copyOf(boundaryWeightPositions, numberOfWeights);
+		boundaryWeights = Arrays.copyOf(boundaryWeights, numberOfWeights);
+		leakingPositions = Arrays.copyOf(leakingPositions, numberLeaking);
+		leakingFractions = Arrays.copyOf(leakingFractions, numberLeaking);
+	}
+
+	// Finds the positions that lose nutrient out of the grid in a diffusion update. The nutrient of a
+	// position is shared out by the weights in its column of the update matrix, so a position loses
+	// nutrient if that column adds up to less than 1. Only positions on the boundary or next to it can
+	// have columns that don't add up to 1, so only those are checked, using the weights of the grid
+	// spaces up to three in from the edge. The positions are kept in increasing order, so each band can
+	// find its own.
+	private void createLeakingPositions() {
+		Map<Integer, Integer> candidateIndex = new TreeMap<Integer, Integer>();
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (isWithinDistanceOfBoundary(i, 2)) candidateIndex.put(i, candidateIndex.size());
+		}
+		double[] fractionKept = new double[candidateIndex.size()];
+
+		for (int w=0; w<boundaryWeightStart[boundaryPositions.length]; w++) {
+			Integer c = candidateIndex.get(boundaryWeightPositions[w]);
+			if (c != null) fractionKept[c] += boundaryWeights[w];
+		}
+
+		for (int i=0; i<numberOfCellsInGrid; i++) {
+			if (isOnBoundary(i) || !isWithinDistanceOfBoundary(i, 3)) continue;
+
+			int[] sources = {i - gridWidth, i - 1, i, i + 1, i + gridWidth};
+			for (int source : sources) {
+				Integer c = candidateIndex.get(source);
+				if (c != null) fractionKept[c] += source == i ? weightOfCellItself : weightOfNeighbour;
+			}
+		}
+
+		List<Integer> positions = new ArrayList<Integer>();
+		List<Double> fractions = new ArrayList<Double>();
+		for (Map.Entry<Integer, Integer> candidate : candidateIndex.entrySet()) {
+			double fractionLost = 1 - fractionKept[candidate.getValue()];
+			if (Math.abs(fractionLost) > 1e-12) {
+				positions.add(candidate.getKey());
+				fractions.add(fractionLost);
+			}
+		}
+
+		leakingPositions = new int[positions.size()];
+		leakingFractions = new double[positions.size()];
+		for (int k=0; k<leakingPositions.length; k++) {
+			leakingPositions[k] = positions.get(k);
+			leakingFractions[k] = fractions.get(k);
+		}
+	}
+
+	// Returns true if the position is in the first or last row or column of the grid.
+	private boolean isOnBoundary(int i) {
+		return isWithinDistanceOfBoundary(i, 1);
+	}
+
+	// Returns true if the position is in one of the first or last rows or columns of the grid, counting
+	// the given number in from each edge.
+	private boolean isWithinDistanceOfBoundary(int i, int distance) {
+		int x = i % gridWidth;
+		int y = i / gridWidth;
+		return x < distance || x >= gridWidth - distance || y < distance || y >= gridHeight - distance;
+	}
+
+	// Returns the value the update matrix of CellularAutomataBacteriaRules has in the given row and
+	// column. That matrix is filled one column at a time, and a later value replaces an earlier one in
+	// the same place, so the values set for the column are worked through in the same order.
+	private static double returnUpdateMatrixValue(int row, int column, int gridWidth, int numberOfCellsInGrid, double delta,
+			String boundaryType) {
+		int i = column;
+		double value = 0;
+
+		if (boundaryType.equals("periodic")) {
+			if (row == i) value = 1 - delta;
+			if (row == (i % gridWidth == 0 ? i + gridWidth - 1 : i - 1)) value = delta/4;
+			if (row == ((i + 1) % gridWidth == 0 ? i - gridWidth + 1 : i + 1)) value = delta/4;
+			if (row == (i + gridWidth > numberOfCellsInGrid - 1 ? i - numberOfCellsInGrid + gridWidth : i + gridWidth)) value = delta/4;
+			if (row == (i - gridWidth < 0 ? i + numberOfCellsInGrid - gridWidth : i - gridWidth)) value = delta/4;
+		}
+		else if (boundaryType.equals("absorbent")) {
+			if (row == i) value = 1 - delta;
+			if (i % gridWidth != 0 && row == i - 1) value = delta/4;
+			if ((i + 1) % gridWidth != 0 && row == i + 1) value = delta/4;
+			if (!(i + gridWidth > numberOfCellsInGrid - 1) && row == i + gridWidth) value = delta/4;
+			if (!(i - gridWidth < 0) && row == i - gridWidth) value = delta/4;
+		}
+		else {
+			if (row == i) {
+				if (i == 0 || i == gridWidth-1 || i == numberOfCellsInGrid - gridWidth || i == numberOfCellsInGrid - 1) {
+					value = 1 - delta/2;
+				}
+				else if (i % gridWidth == 0 || (i+1) % gridWidth == 0 || i > numberOfCellsInGrid - gridWidth || i < gridWidth - 1) {
+					value = 1 - (3*delta/4);
+				}
+				else {
+					value = 1 - delta;
+				}
+			}
+			if ((i + 1) % gridWidth != 0 && row == i + 1) value = delta/4;
+			if (i % gridWidth != 0 && row == i - 1) value = delta/4;
+			if (!(i + gridWidth > numberOfCellsInGrid - 1) && row == i + gridWidth) value = delta/4;
+			if (!(i - gridWidth < 0) && row == i - gridWidth) value = delta/4;
+		}
+
+		return value;
+	}
+
+	// Works out the nutrient levels after diffusion for the whole grid from the current levels, writing
+	// them into the updated levels. Returns the nutrient lost out of the grid.
+	public double update(double[] current, double[] updated) {
+		return updateRows(current, updated, 0, gridHeight);
+	}
+
+	// Works out the nutrient levels after diffusion for the rows from firstRow up to, but not including,
+	// lastRow, so that bands of rows can be updated on different threads. Returns the nutrient those rows
+	// lose out of the grid.
+	public double updateRows(double[] current, double[] updated, int firstRow, int lastRow) {
+		if (interiorOffsets != null) {
+			this.updateInteriorRows(current, updated, firstRow, lastRow);
+		}
+		// Grid spaces away from the boundary take nutrient from the four neighbouring spaces.
+		else for (int y=Math.max(1, firstRow); y<Math.min(gridHeight-1, lastRow); y++) {
+			int rowStart = y*gridWidth;
+			for (int i=rowStart+1; i<rowStart+gridWidth-1; i++) {
+				updated[i] = weightOfNeighbour*current[i-gridWidth] + weightOfNeighbour*current[i-1]
+						+ weightOfCellItself*current[i] + weightOfNeighbour*current[i+1]
+						+ weightOfNeighbour*current[i+gridWidth];
+			}
+		}
+
+		int lastBoundaryPosition = returnFirstIndexNotBefore(boundaryPositions, lastRow*gridWidth);
+		for (int k=returnFirstIndexNotBefore(boundaryPositions, firstRow*gridWidth); k<lastBoundaryPosition; k++) {
+			double nutrient = 0;
+			for (int w=boundaryWeightStart[k]; w<boundaryWeightStart[k+1]; w++) {
+				nutrient += boundaryWeights[w]*current[boundaryWeightPositions[w]];
+			}
+			updated[boundaryPositions[k]] = nutrient;
+		}
+
+		double nutrientLost = 0;
+		int lastLeakingPosition = returnFirstIndexNotBefore(leakingPositions, lastRow*gridWidth);
+		for (int k=returnFirstIndexNotBefore(leakingPositions, firstRow*gridWidth); k<lastLeakingPosition; k++) {
+			nutrientLost += leakingFractions[k]*current[leakingPositions[k]];
+		}
+		return nutrientLost;
+	}
+
+	// Works out the nutrient levels after diffusion for the grid spaces away from the boundary in the rows
+	// from firstRow up to, but not including, lastRow, from the table of offsets for each row.
+	private void updateInteriorRows(double[] current, double[] updated, int firstRow, int lastRow) {
+		for (int y=Math.max(boundaryDistance, firstRow); y<Math.min(gridHeight-boundaryDistance, lastRow); y++) {
+			int[] offsets = interiorOffsets[y & 1];
+			double[] weights = interiorWeights[y & 1];
+			int rowStart = y*gridWidth;
+			for (int i=rowStart+boundaryDistance; i<rowStart+gridWidth-boundaryDistance; i++) {
+				double nutrient = 0;
+				for (int k=0; k<offsets.length; k++) {
+					nutrient += weights[k]*current[i + offsets[k]];
+				}
+				updated[i] = nutrient;
+			}
+		}
+	}
+
+	// Returns the index of the first of the positions, which are in increasing order, that isn't before the
+	// position given.
+	private static int returnFirstIndexNotBefore(int[] positions, int position) {
+		int index = Arrays.binarySearch(positions, position);
+		return index >= 0 ? index : -index - 1;
+	}
+}
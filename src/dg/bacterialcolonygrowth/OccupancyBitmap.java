@@ -0,0 +1,139 @@
+/* *****************************************************************************
+* Description: A class used to store which grid spaces are part of the colony,
+* alive or dead, as one bit per grid space. Each row of the grid is packed
+* into 64 bit words, with bit b of word k holding the grid space at
+* x = 64k + b, so that whole words can be combined and counted at once.
+*
+* Rows can be filled and coarsened a band at a time, so the work can be split
+* between threads.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public class OccupancyBitmap {
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	// Constructor, creates a bitmap with no grid spaces set.
+	public OccupancyBitmap(int width, int height) {
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		words = new long[wordsPerRow * height];
+	}
+
+	// Returns a bitmap of the grid spaces that aren't empty in the bacteria states given, filled on the
+	// calling thread.
+	public static OccupancyBitmap create(byte[] bacteriaStates, int width, int height) {
+		OccupancyBitmap bitmap = new OccupancyBitmap(width, height);
+		bitmap.fillRows(bacteriaStates, 0, height);
+		return bitmap;
+	}
+
+	// Returns the width of the bitmap, in grid spaces.
+	public int getWidth() {
+		return width;
+	}
+
+	// Returns the height of the bitmap, in grid spaces.
+	public int getHeight() {
+		return height;
+	}
+
+	// Returns the number of words used for each row.
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	// Returns the packed words, one row after another.
+	long[] getWords() {
+		return words;
+	}
+
+	// Returns true if grid space x,y is part of the colony.
+	public boolean isSet(int x, int y) {
+		return (words[y*wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	// Fills the rows from firstRow up to, but not including, lastRow from the bacteria states. Each word is
+	// built up in a register and written once.
+	public void fillRows(byte[] bacteriaStates, int firstRow, int lastRow) {
+		for (int y=firstRow; y<lastRow; y++) {
+			int rowStart = y*width;
+			int wordStart = y*wordsPerRow;
+
+			for (int k=0; k<wordsPerRow; k++) {
+				int start = rowStart + (k << 6);
+				int end = Math.min(start + 64, rowStart + width);
+				long word = 0;
+				for (int i=start; i<end; i++) {
+					if (bacteriaStates[i] != BacterialColonyEngine.EMPTY) word |= 1L << (i - start);
+				}
+				words[wordStart + k] = word;
+			}
+		}
+	}
+
+	// Returns the number of grid spaces set in the rows from firstRow up to, but not including, lastRow.
+	public long countRows(int firstRow, int lastRow) {
+		long count = 0;
+		for (int w=firstRow*wordsPerRow; w<lastRow*wordsPerRow; w++) {
+			count += Long.bitCount(words[w]);
+		}
+		return count;
+	}
+
+	// Returns the number of grid spaces set.
+	public long count() {
+		return countRows(0, height);
+	}
+
+	// Creates an empty bitmap half the size, rounded up, in which each grid space stands for a 2 x 2 box of
+	// this bitmap.
+	public OccupancyBitmap createCoarserBitmap() {
+		return new OccupancyBitmap((width + 1) >>> 1, (height + 1) >>> 1);
+	}
+
+	// Fills the rows from firstRow up to, but not including, lastRow of a bitmap made by createCoarserBitmap,
+	// setting each grid space whose 2 x 2 box in this bitmap has any grid space set. Returns the number of
+	// grid spaces set in those rows.
+	public long coarsenRowsInto(OccupancyBitmap coarser, int firstRow, int lastRow) {
+		long count = 0;
+
+		for (int y=firstRow; y<lastRow; y++) {
+			int top = 2*y*wordsPerRow;
+			int bottom = 2*y + 1 < height ? top + wordsPerRow : -1;
+
+			for (int k=0; k<coarser.wordsPerRow; k++) {
+				// Each word of the coarser row comes from two words of this one, the low half from the first.
+				long low = returnPairsCombined(top, bottom, 2*k);
+				long high = 2*k + 1 < wordsPerRow ? returnPairsCombined(top, bottom, 2*k + 1) : 0;
+				long word = low | (high << 32);
+				coarser.words[y*coarser.wordsPerRow + k] = word;
+				count += Long.bitCount(word);
+			}
+		}
+
+		return count;
+	}
+
+	// Combines a word of two rows, then combines each pair of neighbouring bits and packs the results into
+	// the low 32 bits.
+	private long returnPairsCombined(int top, int bottom, int k) {
+		long x = words[top + k];
+		if (bottom >= 0) x |= words[bottom + k];
+
+		x = (x | (x >>> 1)) & 0x5555555555555555L;
+		x = (x | (x >>> 1)) & 0x3333333333333333L;
+		x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+		x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+		x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+		x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+		return x;
+	}
+}
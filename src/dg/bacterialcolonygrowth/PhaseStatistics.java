@@ -0,0 +1,59 @@
+/* *****************************************************************************
+* Description: A class used to store the latency of one phase of a step, such
+* as diffusion, as it is reported by SimulationMetrics.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public final class PhaseStatistics {
+
+	private final String phase;
+	private final long count;
+	private final double meanMicroseconds;
+	private final double medianMicroseconds;
+	private final double p99Microseconds;
+	private final double maximumMicroseconds;
+
+	// Constructor.
+	public PhaseStatistics(String phase, long count, double meanMicroseconds, double medianMicroseconds,
+			double p99Microseconds, double maximumMicroseconds) {
+		this.phase = phase;
+		this.count = count;
+		this.meanMicroseconds = meanMicroseconds;
+		this.medianMicroseconds = medianMicroseconds;
+		this.p99Microseconds = p99Microseconds;
+		this.maximumMicroseconds = maximumMicroseconds;
+	}
+
+	// Returns the name of the phase.
+	public String getPhase() {
+		return phase;
+	}
+
+	// Returns the number of times the phase has been recorded.
+	public long getCount() {
+		return count;
+	}
+
+	// Returns the mean time taken by the phase.
+	public double getMeanMicroseconds() {
+		return meanMicroseconds;
+	}
+
+	// Returns the median time taken by the phase.
+	public double getMedianMicroseconds() {
+		return medianMicroseconds;
+	}
+
+	// Returns the time that 99% of the recordings of the phase took less than.
+	public double getP99Microseconds() {
+		return p99Microseconds;
+	}
+
+	// Returns the longest time taken by the phase.
+	public double getMaximumMicroseconds() {
+		return maximumMicroseconds;
+	}
+}
@@ -0,0 +1,216 @@
+/* *****************************************************************************
+* Description: A class used to add the results of simulation runs to a file,
+* one row per run, either as comma separated values or as JSON Lines (one JSON
+* object per line). Rows are added to the end of the file, so the results of
+* several batches can be collected in the same file. It can be used by several
+* threads at once.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+public class ResultsWriter implements AutoCloseable {
+
+	// The formats the results can be written in.
+	public enum Format { CSV, JSON_LINES }
+
+	// Names of the values in each row.
+	private static final String[] COLUMNS = {"job", "replicate", "seed", "steps", "grid_width", "grid_height",
+			"alive", "remains", "colony_size", "initial_nutrient", "final_nutrient", "nutrient_consumed",
+			"wall_time_s", "steps_per_s", "colony_radius", "colony_perimeter"};
+
+	private final Format format;
+	private final FileChannel channel;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+	// The results of a single run of a job.
+	public static final class RunResult {
+		final String jobName;
+		final int replicate;
+		final long seed;
+		final long numberOfSteps;
+		final int gridWidth;
+		final int gridHeight;
+		final long alive;
+		final long remains;
+		final double initialNutrient;
+		final double finalNutrient;
+		final long wallTime;
+		final double colonyRadius;
+		final long colonyPerimeter;
+
+		// Constructor, creates the result of a run from the engine at the end of the run. The wall time is
+		// given in nanoseconds.
+		public RunResult(String jobName, int replicate, BacterialColonyEngine engine, long numberOfSteps, double initialNutrient, long wallTime) {
+			this.jobName = jobName;
+			this.replicate = replicate;
+			this.seed = engine.getRandomSeed();
+			this.numberOfSteps = numberOfSteps;
+			this.gridWidth = engine.getGridWidth();
+			this.gridHeight = engine.getGridHeight();
+			this.alive = engine.getNumberOfAliveBacteria();
+			this.remains = engine.getNumberOfRemains();
+			this.initialNutrient = initialNutrient;
+			this.finalNutrient = engine.getTotalNutrient();
+			this.wallTime = wallTime;
+			this.colonyRadius = engine.getColonyRadius();
+			this.colonyPerimeter = engine.getColonyPerimeter();
+		}
+
+		// Returns the values of the row, as text, in the same order as the columns.
+		String[] returnValues() {
+			double wallTimeInSeconds = wallTime / 1e9;
+
+			return new String[] {
+				jobName,
+				Integer.toString(replicate),
+				Long.toString(seed),
+				Long.toString(numberOfSteps),
+				Integer.toString(gridWidth),
+				Integer.toString(gridHeight),
+				Long.toString(alive),
+				Long.toString(remains),
+				Long.toString(alive + remains),
+				String.format(Locale.ROOT, "%.4f", initialNutrient),
+				String.format(Locale.ROOT, "%.4f", finalNutrient),
+				String.format(Locale.ROOT, "%.4f", initialNutrient - finalNutrient),
+				String.format(Locale.ROOT, "%.3f", wallTimeInSeconds),
+				String.format(Locale.ROOT, "%.1f", wallTimeInSeconds > 0 ? numberOfSteps / wallTimeInSeconds : 0),
+				String.format(Locale.ROOT, "%.4f", colonyRadius),
+				Long.toString(colonyPerimeter)
+			};
+		}
+	}
+
+	// Constructor, opens the file to add results to the end of it. A CSV file that is empty is given a
+	// header row. A CSV file that already has a header with other columns, such as one written before
+	// columns were added, is left alone and an IOException is thrown, as the rows wouldn't line up with it.
+	public ResultsWriter(File file, Format format) throws IOException {
+		this.format = format;
+		String header = returnCsvHeader();
+		if (format == Format.CSV && file.length() > 0) checkCsvHeader(file, header);
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		if (format == Format.CSV && channel.size() == 0) writeLine(header);
+	}
+
+	// Returns the header row of a CSV file.
+	private static String returnCsvHeader() {
+		StringBuilder header = new StringBuilder();
+		for (int i=0; i<COLUMNS.length; i++) {
+			if (i > 0) header.append(',');
+			header.append(COLUMNS[i]);
+		}
+		return header.toString();
+	}
+
+	// Throws an IOException if the first line of a CSV file isn't the header given.
+	private static void checkCsvHeader(File file, String header) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String firstLine = reader.readLine();
+			if (!header.equals(firstLine)) {
+				throw new IOException(file + " has different columns to the results, so they can't be added to it. "
+						+ "Expected the header: " + header);
+			}
+		}
+	}
+
+	// Returns the format of a results file from its name: JSON Lines for files ending in .jsonl or .json,
+	// otherwise CSV.
+	public static Format returnFormatForFile(File file) {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		return name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSON_LINES : Format.CSV;
+	}
+
+	// Adds the result of a run to the file. Results are only written once a run has finished, so each is
+	// written straight away and isn't lost if the batch is stopped.
+	public synchronized void writeResult(RunResult result) throws IOException {
+		String[] values = result.returnValues();
+		StringBuilder line = new StringBuilder();
+
+		if (format == Format.CSV) {
+			for (int i=0; i<values.length; i++) {
+				if (i > 0) line.append(',');
+				line.append(i == 0 ? quoteForCsv(values[i]) : values[i]);
+			}
+		}
+		else {
+			line.append('{');
+			for (int i=0; i<values.length; i++) {
+				if (i > 0) line.append(',');
+				line.append('"').append(COLUMNS[i]).append("\":");
+				line.append(i == 0 ? quoteForJson(values[i]) : values[i]);
+			}
+			line.append('}');
+		}
+
+		writeLine(line);
+	}
+
+	// Closes the file.
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	// Encodes a line into the buffer and writes it to the file, in as few writes as the buffer allows.
+	private void writeLine(CharSequence line) throws IOException {
+		CharBuffer characters = CharBuffer.wrap(line + "\n");
+		encoder.reset();
+
+		CoderResult result;
+		do {
+			result = encoder.encode(characters, buffer, true);
+			if (result.isOverflow() || !characters.hasRemaining()) {
+				if (!characters.hasRemaining()) encoder.flush(buffer);
+				writeBuffer();
+			}
+		} while (characters.hasRemaining());
+	}
+
+	// Writes the contents of the buffer to the file and empties it.
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// Returns a value quoted for a CSV file if it contains a comma, quote or line break.
+	private static String quoteForCsv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	// Returns a value as a JSON string.
+	private static String quoteForJson(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') quoted.append('\\').append(c);
+			else if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+			else quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+}
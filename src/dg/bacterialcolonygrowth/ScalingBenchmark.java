@@ -0,0 +1,375 @@
+/* *****************************************************************************
+* Description: A command line program that measures how the speed of
+* BacterialColonyEngine scales with the number of threads updating the grid,
+* and writes a report as Markdown tables and, if asked for, as comma separated
+* values.
+*
+* - Strong scaling: each grid size is updated on each number of threads.
+* - Weak scaling: the grid grows with the number of threads, by adding rows, so
+*   that each thread keeps a band of the same size.
+*
+* In both, the speedup on n threads is the number of grid spaces updated per
+* second divided by the number on one thread, which for a fixed grid is the
+* time per step on one thread divided by the time on n, and the parallel
+* efficiency is the speedup divided by n.
+*
+* Every run uses the same workload as EngineBenchmark: a colony scattered at
+* random over the grid and kept at its starting density by turning off
+* consumption and cell division, so every step does the same work. The memory
+* bandwidth is an estimate, from the bytes a step must read and write if each
+* array is streamed through once in each pass over the grid.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class ScalingBenchmark {
+
+	private static final String USAGE =
+			"Usage: ScalingBenchmark <report file> [options]\n"
+			+ "Options:\n"
+			+ "  --threads <list>      Comma separated numbers of threads, 1 is always included (default: powers of\n"
+			+ "                        two up to the number of cores, and the number of cores)\n"
+			+ "  --grid-sizes <list>   Comma separated side lengths of the square grids for strong scaling, or none\n"
+			+ "                        to skip it (default: 500,1000,2000)\n"
+			+ "  --weak-grid <n>       Side length of the square grid for one thread in weak scaling, 0 to skip it\n"
+			+ "                        (default: 500)\n"
+			+ "  --steps <n>           Number of steps timed in each repeat (default: 200)\n"
+			+ "  --warmup <n>          Number of steps before timing starts (default: 100)\n"
+			+ "  --repeats <n>         Number of times the steps are timed, the median is reported (default: 5)\n"
+			+ "  --boundary <b>        'reflecting', 'absorbent' or 'periodic' (default: reflecting)\n"
+			+ "  --density <d>         Fraction of the grid spaces with a living bacterium (default: 0.1)\n"
+			+ "  --csv <file>          Also write the results as comma separated values";
+
+	public static final String CSV_HEADER = "scaling,grid_width,grid_height,threads,bands,milliseconds_per_step,"
+			+ "grid_spaces_per_second,speedup,efficiency,bandwidth_gb_per_second";
+
+	// Each grid space's nutrient level is read and written by diffusion, then its state and nutrient level
+	// are read by consumption. On a cell division step the states are also read to fill the two bit planes of
+	// BacteriaStatePlanes, a bit each per grid space, which are written and then read again for the neighbour
+	// counts. The few grid spaces the counts pick out for the crowding function are left out.
+	private static final double BYTES_PER_GRID_SPACE = 8 + 8 + 1 + 8;
+	private static final double BYTES_PER_GRID_SPACE_ON_DIVISION_STEP = 1 + 2.0/8 + 2.0/8;
+
+	// The kinds of scaling measured.
+	public enum Scaling {STRONG, WEAK}
+
+	private File reportFile;
+	private File csvFile;
+	private int[] threadCounts = returnDefaultThreadCounts(Runtime.getRuntime().availableProcessors());
+	private int[] gridSizes = {500, 1000, 2000};
+	private int weakGridSize = 500;
+	private int measuredSteps = 200;
+	private int warmUpSteps = 100;
+	private int repeats = 5;
+	private String boundaryCondition = "reflecting";
+	private double colonyDensity = 0.1;
+
+	// The time per step of the workload on a grid of one size and number of threads, along with how it
+	// compares to the same kind of scaling on one thread.
+	public static final class Measurement {
+		public final Scaling scaling;
+		public final int gridWidth;
+		public final int gridHeight;
+		public final int numberOfThreads;
+		public final int numberOfBands;
+		public final double nanosecondsPerStep;
+		public final double bytesPerStep;
+		private double speedup = Double.NaN;
+
+		// Constructor.
+		public Measurement(Scaling scaling, int gridWidth, int gridHeight, int numberOfThreads, int numberOfBands,
+				double nanosecondsPerStep, double bytesPerStep) {
+			this.scaling = scaling;
+			this.gridWidth = gridWidth;
+			this.gridHeight = gridHeight;
+			this.numberOfThreads = numberOfThreads;
+			this.numberOfBands = numberOfBands;
+			this.nanosecondsPerStep = nanosecondsPerStep;
+			this.bytesPerStep = bytesPerStep;
+		}
+
+		// Returns the number of grid spaces updated each second.
+		public double getGridSpacesPerSecond() {
+			return (double) gridWidth*gridHeight / nanosecondsPerStep * 1e9;
+		}
+
+		// Returns the estimated memory bandwidth used, in gigabytes per second.
+		public double getBandwidth() {
+			return bytesPerStep / nanosecondsPerStep;
+		}
+
+		// Works out the speedup from the measurement of the same kind of scaling on one thread.
+		public void compareWithOneThread(Measurement oneThread) {
+			speedup = getGridSpacesPerSecond() / oneThread.getGridSpacesPerSecond();
+		}
+
+		// Returns the speedup over one thread, or NaN if it hasn't been compared with one thread.
+		public double getSpeedup() {
+			return speedup;
+		}
+
+		// Returns the parallel efficiency, the speedup for each thread.
+		public double getEfficiency() {
+			return speedup / numberOfThreads;
+		}
+	}
+
+	// Reads the command line arguments.
+	private ScalingBenchmark(String[] args) throws IllegalArgumentException {
+		if (args.length < 1) throw new IllegalArgumentException("A report file is required.");
+
+		reportFile = new File(args[0]);
+
+		for (int i=1; i<args.length; i++) {
+			if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+
+			String option = args[i];
+			String value = args[++i];
+
+			if (option.equals("--threads")) threadCounts = returnThreadCounts(value);
+			else if (option.equals("--grid-sizes")) gridSizes = value.equals("none") ? new int[0] : returnPositiveIntegers(value);
+			else if (option.equals("--weak-grid")) weakGridSize = Integer.parseInt(value);
+			else if (option.equals("--steps")) measuredSteps = Integer.parseInt(value);
+			else if (option.equals("--warmup")) warmUpSteps = Integer.parseInt(value);
+			else if (option.equals("--repeats")) repeats = Integer.parseInt(value);
+			else if (option.equals("--boundary")) boundaryCondition = value;
+			else if (option.equals("--density")) colonyDensity = Double.parseDouble(value);
+			else if (option.equals("--csv")) csvFile = new File(value);
+			else throw new IllegalArgumentException("Unknown option " + option + ".");
+		}
+
+		if (weakGridSize < 0) throw new IllegalArgumentException("Weak scaling grid size must not be negative.");
+		if (measuredSteps < 1) throw new IllegalArgumentException("Number of steps must be an integer greater than 0.");
+		if (warmUpSteps < 0) throw new IllegalArgumentException("Number of warm up steps must not be negative.");
+		if (repeats < 1) throw new IllegalArgumentException("Number of repeats must be an integer greater than 0.");
+		if (colonyDensity < 0 || colonyDensity > 1) throw new IllegalArgumentException("Density must be between 0 and 1.");
+		if (!boundaryCondition.equals("reflecting") && !boundaryCondition.equals("absorbent") && !boundaryCondition.equals("periodic")) {
+			throw new IllegalArgumentException("Boundary condition must be 'reflecting', 'absorbent' or 'periodic'.");
+		}
+	}
+
+	// Returns the powers of two up to the number of cores, and the number of cores.
+	static int[] returnDefaultThreadCounts(int numberOfCores) {
+		TreeSet<Integer> counts = new TreeSet<Integer>();
+		for (int n=1; n<numberOfCores; n*=2) {
+			counts.add(n);
+		}
+		counts.add(numberOfCores);
+		return returnArray(counts);
+	}
+
+	// Returns the numbers of threads in a comma separated list, in increasing order and including 1.
+	static int[] returnThreadCounts(String list) {
+		TreeSet<Integer> counts = new TreeSet<Integer>();
+		counts.add(1);
+		for (int count : returnPositiveIntegers(list)) {
+			counts.add(count);
+		}
+		return returnArray(counts);
+	}
+
+	// Returns the integers in a comma separated list, which must all be greater than 0.
+	private static int[] returnPositiveIntegers(String list) {
+		String[] values = list.split(",");
+		int[] integers = new int[values.length];
+		for (int i=0; i<values.length; i++) {
+			integers[i] = Integer.parseInt(values[i].trim());
+			if (integers[i] < 1) throw new IllegalArgumentException("'" + list + "' must only contain integers greater than 0.");
+		}
+		return integers;
+	}
+
+	// Returns the integers in a set as an array, in order.
+	private static int[] returnArray(TreeSet<Integer> set) {
+		int[] array = new int[set.size()];
+		int i = 0;
+		for (int value : set) {
+			array[i++] = value;
+		}
+		return array;
+	}
+
+	// Creates an engine with the colony scattered over it at the density given, which stays the same from
+	// one step to the next.
+	static BacterialColonyEngine createEngine(int gridWidth, int gridHeight, String boundaryCondition, double colonyDensity)
+			throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(gridWidth)
+				.setGridHeight(gridHeight)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientForSustenance(0)
+				.setNutrientForGrowth(0)
+				.setProbabilityOfCellDivision(0)
+				.build();
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 1);
+
+		Random random = new Random(1);
+		for (int y=0; y<gridHeight; y++) {
+			for (int x=0; x<gridWidth; x++) {
+				if (random.nextDouble() < colonyDensity) engine.setBacteriumAlive(x, y);
+			}
+		}
+		return engine;
+	}
+
+	// Times the workload on a grid of the size given on the number of threads given, returning the median
+	// of the repeats.
+	Measurement measure(Scaling scaling, int gridWidth, int gridHeight, int numberOfThreads) throws IOException {
+		BacterialColonyEngine engine = createEngine(gridWidth, gridHeight, boundaryCondition, colonyDensity);
+		engine.setNumberOfThreads(numberOfThreads);
+
+		try {
+			for (int i=0; i<warmUpSteps; i++) {
+				engine.createUpdatedGrid();
+			}
+
+			double[] nanosecondsPerStep = new double[repeats];
+			for (int r=0; r<repeats; r++) {
+				long startTime = System.nanoTime();
+				for (int i=0; i<measuredSteps; i++) {
+					engine.createUpdatedGrid();
+				}
+				nanosecondsPerStep[r] = (double) (System.nanoTime() - startTime) / measuredSteps;
+			}
+			Arrays.sort(nanosecondsPerStep);
+
+			double bytesPerGridSpace = BYTES_PER_GRID_SPACE
+					+ BYTES_PER_GRID_SPACE_ON_DIVISION_STEP / engine.getNumberOfTimestepsForCellDivision();
+			return new Measurement(scaling, gridWidth, gridHeight, numberOfThreads, engine.getNumberOfBands(),
+					nanosecondsPerStep[repeats/2], bytesPerGridSpace*gridWidth*gridHeight);
+		}
+		finally {
+			engine.setNumberOfThreads(1);
+		}
+	}
+
+	// Carries out every measurement, printing each as it finishes, and writes the reports.
+	private void run() throws IOException {
+		List<Measurement> measurements = new ArrayList<Measurement>();
+
+		for (int gridSize : gridSizes) {
+			Measurement oneThread = null;
+			for (int numberOfThreads : threadCounts) {
+				Measurement measurement = measure(Scaling.STRONG, gridSize, gridSize, numberOfThreads);
+				if (oneThread == null) oneThread = measurement;
+				measurement.compareWithOneThread(oneThread);
+				measurements.add(measurement);
+				printMeasurement(measurement);
+			}
+		}
+
+		if (weakGridSize > 0) {
+			Measurement oneThread = null;
+			for (int numberOfThreads : threadCounts) {
+				Measurement measurement = measure(Scaling.WEAK, weakGridSize, weakGridSize*numberOfThreads, numberOfThreads);
+				if (oneThread == null) oneThread = measurement;
+				measurement.compareWithOneThread(oneThread);
+				measurements.add(measurement);
+				printMeasurement(measurement);
+			}
+		}
+
+		writeFile(reportFile, createMarkdownReport(measurements, createDescription()));
+		if (csvFile != null) writeFile(csvFile, createCsvReport(measurements));
+		System.out.println("Report written to " + reportFile + ".");
+	}
+
+	// Prints a single measurement as a progress line.
+	private static void printMeasurement(Measurement measurement) {
+		System.out.println(String.format(Locale.ROOT, "%s %dx%d threads=%d bands=%d %.3f ms/step speedup=%.2f efficiency=%.0f%%",
+				measurement.scaling.name().toLowerCase(), measurement.gridWidth, measurement.gridHeight, measurement.numberOfThreads,
+				measurement.numberOfBands, measurement.nanosecondsPerStep / 1e6, measurement.getSpeedup(),
+				100*measurement.getEfficiency()));
+	}
+
+	// Returns the lines describing the machine and the settings, to go at the top of the report.
+	private List<String> createDescription() {
+		List<String> description = new ArrayList<String>();
+		description.add(String.format("Cores: %d, Java %s (%s), %s %s", Runtime.getRuntime().availableProcessors(),
+				System.getProperty("java.version"), System.getProperty("java.vendor"), System.getProperty("os.name"),
+				System.getProperty("os.arch")));
+		description.add(String.format(Locale.ROOT, "Boundary condition: %s, colony density: %.2f", boundaryCondition, colonyDensity));
+		description.add(String.format("%d steps timed after %d steps of warm up, median of %d repeats", measuredSteps,
+				warmUpSteps, repeats));
+		int numberOfTimestepsForCellDivision = new SimulationConfig.Builder().build().getNumberOfTimestepsForCellDivision();
+		description.add(String.format(Locale.ROOT, "Bandwidth is estimated from %.1f bytes read and written for each grid "
+				+ "space in a step, with cell division checked one step in %d", BYTES_PER_GRID_SPACE
+				+ BYTES_PER_GRID_SPACE_ON_DIVISION_STEP / numberOfTimestepsForCellDivision, numberOfTimestepsForCellDivision));
+		return description;
+	}
+
+	// Returns the report as Markdown, with a table for each kind of scaling that was measured.
+	static String createMarkdownReport(List<Measurement> measurements, List<String> description) {
+		StringBuilder report = new StringBuilder("# Scaling of BacterialColonyEngine\n\n");
+		for (String line : description) {
+			report.append("- ").append(line).append('\n');
+		}
+
+		for (Scaling scaling : Scaling.values()) {
+			boolean first = true;
+			for (Measurement measurement : measurements) {
+				if (measurement.scaling != scaling) continue;
+
+				if (first) {
+					report.append(scaling == Scaling.STRONG ? "\n## Strong scaling\n\n" : "\n## Weak scaling\n\n");
+					report.append("| Grid | Threads | Bands | ms/step | Grid spaces/s | Speedup | Efficiency | Bandwidth (GB/s) |\n");
+					report.append("|---|---:|---:|---:|---:|---:|---:|---:|\n");
+					first = false;
+				}
+				report.append(String.format(Locale.ROOT, "| %d x %d | %d | %d | %.3f | %.3g | %.2f | %.0f%% | %.2f |\n",
+						measurement.gridWidth, measurement.gridHeight, measurement.numberOfThreads, measurement.numberOfBands,
+						measurement.nanosecondsPerStep / 1e6, measurement.getGridSpacesPerSecond(), measurement.getSpeedup(),
+						100*measurement.getEfficiency(), measurement.getBandwidth()));
+			}
+		}
+		return report.toString();
+	}
+
+	// Returns the measurements as comma separated values, with a header row.
+	static String createCsvReport(List<Measurement> measurements) {
+		StringBuilder report = new StringBuilder(CSV_HEADER).append('\n');
+		for (Measurement measurement : measurements) {
+			report.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.6f,%.1f,%.4f,%.4f,%.4f\n",
+					measurement.scaling.name().toLowerCase(), measurement.gridWidth, measurement.gridHeight,
+					measurement.numberOfThreads, measurement.numberOfBands, measurement.nanosecondsPerStep / 1e6,
+					measurement.getGridSpacesPerSecond(), measurement.getSpeedup(), measurement.getEfficiency(),
+					measurement.getBandwidth()));
+		}
+		return report.toString();
+	}
+
+	// Writes text to a file, replacing anything already in it.
+	private static void writeFile(File file, String text) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write(text);
+		}
+	}
+
+	public static void main(String[] args) {
+		try {
+			new ScalingBenchmark(args).run();
+		}
+		catch (IOException e) {
+			System.err.println("Cannot write report: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
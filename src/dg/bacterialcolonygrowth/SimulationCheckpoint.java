@@ -0,0 +1,345 @@
+/* *****************************************************************************
+* Description: A class used to save the complete state of a simulation to a
+* binary checkpoint file and to restore a simulation from one, so that a long
+* run can be carried on from where it stopped. The file holds every parameter,
+* the step number and the division counter, the random seed, the nutrient
+* levels and the bacteria states. As the random numbers used by the engine only
+* depend on the seed and the step number, a restored simulation carries on
+* exactly as the original would have.
+*
+* The file is made up of a header followed by the nutrient levels (8 bytes per
+* grid space) and the bacteria states (1 byte per grid space), all stored
+* little-endian. The arrays are copied to and from the file through memory
+* mappings, so no buffer the size of the grid is ever created.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class SimulationCheckpoint {
+
+	// The first bytes of every checkpoint file.
+	private static final byte[] MAGIC = {'B', 'C', 'G', 'C', 'K', 'P', 'T', 0};
+
+	// Version of the file format. Readers reject files with a newer version. Version 2 added the paths of
+	// the initial layout images, and version 3 the crowding and diffusion neighbourhoods.
+	public static final int FORMAT_VERSION = 3;
+
+	// Largest part of the file that is mapped at once, as a mapping can be at most 2 GB.
+	private static final int MAXIMUM_MAPPING_SIZE = 1 << 30;
+
+	private SimulationCheckpoint() {
+	}
+
+	// Returns true if the file starts like a checkpoint, so it can be told apart from an input file.
+	public static boolean isCheckpoint(File file) {
+		if (!file.isFile() || file.length() < MAGIC.length) return false;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+			while (start.hasRemaining() && channel.read(start) >= 0) {
+			}
+			start.flip();
+			return start.equals(ByteBuffer.wrap(MAGIC));
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	// Saves the state of the engine to the file. The checkpoint is written to a temporary file first and
+	// then renamed, so an existing checkpoint is only replaced once the new one is complete.
+	public static void write(BacterialColonyEngine engine, File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		ByteBuffer header = createHeader(engine);
+		double[] nutrientLevels = engine.getNutrientLevels();
+		byte[] bacteriaStates = engine.getBacteriaStates();
+
+		long nutrientStart = header.remaining();
+		long statesStart = nutrientStart + 8L*nutrientLevels.length;
+		long fileLength = statesStart + bacteriaStates.length;
+
+		Path target = file.toPath().toAbsolutePath();
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			// Each mapping covers a whole number of doubles.
+			int doublesPerMapping = MAXIMUM_MAPPING_SIZE / 8;
+			for (int i=0; i<nutrientLevels.length; i+=doublesPerMapping) {
+				int count = Math.min(doublesPerMapping, nutrientLevels.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, nutrientStart + 8L*i, 8L*count);
+				mapping.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(nutrientLevels, i, count);
+				mapping.force();
+			}
+
+			for (int i=0; i<bacteriaStates.length; i+=MAXIMUM_MAPPING_SIZE) {
+				int count = Math.min(MAXIMUM_MAPPING_SIZE, bacteriaStates.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, statesStart + i, count);
+				mapping.put(bacteriaStates, i, count);
+				mapping.force();
+			}
+
+			if (channel.size() != fileLength) {
+				throw new IOException("Checkpoint " + file + " was not written completely.");
+			}
+			channel.force(true);
+		}
+
+		try {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		FlightRecorderEvents.endInputOutput(event, "checkpoint write", file, fileLength);
+	}
+
+	// Creates an engine from a checkpoint file. Throws an IOException if the file isn't a checkpoint, was
+	// written by a newer version or is incomplete.
+	public static BacterialColonyEngine read(File file) throws IOException {
+		Object event = FlightRecorderEvents.beginInputOutput();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileLength = channel.size();
+			if (fileLength < MAGIC.length + 8) throw new IOException(file + " is not a checkpoint.");
+
+			// Read the start of the header to find out how long it is.
+			ByteBuffer start = readFully(channel, 0, MAGIC.length + 8);
+			ByteBuffer magic = ByteBuffer.wrap(MAGIC);
+			start.limit(MAGIC.length);
+			if (!start.equals(magic)) throw new IOException(file + " is not a checkpoint.");
+			start.limit(start.capacity());
+			start.position(MAGIC.length);
+
+			int version = start.getInt();
+			int headerLength = start.getInt();
+			if (version < 1 || version > FORMAT_VERSION) {
+				throw new IOException("Checkpoint " + file + " has version " + version + ", but only versions up to "
+						+ FORMAT_VERSION + " can be read.");
+			}
+			if (headerLength < start.capacity() || headerLength > fileLength) {
+				throw new IOException("Checkpoint " + file + " has an invalid header.");
+			}
+
+			ByteBuffer header = readFully(channel, 0, headerLength);
+			header.position(MAGIC.length + 8);
+
+			BacterialColonyEngine engine;
+			long stepNumber;
+			int timeStepForCellDivisionCounter;
+			try {
+				engine = readParameters(header, version);
+				stepNumber = header.getLong();
+				timeStepForCellDivisionCounter = header.getInt();
+			}
+			catch (RuntimeException e) {
+				throw new IOException("Checkpoint " + file + " has an invalid header: " + e.getMessage(), e);
+			}
+
+			long numberOfCellsInGrid = (long) engine.getGridWidth()*engine.getGridHeight();
+			long statesStart = headerLength + 8*numberOfCellsInGrid;
+			if (fileLength != statesStart + numberOfCellsInGrid) {
+				throw new IOException("Checkpoint " + file + " is incomplete.");
+			}
+
+			engine.prepareForRestore(stepNumber, timeStepForCellDivisionCounter);
+			double[] nutrientLevels = engine.getNutrientLevels();
+			byte[] bacteriaStates = engine.getBacteriaStates();
+
+			int doublesPerMapping = MAXIMUM_MAPPING_SIZE / 8;
+			for (int i=0; i<nutrientLevels.length; i+=doublesPerMapping) {
+				int count = Math.min(doublesPerMapping, nutrientLevels.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, headerLength + 8L*i, 8L*count);
+				mapping.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(nutrientLevels, i, count);
+			}
+
+			for (int i=0; i<bacteriaStates.length; i+=MAXIMUM_MAPPING_SIZE) {
+				int count = Math.min(MAXIMUM_MAPPING_SIZE, bacteriaStates.length - i);
+				MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, statesStart + i, count);
+				mapping.get(bacteriaStates, i, count);
+			}
+
+			for (byte state : bacteriaStates) {
+				if (state != BacterialColonyEngine.EMPTY && state != BacterialColonyEngine.ALIVE && state != BacterialColonyEngine.REMAINS) {
+					throw new IOException("Checkpoint " + file + " contains an invalid bacteria state.");
+				}
+			}
+
+			FlightRecorderEvents.endInputOutput(event, "checkpoint read", file, fileLength);
+			return engine;
+		}
+	}
+
+	// Creates the header, which contains everything except the nutrient levels and bacteria states. The
+	// header length is rounded up to a multiple of 8 so the nutrient levels are aligned in the file.
+	private static ByteBuffer createHeader(BacterialColonyEngine engine) {
+		byte[] boundaryCondition = engine.getBoundaryCondition().getBytes(StandardCharsets.UTF_8);
+		byte[] nutrientPattern = engine.getNutrientLevelPatternChoice().getBytes(StandardCharsets.UTF_8);
+		byte[] bacteriaImage = returnStringBytes(engine.getInitialBacteriaImage());
+		byte[] nutrientImage = returnStringBytes(engine.getInitialNutrientImage());
+		int[] crowdingFunctionValues = engine.getCrowdingFunctionValues();
+		byte[] crowdingNeighbourhood = engine.getCrowdingNeighbourhood().getType().getBytes(StandardCharsets.UTF_8);
+		byte[] diffusionNeighbourhood = engine.getDiffusionNeighbourhood().getType().getBytes(StandardCharsets.UTF_8);
+
+		int length = MAGIC.length + 4 + 4		// Magic, version and header length.
+				+ 4*4							// Grid and cell dimensions.
+				+ 8 + 4*3 + 8					// Diffusion rate, nutrient and threshold values, probability.
+				+ 4								// Number of time steps for cell division.
+				+ 4 + 4*crowdingFunctionValues.length
+				+ 2 + boundaryCondition.length
+				+ 2 + nutrientPattern.length
+				+ 2 + bacteriaImage.length
+				+ 2 + nutrientImage.length
+				+ 2 + crowdingNeighbourhood.length + 4
+				+ 2 + diffusionNeighbourhood.length + 4
+				+ 8								// Random seed.
+				+ 8 + 4;						// Step number and division counter.
+		length = (length + 7) & ~7;
+
+		ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putInt(length);
+
+		header.putInt(engine.getGridWidth());
+		header.putInt(engine.getGridHeight());
+		header.putInt(engine.getCellWidth());
+		header.putInt(engine.getCellHeight());
+
+		header.putDouble(engine.getDiffusionRate());
+		header.putInt(engine.getNutrientForSustenance());
+		header.putInt(engine.getNutrientForGrowth());
+		header.putInt(engine.getThresholdForCellDivision());
+		header.putDouble(engine.getProbabilityOfCellDivision());
+		header.putInt(engine.getNumberOfTimestepsForCellDivision());
+
+		header.putInt(crowdingFunctionValues.length);
+		for (int value : crowdingFunctionValues) {
+			header.putInt(value);
+		}
+		header.putShort((short) boundaryCondition.length);
+		header.put(boundaryCondition);
+		header.putShort((short) nutrientPattern.length);
+		header.put(nutrientPattern);
+		header.putShort((short) bacteriaImage.length);
+		header.put(bacteriaImage);
+		header.putShort((short) nutrientImage.length);
+		header.put(nutrientImage);
+		header.putShort((short) crowdingNeighbourhood.length);
+		header.put(crowdingNeighbourhood);
+		header.putInt(engine.getCrowdingNeighbourhood().getRadius());
+		header.putShort((short) diffusionNeighbourhood.length);
+		header.put(diffusionNeighbourhood);
+		header.putInt(engine.getDiffusionNeighbourhood().getRadius());
+
+		header.putLong(engine.getRandomSeed());
+		header.putLong(engine.getStepNumber());
+		header.putInt(engine.getTimeStepForCellDivisionCounter());
+
+		header.rewind();
+		return header;
+	}
+
+	// Reads the parameters from the header and creates an engine with them, without a grid. Throws an
+	// IllegalArgumentException if any of them are not valid.
+	private static BacterialColonyEngine readParameters(ByteBuffer header, int version) {
+		int gridWidth = header.getInt();
+		int gridHeight = header.getInt();
+		int cellWidth = header.getInt();
+		int cellHeight = header.getInt();
+
+		double diffusionRate = header.getDouble();
+		int nutrientForSustenance = header.getInt();
+		int nutrientForGrowth = header.getInt();
+		int thresholdForDivision = header.getInt();
+		double probabilityOfCellDivision = header.getDouble();
+		int numberOfTimeStepsForCellDivision = header.getInt();
+
+		int crowdingFunctionLength = header.getInt();
+		if (crowdingFunctionLength < 0 || crowdingFunctionLength > header.remaining()/4) {
+			throw new IllegalArgumentException("invalid crowding function length " + crowdingFunctionLength);
+		}
+		int[] crowdingFunctionValues = new int[crowdingFunctionLength];
+		for (int i=0; i<crowdingFunctionValues.length; i++) {
+			crowdingFunctionValues[i] = header.getInt();
+		}
+		String boundaryCondition = readString(header);
+		String nutrientPattern = readString(header);
+		String bacteriaImage = version >= 2 ? readString(header) : "";
+		String nutrientImage = version >= 2 ? readString(header) : "";
+		String crowdingNeighbourhood = version >= 3 ? readString(header) : Neighbourhood.MOORE;
+		int crowdingNeighbourhoodRadius = version >= 3 ? header.getInt() : 1;
+		String diffusionNeighbourhood = version >= 3 ? readString(header) : Neighbourhood.VON_NEUMANN;
+		int diffusionNeighbourhoodRadius = version >= 3 ? header.getInt() : 1;
+		long seed = header.getLong();
+
+		// The config checks the parameters are valid.
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(gridWidth)
+				.setGridHeight(gridHeight)
+				.setCellWidth(cellWidth)
+				.setCellHeight(cellHeight)
+				.setDiffusionRate(diffusionRate)
+				.setNutrientForSustenance(nutrientForSustenance)
+				.setNutrientForGrowth(nutrientForGrowth)
+				.setThresholdForCellDivision(thresholdForDivision)
+				.setProbabilityOfCellDivision(probabilityOfCellDivision)
+				.setNumberOfTimestepsForCellDivision(numberOfTimeStepsForCellDivision)
+				.setCrowdingFunctionValues(crowdingFunctionValues)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientLevelPatternChoice(nutrientPattern)
+				.setInitialBacteriaImage(bacteriaImage)
+				.setInitialNutrientImage(nutrientImage)
+				.setCrowdingNeighbourhood(crowdingNeighbourhood)
+				.setCrowdingNeighbourhoodRadius(crowdingNeighbourhoodRadius)
+				.setDiffusionNeighbourhood(diffusionNeighbourhood)
+				.setDiffusionNeighbourhoodRadius(diffusionNeighbourhoodRadius)
+				.build();
+		return BacterialColonyEngine.createForRestore(config, seed);
+	}
+
+	// Returns the UTF-8 bytes of a string that may be null, which is stored as an empty string. Throws an
+	// IllegalArgumentException if the string is too long to store.
+	private static byte[] returnStringBytes(String value) {
+		byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Path is too long to store in a checkpoint: " + value);
+		return bytes;
+	}
+
+	// Reads a string stored as its length followed by its UTF-8 bytes.
+	private static String readString(ByteBuffer header) {
+		byte[] bytes = new byte[header.getShort() & 0xFFFF];
+		header.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Reads part of the file into a new buffer.
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of checkpoint.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
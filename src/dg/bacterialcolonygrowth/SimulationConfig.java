@@ -0,0 +1,480 @@
+/* *****************************************************************************
+* Description: A class used to store the parameters of a simulation. A config
+* is created with a SimulationConfig.Builder, which checks each value as it is
+* set and checks the values make sense together when the config is built. Once
+* built a config can't be changed, so it can be shared between simulations and
+* copied into a new builder to create variations of it.
+*
+* Instead of the built-in nutrient pattern and a single bacterium in the
+* middle of the grid, the initial nutrient levels and bacteria can be given by
+* PGM or PNG images the same size as the grid (see LayoutImageReader).
+*
+* The neighbours counted for the crowding function and those nutrient is
+* shared with in diffusion are each given by a type and a radius (see
+* Neighbourhood). The crowding function has a value for each possible number
+* of neighbours, from 0 up to the size of the crowding neighbourhood.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+public final class SimulationConfig {
+
+	private final int gridHeight;
+	private final int gridWidth;
+	private final int cellHeight;
+	private final int cellWidth;
+	private final double diffusionRate;
+	private final int nutrientForSustenance;
+	private final int nutrientForGrowth;
+	private final int thresholdForCellDivision;
+	private final int[] crowdingFunctionValues;
+	private final int numberOfTimestepsForCellDivision;
+	private final String boundaryCondition;
+	private final String nutrientLevelPatternChoice;
+	private final double probabilityOfCellDivision;
+	private final String initialBacteriaImage;
+	private final String initialNutrientImage;
+	private final String crowdingNeighbourhood;
+	private final int crowdingNeighbourhoodRadius;
+	private final String diffusionNeighbourhood;
+	private final int diffusionNeighbourhoodRadius;
+
+	// Constructor, only used by the builder.
+	private SimulationConfig(Builder builder) {
+		gridHeight = builder.gridHeight;
+		gridWidth = builder.gridWidth;
+		cellHeight = builder.cellHeight;
+		cellWidth = builder.cellWidth;
+		diffusionRate = builder.diffusionRate;
+		nutrientForSustenance = builder.nutrientForSustenance;
+		nutrientForGrowth = builder.nutrientForGrowth;
+		thresholdForCellDivision = builder.thresholdForCellDivision;
+		crowdingFunctionValues = builder.crowdingFunctionValues.clone();
+		numberOfTimestepsForCellDivision = builder.numberOfTimestepsForCellDivision;
+		boundaryCondition = builder.boundaryCondition;
+		nutrientLevelPatternChoice = builder.nutrientLevelPatternChoice;
+		probabilityOfCellDivision = builder.probabilityOfCellDivision;
+		initialBacteriaImage = builder.initialBacteriaImage;
+		initialNutrientImage = builder.initialNutrientImage;
+		crowdingNeighbourhood = builder.crowdingNeighbourhood;
+		crowdingNeighbourhoodRadius = builder.crowdingNeighbourhoodRadius;
+		diffusionNeighbourhood = builder.diffusionNeighbourhood;
+		diffusionNeighbourhoodRadius = builder.diffusionNeighbourhoodRadius;
+	}
+
+	// Returns a builder that starts with the values of this config.
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	/* ****************************************************************************
+	* Getters
+	*******************************************************************************/
+
+	// Returns the grid height.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the grid width.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the cell height.
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	// Returns the cell width.
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	// Returns the rate of diffusion (delta).
+	public double getDiffusionRate() {
+		return diffusionRate;
+	}
+
+	// Returns the nutrient for sustenance.
+	public int getNutrientForSustenance() {
+		return nutrientForSustenance;
+	}
+
+	// Returns the nutrient for growth.
+	public int getNutrientForGrowth() {
+		return nutrientForGrowth;
+	}
+
+	// Returns the threshold for cell division.
+	public int getThresholdForCellDivision() {
+		return thresholdForCellDivision;
+	}
+
+	// Returns a copy of the crowding function.
+	public int[] getCrowdingFunctionValues() {
+		return crowdingFunctionValues.clone();
+	}
+
+	// Returns the number of time steps between cell division.
+	public int getNumberOfTimestepsForCellDivision() {
+		return numberOfTimestepsForCellDivision;
+	}
+
+	// Returns the boundary condition.
+	public String getBoundaryCondition() {
+		return boundaryCondition;
+	}
+
+	// Returns the initial nutrient pattern.
+	public String getNutrientLevelPatternChoice() {
+		return nutrientLevelPatternChoice;
+	}
+
+	// Returns the probability of cell division.
+	public double getProbabilityOfCellDivision() {
+		return probabilityOfCellDivision;
+	}
+
+	// Returns the path of the image of the initial bacteria, or null if a single bacterium is placed in
+	// the middle of the grid.
+	public String getInitialBacteriaImage() {
+		return initialBacteriaImage;
+	}
+
+	// Returns the path of the image of the initial nutrient levels, or null if the initial nutrient
+	// pattern is used.
+	public String getInitialNutrientImage() {
+		return initialNutrientImage;
+	}
+
+	// Returns the type of neighbourhood whose alive bacteria are counted for the crowding function.
+	public String getCrowdingNeighbourhood() {
+		return crowdingNeighbourhood;
+	}
+
+	// Returns the radius of the crowding neighbourhood.
+	public int getCrowdingNeighbourhoodRadius() {
+		return crowdingNeighbourhoodRadius;
+	}
+
+	// Returns the type of neighbourhood nutrient is shared with in diffusion.
+	public String getDiffusionNeighbourhood() {
+		return diffusionNeighbourhood;
+	}
+
+	// Returns the radius of the diffusion neighbourhood.
+	public int getDiffusionNeighbourhoodRadius() {
+		return diffusionNeighbourhoodRadius;
+	}
+
+	// Returns the neighbourhood whose alive bacteria are counted for the crowding function.
+	public Neighbourhood createCrowdingNeighbourhood() {
+		return new Neighbourhood(crowdingNeighbourhood, crowdingNeighbourhoodRadius);
+	}
+
+	// Returns the neighbourhood nutrient is shared with in diffusion.
+	public Neighbourhood createDiffusionNeighbourhood() {
+		return new Neighbourhood(diffusionNeighbourhood, diffusionNeighbourhoodRadius);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof SimulationConfig)) return false;
+
+		SimulationConfig config = (SimulationConfig) other;
+		return gridHeight == config.gridHeight && gridWidth == config.gridWidth
+				&& cellHeight == config.cellHeight && cellWidth == config.cellWidth
+				&& Double.compare(diffusionRate, config.diffusionRate) == 0
+				&& nutrientForSustenance == config.nutrientForSustenance && nutrientForGrowth == config.nutrientForGrowth
+				&& thresholdForCellDivision == config.thresholdForCellDivision
+				&& Arrays.equals(crowdingFunctionValues, config.crowdingFunctionValues)
+				&& numberOfTimestepsForCellDivision == config.numberOfTimestepsForCellDivision
+				&& boundaryCondition.equals(config.boundaryCondition)
+				&& nutrientLevelPatternChoice.equals(config.nutrientLevelPatternChoice)
+				&& Double.compare(probabilityOfCellDivision, config.probabilityOfCellDivision) == 0
+				&& Objects.equals(initialBacteriaImage, config.initialBacteriaImage)
+				&& Objects.equals(initialNutrientImage, config.initialNutrientImage)
+				&& crowdingNeighbourhood.equals(config.crowdingNeighbourhood)
+				&& crowdingNeighbourhoodRadius == config.crowdingNeighbourhoodRadius
+				&& diffusionNeighbourhood.equals(config.diffusionNeighbourhood)
+				&& diffusionNeighbourhoodRadius == config.diffusionNeighbourhoodRadius;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = gridHeight;
+		hash = 31*hash + gridWidth;
+		hash = 31*hash + cellHeight;
+		hash = 31*hash + cellWidth;
+		hash = 31*hash + Double.hashCode(diffusionRate);
+		hash = 31*hash + nutrientForSustenance;
+		hash = 31*hash + nutrientForGrowth;
+		hash = 31*hash + thresholdForCellDivision;
+		hash = 31*hash + Arrays.hashCode(crowdingFunctionValues);
+		hash = 31*hash + numberOfTimestepsForCellDivision;
+		hash = 31*hash + boundaryCondition.hashCode();
+		hash = 31*hash + nutrientLevelPatternChoice.hashCode();
+		hash = 31*hash + Double.hashCode(probabilityOfCellDivision);
+		hash = 31*hash + Objects.hashCode(initialBacteriaImage);
+		hash = 31*hash + Objects.hashCode(initialNutrientImage);
+		hash = 31*hash + crowdingNeighbourhood.hashCode();
+		hash = 31*hash + crowdingNeighbourhoodRadius;
+		hash = 31*hash + diffusionNeighbourhood.hashCode();
+		hash = 31*hash + diffusionNeighbourhoodRadius;
+		return hash;
+	}
+
+	/* ****************************************************************************
+	* Builder
+	*******************************************************************************/
+
+	// Used to create a config. Starts with the default parameters, and each setter throws an
+	// IllegalArgumentException if its value is not valid.
+	public static final class Builder {
+		private int gridHeight = 80; // Default = 80
+		private int gridWidth = 80; // Default = 80
+		private int cellHeight = 5; // Default = 5
+		private int cellWidth = 5; // Default = 5
+		private double diffusionRate = 0.4; // Default = 0.4
+		private int nutrientForSustenance = 10; // Default = 10
+		private int nutrientForGrowth = 60; // Default = 60
+		private int thresholdForCellDivision = 100; // Default = 100
+		private int[] crowdingFunctionValues = {0, 40, 40, 40, 30, 20, 10, 0, 0}; // Default = 0,40,40,40,30,20,10,0,0
+		private int numberOfTimestepsForCellDivision = 8; // Default = 8
+		private String boundaryCondition = "reflecting"; // Default = "reflecting"
+		private String nutrientLevelPatternChoice = "default"; // Default = "default"
+		private double probabilityOfCellDivision = 0.5; // Default = 0.5
+		private String initialBacteriaImage = null; // Default = none
+		private String initialNutrientImage = null; // Default = none
+		private String crowdingNeighbourhood = Neighbourhood.MOORE; // Default = "moore"
+		private int crowdingNeighbourhoodRadius = 1; // Default = 1
+		private String diffusionNeighbourhood = Neighbourhood.VON_NEUMANN; // Default = "vonneumann"
+		private int diffusionNeighbourhoodRadius = 1; // Default = 1
+
+		// Constructor which starts with the default parameters.
+		public Builder() {
+		}
+
+		// Constructor which starts with the parameters of an existing config.
+		public Builder(SimulationConfig config) {
+			gridHeight = config.gridHeight;
+			gridWidth = config.gridWidth;
+			cellHeight = config.cellHeight;
+			cellWidth = config.cellWidth;
+			diffusionRate = config.diffusionRate;
+			nutrientForSustenance = config.nutrientForSustenance;
+			nutrientForGrowth = config.nutrientForGrowth;
+			thresholdForCellDivision = config.thresholdForCellDivision;
+			crowdingFunctionValues = config.crowdingFunctionValues.clone();
+			numberOfTimestepsForCellDivision = config.numberOfTimestepsForCellDivision;
+			boundaryCondition = config.boundaryCondition;
+			nutrientLevelPatternChoice = config.nutrientLevelPatternChoice;
+			probabilityOfCellDivision = config.probabilityOfCellDivision;
+			initialBacteriaImage = config.initialBacteriaImage;
+			initialNutrientImage = config.initialNutrientImage;
+			crowdingNeighbourhood = config.crowdingNeighbourhood;
+			crowdingNeighbourhoodRadius = config.crowdingNeighbourhoodRadius;
+			diffusionNeighbourhood = config.diffusionNeighbourhood;
+			diffusionNeighbourhoodRadius = config.diffusionNeighbourhoodRadius;
+		}
+
+		// Returns a new builder with the same values as this one, which can be changed separately.
+		public Builder copy() {
+			Builder copy = new Builder();
+			copy.gridHeight = gridHeight;
+			copy.gridWidth = gridWidth;
+			copy.cellHeight = cellHeight;
+			copy.cellWidth = cellWidth;
+			copy.diffusionRate = diffusionRate;
+			copy.nutrientForSustenance = nutrientForSustenance;
+			copy.nutrientForGrowth = nutrientForGrowth;
+			copy.thresholdForCellDivision = thresholdForCellDivision;
+			copy.crowdingFunctionValues = crowdingFunctionValues.clone();
+			copy.numberOfTimestepsForCellDivision = numberOfTimestepsForCellDivision;
+			copy.boundaryCondition = boundaryCondition;
+			copy.nutrientLevelPatternChoice = nutrientLevelPatternChoice;
+			copy.probabilityOfCellDivision = probabilityOfCellDivision;
+			copy.initialBacteriaImage = initialBacteriaImage;
+			copy.initialNutrientImage = initialNutrientImage;
+			copy.crowdingNeighbourhood = crowdingNeighbourhood;
+			copy.crowdingNeighbourhoodRadius = crowdingNeighbourhoodRadius;
+			copy.diffusionNeighbourhood = diffusionNeighbourhood;
+			copy.diffusionNeighbourhoodRadius = diffusionNeighbourhoodRadius;
+			return copy;
+		}
+
+		// Set grid height.
+		public Builder setGridHeight(int x) {
+			if (x < 1) throw new IllegalArgumentException("Grid height must be an integer greater than 0.");
+			gridHeight = x;
+			return this;
+		}
+
+		// Set grid width.
+		public Builder setGridWidth(int x) {
+			if (x < 1) throw new IllegalArgumentException("Grid width must be an integer greater than 0.");
+			gridWidth = x;
+			return this;
+		}
+
+		// Set cell height.
+		public Builder setCellHeight(int x) {
+			if (x < 1) throw new IllegalArgumentException("Cell height must be an integer greater than 0.");
+			cellHeight = x;
+			return this;
+		}
+
+		// Set cell width.
+		public Builder setCellWidth(int x) {
+			if (x < 1) throw new IllegalArgumentException("Cell width must be an integer greater than 0.");
+			cellWidth = x;
+			return this;
+		}
+
+		// Set rate of diffusion (delta).
+		public Builder setDiffusionRate(double x) {
+			if (!(x >= 0 && x <= 1)) throw new IllegalArgumentException("Rate of diffusion must be between 0 and 1.");
+			diffusionRate = x;
+			return this;
+		}
+
+		// Set nutrient for sustenance.
+		public Builder setNutrientForSustenance(int x) {
+			if (x < 0 || x > 100) throw new IllegalArgumentException("Nutrient for sustenance must be an integer between 0 and 100.");
+			nutrientForSustenance = x;
+			return this;
+		}
+
+		// Set nutrient for growth.
+		public Builder setNutrientForGrowth(int x) {
+			if (x < 0 || x > 100) throw new IllegalArgumentException("Nutrient for growth must be an integer between 0 and 100.");
+			nutrientForGrowth = x;
+			return this;
+		}
+
+		// Set threshold for cell division.
+		public Builder setThresholdForCellDivision(int x) {
+			if (x < 0) throw new IllegalArgumentException("Threshold for cell division must be a non negative integer.");
+			thresholdForCellDivision = x;
+			return this;
+		}
+
+		// Set crowding function, which must have a value for each possible number of neighbours, 0-8 with the
+		// default neighbourhood. The number of values is checked against the neighbourhood when the config is
+		// built.
+		public Builder setCrowdingFunctionValues(int[] x) {
+			if (x.length < 2) throw new IllegalArgumentException("There should be a value for each possible number of neighbours in the crowding function.");
+			crowdingFunctionValues = x.clone();
+			return this;
+		}
+
+		// Set number of time steps for cell division.
+		public Builder setNumberOfTimestepsForCellDivision(int x) {
+			if (x < 1) throw new IllegalArgumentException("Timestep for cell division must be an integer greater than 0.");
+			numberOfTimestepsForCellDivision = x;
+			return this;
+		}
+
+		// Set boundary condition.
+		public Builder setBoundaryCondition(String newBoundaryCondition) {
+			if (!(newBoundaryCondition.equals("reflecting") || newBoundaryCondition.equals("absorbent") || newBoundaryCondition.equals("periodic"))) {
+				throw new IllegalArgumentException("Boundary condition must be either 'reflecting', 'absorbent' or 'periodic'.");
+			}
+			boundaryCondition = newBoundaryCondition;
+			return this;
+		}
+
+		// Set initial nutrient pattern.
+		public Builder setNutrientLevelPatternChoice(String nutrientPattern) {
+			if (!(nutrientPattern.equals("absorbingmiddle") || nutrientPattern.equals("random") || nutrientPattern.equals("default"))) {
+				throw new IllegalArgumentException("Initial nutrient pattern can be either 'absorbingmiddle', 'random' or 'default'.");
+			}
+			nutrientLevelPatternChoice = nutrientPattern;
+			return this;
+		}
+
+		// Set probability of cell division.
+		public Builder setProbabilityOfCellDivision(double probability) {
+			if (!(probability >= 0 && probability <= 1)) throw new IllegalArgumentException("probability of cell division must be between 0 and 1.");
+			probabilityOfCellDivision = probability;
+			return this;
+		}
+
+		// Set the image of the initial bacteria. Dark grid spaces contain a living bacterium, mid grey grid
+		// spaces contain remains and light grid spaces are empty. Null or an empty path places a single
+		// bacterium in the middle of the grid instead.
+		public Builder setInitialBacteriaImage(String path) {
+			initialBacteriaImage = path == null || path.isEmpty() ? null : path;
+			return this;
+		}
+
+		// Set the image of the initial nutrient levels. Black grid spaces contain no nutrient and white grid
+		// spaces contain 100. Null or an empty path uses the initial nutrient pattern instead.
+		public Builder setInitialNutrientImage(String path) {
+			initialNutrientImage = path == null || path.isEmpty() ? null : path;
+			return this;
+		}
+
+		// Set the type of neighbourhood whose alive bacteria are counted for the crowding function.
+		public Builder setCrowdingNeighbourhood(String type) {
+			Neighbourhood.checkType(type);
+			crowdingNeighbourhood = type;
+			return this;
+		}
+
+		// Set the radius of the crowding neighbourhood.
+		public Builder setCrowdingNeighbourhoodRadius(int radius) {
+			Neighbourhood.checkRadius(radius);
+			crowdingNeighbourhoodRadius = radius;
+			return this;
+		}
+
+		// Set the type of neighbourhood nutrient is shared with in diffusion.
+		public Builder setDiffusionNeighbourhood(String type) {
+			Neighbourhood.checkType(type);
+			diffusionNeighbourhood = type;
+			return this;
+		}
+
+		// Set the radius of the diffusion neighbourhood.
+		public Builder setDiffusionNeighbourhoodRadius(int radius) {
+			Neighbourhood.checkRadius(radius);
+			diffusionNeighbourhoodRadius = radius;
+			return this;
+		}
+
+		// Creates the config, after checking the values make sense together.
+		public SimulationConfig build() {
+			int numberOfNeighbours = new Neighbourhood(crowdingNeighbourhood, crowdingNeighbourhoodRadius).getNumberOfNeighbours();
+			if (crowdingFunctionValues.length != numberOfNeighbours + 1) {
+				throw new IllegalArgumentException("There should be " + (numberOfNeighbours + 1) + " values for the crowding function.");
+			}
+			// Odd rows of a hexagonal lattice are shifted, so rows only wrap around onto rows of the other parity
+			// if there is an even number of them.
+			boolean hexagonal = crowdingNeighbourhood.equals(Neighbourhood.HEXAGONAL) || diffusionNeighbourhood.equals(Neighbourhood.HEXAGONAL);
+			if (hexagonal && boundaryCondition.equals("periodic") && gridHeight % 2 != 0) {
+				throw new IllegalArgumentException("Grid height must be even for a hexagonal neighbourhood with periodic boundaries.");
+			}
+
+			// Without an image, the first bacterium is placed at (gridWidth/2, gridWidth/2).
+			if (initialBacteriaImage == null && gridWidth/2 >= gridHeight) {
+				throw new IllegalArgumentException("Grid height must be greater than half the grid width to place the initial bacterium.");
+			}
+			if (initialNutrientImage == null && nutrientLevelPatternChoice.equals("absorbingmiddle") && gridHeight < 3) {
+				throw new IllegalArgumentException("Grid width not large enough for absorbing middle pattern.");
+			}
+			if ((long) gridWidth*gridHeight > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Grid has too many grid spaces.");
+			}
+
+			return new SimulationConfig(this);
+		}
+	}
+}
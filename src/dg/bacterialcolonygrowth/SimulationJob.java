@@ -0,0 +1,55 @@
+/* *****************************************************************************
+* Description: A class used to store one job from a job file: the parameters
+* of a simulation, how many steps to run it for and how many times to run it.
+* Each run of a job uses its own seed, counting up from the first seed.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public final class SimulationJob {
+
+	private final String name;
+	private final SimulationConfig config;
+	private final long numberOfSteps;
+	private final int numberOfReplicates;
+	private final long firstSeed;
+
+	// Constructor.
+	public SimulationJob(String name, SimulationConfig config, long numberOfSteps, int numberOfReplicates, long firstSeed) {
+		if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must be a non negative integer.");
+		if (numberOfReplicates < 1) throw new IllegalArgumentException("Number of replicates must be an integer greater than 0.");
+
+		this.name = name;
+		this.config = config;
+		this.numberOfSteps = numberOfSteps;
+		this.numberOfReplicates = numberOfReplicates;
+		this.firstSeed = firstSeed;
+	}
+
+	// Returns the name of the job.
+	public String getName() {
+		return name;
+	}
+
+	// Returns the parameters of the simulation.
+	public SimulationConfig getConfig() {
+		return config;
+	}
+
+	// Returns the number of steps each run is carried out for.
+	public long getNumberOfSteps() {
+		return numberOfSteps;
+	}
+
+	// Returns the number of times the simulation is run.
+	public int getNumberOfReplicates() {
+		return numberOfReplicates;
+	}
+
+	// Returns the seed used by a run of the job, counting from 0.
+	public long returnSeedForReplicate(int replicate) {
+		return firstSeed + replicate;
+	}
+}
@@ -0,0 +1,348 @@
+/* *****************************************************************************
+* Description: A class used to collect metrics from a running simulation: a
+* latency histogram for each phase of a step, the number of grid spaces
+* updated per second, births and deaths per step and the memory allocated per
+* step. The metrics can be published as an MXBean and printed as a log line.
+*
+* Metrics are off unless an instance is given to the engine. Recording only
+* adds to arrays owned by the simulation thread, so readers on other threads,
+* such as JMX clients, may see values up to a step out of date.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+	public enum Phase {DIFFUSION, CONSUMPTION, DIVISION, RENDERING, IO}
+
+	public static final String OBJECT_NAME = "dg.bacterialcolonygrowth:type=SimulationMetrics";
+
+	// Each power of two is split into eight buckets, so a percentile is never more than 12.5% above the
+	// true value. Times below eight nanoseconds get a bucket each.
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[][] histograms = new long[Phase.values().length][NUMBER_OF_BUCKETS];
+	private final long[] phaseCounts = new long[Phase.values().length];
+	private final long[] phaseTotals = new long[Phase.values().length];
+	private final long[] phaseMaximums = new long[Phase.values().length];
+
+	private volatile long steps = 0;
+	private volatile long cellsUpdated = 0;
+	private volatile long births = 0;
+	private volatile long deaths = 0;
+	private volatile long birthsInLastStep = 0;
+	private volatile long deathsInLastStep = 0;
+	private volatile long allocatedBytes = 0;
+	private volatile long startTime;
+
+	// Statistics of the colony after the most recent step.
+	private volatile int numberOfAliveBacteria = 0;
+	private volatile int numberOfRemains = 0;
+	private volatile double totalNutrient = 0;
+	private volatile double colonyRadius = 0;
+	private volatile long colonyPerimeter = 0;
+
+	// Allocation is measured with the extension of ThreadMXBean in HotSpot based JVMs. It is null if the
+	// JVM doesn't support it.
+	private final com.sun.management.ThreadMXBean allocationCounter;
+	private long allocatedBytesAtLastStep = -1;
+
+	// Set by reset, which may be called from a JMX thread, and acted on by the simulation thread.
+	private volatile boolean resetRequested = false;
+
+	// Totals at the last log line, so each line describes only the steps since the one before.
+	private long lastLogTime;
+	private long stepsAtLastLog = 0;
+	private long cellsUpdatedAtLastLog = 0;
+	private long birthsAtLastLog = 0;
+	private long deathsAtLastLog = 0;
+
+	private ObjectName registeredName = null;
+
+	// Constructor.
+	public SimulationMetrics() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+			allocationCounter = (com.sun.management.ThreadMXBean) threadBean;
+			allocationCounter.setThreadAllocatedMemoryEnabled(true);
+		}
+		else {
+			allocationCounter = null;
+		}
+
+		startTime = System.nanoTime();
+		lastLogTime = startTime;
+	}
+
+	// Returns the histogram bucket that a time in nanoseconds is counted in.
+	static int returnBucket(long nanoseconds) {
+		if (nanoseconds < SUB_BUCKETS) return (int) Math.max(nanoseconds, 0);
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanoseconds);
+		int subBucket = (int) (nanoseconds >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	// Returns the largest time in nanoseconds that is counted in a histogram bucket.
+	static long returnBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	// Records the time taken by one phase. Must be called from the simulation thread.
+	public void recordPhase(Phase phase, long nanoseconds) {
+		int p = phase.ordinal();
+		histograms[p][returnBucket(nanoseconds)]++;
+		phaseCounts[p]++;
+		phaseTotals[p] += nanoseconds;
+		if (nanoseconds > phaseMaximums[p]) phaseMaximums[p] = nanoseconds;
+	}
+
+	// Records the end of a step, with the number of grid spaces it updated and the number of bacteria that
+	// were born and that died. Must be called from the simulation thread.
+	public void recordStep(long cellsUpdatedInStep, long birthsInStep, long deathsInStep) {
+		if (resetRequested) {
+			clear();
+			resetRequested = false;
+		}
+
+		if (allocationCounter != null) {
+			long allocated = allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+			if (allocatedBytesAtLastStep >= 0) allocatedBytes += allocated - allocatedBytesAtLastStep;
+			allocatedBytesAtLastStep = allocated;
+		}
+
+		cellsUpdated += cellsUpdatedInStep;
+		births += birthsInStep;
+		deaths += deathsInStep;
+		birthsInLastStep = birthsInStep;
+		deathsInLastStep = deathsInStep;
+		steps++;
+	}
+
+	// Records the statistics of the colony at the end of a step. They are passed one at a time so that
+	// nothing is allocated.
+	public void recordColonyStatistics(int numberOfAliveBacteria, int numberOfRemains, double totalNutrient,
+			double colonyRadius, long colonyPerimeter) {
+		this.numberOfAliveBacteria = numberOfAliveBacteria;
+		this.numberOfRemains = numberOfRemains;
+		this.totalNutrient = totalNutrient;
+		this.colonyRadius = colonyRadius;
+		this.colonyPerimeter = colonyPerimeter;
+	}
+
+	// Clears every metric. Only called from the simulation thread.
+	private void clear() {
+		for (int p=0; p<histograms.length; p++) {
+			Arrays.fill(histograms[p], 0);
+			phaseCounts[p] = 0;
+			phaseTotals[p] = 0;
+			phaseMaximums[p] = 0;
+		}
+		steps = 0;
+		cellsUpdated = 0;
+		births = 0;
+		deaths = 0;
+		allocatedBytes = 0;
+		allocatedBytesAtLastStep = -1;
+		stepsAtLastLog = 0;
+		cellsUpdatedAtLastLog = 0;
+		birthsAtLastLog = 0;
+		deathsAtLastLog = 0;
+		startTime = System.nanoTime();
+		lastLogTime = startTime;
+	}
+
+	@Override
+	public void reset() {
+		resetRequested = true;
+	}
+
+	@Override
+	public long getSteps() {
+		return steps;
+	}
+
+	@Override
+	public double getStepsPerSecond() {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		return seconds > 0 ? steps / seconds : 0;
+	}
+
+	@Override
+	public double getCellsUpdatedPerSecond() {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		return seconds > 0 ? cellsUpdated / seconds : 0;
+	}
+
+	@Override
+	public long getBirthsInLastStep() {
+		return birthsInLastStep;
+	}
+
+	@Override
+	public long getDeathsInLastStep() {
+		return deathsInLastStep;
+	}
+
+	@Override
+	public double getMeanBirthsPerStep() {
+		long n = steps;
+		return n > 0 ? (double) births / n : 0;
+	}
+
+	@Override
+	public double getMeanDeathsPerStep() {
+		long n = steps;
+		return n > 0 ? (double) deaths / n : 0;
+	}
+
+	@Override
+	public double getAllocatedBytesPerStep() {
+		if (allocationCounter == null) return -1;
+		// The first step only sets the starting point of the count.
+		long n = steps - 1;
+		return n > 0 ? (double) allocatedBytes / n : 0;
+	}
+
+	@Override
+	public int getNumberOfAliveBacteria() {
+		return numberOfAliveBacteria;
+	}
+
+	@Override
+	public int getNumberOfRemains() {
+		return numberOfRemains;
+	}
+
+	@Override
+	public double getTotalNutrient() {
+		return totalNutrient;
+	}
+
+	@Override
+	public double getColonyRadius() {
+		return colonyRadius;
+	}
+
+	@Override
+	public long getColonyPerimeter() {
+		return colonyPerimeter;
+	}
+
+	@Override
+	public List<PhaseStatistics> getPhaseStatistics() {
+		List<PhaseStatistics> statistics = new ArrayList<PhaseStatistics>();
+		for (Phase phase : Phase.values()) {
+			statistics.add(createPhaseStatistics(phase));
+		}
+		return statistics;
+	}
+
+	// Returns the latency of a single phase.
+	public PhaseStatistics createPhaseStatistics(Phase phase) {
+		int p = phase.ordinal();
+		long count = phaseCounts[p];
+		long maximum = phaseMaximums[p];
+
+		return new PhaseStatistics(phase.name().toLowerCase(), count,
+				count > 0 ? phaseTotals[p] / 1e3 / count : 0,
+				returnPercentile(phase, 0.5) / 1e3,
+				returnPercentile(phase, 0.99) / 1e3,
+				maximum / 1e3);
+	}
+
+	// Returns the time in nanoseconds that the fraction given of the recordings of a phase took no longer
+	// than. The result is the top of the histogram bucket the percentile falls in, capped at the longest
+	// time recorded.
+	public long returnPercentile(Phase phase, double fraction) {
+		int p = phase.ordinal();
+		long[] histogram = histograms[p];
+		long count = 0;
+		for (long bucketCount : histogram) {
+			count += bucketCount;
+		}
+		if (count == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int bucket=0; bucket<histogram.length; bucket++) {
+			seen += histogram[bucket];
+			if (seen >= rank) return Math.min(returnBucketUpperBound(bucket), phaseMaximums[p]);
+		}
+		return phaseMaximums[p];
+	}
+
+	// Returns a line describing the steps since the last line, and the latency of each phase that has
+	// been recorded so far.
+	public String createLogLine() {
+		long currentTime = System.nanoTime();
+		double seconds = (currentTime - lastLogTime) / 1e9;
+		long currentSteps = steps;
+		long stepsInWindow = currentSteps - stepsAtLastLog;
+
+		StringBuilder line = new StringBuilder(String.format("metrics steps=%d steps/s=%.1f cells/s=%.3g births/step=%.2f deaths/step=%.2f",
+				currentSteps,
+				seconds > 0 ? stepsInWindow / seconds : 0,
+				seconds > 0 ? (cellsUpdated - cellsUpdatedAtLastLog) / seconds : 0,
+				stepsInWindow > 0 ? (double) (births - birthsAtLastLog) / stepsInWindow : 0,
+				stepsInWindow > 0 ? (double) (deaths - deathsAtLastLog) / stepsInWindow : 0));
+		if (allocationCounter != null) line.append(String.format(" alloc/step=%.0fB", getAllocatedBytesPerStep()));
+
+		line.append(String.format(" alive=%d remains=%d nutrient=%.2f radius=%.1f perimeter=%d", numberOfAliveBacteria,
+				numberOfRemains, totalNutrient, colonyRadius, colonyPerimeter));
+
+		for (Phase phase : Phase.values()) {
+			PhaseStatistics statistics = createPhaseStatistics(phase);
+			if (statistics.getCount() == 0) continue;
+			line.append(String.format(" %s(p50=%.1fus p99=%.1fus max=%.1fus)", statistics.getPhase(),
+					statistics.getMedianMicroseconds(), statistics.getP99Microseconds(), statistics.getMaximumMicroseconds()));
+		}
+
+		lastLogTime = currentTime;
+		stepsAtLastLog = currentSteps;
+		cellsUpdatedAtLastLog = cellsUpdated;
+		birthsAtLastLog = births;
+		deathsAtLastLog = deaths;
+		return line.toString();
+	}
+
+	// Publishes the metrics in the platform MBean server, so they can be read by JMX clients.
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		server.registerMBean(this, name);
+		registeredName = name;
+
+		// Starting the MBean server can take a while, which shouldn't count against the first window.
+		if (steps == 0) {
+			startTime = System.nanoTime();
+			lastLogTime = startTime;
+		}
+	}
+
+	// Removes the metrics from the platform MBean server, if they were published.
+	public void unregister() throws JMException {
+		if (registeredName == null) return;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		registeredName = null;
+	}
+}
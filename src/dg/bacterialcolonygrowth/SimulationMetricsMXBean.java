@@ -0,0 +1,60 @@
+/* *****************************************************************************
+* Description: The management interface of SimulationMetrics, through which
+* the metrics of a running simulation can be read with JConsole, VisualVM or
+* any other JMX client.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.List;
+
+public interface SimulationMetricsMXBean {
+
+	// Returns the number of steps recorded since the metrics were started or reset.
+	long getSteps();
+
+	// Returns the number of steps carried out per second.
+	double getStepsPerSecond();
+
+	// Returns the number of grid spaces updated per second.
+	double getCellsUpdatedPerSecond();
+
+	// Returns the number of bacteria born in the most recent step.
+	long getBirthsInLastStep();
+
+	// Returns the number of bacteria that died in the most recent step.
+	long getDeathsInLastStep();
+
+	// Returns the average number of bacteria born in each step.
+	double getMeanBirthsPerStep();
+
+	// Returns the average number of bacteria that died in each step.
+	double getMeanDeathsPerStep();
+
+	// Returns the average number of bytes allocated by the simulation thread in each step, or -1 if the
+	// JVM can't measure it.
+	double getAllocatedBytesPerStep();
+
+	// Returns the number of alive bacteria after the most recent step.
+	int getNumberOfAliveBacteria();
+
+	// Returns the number of remains of dead bacteria after the most recent step.
+	int getNumberOfRemains();
+
+	// Returns the total nutrient in the grid after the most recent step.
+	double getTotalNutrient();
+
+	// Returns the radius of the colony after the most recent step.
+	double getColonyRadius();
+
+	// Returns the perimeter of the colony after the most recent step.
+	long getColonyPerimeter();
+
+	// Returns the latency of each phase of a step.
+	List<PhaseStatistics> getPhaseStatistics();
+
+	// Clears the metrics. They are cleared by the simulation thread at the end of its next step.
+	void reset();
+}
@@ -0,0 +1,59 @@
+/* *****************************************************************************
+* Description: A class used to store a copy of the nutrient levels and
+* bacteria of a simulation at a single time step, so it can be written out
+* while the simulation carries on.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public class SimulationSnapshot {
+
+	private final int gridWidth;
+	private final int gridHeight;
+	private final long stepNumber;
+
+	// Stored in the same order as the nutrient matrix, i.e. position x + y*gridWidth.
+	private final double[] nutrientLevels;
+	private final byte[] bacteriaStates;
+
+	// Constructor. The arrays are not copied, so they must not be changed afterwards.
+	public SimulationSnapshot(int gridWidth, int gridHeight, long stepNumber, double[] nutrientLevels, byte[] bacteriaStates) {
+		if (nutrientLevels.length != gridWidth*gridHeight || bacteriaStates.length != gridWidth*gridHeight) {
+			throw new IllegalArgumentException("Snapshot arrays must contain one value for each grid space.");
+		}
+
+		this.gridWidth = gridWidth;
+		this.gridHeight = gridHeight;
+		this.stepNumber = stepNumber;
+		this.nutrientLevels = nutrientLevels;
+		this.bacteriaStates = bacteriaStates;
+	}
+
+	// Returns the width of the grid.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the height of the grid.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the time step the snapshot was taken at.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the nutrient levels. The array must not be changed.
+	public double[] getNutrientLevels() {
+		return nutrientLevels;
+	}
+
+	// Returns the bacteria states (BacterialColonyEngine.EMPTY, ALIVE or REMAINS). The array must not be
+	// changed.
+	public byte[] getBacteriaStates() {
+		return bacteriaStates;
+	}
+}
@@ -0,0 +1,232 @@
+/* *****************************************************************************
+* Description: A class used to save snapshots of a simulation every n steps
+* and/or every t seconds without pausing it. The state of the engine is copied
+* into one of a fixed number of capture buffers, which only takes two bulk
+* array copies, and the buffer is saved on a background thread as a checkpoint
+* and/or as NumPy arrays. Buffers are reused once they have been saved, so no
+* memory is allocated for a snapshot after the first few.
+*
+* When every buffer is waiting to be saved, the backpressure policy decides
+* whether the simulation waits for one, the new snapshot is dropped, or it
+* replaces the newest snapshot that hasn't been saved yet.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SnapshotScheduler implements AutoCloseable {
+
+	// What a snapshot is saved as. CHECKPOINT saves "snapshot-<step>.ckpt", which HeadlessRunner can carry
+	// on from. NPY saves "states-<step>.npy" and "nutrient-<step>.npy". BOTH saves all three.
+	public enum OutputFormat { CHECKPOINT, NPY, BOTH }
+
+	// What happens to a new snapshot when every buffer is waiting to be saved. WAIT pauses the simulation
+	// until a buffer has been saved, so no snapshot is lost. DROP discards the new snapshot. COALESCE
+	// replaces the newest snapshot that hasn't been saved yet with the new one.
+	public enum BackpressurePolicy { WAIT, DROP, COALESCE }
+
+	// A capture buffer, which holds the copy of the engine a snapshot is saved from. Each is created once
+	// with its buffer and goes back and forth between the queues with it, so a snapshot allocates nothing.
+	private static final class CaptureBuffer {
+		final BacterialColonyEngine engine;
+
+		CaptureBuffer(BacterialColonyEngine engine) {
+			this.engine = engine;
+		}
+	}
+
+	// Placed in the queue to tell the writer thread that there are no more snapshots.
+	private static final CaptureBuffer END_OF_SNAPSHOTS = new CaptureBuffer(null);
+
+	private final File directory;
+	private final OutputFormat format;
+	private final long stepInterval;
+	private final long timeInterval;
+	private final BackpressurePolicy backpressurePolicy;
+	private final int numberOfBuffers;
+
+	private final BlockingQueue<CaptureBuffer> freeBuffers;
+	private final LinkedBlockingDeque<CaptureBuffer> pendingSnapshots = new LinkedBlockingDeque<CaptureBuffer>();
+	private int buffersCreated = 0;
+	private long lastCaptureTime;
+	private final Thread writerThread;
+	private volatile boolean closed = false;
+
+	private final AtomicLong snapshotsCaptured = new AtomicLong();
+	private final AtomicLong snapshotsDropped = new AtomicLong();
+	private final AtomicLong snapshotsWritten = new AtomicLong();
+	private long timeWaiting = 0;
+
+	// First error that occurred on the writer thread.
+	private volatile Exception writeError;
+
+	// Constructor. A snapshot is due every stepInterval steps and every timeInterval seconds; either can
+	// be 0 to turn it off. The queue capacity is the number of snapshots that can wait to be saved while
+	// another is being saved.
+	public SnapshotScheduler(File directory, OutputFormat format, long stepInterval, double timeInterval,
+			int queueCapacity, BackpressurePolicy backpressurePolicy) throws IOException {
+		if (stepInterval < 0) throw new IllegalArgumentException("Snapshot step interval must be a non negative integer.");
+		if (!(timeInterval >= 0)) throw new IllegalArgumentException("Snapshot time interval must be a non negative number.");
+		if (queueCapacity < 1) throw new IllegalArgumentException("Snapshot queue size must be an integer greater than 0.");
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create directory " + directory + ".");
+
+		this.directory = directory;
+		this.format = format;
+		this.stepInterval = stepInterval;
+		this.timeInterval = (long) (timeInterval * 1e9);
+		this.backpressurePolicy = backpressurePolicy;
+
+		// One buffer can be being saved while the others wait in the queue.
+		numberOfBuffers = queueCapacity + 1;
+		freeBuffers = new ArrayBlockingQueue<CaptureBuffer>(numberOfBuffers);
+		lastCaptureTime = System.nanoTime();
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeSnapshots();
+			}
+		}, "snapshot-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	// Captures a snapshot of the engine if one is due at its current step, or because enough time has
+	// passed since the last one. Returns true if a snapshot was captured.
+	public boolean captureIfDue(BacterialColonyEngine engine) throws InterruptedException {
+		boolean due = stepInterval > 0 && engine.getStepNumber() % stepInterval == 0;
+		if (!due && timeInterval > 0 && System.nanoTime() - lastCaptureTime >= timeInterval) due = true;
+
+		return due && this.capture(engine);
+	}
+
+	// Captures a snapshot of the engine now. Returns false if it was dropped because every buffer is
+	// waiting to be saved.
+	public boolean capture(BacterialColonyEngine engine) throws InterruptedException {
+		if (closed) throw new IllegalStateException("Snapshot scheduler has been closed.");
+		lastCaptureTime = System.nanoTime();
+
+		CaptureBuffer buffer = freeBuffers.poll();
+		if (buffer == null && buffersCreated < numberOfBuffers) {
+			buffer = new CaptureBuffer(engine.createCaptureBuffer());
+			buffersCreated++;
+		}
+
+		if (buffer == null) {
+			if (backpressurePolicy == BackpressurePolicy.DROP) {
+				snapshotsDropped.incrementAndGet();
+				return false;
+			}
+
+			if (backpressurePolicy == BackpressurePolicy.COALESCE) {
+				// The newest waiting snapshot is overwritten in place.
+				buffer = pendingSnapshots.pollLast();
+				if (buffer != null) snapshotsDropped.incrementAndGet();
+			}
+
+			if (buffer == null) {
+				long startTime = System.nanoTime();
+				buffer = freeBuffers.take();
+				timeWaiting += System.nanoTime() - startTime;
+			}
+		}
+
+		// A buffer only fits grids of the size it was created for.
+		if (buffer.engine.getGridWidth() != engine.getGridWidth() || buffer.engine.getGridHeight() != engine.getGridHeight()) {
+			buffer = new CaptureBuffer(engine.createCaptureBuffer());
+		}
+
+		engine.copyStateTo(buffer.engine);
+		pendingSnapshots.putLast(buffer);
+		snapshotsCaptured.incrementAndGet();
+		return true;
+	}
+
+	// Returns the number of snapshots captured.
+	public long getSnapshotsCaptured() {
+		return snapshotsCaptured.get();
+	}
+
+	// Returns the number of snapshots dropped or replaced because every buffer was waiting to be saved.
+	public long getSnapshotsDropped() {
+		return snapshotsDropped.get();
+	}
+
+	// Returns the number of snapshots saved so far.
+	public long getSnapshotsWritten() {
+		return snapshotsWritten.get();
+	}
+
+	// Returns the time, in nanoseconds, the simulation has spent waiting for a free buffer.
+	public long getTimeWaiting() {
+		return timeWaiting;
+	}
+
+	// Waits for the snapshots in the queue to be saved. Throws the first error that occurred while saving. If
+	// this thread is interrupted while waiting, the interrupt is kept and an IOException is thrown, as the
+	// snapshots may not have all been saved.
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			pendingSnapshots.putLast(END_OF_SNAPSHOTS);
+			writerThread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while saving snapshots.", e);
+		}
+
+		if (writeError != null) {
+			throw new IOException("Cannot save snapshot: " + writeError.getMessage(), writeError);
+		}
+	}
+
+	// Takes snapshots from the queue, saves them and hands their buffers back. The queue is emptied even
+	// after an error, so the simulation never waits for a buffer that won't be freed.
+	private void writeSnapshots() {
+		try {
+			CaptureBuffer buffer;
+			while ((buffer = pendingSnapshots.takeFirst()) != END_OF_SNAPSHOTS) {
+				try {
+					if (writeError == null) {
+						this.writeSnapshot(buffer.engine);
+						snapshotsWritten.incrementAndGet();
+					}
+				}
+				catch (IOException | RuntimeException e) {
+					if (writeError == null) writeError = e;
+				}
+				finally {
+					freeBuffers.offer(buffer);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			if (writeError == null) writeError = e;
+		}
+	}
+
+	// Saves a single snapshot in the chosen format.
+	private void writeSnapshot(BacterialColonyEngine buffer) throws IOException {
+		long step = buffer.getStepNumber();
+
+		if (format == OutputFormat.CHECKPOINT || format == OutputFormat.BOTH) {
+			SimulationCheckpoint.write(buffer, new File(directory, String.format("snapshot-%08d.ckpt", step)));
+		}
+		if (format == OutputFormat.NPY || format == OutputFormat.BOTH) {
+			NpyExporter.writeBacteriaStates(buffer, new File(directory, String.format("states-%08d.npy", step)));
+			NpyExporter.writeNutrientLevels(buffer, new File(directory, String.format("nutrient-%08d.npy", step)));
+		}
+	}
+}
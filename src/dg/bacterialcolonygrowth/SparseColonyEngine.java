@@ -0,0 +1,740 @@
+/* *****************************************************************************
+* Description: A class used to run the cellular automaton model of a bacterial
+* colony on a grid that is only stored near the colony. It follows the same
+* rules as BacterialColonyEngine and gives exactly the same nutrient levels
+* and bacteria, but the grid is split into square tiles and only the tiles
+* that hold something other than the nutrient level of the untouched grid are
+* given arrays. Every other tile shares a single background nutrient level,
+* which is updated for diffusion once a step, so the memory and time a step
+* takes grow with the area around the colony rather than the whole grid.
+*
+* A tile is given arrays (materialised) when a bacterium could be born in it
+* in the next step, or when nutrient different to the background level is
+* next to it, which is how a gradient in nutrient spreads. A tile whose
+* nutrient levels are all equal to the background level again, with no
+* bacteria in or next to it, gives its arrays back. The background level is
+* updated with the same weights, added in the same order, as a grid space
+* away from the boundary, so every implicit grid space has exactly the value
+* the dense grid would have.
+*
+* The tiles along the edges of the grid are always materialised, as the grid
+* spaces on the boundary are updated with the weights of the update matrix
+* (see NutrientDiffusion) rather than the background level, so the memory
+* used grows with the perimeter of the grid as well as the colony.
+*
+* Only the default nutrient pattern, the default neighbourhoods and crowding
+* functions that give 0 for no alive neighbours are supported, so that the
+* grid starts uniform and bacteria are only born next to other bacteria. A
+* step is carried out on a single thread.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+public class SparseColonyEngine {
+
+	// Default number of grid spaces along each side of a tile.
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	// Nutrient level of every grid space at the start of a simulation with the default pattern.
+	private static final double INITIAL_NUTRIENT_LEVEL = 100;
+
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int tileSize;
+	private final int tilesAcross;
+	private final int tilesDown;
+	private final int numberOfTiles;
+
+	private final String boundaryType;
+	private final boolean periodic;
+	private final double weightOfCellItself;
+	private final double weightOfNeighbour;
+
+	private final int nutrientForSustenance;
+	private final int nutrientForGrowth;
+	private final int thresholdForDivision;
+	private final int[] crowdingFunctionValues;
+	private final double probabilityOfCellDivision;
+	private final int numberOfTimeStepsForCellDivision;
+	private int timeStepForCellDivisionCounter = 1;
+
+	// Number of time steps carried out so far, also used to draw the random numbers for each step.
+	private long stepNumber = 0;
+	private final CounterBasedRandom random;
+
+	// Nutrient levels and bacteria states of each tile, with the grid space at x,y of a tile at x + y*tileSize,
+	// or null for a tile that isn't materialised. Tiles along the right and bottom edges of the grid can be
+	// narrower or shorter than tileSize, and only use part of their arrays.
+	private final double[][] tileNutrient;
+	private final double[][] updatedTileNutrient;
+	private final byte[][] tileStates;
+
+	// Number of alive bacteria, and of alive bacteria and remains, in each tile.
+	private final int[] aliveInTile;
+	private final int[] occupiedInTile;
+
+	// Tiles that are materialised, in the order they were materialised.
+	private int[] materialisedTiles;
+	private int numberOfMaterialisedTiles = 0;
+
+	// Arrays given back by tiles that are no longer materialised, for the next tiles that are.
+	private final ArrayDeque<double[]> freeNutrientArrays = new ArrayDeque<double[]>();
+	private final ArrayDeque<byte[]> freeStateArrays = new ArrayDeque<byte[]>();
+
+	// Nutrient level of every grid space in a tile that isn't materialised.
+	private double backgroundNutrientLevel = INITIAL_NUTRIENT_LEVEL;
+
+	// Weights for the grid spaces on the boundary, stored as in NutrientDiffusion. The weights for
+	// boundaryPositions[k] are stored from boundaryWeightStart[k] up to boundaryWeightStart[k+1].
+	private int[] boundaryPositions;
+	private int[] boundaryWeightStart;
+	private int[] boundaryWeightPositions;
+	private double[] boundaryWeights;
+
+	// A tile with a border of one grid space, used to update the nutrient levels and count the alive
+	// neighbours of the grid spaces in a tile.
+	private final double[] paddedNutrient;
+	private final byte[] paddedAlive;
+
+	// Grid spaces bacteria are born in during the current step.
+	private int[] births = new int[64];
+	private int numberOfBirths = 0;
+
+	private int numberOfAliveBacteria = 0;
+	private int numberOfRemains = 0;
+	private int birthsInLastUpdate = 0;
+	private int deathsInLastUpdate = 0;
+
+	// Constructor which creates an engine with the parameters in a config and tiles of the default size,
+	// using the seed given for its random numbers.
+	public SparseColonyEngine(SimulationConfig config, long seed) {
+		this(config, seed, DEFAULT_TILE_SIZE);
+	}
+
+	// Constructor which creates an engine with the parameters in a config and tiles with the number of grid
+	// spaces along each side given, using the seed given for its random numbers.
+	public SparseColonyEngine(SimulationConfig config, long seed, int tileSize) {
+		if (tileSize < 1) throw new IllegalArgumentException("Tile size must be an integer greater than 0.");
+		if (!config.getNutrientLevelPatternChoice().equals("default")) {
+			throw new IllegalArgumentException("A sparse grid only supports the default nutrient pattern.");
+		}
+		if (config.getInitialBacteriaImage() != null || config.getInitialNutrientImage() != null) {
+			throw new IllegalArgumentException("Initial layout images can't be used with a sparse grid.");
+		}
+		if (!config.createCrowdingNeighbourhood().isDefaultCrowdingNeighbourhood()
+				|| !config.createDiffusionNeighbourhood().isDefaultDiffusionNeighbourhood()) {
+			throw new IllegalArgumentException("A sparse grid only supports the default neighbourhoods.");
+		}
+		if (config.getCrowdingFunctionValues()[0] != 0 || config.getThresholdForCellDivision() < 0) {
+			throw new IllegalArgumentException("A sparse grid needs bacteria to only be born next to other bacteria, so the "
+					+ "crowding function must be 0 for no neighbours and the threshold for cell division must not be negative.");
+		}
+
+		gridWidth = config.getGridWidth();
+		gridHeight = config.getGridHeight();
+		this.tileSize = tileSize;
+		tilesAcross = (gridWidth + tileSize - 1)/tileSize;
+		tilesDown = (gridHeight + tileSize - 1)/tileSize;
+		numberOfTiles = tilesAcross*tilesDown;
+
+		boundaryType = config.getBoundaryCondition();
+		periodic = boundaryType.equals("periodic");
+		double delta = config.getDiffusionRate();
+		weightOfCellItself = 1 - delta;
+		weightOfNeighbour = delta/4;
+
+		nutrientForSustenance = config.getNutrientForSustenance();
+		nutrientForGrowth = config.getNutrientForGrowth();
+		thresholdForDivision = config.getThresholdForCellDivision();
+		crowdingFunctionValues = config.getCrowdingFunctionValues();
+		probabilityOfCellDivision = config.getProbabilityOfCellDivision();
+		numberOfTimeStepsForCellDivision = config.getNumberOfTimestepsForCellDivision();
+		random = new CounterBasedRandom(seed);
+
+		tileNutrient = new double[numberOfTiles][];
+		updatedTileNutrient = new double[numberOfTiles][];
+		tileStates = new byte[numberOfTiles][];
+		aliveInTile = new int[numberOfTiles];
+		occupiedInTile = new int[numberOfTiles];
+		materialisedTiles = new int[Math.min(numberOfTiles, 64)];
+		paddedNutrient = new double[(tileSize + 2)*(tileSize + 2)];
+		paddedAlive = new byte[(tileSize + 2)*(tileSize + 2)];
+
+		this.createBoundaryWeights(delta);
+		for (int t=0; t<numberOfTiles; t++) {
+			if (isEdgeTile(t)) this.materialiseTile(t);
+		}
+
+		// The bacterium is placed in the same grid space as in BacterialColonyEngine.
+		if (gridWidth/2 >= gridHeight) {
+			throw new IllegalArgumentException("Grid height must be greater than half the grid width to place the initial bacterium.");
+		}
+		this.setBacteriumAlive(gridWidth/2, gridWidth/2);
+	}
+
+	/* ****************************************************************************
+	* Getters and Setters
+	*******************************************************************************/
+
+	// Places an alive bacterium in grid space x,y, materialising its tile if needed.
+	public void setBacteriumAlive(int x, int y) {
+		int t = returnTile(x, y);
+		if (tileStates[t] == null) this.materialiseTile(t);
+
+		int i = returnPositionInTile(x, y);
+		byte state = tileStates[t][i];
+		if (state == BacterialColonyEngine.ALIVE) return;
+		if (state == BacterialColonyEngine.REMAINS) numberOfRemains--;
+		else occupiedInTile[t]++;
+
+		tileStates[t][i] = BacterialColonyEngine.ALIVE;
+		aliveInTile[t]++;
+		numberOfAliveBacteria++;
+	}
+
+	// Returns grid width.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns grid height.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the number of grid spaces along each side of a tile.
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	// Returns the number of tiles the grid is split into.
+	public int getNumberOfTiles() {
+		return numberOfTiles;
+	}
+
+	// Returns the number of tiles that are materialised.
+	public int getNumberOfMaterialisedTiles() {
+		return numberOfMaterialisedTiles;
+	}
+
+	// Returns the nutrient level of the grid spaces in tiles that aren't materialised.
+	public double getBackgroundNutrientLevel() {
+		return backgroundNutrientLevel;
+	}
+
+	// Returns the number of time steps carried out so far.
+	public long getStepNumber() {
+		return stepNumber;
+	}
+
+	// Returns the seed used to draw the random numbers.
+	public long getRandomSeed() {
+		return random.getSeed();
+	}
+
+	// Returns the number of bacteria born in the last update.
+	public int getBirthsInLastUpdate() {
+		return birthsInLastUpdate;
+	}
+
+	// Returns the number of bacteria that died in the last update.
+	public int getDeathsInLastUpdate() {
+		return deathsInLastUpdate;
+	}
+
+	// Returns the number of alive bacteria.
+	public int getNumberOfAliveBacteria() {
+		return numberOfAliveBacteria;
+	}
+
+	// Returns the number of grid spaces holding the remains of a bacterium.
+	public int getNumberOfRemains() {
+		return numberOfRemains;
+	}
+
+	// Returns the nutrient level of grid space x,y.
+	public double getNutrientLevel(int x, int y) {
+		double[] nutrient = tileNutrient[returnTile(x, y)];
+		return nutrient == null ? backgroundNutrientLevel : nutrient[returnPositionInTile(x, y)];
+	}
+
+	// Returns the state of the bacterium in grid space x,y.
+	public byte getBacteriumState(int x, int y) {
+		byte[] states = tileStates[returnTile(x, y)];
+		return states == null ? BacterialColonyEngine.EMPTY : states[returnPositionInTile(x, y)];
+	}
+
+	// Returns the total amount of nutrient in the grid, worked out from the materialised tiles and the
+	// background level.
+	public double getTotalNutrient() {
+		double totalNutrient = 0;
+		long gridSpacesInMaterialisedTiles = 0;
+		for (int m=0; m<numberOfMaterialisedTiles; m++) {
+			int t = materialisedTiles[m];
+			int width = returnTileWidth(t);
+			int height = returnTileHeight(t);
+			double[] nutrient = tileNutrient[t];
+			for (int y=0; y<height; y++) {
+				for (int x=y*tileSize; x<y*tileSize + width; x++) {
+					totalNutrient += nutrient[x];
+				}
+			}
+			gridSpacesInMaterialisedTiles += (long) width*height;
+		}
+		return totalNutrient + ((long) gridWidth*gridHeight - gridSpacesInMaterialisedTiles)*backgroundNutrientLevel;
+	}
+
+	// Returns a copy of the whole grid. This needs as much memory as a dense grid, so is meant for grids
+	// small enough to be drawn.
+	public SimulationSnapshot createSnapshot() {
+		double[] nutrientLevels = new double[gridWidth*gridHeight];
+		byte[] bacteriaStates = new byte[gridWidth*gridHeight];
+		for (int y=0; y<gridHeight; y++) {
+			for (int x=0; x<gridWidth; x++) {
+				nutrientLevels[x + y*gridWidth] = getNutrientLevel(x, y);
+				bacteriaStates[x + y*gridWidth] = getBacteriumState(x, y);
+			}
+		}
+		return new SimulationSnapshot(gridWidth, gridHeight, stepNumber, nutrientLevels, bacteriaStates);
+	}
+
+	/* ****************************************************************************
+	* Tiles
+	*******************************************************************************/
+
+	// Returns the tile grid space x,y is in.
+	private int returnTile(int x, int y) {
+		return x/tileSize + (y/tileSize)*tilesAcross;
+	}
+
+	// Returns the position of grid space x,y in the arrays of its tile.
+	private int returnPositionInTile(int x, int y) {
+		return x%tileSize + (y%tileSize)*tileSize;
+	}
+
+	// Returns the number of grid spaces across a tile.
+	private int returnTileWidth(int t) {
+		return Math.min(tileSize, gridWidth - (t%tilesAcross)*tileSize);
+	}
+
+	// Returns the number of grid spaces down a tile.
+	private int returnTileHeight(int t) {
+		return Math.min(tileSize, gridHeight - (t/tilesAcross)*tileSize);
+	}
+
+	// Returns true if the tile has grid spaces on the boundary of the grid.
+	private boolean isEdgeTile(int t) {
+		int tileX = t%tilesAcross;
+		int tileY = t/tilesAcross;
+		return tileX == 0 || tileX == tilesAcross - 1 || tileY == 0 || tileY == tilesDown - 1;
+	}
+
+	// Gives a tile arrays, with every grid space at the background nutrient level and empty.
+	private void materialiseTile(int t) {
+		double[] nutrient = freeNutrientArrays.poll();
+		if (nutrient == null) nutrient = new double[tileSize*tileSize];
+		double[] updatedNutrient = freeNutrientArrays.poll();
+		if (updatedNutrient == null) updatedNutrient = new double[tileSize*tileSize];
+		byte[] states = freeStateArrays.poll();
+		if (states == null) states = new byte[tileSize*tileSize];
+
+		// Arrays are only given back by tiles with no bacteria, so the states are already empty.
+		Arrays.fill(nutrient, backgroundNutrientLevel);
+		tileNutrient[t] = nutrient;
+		updatedTileNutrient[t] = updatedNutrient;
+		tileStates[t] = states;
+
+		if (numberOfMaterialisedTiles == materialisedTiles.length) {
+			materialisedTiles = Arrays.copyOf(materialisedTiles, Math.min(numberOfTiles, 2*materialisedTiles.length));
+		}
+		materialisedTiles[numberOfMaterialisedTiles++] = t;
+	}
+
+	// Materialises the tile at the tile coordinates given if it is inside the grid and isn't already.
+	private void materialiseTileIfInGrid(int tileX, int tileY) {
+		if (tileX < 0 || tileX >= tilesAcross || tileY < 0 || tileY >= tilesDown) return;
+		int t = tileX + tileY*tilesAcross;
+		if (tileStates[t] == null) this.materialiseTile(t);
+	}
+
+	// Materialises the tiles that the next update can change from the background level: the tiles around
+	// a tile with alive bacteria, which bacteria can be born in, and the tiles next to an edge of a tile
+	// holding nutrient levels other than the background level, which that nutrient diffuses into. Tiles
+	// across the boundary of a periodic grid are edge tiles, which are always materialised.
+	private void materialiseTilesThatCanChange() {
+		int numberToCheck = numberOfMaterialisedTiles;
+		for (int m=0; m<numberToCheck; m++) {
+			int t = materialisedTiles[m];
+			int tileX = t%tilesAcross;
+			int tileY = t/tilesAcross;
+
+			if (aliveInTile[t] > 0) {
+				for (int dy=-1; dy<=1; dy++) {
+					for (int dx=-1; dx<=1; dx++) {
+						materialiseTileIfInGrid(tileX + dx, tileY + dy);
+					}
+				}
+				continue;
+			}
+
+			double[] nutrient = tileNutrient[t];
+			int width = returnTileWidth(t);
+			int height = returnTileHeight(t);
+			if (tileX > 0 && tileNutrient[t - 1] == null && !isColumnAtBackgroundLevel(nutrient, 0, height)) {
+				this.materialiseTile(t - 1);
+			}
+			if (tileX < tilesAcross - 1 && tileNutrient[t + 1] == null && !isColumnAtBackgroundLevel(nutrient, width - 1, height)) {
+				this.materialiseTile(t + 1);
+			}
+			if (tileY > 0 && tileNutrient[t - tilesAcross] == null && !isRowAtBackgroundLevel(nutrient, 0, width)) {
+				this.materialiseTile(t - tilesAcross);
+			}
+			if (tileY < tilesDown - 1 && tileNutrient[t + tilesAcross] == null && !isRowAtBackgroundLevel(nutrient, height - 1, width)) {
+				this.materialiseTile(t + tilesAcross);
+			}
+		}
+	}
+
+	// Returns true if every nutrient level in the first rows of a column of a tile is the background level.
+	private boolean isColumnAtBackgroundLevel(double[] nutrient, int x, int height) {
+		for (int i=x; i<height*tileSize; i+=tileSize) {
+			if (nutrient[i] != backgroundNutrientLevel) return false;
+		}
+		return true;
+	}
+
+	// Returns true if every nutrient level in the first columns of a row of a tile is the background level.
+	private boolean isRowAtBackgroundLevel(double[] nutrient, int y, int width) {
+		for (int i=y*tileSize; i<y*tileSize + width; i++) {
+			if (nutrient[i] != backgroundNutrientLevel) return false;
+		}
+		return true;
+	}
+
+	// Gives back the arrays of the tiles away from the edges of the grid that hold nothing but the background
+	// level, with no bacteria in them or the tiles around them.
+	private void releaseTilesAtBackgroundLevel() {
+		int numberKept = 0;
+		for (int m=0; m<numberOfMaterialisedTiles; m++) {
+			int t = materialisedTiles[m];
+			if (isEdgeTile(t) || occupiedInTile[t] > 0 || hasAliveBacteriaAround(t) || !isTileAtBackgroundLevel(tileNutrient[t])) {
+				materialisedTiles[numberKept++] = t;
+				continue;
+			}
+
+			freeNutrientArrays.push(tileNutrient[t]);
+			freeNutrientArrays.push(updatedTileNutrient[t]);
+			freeStateArrays.push(tileStates[t]);
+			tileNutrient[t] = null;
+			updatedTileNutrient[t] = null;
+			tileStates[t] = null;
+		}
+		numberOfMaterialisedTiles = numberKept;
+	}
+
+	// Returns true if every nutrient level in a full tile, which every tile away from the edges is, is the
+	// background level.
+	private boolean isTileAtBackgroundLevel(double[] nutrient) {
+		for (int i=0; i<nutrient.length; i++) {
+			if (nutrient[i] != backgroundNutrientLevel) return false;
+		}
+		return true;
+	}
+
+	// Returns true if the tile or one of the 8 tiles around it holds alive bacteria, wrapping around the
+	// grid with periodic boundaries.
+	private boolean hasAliveBacteriaAround(int t) {
+		int tileX = t%tilesAcross;
+		int tileY = t/tilesAcross;
+		for (int dy=-1; dy<=1; dy++) {
+			for (int dx=-1; dx<=1; dx++) {
+				int neighbourX = tileX + dx;
+				int neighbourY = tileY + dy;
+				if (periodic) {
+					neighbourX = Math.floorMod(neighbourX, tilesAcross);
+					neighbourY = Math.floorMod(neighbourY, tilesDown);
+				}
+				else if (neighbourX < 0 || neighbourX >= tilesAcross || neighbourY < 0 || neighbourY >= tilesDown) {
+					continue;
+				}
+				if (aliveInTile[neighbourX + neighbourY*tilesAcross] > 0) return true;
+			}
+		}
+		return false;
+	}
+
+	/* ****************************************************************************
+	* Updates
+	*******************************************************************************/
+
+	// Creates the weights for the grid spaces on the boundary, which are only ever in edge tiles.
+	private void createBoundaryWeights(double delta) {
+		int numberOfBoundaryPositions = 0;
+		for (int y=0; y<gridHeight; y++) {
+			numberOfBoundaryPositions += y == 0 || y == gridHeight - 1 ? gridWidth : Math.min(2, gridWidth);
+		}
+
+		boundaryPositions = new int[numberOfBoundaryPositions];
+		boundaryWeightStart = new int[numberOfBoundaryPositions + 1];
+		boundaryWeightPositions = new int[numberOfBoundaryPositions * 5];
+		boundaryWeights = new double[numberOfBoundaryPositions * 5];
+
+		int k = 0;
+		int numberOfWeights = 0;
+		for (int y=0; y<gridHeight; y++) {
+			for (int x=0; x<gridWidth; x++) {
+				if (!isOnBoundary(x, y)) continue;
+
+				int i = x + y*gridWidth;
+				boundaryPositions[k] = i;
+				boundaryWeightStart[k] = numberOfWeights;
+				numberOfWeights += NutrientDiffusion.fillBoundaryWeights(i, gridWidth, gridHeight, delta, boundaryType,
+						boundaryWeightPositions, boundaryWeights, numberOfWeights);
+				k++;
+			}
+		}
+		boundaryWeightStart[numberOfBoundaryPositions] = numberOfWeights;
+	}
+
+	// Returns true if grid space x,y is in the first or last row or column of the grid.
+	private boolean isOnBoundary(int x, int y) {
+		return x == 0 || x == gridWidth - 1 || y == 0 || y == gridHeight - 1;
+	}
+
+	// Creates an updated grid after one iteration of the rules governing the bacterial colony.
+	public void createUpdatedGrid() {
+		this.materialiseTilesThatCanChange();
+
+		// Update for diffusion.
+		this.updateNutrientLevelsAfterDiffusion();
+
+		// Update for bacteria consuming nutrient and reproducing.
+		this.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+
+		this.releaseTilesAtBackgroundLevel();
+		stepNumber++;
+	}
+
+	// Updates the nutrient levels of the materialised tiles and the background level for diffusion after a
+	// single time step.
+	private void updateNutrientLevelsAfterDiffusion() {
+		for (int m=0; m<numberOfMaterialisedTiles; m++) {
+			this.updateTileAfterDiffusion(materialisedTiles[m]);
+		}
+
+		for (int m=0; m<numberOfMaterialisedTiles; m++) {
+			int t = materialisedTiles[m];
+			double[] current = tileNutrient[t];
+			tileNutrient[t] = updatedTileNutrient[t];
+			updatedTileNutrient[t] = current;
+		}
+
+		// Every grid space of a tile that isn't materialised is updated as a grid space away from the boundary
+		// whose neighbours are all at the background level.
+		double level = backgroundNutrientLevel;
+		backgroundNutrientLevel = weightOfNeighbour*level + weightOfNeighbour*level + weightOfCellItself*level
+				+ weightOfNeighbour*level + weightOfNeighbour*level;
+	}
+
+	// Works out the nutrient levels of a tile after diffusion. The tile is copied into the middle of
+	// paddedNutrient, with the grid spaces next to it in the border, so grid spaces away from the boundary
+	// can be updated with the same sums as in NutrientDiffusion.
+	private void updateTileAfterDiffusion(int t) {
+		int tileX = t%tilesAcross;
+		int tileY = t/tilesAcross;
+		int startX = tileX*tileSize;
+		int startY = tileY*tileSize;
+		int width = returnTileWidth(t);
+		int height = returnTileHeight(t);
+		int paddedWidth = tileSize + 2;
+		double[] nutrient = tileNutrient[t];
+		double[] updated = updatedTileNutrient[t];
+
+		for (int y=0; y<height; y++) {
+			System.arraycopy(nutrient, y*tileSize, paddedNutrient, 1 + (y + 1)*paddedWidth, width);
+		}
+
+		// The border is only used by grid spaces away from the boundary, so only sides inside the grid are
+		// filled in. Tiles that aren't the last in their row or column are always full tiles.
+		if (tileY > 0) {
+			double[] above = tileNutrient[t - tilesAcross];
+			for (int x=0; x<width; x++) {
+				paddedNutrient[1 + x] = above == null ? backgroundNutrientLevel : above[x + (tileSize - 1)*tileSize];
+			}
+		}
+		if (tileY < tilesDown - 1) {
+			double[] below = tileNutrient[t + tilesAcross];
+			for (int x=0; x<width; x++) {
+				paddedNutrient[1 + x + (height + 1)*paddedWidth] = below == null ? backgroundNutrientLevel : below[x];
+			}
+		}
+		if (tileX > 0) {
+			double[] left = tileNutrient[t - 1];
+			for (int y=0; y<height; y++) {
+				paddedNutrient[(y + 1)*paddedWidth] = left == null ? backgroundNutrientLevel : left[tileSize - 1 + y*tileSize];
+			}
+		}
+		if (tileX < tilesAcross - 1) {
+			double[] right = tileNutrient[t + 1];
+			for (int y=0; y<height; y++) {
+				paddedNutrient[width + 1 + (y + 1)*paddedWidth] = right == null ? backgroundNutrientLevel : right[y*tileSize];
+			}
+		}
+
+		for (int y=0; y<height; y++) {
+			int globalY = startY + y;
+			for (int x=0; x<width; x++) {
+				int globalX = startX + x;
+				if (isOnBoundary(globalX, globalY)) {
+					updated[x + y*tileSize] = returnNutrientAfterDiffusionOnBoundary(globalX + globalY*gridWidth);
+					continue;
+				}
+
+				int p = x + 1 + (y + 1)*paddedWidth;
+				updated[x + y*tileSize] = weightOfNeighbour*paddedNutrient[p-paddedWidth] + weightOfNeighbour*paddedNutrient[p-1]
+						+ weightOfCellItself*paddedNutrient[p] + weightOfNeighbour*paddedNutrient[p+1]
+						+ weightOfNeighbour*paddedNutrient[p+paddedWidth];
+			}
+		}
+	}
+
+	// Returns the nutrient level of boundary position i after diffusion, from its weights.
+	private double returnNutrientAfterDiffusionOnBoundary(int i) {
+		int k = Arrays.binarySearch(boundaryPositions, i);
+		double nutrient = 0;
+		for (int w=boundaryWeightStart[k]; w<boundaryWeightStart[k+1]; w++) {
+			int position = boundaryWeightPositions[w];
+			nutrient += boundaryWeights[w]*getNutrientLevel(position%gridWidth, position/gridWidth);
+		}
+		return nutrient;
+	}
+
+	// Updates the bacteria and the nutrient levels after bacteria have consumed some nutrient and, on the
+	// time steps where it can occur, after cell division. Births are found from the bacteria as they were
+	// before this update, then the alive bacteria consume nutrient, then the births are made, so bacteria
+	// that are born don't consume nutrient until the next step.
+	private void updateBacteriaAndNutrientAfterConsumptionAndCellDivision() {
+		boolean checkForCellDivision = timeStepForCellDivisionCounter == numberOfTimeStepsForCellDivision;
+
+		numberOfBirths = 0;
+		if (checkForCellDivision) {
+			for (int m=0; m<numberOfMaterialisedTiles; m++) {
+				int t = materialisedTiles[m];
+				if (hasAliveBacteriaAround(t)) this.findBirthsInTile(t);
+			}
+		}
+
+		int deaths = 0;
+		for (int m=0; m<numberOfMaterialisedTiles; m++) {
+			int t = materialisedTiles[m];
+			if (aliveInTile[t] > 0) deaths += this.updateAliveBacteriaInTile(t);
+		}
+
+		for (int b=0; b<numberOfBirths; b++) {
+			int x = births[b]%gridWidth;
+			int y = births[b]/gridWidth;
+			int t = returnTile(x, y);
+			int i = returnPositionInTile(x, y);
+			tileStates[t][i] = BacterialColonyEngine.ALIVE;
+			tileNutrient[t][i] = tileNutrient[t][i] - nutrientForGrowth;
+			aliveInTile[t]++;
+			occupiedInTile[t]++;
+		}
+
+		birthsInLastUpdate = numberOfBirths;
+		deathsInLastUpdate = deaths;
+		numberOfAliveBacteria += numberOfBirths - deaths;
+		numberOfRemains += deaths;
+
+		// Reset the cell division counter if necessary, otherwise increment it.
+		if (checkForCellDivision) {
+			timeStepForCellDivisionCounter = 1;
+		}
+		else {
+			timeStepForCellDivisionCounter += 1;
+		}
+	}
+
+	// Updates the alive bacteria in a tile for consumption, as in BacterialColonyEngine. Returns the number of
+	// bacteria that died.
+	private int updateAliveBacteriaInTile(int t) {
+		double[] nutrient = tileNutrient[t];
+		byte[] states = tileStates[t];
+		int deaths = 0;
+		for (int i=0; i<states.length; i++) {
+			if (states[i] != BacterialColonyEngine.ALIVE) continue;
+
+			if (nutrient[i] >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_SURVIVAL) {
+				nutrient[i] -= nutrientForSustenance;
+			}
+			else {
+				states[i] = BacterialColonyEngine.REMAINS;
+				nutrient[i] = 0;
+				deaths++;
+			}
+		}
+		aliveInTile[t] -= deaths;
+		return deaths;
+	}
+
+	// Finds the empty grid spaces of a tile that bacteria are born in this step, with the same test as
+	// BacterialColonyEngine, and adds them to the births. The alive bacteria of the tile and the grid spaces
+	// around it are copied into paddedAlive so their neighbours can be counted.
+	private void findBirthsInTile(int t) {
+		int startX = (t%tilesAcross)*tileSize;
+		int startY = (t/tilesAcross)*tileSize;
+		int width = returnTileWidth(t);
+		int height = returnTileHeight(t);
+		int paddedWidth = tileSize + 2;
+		double[] nutrient = tileNutrient[t];
+		byte[] states = tileStates[t];
+
+		for (int y=-1; y<=height; y++) {
+			for (int x=-1; x<=width; x++) {
+				boolean inTile = x >= 0 && x < width && y >= 0 && y < height;
+				byte state = inTile ? states[x + y*tileSize] : returnStateAroundTile(startX + x, startY + y);
+				paddedAlive[x + 1 + (y + 1)*paddedWidth] = state == BacterialColonyEngine.ALIVE ? (byte) 1 : (byte) 0;
+			}
+		}
+
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				int i = x + y*tileSize;
+				if (states[i] != BacterialColonyEngine.EMPTY) continue;
+
+				int p = x + 1 + (y + 1)*paddedWidth;
+				int numberOfNeighbours = paddedAlive[p-paddedWidth-1] + paddedAlive[p-paddedWidth] + paddedAlive[p-paddedWidth+1]
+						+ paddedAlive[p-1] + paddedAlive[p+1]
+						+ paddedAlive[p+paddedWidth-1] + paddedAlive[p+paddedWidth] + paddedAlive[p+paddedWidth+1];
+				if (numberOfNeighbours == 0) continue;
+
+				double nutrientInCell = nutrient[i];
+				int position = startX + x + (startY + y)*gridWidth;
+				if (crowdingFunctionValues[numberOfNeighbours] * nutrientInCell > thresholdForDivision
+						&& random.nextDouble(stepNumber, position) < probabilityOfCellDivision
+						&& nutrientInCell >= BacterialColonyEngine.NUTRIENT_LEVEL_FOR_CELL_DIVISION) {
+					if (numberOfBirths == births.length) births = Arrays.copyOf(births, 2*births.length);
+					births[numberOfBirths++] = position;
+				}
+			}
+		}
+	}
+
+	// Returns the state of grid space x,y next to a tile. Positions outside the grid wrap around with
+	// periodic boundaries, and are empty otherwise.
+	private byte returnStateAroundTile(int x, int y) {
+		if (periodic) {
+			x = Math.floorMod(x, gridWidth);
+			y = Math.floorMod(y, gridHeight);
+		}
+		else if (x < 0 || x >= gridWidth || y < 0 || y >= gridHeight) {
+			return BacterialColonyEngine.EMPTY;
+		}
+		return getBacteriumState(x, y);
+	}
+}
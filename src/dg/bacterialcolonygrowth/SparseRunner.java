@@ -0,0 +1,100 @@
+/* *****************************************************************************
+* Description: A command line program that runs a simulation without a display
+* on a sparse grid (see SparseColonyEngine), from an input file. It prints the
+* number of alive bacteria and remains, the total nutrient and the number of
+* tiles that are materialised, and can save images of the grid at the end of
+* the run.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+public class SparseRunner {
+
+	private static final String USAGE =
+			"Usage: SparseRunner <input file> <number of steps> [options]\n"
+			+ "Options:\n"
+			+ "  --seed <n>              Seed for the random numbers (default: random)\n"
+			+ "  --tile-size <n>         Number of grid spaces along each side of a tile (default: " + SparseColonyEngine.DEFAULT_TILE_SIZE + ")\n"
+			+ "  --report-every <n>      Print a line every n steps\n"
+			+ "  --pattern-image <file>  Save the bacteria pattern as a PNG image\n"
+			+ "  --nutrient-image <file> Save the nutrient levels as a PNG heatmap\n"
+			+ "  --image-scale <n>       Number of pixels along each side of a grid space (default: 1)";
+
+	// Returns a line with the step number, the number of alive bacteria and remains, the total nutrient and
+	// the number of tiles that are materialised.
+	static String createSummary(SparseColonyEngine engine) {
+		return String.format(Locale.ROOT, "step=%d alive=%d remains=%d nutrient=%.2f tiles=%d/%d", engine.getStepNumber(),
+				engine.getNumberOfAliveBacteria(), engine.getNumberOfRemains(), engine.getTotalNutrient(),
+				engine.getNumberOfMaterialisedTiles(), engine.getNumberOfTiles());
+	}
+
+	public static void main(String[] args) {
+		try {
+			if (args.length < 2) throw new IllegalArgumentException("An input file and a number of steps are needed.");
+
+			File inputFile = new File(args[0]);
+			int numberOfSteps = Integer.parseInt(args[1]);
+			long seed = new Random().nextLong();
+			int tileSize = SparseColonyEngine.DEFAULT_TILE_SIZE;
+			int reportEvery = 0;
+			File patternImageFile = null;
+			File nutrientImageFile = null;
+			int imageScale = 1;
+
+			for (int i=2; i<args.length; i++) {
+				if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+				String option = args[i];
+				String value = args[++i];
+
+				if (option.equals("--seed")) seed = Long.parseLong(value);
+				else if (option.equals("--tile-size")) tileSize = Integer.parseInt(value);
+				else if (option.equals("--report-every")) reportEvery = Integer.parseInt(value);
+				else if (option.equals("--pattern-image")) patternImageFile = new File(value);
+				else if (option.equals("--nutrient-image")) nutrientImageFile = new File(value);
+				else if (option.equals("--image-scale")) imageScale = Integer.parseInt(value);
+				else throw new IllegalArgumentException("Unknown option " + option + ".");
+			}
+			if (numberOfSteps < 0) throw new IllegalArgumentException("Number of steps must not be negative.");
+			if (imageScale < 1) throw new IllegalArgumentException("Image scale must be an integer greater than 0.");
+
+			SparseColonyEngine engine = new SparseColonyEngine(new InputFileReader(inputFile).readConfig(), seed, tileSize);
+
+			long startTime = System.nanoTime();
+			for (int i=0; i<numberOfSteps; i++) {
+				engine.createUpdatedGrid();
+				if (reportEvery > 0 && (i + 1) % reportEvery == 0 && i + 1 < numberOfSteps) {
+					System.out.println(createSummary(engine));
+				}
+			}
+			double seconds = (System.nanoTime() - startTime)/1e9;
+			System.out.println(createSummary(engine) + String.format(Locale.ROOT, " seed=%d time=%.3fs", seed, seconds));
+
+			// The images are drawn from a copy of the whole grid, which is only made if one is asked for.
+			if (patternImageFile != null || nutrientImageFile != null) {
+				SimulationSnapshot snapshot = engine.createSnapshot();
+				if (patternImageFile != null) {
+					ImageExporter.writePng(ImageExporter.createBacteriaPatternImage(snapshot, imageScale), patternImageFile);
+				}
+				if (nutrientImageFile != null) {
+					ImageExporter.writePng(ImageExporter.createNutrientHeatmapImage(snapshot, imageScale), nutrientImageFile);
+				}
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Cannot read or write a file: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/* *****************************************************************************
+* Description: A class used to measure how quickly the simulation is running,
+* by collecting the time taken by each phase of an update over a short window.
+* It also times each frame, so the simulation can fit as many steps into a
+* frame as its time budget allows.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+public class ThroughputMonitor {
+
+	// Gives the current time in nanoseconds, so a clock other than System.nanoTime() can be used.
+	public interface Clock {
+		long nanoTime();
+	}
+
+	private static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	private final Clock clock;
+
+	// Length of the window over which measurements are averaged, in nanoseconds.
+	private long reportInterval;
+	private long windowStartTime;
+
+	// Totals for the current window. All times are in nanoseconds.
+	private long stepsInWindow = 0;
+	private long copyTimeInWindow = 0;
+	private long diffusionTimeInWindow = 0;
+	private long consumptionTimeInWindow = 0;
+	private long rendersInWindow = 0;
+	private long renderTimeInWindow = 0;
+	private long framesInWindow = 0;
+	private long frameTimeInWindow = 0;
+
+	// Time the current frame started.
+	private long frameStartTime;
+
+	// Constructor, the interval between reports is given in milliseconds.
+	public ThroughputMonitor(long reportIntervalInMilliseconds) {
+		this(reportIntervalInMilliseconds, SYSTEM_CLOCK);
+	}
+
+	// Constructor, with the clock used to time the windows and frames.
+	public ThroughputMonitor(long reportIntervalInMilliseconds, Clock clock) {
+		this.clock = clock;
+		reportInterval = reportIntervalInMilliseconds * 1000000L;
+		windowStartTime = clock.nanoTime();
+		frameStartTime = windowStartTime;
+	}
+
+	// Starts timing a frame.
+	public void startFrame() {
+		frameStartTime = clock.nanoTime();
+	}
+
+	// Returns true if less than the time budget, in nanoseconds, has passed since the frame started, so
+	// another step can be fitted into it.
+	public boolean hasTimeLeftInFrame(long frameBudget) {
+		return clock.nanoTime() - frameStartTime < frameBudget;
+	}
+
+	// Records the time taken by the frame. Returns a report if a full window has passed since the last
+	// one, or null otherwise.
+	public String finishFrame() {
+		long frameFinishTime = clock.nanoTime();
+		this.recordFrame(frameFinishTime - frameStartTime);
+		return this.isReportDue(frameFinishTime) ? this.createReport(frameFinishTime) : null;
+	}
+
+	// Records the phase times of a single update of the grid.
+	public void recordStep(long copyTime, long diffusionTime, long consumptionTime) {
+		stepsInWindow++;
+		copyTimeInWindow += copyTime;
+		diffusionTimeInWindow += diffusionTime;
+		consumptionTimeInWindow += consumptionTime;
+	}
+
+	// Records the time taken to render the grid.
+	public void recordRender(long renderTime) {
+		rendersInWindow++;
+		renderTimeInWindow += renderTime;
+	}
+
+	// Records the total time spent processing a single frame.
+	public void recordFrame(long frameTime) {
+		framesInWindow++;
+		frameTimeInWindow += frameTime;
+	}
+
+	// Returns true if a full window has passed since the last report.
+	public boolean isReportDue(long currentTime) {
+		return currentTime - windowStartTime >= reportInterval;
+	}
+
+	// Returns a summary of the measurements in the current window and then starts a new window.
+	public String createReport(long currentTime) {
+		double windowLengthInSeconds = (currentTime - windowStartTime) / 1e9;
+
+		String report = String.format("Steps/s: %.1f   Copy: %.2f ms   Diffusion: %.2f ms   Consumption: %.2f ms   Render: %.2f ms   Frame: %.2f ms",
+				windowLengthInSeconds > 0 ? stepsInWindow / windowLengthInSeconds : 0,
+				averageInMilliseconds(copyTimeInWindow, stepsInWindow),
+				averageInMilliseconds(diffusionTimeInWindow, stepsInWindow),
+				averageInMilliseconds(consumptionTimeInWindow, stepsInWindow),
+				averageInMilliseconds(renderTimeInWindow, rendersInWindow),
+				averageInMilliseconds(frameTimeInWindow, framesInWindow));
+
+		this.reset(currentTime);
+		return report;
+	}
+
+	// Clears the totals and starts a new window at the time given.
+	public void reset(long currentTime) {
+		windowStartTime = currentTime;
+		stepsInWindow = 0;
+		copyTimeInWindow = 0;
+		diffusionTimeInWindow = 0;
+		consumptionTimeInWindow = 0;
+		rendersInWindow = 0;
+		renderTimeInWindow = 0;
+		framesInWindow = 0;
+		frameTimeInWindow = 0;
+	}
+
+	// Returns the average of a total time over a number of occurrences, converted to milliseconds.
+	private static double averageInMilliseconds(long totalTime, long occurrences) {
+		if (occurrences == 0) return 0;
+		return totalTime / (occurrences * 1e6);
+	}
+}
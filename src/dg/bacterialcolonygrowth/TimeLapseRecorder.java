@@ -0,0 +1,357 @@
+/* *****************************************************************************
+* Description: A class used to record a time-lapse of a simulation as an
+* animated GIF or as a numbered sequence of PNG images. Snapshots are added to
+* a bounded queue and are drawn and encoded on separate threads. When the
+* queue is full frames are dropped or replaced, so recording never slows the
+* simulation down.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+public class TimeLapseRecorder implements AutoCloseable {
+
+	// The files a time-lapse can be saved as.
+	public enum OutputFormat { ANIMATED_GIF, PNG_SEQUENCE }
+
+	// The images a time-lapse can show.
+	public enum ImageType { BACTERIA_PATTERN, NUTRIENT_HEATMAP }
+
+	// What happens to a new frame when the queue is full. DROP discards the new frame. COALESCE replaces
+	// the most recent frame in the queue with the new one, so the latest state is always recorded.
+	public enum BackpressurePolicy { DROP, COALESCE }
+
+	// Placed in the queues to tell the threads that there are no more frames.
+	private static final QueuedFrame END_OF_FRAMES = new QueuedFrame(new SimulationSnapshot(0, 0, -1, new double[0], new byte[0]), -1);
+	private static final BufferedImage END_OF_IMAGES = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+
+	private final File output;
+	private final ImageType imageType;
+	private final int scale;
+	private final int frameDelay;
+	private final BackpressurePolicy backpressurePolicy;
+
+	private final LinkedBlockingDeque<QueuedFrame> pendingFrames;
+	private final Thread[] threads;
+	private volatile boolean closed = false;
+
+	private final AtomicLong framesRecorded = new AtomicLong();
+	private final AtomicLong framesDropped = new AtomicLong();
+	private final AtomicLong framesWritten = new AtomicLong();
+
+	// Number given to the next frame added to the queue, only changed by recordFrame.
+	private long nextFrameNumber = 0;
+
+	// First error that occurred on one of the encoding threads.
+	private volatile Exception encodingError;
+
+	// Constructor. For an animated GIF the output is the GIF file, and for a PNG sequence it is the
+	// directory the images are saved in. The delay between the frames of a GIF is given in hundredths of a
+	// second. A PNG sequence is encoded with the number of threads given, whereas a GIF is always drawn on
+	// one thread and written on another, as its frames must be written in order.
+	public TimeLapseRecorder(File output, OutputFormat format, ImageType imageType, int scale, int queueCapacity,
+			BackpressurePolicy backpressurePolicy, int frameDelay, int numberOfThreads) throws IOException {
+		if (scale < 1) throw new IllegalArgumentException("Image scale must be an integer greater than 0.");
+		if (queueCapacity < 1) throw new IllegalArgumentException("Time-lapse queue size must be an integer greater than 0.");
+
+		this.output = output;
+		this.imageType = imageType;
+		this.scale = scale;
+		this.frameDelay = frameDelay;
+		this.backpressurePolicy = backpressurePolicy;
+		pendingFrames = new LinkedBlockingDeque<QueuedFrame>(queueCapacity);
+
+		if (format == OutputFormat.ANIMATED_GIF) {
+			final BlockingQueue<BufferedImage> drawnImages = new ArrayBlockingQueue<BufferedImage>(2);
+			final ImageOutputStream gifStream = ImageIO.createImageOutputStream(output);
+			if (gifStream == null) throw new IOException("Cannot create " + output + ".");
+
+			threads = new Thread[] {
+				new Thread(new Runnable() {
+					@Override
+					public void run() {
+						drawFrames(drawnImages);
+					}
+				}, "time-lapse-drawer"),
+				new Thread(new Runnable() {
+					@Override
+					public void run() {
+						writeGif(drawnImages, gifStream);
+					}
+				}, "time-lapse-gif-writer")
+			};
+		}
+		else {
+			if (!output.isDirectory() && !output.mkdirs()) throw new IOException("Cannot create directory " + output + ".");
+
+			threads = new Thread[Math.max(1, numberOfThreads)];
+			for (int i=0; i<threads.length; i++) {
+				threads[i] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						writePngSequence();
+					}
+				}, "time-lapse-png-writer-" + i);
+			}
+		}
+
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	// Adds the current state of the engine to the time-lapse. With the DROP policy the snapshot is only
+	// taken if there is space for it in the queue, so the engine doesn't copy a frame that would only be
+	// thrown away. Returns false if the frame was dropped.
+	public boolean recordFrame(BacterialColonyEngine engine) {
+		if (backpressurePolicy == BackpressurePolicy.DROP && pendingFrames.remainingCapacity() == 0) {
+			framesDropped.incrementAndGet();
+			return false;
+		}
+		return recordFrame(engine.createSnapshot());
+	}
+
+	// Adds a snapshot to the time-lapse. This never waits: if the queue is full a frame is dropped
+	// according to the backpressure policy. Returns false if the new frame was dropped. Frames are numbered
+	// here, in the order they are added, so the PNG images are numbered in order however many threads
+	// encode them, and dropped frames don't leave gaps in the numbering.
+	public synchronized boolean recordFrame(SimulationSnapshot snapshot) {
+		if (closed) throw new IllegalStateException("Time-lapse has been closed.");
+
+		if (pendingFrames.offerLast(new QueuedFrame(snapshot, nextFrameNumber))) {
+			nextFrameNumber++;
+			framesRecorded.incrementAndGet();
+			return true;
+		}
+
+		if (backpressurePolicy == BackpressurePolicy.COALESCE) {
+			// Replace the most recent frame that hasn't been drawn yet with the new one, which takes its number.
+			QueuedFrame replacedFrame = pendingFrames.pollLast();
+			long frameNumber = replacedFrame != null ? replacedFrame.frameNumber : nextFrameNumber;
+			if (replacedFrame != null) framesDropped.incrementAndGet();
+			if (pendingFrames.offerLast(new QueuedFrame(snapshot, frameNumber))) {
+				if (replacedFrame == null) nextFrameNumber++;
+				framesRecorded.incrementAndGet();
+				return true;
+			}
+		}
+
+		framesDropped.incrementAndGet();
+		return false;
+	}
+
+	// Returns the number of frames that have been added to the queue.
+	public long getFramesRecorded() {
+		return framesRecorded.get();
+	}
+
+	// Returns the number of frames dropped because the queue was full.
+	public long getFramesDropped() {
+		return framesDropped.get();
+	}
+
+	// Returns the number of frames written to the output so far.
+	public long getFramesWritten() {
+		return framesWritten.get();
+	}
+
+	// Waits for the frames in the queue to be written and then finishes the output. Throws the first error
+	// that occurred while encoding. If this thread is interrupted while waiting, the interrupt is kept and
+	// an IOException is thrown, as the time-lapse may not be finished.
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			for (int i=0; i<threads.length; i++) {
+				pendingFrames.putLast(END_OF_FRAMES);
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while finishing time-lapse.", e);
+		}
+
+		if (encodingError != null) {
+			throw new IOException("Cannot write time-lapse: " + encodingError.getMessage(), encodingError);
+		}
+	}
+
+	// Draws the image for a snapshot.
+	private BufferedImage drawFrame(SimulationSnapshot snapshot) {
+		if (imageType == ImageType.NUTRIENT_HEATMAP) {
+			return ImageExporter.createNutrientHeatmapImage(snapshot, scale);
+		}
+		return ImageExporter.createBacteriaPatternImage(snapshot, scale);
+	}
+
+	// Takes snapshots from the queue and saves each as a PNG image named with the number it was given when
+	// it was added. The queue is emptied even after an error, so that close() never waits for space in it.
+	private void writePngSequence() {
+		try {
+			QueuedFrame frame;
+			while ((frame = pendingFrames.takeFirst()) != END_OF_FRAMES) {
+				if (encodingError != null) continue;
+
+				try {
+					File file = new File(output, String.format("frame-%06d.png", frame.frameNumber));
+					ImageExporter.writePng(drawFrame(frame.snapshot), file);
+					framesWritten.incrementAndGet();
+				}
+				catch (IOException | RuntimeException e) {
+					recordError(e);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			recordError(e);
+		}
+	}
+
+	// Takes snapshots from the queue and draws them, passing the images on to the GIF writer.
+	private void drawFrames(BlockingQueue<BufferedImage> drawnImages) {
+		try {
+			QueuedFrame frame;
+			while ((frame = pendingFrames.takeFirst()) != END_OF_FRAMES) {
+				if (encodingError != null) continue;
+
+				try {
+					drawnImages.put(drawFrame(frame.snapshot));
+				}
+				catch (RuntimeException e) {
+					recordError(e);
+				}
+			}
+			drawnImages.put(END_OF_IMAGES);
+		}
+		catch (InterruptedException e) {
+			recordError(e);
+		}
+	}
+
+	// Takes the drawn images and writes them, in order, as the frames of an animated GIF that loops forever.
+	private void writeGif(BlockingQueue<BufferedImage> drawnImages, ImageOutputStream gifStream) {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		boolean sequenceStarted = false;
+
+		try {
+			writer.setOutput(gifStream);
+			writer.prepareWriteSequence(null);
+			sequenceStarted = true;
+		}
+		catch (IOException | RuntimeException e) {
+			recordError(e);
+		}
+
+		try {
+			BufferedImage image;
+			while ((image = drawnImages.take()) != END_OF_IMAGES) {
+				if (!sequenceStarted || encodingError != null) continue;
+
+				try {
+					ImageWriteParam parameters = writer.getDefaultWriteParam();
+					IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), parameters);
+					setGifFrameMetadata(metadata, framesWritten.get() == 0);
+
+					writer.writeToSequence(new IIOImage(image, null, metadata), parameters);
+					framesWritten.incrementAndGet();
+				}
+				catch (IOException | RuntimeException e) {
+					recordError(e);
+				}
+			}
+
+			if (sequenceStarted) writer.endWriteSequence();
+		}
+		catch (IOException | RuntimeException | InterruptedException e) {
+			recordError(e);
+		}
+		finally {
+			writer.dispose();
+			try {
+				gifStream.close();
+			}
+			catch (IOException e) {
+				recordError(e);
+			}
+		}
+	}
+
+	// Keeps the first error that occurs on any of the threads.
+	private synchronized void recordError(Exception e) {
+		if (encodingError == null) encodingError = e;
+	}
+
+	// Sets the delay before the next frame and, for the first frame, tells viewers to loop the animation.
+	private void setGifFrameMetadata(IIOMetadata metadata, boolean firstFrame) throws IOException {
+		String formatName = metadata.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(formatName);
+
+		IIOMetadataNode graphicControl = returnChildNode(root, "GraphicControlExtension");
+		graphicControl.setAttribute("disposalMethod", "none");
+		graphicControl.setAttribute("userInputFlag", "FALSE");
+		graphicControl.setAttribute("transparentColorFlag", "FALSE");
+		graphicControl.setAttribute("delayTime", Integer.toString(frameDelay));
+		graphicControl.setAttribute("transparentColorIndex", "0");
+
+		if (firstFrame) {
+			IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+			loop.setAttribute("applicationID", "NETSCAPE");
+			loop.setAttribute("authenticationCode", "2.0");
+			// Sub-block 1 followed by a loop count of 0, which means loop forever.
+			loop.setUserObject(new byte[] {1, 0, 0});
+			returnChildNode(root, "ApplicationExtensions").appendChild(loop);
+		}
+
+		metadata.setFromTree(formatName, root);
+	}
+
+	// Returns the child of the node with the given name, creating it if necessary.
+	private static IIOMetadataNode returnChildNode(IIOMetadataNode node, String name) {
+		for (int i=0; i<node.getLength(); i++) {
+			if (node.item(i).getNodeName().equalsIgnoreCase(name)) {
+				return (IIOMetadataNode) node.item(i);
+			}
+		}
+
+		IIOMetadataNode child = new IIOMetadataNode(name);
+		node.appendChild(child);
+		return child;
+	}
+
+	// A snapshot waiting in the queue, along with the number of its frame in the time-lapse.
+	private static final class QueuedFrame {
+
+		private final SimulationSnapshot snapshot;
+		private final long frameNumber;
+
+		// Constructor.
+		private QueuedFrame(SimulationSnapshot snapshot, long frameNumber) {
+			this.snapshot = snapshot;
+			this.frameNumber = frameNumber;
+		}
+	}
+}
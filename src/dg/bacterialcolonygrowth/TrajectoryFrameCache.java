@@ -0,0 +1,74 @@
+/* *****************************************************************************
+* Description: A class used to keep the most recently used steps of a
+* trajectory in memory once they have been rebuilt, so that moving back and
+* forth over the same part of a trajectory doesn't rebuild the steps again.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TrajectoryFrameCache {
+
+	private final TrajectoryReader reader;
+	private final LinkedHashMap<Long, byte[]> frames;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	// Constructor, keeps up to the number of steps given in memory. When it is full the step that was used
+	// least recently is removed.
+	public TrajectoryFrameCache(TrajectoryReader reader, final int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Cache capacity must be an integer greater than 0.");
+
+		this.reader = reader;
+		frames = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	// Returns the number of steps that can be kept in memory for a grid of the size given, using no more
+	// than the number of bytes given and at least one step.
+	public static int returnCapacityForMemory(int gridWidth, int gridHeight, long bytes) {
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / Math.max(1, (long) gridWidth*gridHeight)));
+	}
+
+	// Returns the trajectory the steps are read from.
+	public TrajectoryReader getReader() {
+		return reader;
+	}
+
+	// Returns the bacteria states at a step, rebuilding them if they aren't in memory. The array must not
+	// be changed.
+	public byte[] getBacteriaStates(long step) throws IOException {
+		byte[] states = frames.get(step);
+		if (states != null) {
+			hits++;
+			return states;
+		}
+
+		misses++;
+		states = reader.readBacteriaStates(step);
+		frames.put(step, states);
+		return states;
+	}
+
+	// Returns the number of steps that were found in memory.
+	public long getHits() {
+		return hits;
+	}
+
+	// Returns the number of steps that had to be rebuilt.
+	public long getMisses() {
+		return misses;
+	}
+}
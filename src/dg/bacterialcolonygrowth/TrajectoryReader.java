@@ -0,0 +1,269 @@
+/* *****************************************************************************
+* Description: A class used to read a trajectory recorded by TrajectoryWriter.
+* The bacteria states at any recorded step are rebuilt by reading the keyframe
+* at the start of the segment that contains the step and applying the changes
+* recorded after it. If the file was never closed, the segments are found by
+* reading their headers instead of the index.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class TrajectoryReader implements AutoCloseable {
+
+	private final FileChannel channel;
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int keyframeInterval;
+	private final long randomSeed;
+
+	// The first step, number of steps, position and compressed length of each segment.
+	private long[] segmentFirstSteps;
+	private int[] segmentNumberOfSteps;
+	private long[] segmentPositions;
+	private long[] segmentLengths;
+	private int numberOfSegments = 0;
+	private boolean complete;
+
+	// Constructor, reads the header and the index of the trajectory.
+	public TrajectoryReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			ByteBuffer header = readFully(0, TrajectoryWriter.HEADER_LENGTH, file + " is not a trajectory.");
+			byte[] magic = new byte[TrajectoryWriter.MAGIC.length];
+			header.get(magic);
+			if (!Arrays.equals(magic, TrajectoryWriter.MAGIC)) throw new IOException(file + " is not a trajectory.");
+
+			int version = header.getInt();
+			if (version < 1 || version > TrajectoryWriter.FORMAT_VERSION) {
+				throw new IOException("Trajectory " + file + " has version " + version + ", but only versions up to "
+						+ TrajectoryWriter.FORMAT_VERSION + " can be read.");
+			}
+			gridWidth = header.getInt();
+			gridHeight = header.getInt();
+			keyframeInterval = header.getInt();
+			randomSeed = header.getLong();
+			if (gridWidth < 1 || gridHeight < 1 || (long) gridWidth*gridHeight > Integer.MAX_VALUE) {
+				throw new IOException("Trajectory " + file + " has an invalid grid size.");
+			}
+
+			complete = readIndex();
+			if (!complete) findSegments();
+			if (numberOfSegments == 0) throw new IOException("Trajectory " + file + " contains no steps.");
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	// Returns the width of the grid.
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	// Returns the height of the grid.
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	// Returns the number of steps between keyframes.
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	// Returns the seed of the run that was recorded.
+	public long getRandomSeed() {
+		return randomSeed;
+	}
+
+	// Returns the first step in the trajectory.
+	public long getFirstStep() {
+		return segmentFirstSteps[0];
+	}
+
+	// Returns the last step in the trajectory.
+	public long getLastStep() {
+		return segmentFirstSteps[numberOfSegments - 1] + segmentNumberOfSteps[numberOfSegments - 1] - 1;
+	}
+
+	// Returns true if the trajectory was closed properly, false if it was read up to its last complete segment.
+	public boolean isComplete() {
+		return complete;
+	}
+
+	// Returns the bacteria states (BacterialColonyEngine.EMPTY, ALIVE or REMAINS) at a step, in the same
+	// order as the nutrient matrix.
+	public byte[] readBacteriaStates(long step) throws IOException {
+		if (step < getFirstStep() || step > getLastStep()) {
+			throw new IllegalArgumentException("Step " + step + " is not between " + getFirstStep() + " and " + getLastStep() + ".");
+		}
+
+		// Find the last segment that starts at or before the step.
+		int segment = Arrays.binarySearch(segmentFirstSteps, 0, numberOfSegments, step);
+		if (segment < 0) segment = -segment - 2;
+
+		byte[] states = new byte[gridWidth*gridHeight];
+		Inflater inflater = new Inflater();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(openSegment(segment), inflater, 1 << 16), 1 << 16))) {
+			input.readFully(states);
+
+			for (long s=segmentFirstSteps[segment]; s<step; s++) {
+				long numberOfChanges = readVarLong(input);
+				int position = -1;
+				for (long c=0; c<numberOfChanges; c++) {
+					long change = readVarLong(input);
+					position += (int) (change >>> 2);
+					states[position] = (byte) (change & 3);
+				}
+			}
+		}
+		catch (EOFException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Trajectory segment starting at step " + segmentFirstSteps[segment] + " is corrupt.", e);
+		}
+		finally {
+			inflater.end();
+		}
+
+		return states;
+	}
+
+	// Returns a snapshot of the bacteria at a step. The nutrient levels aren't recorded, so are all 0.
+	public SimulationSnapshot readSnapshot(long step) throws IOException {
+		return new SimulationSnapshot(gridWidth, gridHeight, step, new double[gridWidth*gridHeight], readBacteriaStates(step));
+	}
+
+	// Closes the file.
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Returns a stream of the compressed data of a segment.
+	private InputStream openSegment(int segment) throws IOException {
+		final long start = segmentPositions[segment] + TrajectoryWriter.SEGMENT_HEADER_LENGTH;
+		final long end = start + segmentLengths[segment];
+
+		// Reads from the file at its own position, so several steps can be read at the same time.
+		return new InputStream() {
+			private long position = start;
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int offset, int length) throws IOException {
+				if (position >= end) return -1;
+				ByteBuffer buffer = ByteBuffer.wrap(b, offset, (int) Math.min(length, end - position));
+				int bytesRead = channel.read(buffer, position);
+				if (bytesRead > 0) position += bytesRead;
+				return bytesRead;
+			}
+		};
+	}
+
+	// Reads the index written when the trajectory was closed. Returns false if there isn't one.
+	private boolean readIndex() throws IOException {
+		long fileLength = channel.size();
+		if (fileLength < TrajectoryWriter.HEADER_LENGTH + TrajectoryWriter.TRAILER_LENGTH) return false;
+
+		ByteBuffer trailer = readFully(fileLength - TrajectoryWriter.TRAILER_LENGTH, TrajectoryWriter.TRAILER_LENGTH, "Cannot read trajectory trailer.");
+		long indexPosition = trailer.getLong();
+		int segmentsInIndex = trailer.getInt();
+		byte[] endMagic = new byte[TrajectoryWriter.END_MAGIC.length];
+		trailer.get(endMagic);
+
+		if (!Arrays.equals(endMagic, TrajectoryWriter.END_MAGIC) || segmentsInIndex < 0
+				|| indexPosition + (long) segmentsInIndex*TrajectoryWriter.INDEX_ENTRY_LENGTH != fileLength - TrajectoryWriter.TRAILER_LENGTH) {
+			return false;
+		}
+
+		ByteBuffer index = readFully(indexPosition, segmentsInIndex*TrajectoryWriter.INDEX_ENTRY_LENGTH, "Cannot read trajectory index.");
+		for (int i=0; i<segmentsInIndex; i++) {
+			addSegment(index.getLong(), index.getInt(), index.getLong(), index.getLong());
+		}
+		return true;
+	}
+
+	// Finds the segments of a trajectory that has no index by reading the header of each segment in turn.
+	// Reading stops at the first segment that was not finished.
+	private void findSegments() throws IOException {
+		long fileLength = channel.size();
+		long position = TrajectoryWriter.HEADER_LENGTH;
+
+		while (position + TrajectoryWriter.SEGMENT_HEADER_LENGTH <= fileLength) {
+			ByteBuffer segmentHeader = readFully(position, TrajectoryWriter.SEGMENT_HEADER_LENGTH, "Cannot read trajectory segment.");
+			long firstStep = segmentHeader.getLong();
+			int numberOfSteps = segmentHeader.getInt();
+			long compressedLength = segmentHeader.getLong();
+
+			boolean followsPreviousSegment = numberOfSegments == 0
+					|| firstStep == segmentFirstSteps[numberOfSegments - 1] + segmentNumberOfSteps[numberOfSegments - 1];
+			if (numberOfSteps < 1 || compressedLength < 1 || !followsPreviousSegment
+					|| position + TrajectoryWriter.SEGMENT_HEADER_LENGTH + compressedLength > fileLength) {
+				break;
+			}
+
+			addSegment(firstStep, numberOfSteps, position, compressedLength);
+			position += TrajectoryWriter.SEGMENT_HEADER_LENGTH + compressedLength;
+		}
+	}
+
+	// Adds a segment to the list of segments, making the arrays larger if they are full.
+	private void addSegment(long firstStep, int numberOfSteps, long position, long compressedLength) {
+		if (segmentFirstSteps == null || numberOfSegments == segmentFirstSteps.length) {
+			int newLength = segmentFirstSteps == null ? 64 : 2*segmentFirstSteps.length;
+			segmentFirstSteps = segmentFirstSteps == null ? new long[newLength] : Arrays.copyOf(segmentFirstSteps, newLength);
+			segmentNumberOfSteps = segmentNumberOfSteps == null ? new int[newLength] : Arrays.copyOf(segmentNumberOfSteps, newLength);
+			segmentPositions = segmentPositions == null ? new long[newLength] : Arrays.copyOf(segmentPositions, newLength);
+			segmentLengths = segmentLengths == null ? new long[newLength] : Arrays.copyOf(segmentLengths, newLength);
+		}
+
+		segmentFirstSteps[numberOfSegments] = firstStep;
+		segmentNumberOfSteps[numberOfSegments] = numberOfSteps;
+		segmentPositions[numberOfSegments] = position;
+		segmentLengths[numberOfSegments] = compressedLength;
+		numberOfSegments++;
+	}
+
+	// Reads part of the file into a new buffer.
+	private ByteBuffer readFully(long position, int length, String errorMessage) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException(errorMessage);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	// Reads a number written by TrajectoryWriter.writeVarLong.
+	static long readVarLong(DataInputStream input) throws IOException {
+		long value = 0;
+		for (int shift=0; shift<64; shift+=7) {
+			int b = input.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Invalid number in trajectory.");
+	}
+}
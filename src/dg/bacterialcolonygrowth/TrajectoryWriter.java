@@ -0,0 +1,356 @@
+/* *****************************************************************************
+* Description: A class used to record the bacteria states at every time step of
+* a run, so any step can be looked at again later with TrajectoryReader. Only
+* the grid spaces that change from one step to the next are stored, along with
+* a full keyframe every so many steps so that a step can be rebuilt without
+* reading the whole file.
+*
+* The file starts with a header, followed by segments. Each segment holds a
+* keyframe and the changes for the steps after it, compressed together. An
+* index of the segments is written at the end when the writer is closed. Each
+* segment also starts with its own small header, so a file that was never
+* closed can still be read up to its last complete segment. Nutrient levels
+* are not recorded.
+*
+* The states are copied into a recycled buffer on the simulation thread and
+* are compared and compressed on a separate thread.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class TrajectoryWriter implements AutoCloseable {
+
+	// The first bytes of every trajectory file, and the last bytes of one that was closed properly.
+	static final byte[] MAGIC = {'B', 'C', 'G', 'T', 'R', 'A', 'J', 0};
+	static final byte[] END_MAGIC = {'B', 'C', 'G', 'T', 'I', 'D', 'X', 0};
+
+	// Version of the file format. Readers reject files with a newer version.
+	public static final int FORMAT_VERSION = 1;
+
+	// Lengths in bytes of the file header, a segment header, an index entry and the trailer.
+	static final int HEADER_LENGTH = 8 + 4 + 4 + 4 + 4 + 8 + 8;
+	static final int SEGMENT_HEADER_LENGTH = 8 + 4 + 8;
+	static final int INDEX_ENTRY_LENGTH = 8 + 4 + 8 + 8;
+	static final int TRAILER_LENGTH = 8 + 4 + 8;
+
+	// Placed in the queue to tell the writer thread that there are no more steps.
+	private static final Frame END_OF_FRAMES = new Frame(-1, null);
+
+	private final int gridWidth;
+	private final int gridHeight;
+	private final int keyframeInterval;
+	private final FileChannel channel;
+
+	private final BlockingQueue<Frame> pendingFrames;
+	private final BlockingQueue<byte[]> freeBuffers;
+	private final Thread writerThread;
+	private boolean closed = false;
+	private long nextStepNumber;
+
+	// Index of the segments written so far. Only used by the writer thread until it has finished.
+	private ByteBuffer index;
+	private int numberOfSegments = 0;
+	private long segmentStart;
+	private long segmentFirstStep;
+	private int segmentNumberOfSteps;
+	private DataOutputStream segmentOutput;
+	private Deflater segmentDeflater;
+	private byte[] previousStates;
+
+	// First error that occurred on the writer thread.
+	private volatile Exception writingError;
+
+	// A copy of the bacteria states at a time step.
+	private static class Frame {
+		final long stepNumber;
+		final byte[] states;
+
+		Frame(long stepNumber, byte[] states) {
+			this.stepNumber = stepNumber;
+			this.states = states;
+		}
+	}
+
+	// Constructor. The trajectory starts at the current step of the engine, which is recorded straight
+	// away. A keyframe is written every keyframeInterval steps, and up to queueCapacity steps can wait to
+	// be written before recordStep waits for the writer thread.
+	public TrajectoryWriter(File file, BacterialColonyEngine engine, int keyframeInterval, int queueCapacity) throws IOException {
+		if (keyframeInterval < 1) throw new IllegalArgumentException("Keyframe interval must be an integer greater than 0.");
+		if (queueCapacity < 1) throw new IllegalArgumentException("Trajectory queue size must be an integer greater than 0.");
+
+		this.gridWidth = engine.getGridWidth();
+		this.gridHeight = engine.getGridHeight();
+		this.keyframeInterval = keyframeInterval;
+		nextStepNumber = engine.getStepNumber();
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putInt(gridWidth);
+		header.putInt(gridHeight);
+		header.putInt(keyframeInterval);
+		header.putLong(engine.getRandomSeed());
+		header.putLong(nextStepNumber);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+
+		// Enough buffers for every step in the queue, the step being copied and the previous step kept by
+		// the writer thread.
+		pendingFrames = new ArrayBlockingQueue<Frame>(queueCapacity + 1);
+		freeBuffers = new ArrayBlockingQueue<byte[]>(queueCapacity + 2);
+		for (int i=0; i<queueCapacity + 2; i++) {
+			freeBuffers.add(new byte[gridWidth*gridHeight]);
+		}
+		index = ByteBuffer.allocate(64*INDEX_ENTRY_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeFrames();
+			}
+		}, "trajectory-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		recordStep(engine);
+	}
+
+	// Adds the current bacteria states of the engine to the trajectory. Every step must be recorded, so
+	// this waits if the writer thread has fallen behind. Throws an IOException if writing has failed.
+	public void recordStep(BacterialColonyEngine engine) throws IOException {
+		if (closed) throw new IllegalStateException("Trajectory has been closed.");
+		if (engine.getStepNumber() != nextStepNumber) {
+			throw new IllegalStateException("Expected step " + nextStepNumber + " but the engine is at step " + engine.getStepNumber() + ".");
+		}
+		checkForError();
+
+		try {
+			byte[] states = freeBuffers.take();
+			System.arraycopy(engine.getBacteriaStates(), 0, states, 0, states.length);
+			pendingFrames.put(new Frame(nextStepNumber, states));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while recording trajectory.", e);
+		}
+		nextStepNumber++;
+	}
+
+	// Waits for the recorded steps to be written, then writes the index and closes the file. If this thread is
+	// interrupted while waiting, the interrupt is kept, the file is closed without an index and an IOException
+	// is thrown. The file can then still be read up to its last complete segment.
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			pendingFrames.put(END_OF_FRAMES);
+			writerThread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			channel.close();
+			throw new IOException("Interrupted while finishing trajectory.", e);
+		}
+
+		try {
+			if (writingError == null) {
+				writeIndex();
+			}
+		}
+		finally {
+			channel.close();
+		}
+		checkForError();
+	}
+
+	// Throws the error that occurred on the writer thread, if there was one.
+	private void checkForError() throws IOException {
+		if (writingError != null) {
+			throw new IOException("Cannot write trajectory: " + writingError.getMessage(), writingError);
+		}
+	}
+
+	// Takes the recorded steps from the queue and writes them. The queue is emptied even after an error,
+	// so that recordStep and close() never wait for space in it.
+	private void writeFrames() {
+		try {
+			Frame frame;
+			while ((frame = pendingFrames.take()) != END_OF_FRAMES) {
+				if (writingError == null) {
+					try {
+						writeFrame(frame);
+					}
+					catch (IOException | RuntimeException e) {
+						writingError = e;
+					}
+				}
+
+				// Keep these states to compare with the next step, and recycle the previous ones.
+				if (previousStates != null) freeBuffers.put(previousStates);
+				previousStates = frame.states;
+			}
+
+			if (writingError == null && segmentOutput != null) {
+				finishSegment();
+			}
+		}
+		catch (IOException | RuntimeException | InterruptedException e) {
+			if (writingError == null) writingError = e;
+		}
+	}
+
+	// Writes a step, either as a keyframe that starts a new segment or as the changes since the previous step.
+	private void writeFrame(Frame frame) throws IOException {
+		if (segmentOutput == null || segmentNumberOfSteps == keyframeInterval) {
+			if (segmentOutput != null) finishSegment();
+			startSegment(frame);
+			return;
+		}
+
+		// Each change is stored as the gap from the previous changed position, shifted left two bits, with
+		// the new state in the lowest two bits.
+		byte[] states = frame.states;
+		int numberOfChanges = 0;
+		for (int i=0; i<states.length; i++) {
+			if (states[i] != previousStates[i]) numberOfChanges++;
+		}
+
+		writeVarLong(segmentOutput, numberOfChanges);
+		int previousPosition = -1;
+		for (int i=0; i<states.length && numberOfChanges > 0; i++) {
+			if (states[i] != previousStates[i]) {
+				writeVarLong(segmentOutput, ((long) (i - previousPosition) << 2) | states[i]);
+				previousPosition = i;
+				numberOfChanges--;
+			}
+		}
+		segmentNumberOfSteps++;
+	}
+
+	// Starts a new segment with a keyframe of the states. The segment header is filled in once the
+	// segment is finished.
+	private void startSegment(Frame frame) throws IOException {
+		segmentStart = channel.position();
+		segmentFirstStep = frame.stepNumber;
+		segmentNumberOfSteps = 1;
+
+		channel.position(segmentStart + SEGMENT_HEADER_LENGTH);
+		OutputStream fileOutput = Channels.newOutputStream(channel);
+		segmentDeflater = new Deflater(Deflater.BEST_SPEED);
+		segmentOutput = new DataOutputStream(new BufferedOutputStream(
+				new DeflaterOutputStream(new UnclosableOutputStream(fileOutput), segmentDeflater, 1 << 16), 1 << 16));
+		segmentOutput.write(frame.states);
+	}
+
+	// Finishes the compressed data of the current segment, writes its header and adds it to the index.
+	private void finishSegment() throws IOException {
+		segmentOutput.close();
+		segmentOutput = null;
+		segmentDeflater.end();
+
+		long segmentEnd = channel.position();
+		long compressedLength = segmentEnd - segmentStart - SEGMENT_HEADER_LENGTH;
+
+		ByteBuffer segmentHeader = ByteBuffer.allocate(SEGMENT_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		segmentHeader.putLong(segmentFirstStep);
+		segmentHeader.putInt(segmentNumberOfSteps);
+		segmentHeader.putLong(compressedLength);
+		segmentHeader.flip();
+		while (segmentHeader.hasRemaining()) {
+			channel.write(segmentHeader, segmentStart + segmentHeader.position());
+		}
+
+		addToIndex(segmentFirstStep, segmentNumberOfSteps, segmentStart, compressedLength);
+		channel.position(segmentEnd);
+	}
+
+	// Adds a segment to the index, making the index larger if it is full.
+	private void addToIndex(long firstStep, int numberOfSteps, long position, long compressedLength) {
+		if (index.remaining() < INDEX_ENTRY_LENGTH) {
+			ByteBuffer largerIndex = ByteBuffer.allocate(2*index.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+			index.flip();
+			largerIndex.put(index);
+			index = largerIndex;
+		}
+		index.putLong(firstStep);
+		index.putInt(numberOfSteps);
+		index.putLong(position);
+		index.putLong(compressedLength);
+		numberOfSegments++;
+	}
+
+	// Writes the index of the segments followed by the trailer, which gives the position of the index.
+	private void writeIndex() throws IOException {
+		long indexPosition = channel.position();
+
+		index.flip();
+		while (index.hasRemaining()) {
+			channel.write(index);
+		}
+
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		trailer.putLong(indexPosition);
+		trailer.putInt(numberOfSegments);
+		trailer.put(END_MAGIC);
+		trailer.flip();
+		while (trailer.hasRemaining()) {
+			channel.write(trailer);
+		}
+	}
+
+	// Writes a non negative number using 7 bits in each byte, with the top bit set on every byte but the last.
+	static void writeVarLong(DataOutputStream output, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.write((int) value);
+	}
+
+	// Passes writes through to the file but doesn't close it when the compressed data of a segment is finished.
+	private static class UnclosableOutputStream extends OutputStream {
+		private final OutputStream output;
+
+		UnclosableOutputStream(OutputStream output) {
+			this.output = output;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			output.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int offset, int length) throws IOException {
+			output.write(b, offset, length);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/* *****************************************************************************
+* Description: Records the simulation's JDK Flight Recorder events for
+* FlightRecorderEvents, which loads this class by name. Whether each kind of
+* event is enabled is checked on an event kept for the purpose, so nothing is
+* created unless a recording that has the event enabled is running.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import java.io.File;
+
+public class JfrEventRecorder implements FlightRecorderEvents.Recorder {
+
+	private static final SimulationStepEvent STEP_PROBE = new SimulationStepEvent();
+	private static final SimulationInputOutputEvent INPUT_OUTPUT_PROBE = new SimulationInputOutputEvent();
+
+	@Override
+	public Object beginStep() {
+		if (!STEP_PROBE.isEnabled()) return null;
+
+		SimulationStepEvent event = new SimulationStepEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endStep(Object event, long stepNumber, int gridWidth, int gridHeight, int numberOfBands, boolean cellDivisionStep,
+			int births, int deaths, long diffusionTime, long consumptionAndCellDivisionTime) {
+		SimulationStepEvent stepEvent = (SimulationStepEvent) event;
+		stepEvent.end();
+		if (!stepEvent.shouldCommit()) return;
+
+		stepEvent.stepNumber = stepNumber;
+		stepEvent.gridWidth = gridWidth;
+		stepEvent.gridHeight = gridHeight;
+		stepEvent.numberOfBands = numberOfBands;
+		stepEvent.cellDivisionStep = cellDivisionStep;
+		stepEvent.births = births;
+		stepEvent.deaths = deaths;
+		stepEvent.diffusionTime = diffusionTime;
+		stepEvent.consumptionAndCellDivisionTime = consumptionAndCellDivisionTime;
+		stepEvent.commit();
+	}
+
+	@Override
+	public Object beginInputOutput() {
+		if (!INPUT_OUTPUT_PROBE.isEnabled()) return null;
+
+		SimulationInputOutputEvent event = new SimulationInputOutputEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endInputOutput(Object event, String operation, File file, long bytes) {
+		SimulationInputOutputEvent inputOutputEvent = (SimulationInputOutputEvent) event;
+		inputOutputEvent.end();
+		if (!inputOutputEvent.shouldCommit()) return;
+
+		inputOutputEvent.operation = operation;
+		inputOutputEvent.path = file.getPath();
+		inputOutputEvent.bytes = bytes;
+		inputOutputEvent.commit();
+	}
+}
@@ -0,0 +1,33 @@
+/* *****************************************************************************
+* Description: A JDK Flight Recorder event for reading or writing a checkpoint,
+* or writing an export of the grid, such as a NumPy array or an image. Its
+* duration is the time taken to read or write the whole file.
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("dg.bacterialcolonygrowth.InputOutput")
+@Label("Simulation Input/Output")
+@Category("Bacterial Colony Growth")
+@Description("Reading or writing a checkpoint, or writing an export of the grid")
+class SimulationInputOutputEvent extends jdk.jfr.Event {
+
+	@Label("Operation")
+	@Description("What was read or written, e.g. 'checkpoint write' or 'image export'")
+	String operation;
+
+	@Label("Path")
+	String path;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+}
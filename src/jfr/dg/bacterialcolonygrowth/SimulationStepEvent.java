@@ -0,0 +1,57 @@
+/* *****************************************************************************
+* Description: A JDK Flight Recorder event for a single step of
+* BacterialColonyEngine. Its duration is the whole step, and it holds the time
+* taken by each phase along with the births and deaths, so slow steps can be
+* picked out with a threshold, e.g. "dg.bacterialcolonygrowth.Step#threshold=5 ms".
+*
+* Author: Daniel Griffin
+******************************************************************************/
+
+package dg.bacterialcolonygrowth;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("dg.bacterialcolonygrowth.Step")
+@Label("Simulation Step")
+@Category("Bacterial Colony Growth")
+@Description("One time step of the bacterial colony simulation")
+@StackTrace(false)
+class SimulationStepEvent extends jdk.jfr.Event {
+
+	@Label("Step Number")
+	@Description("Number of steps carried out once this one has finished")
+	long stepNumber;
+
+	@Label("Grid Width")
+	int gridWidth;
+
+	@Label("Grid Height")
+	int gridHeight;
+
+	@Label("Bands")
+	@Description("Number of bands of rows the grid was updated in, each on its own thread")
+	int numberOfBands;
+
+	@Label("Cell Division Step")
+	@Description("True if cell division was checked for in this step")
+	boolean cellDivisionStep;
+
+	@Label("Births")
+	int births;
+
+	@Label("Deaths")
+	int deaths;
+
+	@Label("Diffusion Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long diffusionTime;
+
+	@Label("Consumption and Cell Division Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long consumptionAndCellDivisionTime;
+}
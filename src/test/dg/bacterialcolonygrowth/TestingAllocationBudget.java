@@ -0,0 +1,170 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestingAllocationBudget {
+
+	// The colony grows across the grid, and dies, within the first 100 steps. Engines are run through those
+	// steps before measuring, so that the step loop has been compiled, and a new one is then measured over them.
+	private static final int WARM_UP_ENGINES = 30;
+	private static final int MEASURED_STEPS = 100;
+
+	// Bytes each step may allocate. A step only writes to the arrays allocated with the grid, so the plain
+	// engine gets no budget at all. With metrics, reading the allocation counter allocates a small array on
+	// some JVMs.
+	private static final long ENGINE_BYTES_PER_STEP = 0;
+	private static final long ENGINE_WITH_METRICS_BYTES_PER_STEP = 64;
+
+	// Bytes allowed for each band given to the pool in each phase of a step on several threads, which covers
+	// the future and the place in the pool's queue that come with handing the pool a task.
+	private static final long BYTES_PER_POOL_TASK = 128;
+
+	// Returns the allocation counter of the JVM, skipping the test if it can't count allocations by thread.
+	private static com.sun.management.ThreadMXBean returnAllocationCounter() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("Allocation by thread can't be measured on this JVM", threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadBean;
+		allocationCounter.setThreadAllocatedMemoryEnabled(true);
+		return allocationCounter;
+	}
+
+	// Returns the ids of this thread and the threads of every engine's pool.
+	private static long[] returnStepThreadIds() {
+		List<Long> ids = new ArrayList<Long>();
+		ids.add(Thread.currentThread().getId());
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("engine-step")) ids.add(thread.getId());
+		}
+
+		long[] threadIds = new long[ids.size()];
+		for (int i=0; i<threadIds.length; i++) {
+			threadIds[i] = ids.get(i);
+		}
+		return threadIds;
+	}
+
+	// Returns the total bytes allocated by the threads given.
+	private static long returnAllocatedBytes(com.sun.management.ThreadMXBean allocationCounter, long[] threadIds) {
+		long total = 0;
+		for (long allocated : allocationCounter.getThreadAllocatedBytes(threadIds)) {
+			// Threads that have finished are given as -1.
+			if (allocated > 0) total += allocated;
+		}
+		return total;
+	}
+
+	// Creates an engine whose colony grows across the grid, then dies.
+	private BacterialColonyEngine createEngine(String boundaryCondition, String nutrientPattern) throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(64)
+				.setGridHeight(64)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientLevelPatternChoice(nutrientPattern)
+				.setProbabilityOfCellDivision(0.6)
+				.setNumberOfTimestepsForCellDivision(2)
+				.build();
+		return new BacterialColonyEngine(config, 8);
+	}
+
+	// Runs the warm up engines, then fails if the steps of the engine measured allocated more than the budget
+	// per step, counting this thread and the threads of the engines' pools. The bytes allocated by reading
+	// the counter are measured first and taken off.
+	private void assertStepsWithinBudget(BacterialColonyEngine[] warmUpEngines, BacterialColonyEngine engine, long bytesPerStep,
+			String message) {
+		com.sun.management.ThreadMXBean allocationCounter = returnAllocationCounter();
+
+		for (BacterialColonyEngine warmUpEngine : warmUpEngines) {
+			for (int i=0; i<MEASURED_STEPS; i++) {
+				warmUpEngine.createUpdatedGrid();
+			}
+		}
+
+		long[] threadIds = returnStepThreadIds();
+		long counterStart = returnAllocatedBytes(allocationCounter, threadIds);
+		long counterOverhead = returnAllocatedBytes(allocationCounter, threadIds) - counterStart;
+
+		long start = returnAllocatedBytes(allocationCounter, threadIds);
+		for (int i=0; i<MEASURED_STEPS; i++) {
+			engine.createUpdatedGrid();
+		}
+		long allocated = returnAllocatedBytes(allocationCounter, threadIds) - start - counterOverhead;
+
+		assertTrue(message + " allocated " + allocated + " bytes in " + MEASURED_STEPS + " steps, over the budget of "
+				+ bytesPerStep + " bytes per step", allocated <= bytesPerStep * MEASURED_STEPS);
+	}
+
+	// Tests the engine's step allocates nothing, for each boundary condition and for the absorbing middle
+	// pattern.
+	@Test
+	public void testEngineStepAllocatesNothing() throws IOException {
+		String[][] cases = {{"reflecting", "default"}, {"absorbent", "default"}, {"periodic", "default"}, {"reflecting", "absorbingmiddle"}};
+
+		for (String[] testCase : cases) {
+			BacterialColonyEngine[] warmUpEngines = new BacterialColonyEngine[WARM_UP_ENGINES];
+			for (int i=0; i<WARM_UP_ENGINES; i++) {
+				warmUpEngines[i] = createEngine(testCase[0], testCase[1]);
+			}
+			BacterialColonyEngine engine = createEngine(testCase[0], testCase[1]);
+			assertStepsWithinBudget(warmUpEngines, engine, ENGINE_BYTES_PER_STEP, testCase[0] + " " + testCase[1]);
+		}
+	}
+
+	// Tests recording metrics for each step stays within its budget, for each boundary condition.
+	@Test
+	public void testEngineStepWithMetricsWithinBudget() throws IOException {
+		String[] boundaryConditions = {"reflecting", "absorbent", "periodic"};
+
+		for (String boundaryCondition : boundaryConditions) {
+			SimulationMetrics metrics = new SimulationMetrics();
+			BacterialColonyEngine[] warmUpEngines = new BacterialColonyEngine[WARM_UP_ENGINES];
+			for (int i=0; i<WARM_UP_ENGINES; i++) {
+				warmUpEngines[i] = createEngine(boundaryCondition, "default");
+				warmUpEngines[i].setMetrics(metrics);
+			}
+			BacterialColonyEngine engine = createEngine(boundaryCondition, "default");
+			engine.setMetrics(metrics);
+			assertStepsWithinBudget(warmUpEngines, engine, ENGINE_WITH_METRICS_BYTES_PER_STEP, boundaryCondition + " with metrics");
+			assertEquals((WARM_UP_ENGINES + 1) * MEASURED_STEPS, metrics.getSteps());
+			assertTrue(engine.getNumberOfRemains() > 1000);
+		}
+	}
+
+	// Tests a step on several threads only allocates what handing the bands to the pool needs, for each
+	// boundary condition.
+	@Test
+	public void testEngineStepOnThreadsWithinBudget() throws IOException {
+		String[] boundaryConditions = {"reflecting", "absorbent", "periodic"};
+		int numberOfThreads = 4;
+
+		for (String boundaryCondition : boundaryConditions) {
+			BacterialColonyEngine[] warmUpEngines = new BacterialColonyEngine[WARM_UP_ENGINES];
+			for (int i=0; i<WARM_UP_ENGINES; i++) {
+				warmUpEngines[i] = createEngine(boundaryCondition, "default");
+				warmUpEngines[i].setNumberOfThreads(numberOfThreads);
+			}
+			BacterialColonyEngine engine = createEngine(boundaryCondition, "default");
+			engine.setNumberOfThreads(numberOfThreads);
+			assertEquals(numberOfThreads, engine.getNumberOfBands());
+
+			// The diffusion and the consumption and cell division phases hand all but one band to the pool, and
+			// on the steps where cell division can occur so does the phase that fills in the previous states,
+			// so no step hands the pool more than three tasks for each of those bands.
+			long bytesPerStep = 3*(numberOfThreads - 1)*BYTES_PER_POOL_TASK;
+			assertStepsWithinBudget(warmUpEngines, engine, bytesPerStep, boundaryCondition + " on " + numberOfThreads + " threads");
+
+			for (BacterialColonyEngine warmUpEngine : warmUpEngines) {
+				warmUpEngine.setNumberOfThreads(1);
+			}
+			engine.setNumberOfThreads(1);
+		}
+	}
+}
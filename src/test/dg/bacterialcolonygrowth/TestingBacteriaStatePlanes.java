@@ -0,0 +1,88 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TestingBacteriaStatePlanes {
+
+	// Returns random bacteria states, with about a third of the grid spaces alive and a sixth dead.
+	private static byte[] createRandomStates(Random random, int width, int height) {
+		byte[] states = new byte[width*height];
+		for (int i=0; i<states.length; i++) {
+			double r = random.nextDouble();
+			states[i] = r < 0.33 ? BacterialColonyEngine.ALIVE : r < 0.5 ? BacterialColonyEngine.REMAINS : BacterialColonyEngine.EMPTY;
+		}
+		return states;
+	}
+
+	// Tests the planes and the empty words hold the bacteria states they were filled from, including past the
+	// end of a word.
+	@Test
+	public void testFillRows() {
+		Random random = new Random(5);
+		int width = 70;
+		int height = 3;
+		byte[] states = createRandomStates(random, width, height);
+		BacteriaStatePlanes planes = BacteriaStatePlanes.create(states, width, height);
+
+		assertEquals(2, planes.getWordsPerRow());
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				byte state = states[x + y*width];
+				assertEquals(state == BacterialColonyEngine.ALIVE, planes.isAlive(x, y));
+				assertEquals(state != BacterialColonyEngine.EMPTY, planes.isPartOfColony(x, y));
+				assertEquals(state == BacterialColonyEngine.EMPTY, (planes.returnEmptyWord(y, x >>> 6) & (1L << x)) != 0);
+			}
+			assertEquals(0, planes.returnEmptyWord(y, 1) >>> (width - 64));
+		}
+	}
+
+	// Tests the neighbour counts of a whole word at once match the engine's count of each empty grid space,
+	// for each boundary condition and for grids narrower than a word, a word wide and spread over words.
+	@Test
+	public void testNeighbourCountsMatchEngine() throws IOException {
+		String[] boundaries = {"periodic", "reflecting", "absorbent"};
+		int[][] sizes = {{1, 1}, {2, 2}, {1, 5}, {3, 2}, {13, 9}, {64, 33}, {65, 40}, {130, 66}};
+		Random random = new Random(11);
+		long[] counts = new long[4];
+
+		for (String boundary : boundaries) {
+			for (int[] size : sizes) {
+				int width = size[0];
+				int height = size[1];
+				BacterialColonyEngine engine = new BacterialColonyEngine(new SimulationConfig.Builder()
+						.setGridWidth(width).setGridHeight(height).setBoundaryCondition(boundary).build(), 1);
+				byte[] states = engine.getBacteriaStates();
+				System.arraycopy(createRandomStates(random, width, height), 0, states, 0, states.length);
+				BacteriaStatePlanes planes = BacteriaStatePlanes.create(states, width, height);
+
+				for (int y=0; y<height; y++) {
+					for (int k=0; k<planes.getWordsPerRow(); k++) {
+						planes.countAliveNeighbours(y, k, boundary.equals("periodic"), counts);
+						for (int x=64*k; x<Math.min(width, 64*k + 64); x++) {
+							if (states[x + y*width] == BacterialColonyEngine.ALIVE) continue;
+							assertEquals(boundary + " " + width + "x" + height + " at " + x + "," + y,
+									engine.returnNumberOfAliveNeighbours(x, y), BacteriaStatePlanes.returnCount(counts, x & 63));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Tests the grid spaces with the counts in a mask are picked out of the count words.
+	@Test
+	public void testGridSpacesWithCounts() {
+		// Bits 0 to 8 hold counts 0 to 8.
+		long[] counts = {0b010101010L, 0b011001100L, 0b011110000L, 0b100000000L};
+		for (int b=0; b<=8; b++) {
+			assertEquals(b, BacteriaStatePlanes.returnCount(counts, b));
+		}
+
+		assertEquals(0b100001001L, BacteriaStatePlanes.returnGridSpacesWithCounts(counts, (1 << 0) | (1 << 3) | (1 << 8)) & 0x1FFL);
+		assertEquals(0, BacteriaStatePlanes.returnGridSpacesWithCounts(counts, 0));
+	}
+}
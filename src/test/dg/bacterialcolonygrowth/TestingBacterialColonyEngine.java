@@ -0,0 +1,193 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TestingBacterialColonyEngine {
+
+	// Test the default constructor creates a grid with nutrient levels of 100 and one bacterium in the middle.
+	@Test
+	public void testDefaultConstructor() {
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+
+		assertEquals(100, engine.getNutrientLevelOfCell(0), 0);
+		assertEquals(100, engine.getNutrientLevelOfCell(80*80 - 1), 0);
+		assertTrue(engine.cellAlive(40, 40));
+		assertEquals(1, engine.countGridSpacesInState(BacterialColonyEngine.ALIVE));
+	}
+
+	// Test nutrient diffuses correctly for periodic boundary.
+	@Test
+	public void testNutrientDiffusesCorrectlyForPeriodicBoundary() {
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+
+		// Make cellular automata 3 x 3.
+		engine.setGridHeight(3);
+		engine.setGridWidth(3);
+		engine.setNutrientLevelsToSpecifiedValues(new double[] {0,0,0,0,90.0,0,0,0,0});
+		engine.setDiffusionRate(0.5);
+		engine.setBoundaryCondition("periodic");
+
+		engine.updateNutrientLevelsAfterDiffusion();
+		assertEquals(0, engine.getNutrientLevelOfCell(0), 0);
+		assertEquals(11.25, engine.getNutrientLevelOfCell(1), 0);
+		assertEquals(45, engine.getNutrientLevelOfCell(4), 0);
+		assertEquals(11.25, engine.getNutrientLevelOfCell(7), 0);
+
+		engine.updateNutrientLevelsAfterDiffusion();
+		assertEquals(2.8125, engine.getNutrientLevelOfCell(0), 0);
+		assertEquals(12.65625, engine.getNutrientLevelOfCell(1), 0);
+		assertEquals(28.125, engine.getNutrientLevelOfCell(4), 0);
+	}
+
+	// Test the engine gives exactly the same nutrient levels as the update matrix of the rules class, for
+	// each boundary condition and for grids of different shapes.
+	@Test
+	public void testDiffusionMatchesCellularAutomataBacteriaRules() {
+		String[] boundaries = {"periodic", "reflecting", "absorbent"};
+		int[][] sizes = {{3, 3}, {7, 5}, {4, 9}, {2, 6}, {1, 4}};
+		Random random = new Random(42);
+
+		for (String boundary : boundaries) {
+			for (int[] size : sizes) {
+				double[] initialNutrientLevels = new double[size[0]*size[1]];
+				for (int i=0; i<initialNutrientLevels.length; i++) {
+					initialNutrientLevels[i] = random.nextDouble() * 100;
+				}
+
+				CellularAutomataBacteriaRules rules = new CellularAutomataBacteriaRules();
+				rules.setGridHeight(size[1]);
+				rules.setGridWidth(size[0]);
+				rules.setNutrientLevelsToSpecifiedValues(initialNutrientLevels);
+				rules.setDiffusionRate(0.3);
+				rules.setBoundaryCondition(boundary);
+
+				BacterialColonyEngine engine = new BacterialColonyEngine();
+				engine.setGridHeight(size[1]);
+				engine.setGridWidth(size[0]);
+				engine.setNutrientLevelsToSpecifiedValues(initialNutrientLevels);
+				engine.setDiffusionRate(0.3);
+				engine.setBoundaryCondition(boundary);
+
+				for (int step=0; step<5; step++) {
+					rules.updateNutrientLevelsAfterDiffusion();
+					engine.updateNutrientLevelsAfterDiffusion();
+				}
+
+				for (int i=0; i<initialNutrientLevels.length; i++) {
+					assertEquals(boundary + " " + size[0] + "x" + size[1] + " position " + i,
+							rules.getNutrientLevelOfCell(i), engine.getNutrientLevelOfCell(i), 0);
+				}
+			}
+		}
+	}
+
+	// Tests the number of alive neighbours is counted correctly for each boundary condition.
+	@Test
+	public void testNumberOfAliveNeighbours() {
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+		engine.setGridHeight(3);
+		engine.setGridWidth(3);
+
+		assertEquals(0, engine.returnNumberOfAliveNeighbours(1, 1));
+
+		// Set bacteria alive in each cell.
+		for (int x=0; x<3; x++) {
+			for (int y=0; y<3; y++) {
+				engine.setBacteriumAlive(x, y);
+			}
+		}
+
+		assertEquals(3, engine.returnNumberOfAliveNeighbours(0, 0));
+		assertEquals(5, engine.returnNumberOfAliveNeighbours(0, 1));
+		assertEquals(8, engine.returnNumberOfAliveNeighbours(1, 1));
+
+		engine.setBoundaryCondition("periodic");
+		assertEquals(8, engine.returnNumberOfAliveNeighbours(0, 0));
+		assertEquals(8, engine.returnNumberOfAliveNeighbours(2, 1));
+	}
+
+	// Test nutrient levels correctly update for bacteria consumption of nutrient.
+	@Test
+	public void testNutrientLevelsUpdateCorrectlyForBacteriaConsumption() {
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+		engine.setGridHeight(3);
+		engine.setGridWidth(3);
+		engine.setNutrientLevelsToSpecifiedValues(new double[] {50,50,50,50,5,50,50,50,50});
+
+		engine.setBacteriumAlive(0, 0);
+		engine.setBacteriumAlive(1, 1);
+		engine.setBacteriumDead(2, 2);
+
+		engine.updateBacteriaAndNutrientAfterConsumptionAndCellDivision();
+
+		// The first bacterium eats, the second one doesn't have enough nutrient and dies.
+		assertEquals(40, engine.getNutrientLevelOfCell(0), 0);
+		assertEquals(0, engine.getNutrientLevelOfCell(4), 0);
+		assertEquals(50, engine.getNutrientLevelOfCell(8), 0);
+		assertEquals(BacterialColonyEngine.ALIVE, engine.getBacteriumState(0, 0));
+		assertEquals(BacterialColonyEngine.REMAINS, engine.getBacteriumState(1, 1));
+		assertEquals(BacterialColonyEngine.REMAINS, engine.getBacteriumState(2, 2));
+	}
+
+	// Tests two engines with the same seed produce the same colony.
+	@Test
+	public void testSameSeedGivesSameColony() {
+		BacterialColonyEngine first = new BacterialColonyEngine();
+		BacterialColonyEngine second = new BacterialColonyEngine();
+		first.setRandomSeed(7);
+		second.setRandomSeed(7);
+
+		for (int step=0; step<200; step++) {
+			first.createUpdatedGrid();
+			second.createUpdatedGrid();
+		}
+
+		assertTrue(first.countGridSpacesInState(BacterialColonyEngine.ALIVE) > 1);
+		assertArrayEquals(first.getBacteriaStates(), second.getBacteriaStates());
+		assertArrayEquals(first.getNutrientLevels(), second.getNutrientLevels(), 0);
+	}
+
+	// Tests updating the grid on several threads gives the same colony, and the same statistics, as a single
+	// thread, for each boundary condition. The grid doesn't split into bands of equal size.
+	@Test
+	public void testThreadsGiveSameColony() throws IOException {
+		String[][] cases = {{"reflecting", "default"}, {"absorbent", "default"}, {"periodic", "default"}, {"reflecting", "absorbingmiddle"}};
+
+		for (String[] testCase : cases) {
+			SimulationConfig config = new SimulationConfig.Builder()
+					.setGridWidth(70)
+					.setGridHeight(67)
+					.setBoundaryCondition(testCase[0])
+					.setNutrientLevelPatternChoice(testCase[1])
+					.setProbabilityOfCellDivision(0.8)
+					.setNumberOfTimestepsForCellDivision(2)
+					.build();
+			BacterialColonyEngine single = new BacterialColonyEngine(config, 3);
+			BacterialColonyEngine parallel = new BacterialColonyEngine(config, 3);
+			parallel.setNumberOfThreads(4);
+			assertEquals(4, parallel.getNumberOfBands());
+
+			for (int step=0; step<150; step++) {
+				single.createUpdatedGrid();
+				parallel.createUpdatedGrid();
+
+				String message = testCase[0] + " " + testCase[1] + " step " + step;
+				assertEquals(message, single.getBirthsInLastUpdate(), parallel.getBirthsInLastUpdate());
+				assertEquals(message, single.getColonyPerimeter(), parallel.getColonyPerimeter());
+			}
+
+			assertTrue(single.getNumberOfRemains() > 100);
+			assertArrayEquals(single.getBacteriaStates(), parallel.getBacteriaStates());
+			assertArrayEquals(single.getNutrientLevels(), parallel.getNutrientLevels(), 0);
+			assertEquals(single.getNumberOfAliveBacteria(), parallel.getNumberOfAliveBacteria());
+			assertEquals(single.getNumberOfRemains(), parallel.getNumberOfRemains());
+			assertEquals(single.getColonyRadius(), parallel.getColonyRadius(), 0);
+			assertEquals(single.getTotalNutrient(), parallel.getTotalNutrient(), 1e-9 * single.getTotalNutrient());
+			parallel.setNumberOfThreads(1);
+		}
+	}
+}
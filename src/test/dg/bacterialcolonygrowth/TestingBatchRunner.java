@@ -0,0 +1,118 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestingBatchRunner {
+
+	private File jobFile;
+	private File resultsFile;
+
+	@Before
+	public void createFiles() throws IOException {
+		jobFile = File.createTempFile("jobs", ".txt");
+		resultsFile = File.createTempFile("results", ".csv");
+		resultsFile.delete();
+	}
+
+	@After
+	public void deleteFiles() {
+		jobFile.delete();
+		resultsFile.delete();
+	}
+
+	// Writes the lines given to the job file.
+	private void writeJobFile(String... lines) throws IOException {
+		Files.write(jobFile.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+
+	// Tests the parameters at the top of a job file apply to every job unless the job sets them itself.
+	@Test
+	public void testJobsUseDefaultsAndTheirOwnParameters() throws IOException {
+		writeJobFile(
+				"# Shared by both jobs.",
+				"grid width: 40",
+				"steps: 100",
+				"seed: 5",
+				"",
+				"job: reflecting",
+				"grid height: 30",
+				"job: periodic",
+				"grid height: 25",
+				"boundary condition: periodic",
+				"replicates: 3",
+				"steps: 50");
+
+		List<SimulationJob> jobs = new JobFileReader(jobFile).readJobs();
+
+		assertEquals(2, jobs.size());
+		assertEquals("reflecting", jobs.get(0).getName());
+		assertEquals(40, jobs.get(0).getConfig().getGridWidth());
+		assertEquals(30, jobs.get(0).getConfig().getGridHeight());
+		assertEquals(100, jobs.get(0).getNumberOfSteps());
+		assertEquals(1, jobs.get(0).getNumberOfReplicates());
+
+		assertEquals("periodic", jobs.get(1).getConfig().getBoundaryCondition());
+		assertEquals(25, jobs.get(1).getConfig().getGridHeight());
+		assertEquals(50, jobs.get(1).getNumberOfSteps());
+		assertEquals(3, jobs.get(1).getNumberOfReplicates());
+		assertEquals(7, jobs.get(1).returnSeedForReplicate(2));
+	}
+
+	// Tests a mistake in a job file is reported with its line number.
+	@Test
+	public void testMistakeIsReportedWithLineNumber() throws IOException {
+		writeJobFile("steps: 10", "job: first", "rate of difusion: 0.2");
+
+		try {
+			new JobFileReader(jobFile).readJobs();
+			fail("An unknown parameter should be rejected.");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Line 3:"));
+		}
+	}
+
+	// Tests results are added to the end of a CSV file, with the header only written once.
+	@Test
+	public void testResultsAreAddedToCsvFile() throws IOException {
+		BacterialColonyEngine engine = new BacterialColonyEngine(new SimulationConfig.Builder().build(), 9);
+
+		for (int i=0; i<2; i++) {
+			try (ResultsWriter writer = new ResultsWriter(resultsFile, ResultsWriter.Format.CSV)) {
+				writer.writeResult(new ResultsWriter.RunResult("job, with comma", i, engine, 0, 640000, 1000000000L));
+			}
+		}
+
+		List<String> lines = Files.readAllLines(resultsFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(3, lines.size());
+		assertTrue(lines.get(0).startsWith("job,replicate,seed,"));
+		assertTrue(lines.get(2).startsWith("\"job, with comma\",1,9,0,80,80,1,0,1,640000.0000,640000.0000,0.0000,1.000,"));
+	}
+
+	// Tests results aren't added to a CSV file with a header from before the colony columns were added.
+	@Test
+	public void testCsvFileWithOtherColumnsIsRejected() throws IOException {
+		String oldHeader = "job,replicate,seed,steps,grid_width,grid_height,alive,remains,colony_size,"
+				+ "initial_nutrient,final_nutrient,nutrient_consumed,wall_time_s,steps_per_s\n";
+		Files.write(resultsFile.toPath(), oldHeader.getBytes(StandardCharsets.UTF_8));
+
+		try {
+			new ResultsWriter(resultsFile, ResultsWriter.Format.CSV).close();
+			fail("Expected the results file to be rejected.");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().contains("different columns"));
+		}
+		assertEquals(oldHeader, new String(Files.readAllBytes(resultsFile.toPath()), StandardCharsets.UTF_8));
+	}
+}
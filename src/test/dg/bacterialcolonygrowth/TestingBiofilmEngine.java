@@ -0,0 +1,203 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestingBiofilmEngine {
+
+	private static final String[] BOUNDARIES = {"reflecting", "absorbent", "periodic"};
+
+	// Returns a config for a lattice of the size given.
+	private static BiofilmConfig.Builder createBuilder(int width, int height, int depth, String boundary) {
+		SimulationConfig baseConfig = new SimulationConfig.Builder().setGridWidth(width).setGridHeight(height)
+				.setBoundaryCondition(boundary).setDiffusionRate(0.5).setNumberOfTimestepsForCellDivision(1)
+				.setThresholdForCellDivision(0).setProbabilityOfCellDivision(1).build();
+		return new BiofilmConfig.Builder(baseConfig).setGridDepth(depth);
+	}
+
+	// Tests diffusion gives the same levels as sharing out each grid space's nutrient to the 6 grid spaces
+	// sharing a face with it one at a time, and that the nutrient lost is what leaves the lattice, for
+	// lattices one grid space thick too.
+	@Test
+	public void testDiffusionSharesNutrientWithNeighbours() {
+		int[][] sizes = {{1, 1, 1}, {2, 3, 1}, {1, 1, 6}, {70, 36, 2}, {9, 5, 3}};
+		int[][] offsets = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+		Random random = new Random(4);
+
+		for (String boundary : BOUNDARIES) {
+			for (int[] size : sizes) {
+				int width = size[0];
+				int height = size[1];
+				int depth = size[2];
+				BiofilmEngine engine = new BiofilmEngine(createBuilder(width, height, depth, boundary).build(), 1);
+				engine.setNumberOfThreads(2);
+				float[] levels = engine.getNutrientLevels();
+				for (int i=0; i<levels.length; i++) {
+					levels[i] = random.nextInt(101);
+				}
+
+				double share = 0.5/6;
+				double[] expected = new double[levels.length];
+				double expectedLost = 0;
+				for (int z=0; z<depth; z++) {
+					for (int y=0; y<height; y++) {
+						for (int x=0; x<width; x++) {
+							int i = x + y*width + z*width*height;
+							expected[i] += 0.5*levels[i];
+							for (int[] offset : offsets) {
+								int neighbourX = x + offset[0];
+								int neighbourY = y + offset[1];
+								int neighbourZ = z + offset[2];
+								boolean outside = neighbourX < 0 || neighbourX >= width || neighbourY < 0 || neighbourY >= height
+										|| neighbourZ < 0 || neighbourZ >= depth;
+								if (outside && boundary.equals("periodic")) {
+									neighbourX = Math.floorMod(neighbourX, width);
+									neighbourY = Math.floorMod(neighbourY, height);
+									neighbourZ = Math.floorMod(neighbourZ, depth);
+								}
+								else if (outside && boundary.equals("reflecting")) {
+									neighbourX = x;
+									neighbourY = y;
+									neighbourZ = z;
+								}
+								else if (outside) {
+									expectedLost += share*levels[i];
+									continue;
+								}
+								expected[neighbourX + neighbourY*width + neighbourZ*width*height] += share*levels[i];
+							}
+						}
+					}
+				}
+
+				engine.updateNutrientLevelsAfterDiffusion();
+				levels = engine.getNutrientLevels();
+				for (int i=0; i<expected.length; i++) {
+					assertEquals(boundary + " " + width + "x" + height + "x" + depth + " at " + i, expected[i], levels[i], 1e-4);
+				}
+				assertEquals(boundary + " " + width + "x" + height + "x" + depth, expectedLost, engine.getNutrientLostInLastUpdate(), 1e-3);
+			}
+		}
+	}
+
+	// Tests bacteria are only born in the empty grid spaces with the number of alive neighbours among the 26
+	// around them that the crowding function allows, for each boundary condition and for rows longer than
+	// a word.
+	@Test
+	public void testBirthsFollowNeighbourCounts() {
+		int[][] sizes = {{3, 4, 5}, {64, 33, 3}, {70, 36, 2}};
+		Random random = new Random(8);
+
+		for (String boundary : BOUNDARIES) {
+			for (int[] size : sizes) {
+				for (int numberOfNeighbours : new int[] {1, 3, 6}) {
+					int width = size[0];
+					int height = size[1];
+					int depth = size[2];
+					int[] crowdingFunctionValues = new int[BiofilmConfig.NUMBER_OF_NEIGHBOURS + 1];
+					crowdingFunctionValues[numberOfNeighbours] = 1;
+					BiofilmEngine engine = new BiofilmEngine(createBuilder(width, height, depth, boundary)
+							.setCrowdingFunctionValues(crowdingFunctionValues).build(), 1);
+
+					boolean[][][] aliveBefore = new boolean[depth][height][width];
+					for (int z=0; z<depth; z++) {
+						for (int y=0; y<height; y++) {
+							for (int x=0; x<width; x++) {
+								aliveBefore[z][y][x] = engine.getBacteriumState(x, y, z) == BacterialColonyEngine.ALIVE || random.nextInt(6) == 0;
+								if (aliveBefore[z][y][x]) engine.setBacteriumAlive(x, y, z);
+							}
+						}
+					}
+
+					engine.createUpdatedGrid();
+
+					int births = 0;
+					for (int z=0; z<depth; z++) {
+						for (int y=0; y<height; y++) {
+							for (int x=0; x<width; x++) {
+								if (aliveBefore[z][y][x]) {
+									assertEquals(BacterialColonyEngine.ALIVE, engine.getBacteriumState(x, y, z));
+									continue;
+								}
+								int count = 0;
+								for (int dz=-1; dz<=1; dz++) {
+									for (int dy=-1; dy<=1; dy++) {
+										for (int dx=-1; dx<=1; dx++) {
+											int neighbourX = x + dx;
+											int neighbourY = y + dy;
+											int neighbourZ = z + dz;
+											if (dx == 0 && dy == 0 && dz == 0) continue;
+											if (boundary.equals("periodic")) {
+												neighbourX = Math.floorMod(neighbourX, width);
+												neighbourY = Math.floorMod(neighbourY, height);
+												neighbourZ = Math.floorMod(neighbourZ, depth);
+											}
+											else if (neighbourX < 0 || neighbourX >= width || neighbourY < 0 || neighbourY >= height
+													|| neighbourZ < 0 || neighbourZ >= depth) {
+												continue;
+											}
+											if (aliveBefore[neighbourZ][neighbourY][neighbourX]) count++;
+										}
+									}
+								}
+								byte expected = count == numberOfNeighbours ? BacterialColonyEngine.ALIVE : BacterialColonyEngine.EMPTY;
+								assertEquals(boundary + " " + width + "x" + height + "x" + depth + " at " + x + "," + y + "," + z,
+										expected, engine.getBacteriumState(x, y, z));
+								if (expected == BacterialColonyEngine.ALIVE) births++;
+							}
+						}
+					}
+					assertEquals(births, engine.getBirthsInLastUpdate());
+				}
+			}
+		}
+	}
+
+	// Tests a simulation read from an input file grows the same with any number of threads, and carries on
+	// the same after being saved to a checkpoint and restored.
+	@Test
+	public void testThreadsAndCheckpointsDontChangeColony() throws IOException {
+		File inputFile = File.createTempFile("biofilm", ".txt");
+		FileWriter writer = new FileWriter(inputFile);
+		writer.write("grid width: 40\ngrid height: 30\ngrid depth: 24\nboundary condition: periodic\n");
+		writer.close();
+		BiofilmConfig config = new InputFileReader(inputFile).readBiofilmConfig();
+		inputFile.delete();
+		assertEquals(24, config.getGridDepth());
+
+		BiofilmEngine engine = new BiofilmEngine(config, 7);
+		BiofilmEngine threadedEngine = new BiofilmEngine(config, 7);
+		threadedEngine.setNumberOfThreads(3);
+		for (int step=0; step<60; step++) {
+			engine.createUpdatedGrid();
+			threadedEngine.createUpdatedGrid();
+		}
+		assertTrue(engine.getNumberOfAliveBacteria() + engine.getNumberOfRemains() > 1);
+
+		File checkpoint = File.createTempFile("biofilm", ".ckpt");
+		BiofilmCheckpoint.write(engine, checkpoint);
+		assertTrue(BiofilmCheckpoint.isCheckpoint(checkpoint));
+		assertFalse(SimulationCheckpoint.isCheckpoint(checkpoint));
+		BiofilmEngine restoredEngine = BiofilmCheckpoint.read(checkpoint);
+		checkpoint.delete();
+		assertEquals(60, restoredEngine.getStepNumber());
+
+		for (int step=0; step<40; step++) {
+			engine.createUpdatedGrid();
+			threadedEngine.createUpdatedGrid();
+			restoredEngine.createUpdatedGrid();
+		}
+		for (BiofilmEngine other : new BiofilmEngine[] {threadedEngine, restoredEngine}) {
+			assertEquals(engine.getNumberOfAliveBacteria(), other.getNumberOfAliveBacteria());
+			assertEquals(engine.getNumberOfRemains(), other.getNumberOfRemains());
+			assertArrayEquals(engine.getAlivePlane(), other.getAlivePlane());
+			assertArrayEquals(engine.getRemainsPlane(), other.getRemainsPlane());
+			assertEquals(engine.getTotalNutrient(), other.getTotalNutrient(), 0);
+		}
+	}
+}
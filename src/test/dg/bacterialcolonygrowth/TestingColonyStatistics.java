@@ -0,0 +1,110 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestingColonyStatistics {
+
+	// Creates an engine whose colony grows, and dies, quickly.
+	private BacterialColonyEngine createEngine(String boundaryCondition, String nutrientPattern) throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(40)
+				.setGridHeight(30)
+				.setBoundaryCondition(boundaryCondition)
+				.setNutrientLevelPatternChoice(nutrientPattern)
+				.setProbabilityOfCellDivision(0.8)
+				.setNumberOfTimestepsForCellDivision(2)
+				.setNutrientForSustenance(15)
+				.build();
+		return new BacterialColonyEngine(config, 21);
+	}
+
+	// Checks the statistics kept by the engine against those counted from the grid.
+	private void assertStatisticsMatchGrid(BacterialColonyEngine engine, String message) {
+		int width = engine.getGridWidth();
+		int height = engine.getGridHeight();
+		boolean periodic = engine.getBoundaryCondition().equals("periodic");
+		byte[] states = engine.getBacteriaStates();
+
+		double totalNutrient = 0;
+		for (double nutrientLevel : engine.getNutrientLevels()) {
+			totalNutrient += nutrientLevel;
+		}
+
+		long largestSquaredDistance = 0;
+		long perimeter = 0;
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				if (states[x + y*width] == BacterialColonyEngine.EMPTY) continue;
+
+				long dx = x - width/2;
+				long dy = y - width/2;
+				largestSquaredDistance = Math.max(largestSquaredDistance, dx*dx + dy*dy);
+
+				int[][] neighbours = {{x-1, y}, {x+1, y}, {x, y-1}, {x, y+1}};
+				for (int[] neighbour : neighbours) {
+					int nx = neighbour[0];
+					int ny = neighbour[1];
+					if (periodic) {
+						nx = (nx + width) % width;
+						ny = (ny + height) % height;
+					}
+					if (nx < 0 || nx >= width || ny < 0 || ny >= height || states[nx + ny*width] == BacterialColonyEngine.EMPTY) {
+						perimeter++;
+					}
+				}
+			}
+		}
+
+		ColonyStatistics statistics = engine.createColonyStatistics();
+		assertEquals(message, engine.countGridSpacesInState(BacterialColonyEngine.ALIVE), statistics.getNumberOfAliveBacteria());
+		assertEquals(message, engine.countGridSpacesInState(BacterialColonyEngine.REMAINS), statistics.getNumberOfRemains());
+		assertEquals(message, totalNutrient, statistics.getTotalNutrient(), 1e-9 * Math.max(1, totalNutrient));
+		assertEquals(message, Math.sqrt(largestSquaredDistance), statistics.getColonyRadius(), 0);
+		assertEquals(message, perimeter, statistics.getColonyPerimeter());
+	}
+
+	// Tests the statistics kept up to date by each update match the grid, for each boundary condition and
+	// for the absorbing middle pattern.
+	@Test
+	public void testStatisticsMatchGridAfterEachStep() throws IOException {
+		String[][] cases = {{"reflecting", "default"}, {"absorbent", "default"}, {"periodic", "random"}, {"reflecting", "absorbingmiddle"}};
+
+		for (String[] testCase : cases) {
+			BacterialColonyEngine engine = createEngine(testCase[0], testCase[1]);
+			int births = 0;
+			int deaths = 0;
+
+			for (int i=0; i<120; i++) {
+				engine.createUpdatedGrid();
+				births += engine.getBirthsInLastUpdate();
+				deaths += engine.getDeathsInLastUpdate();
+				assertStatisticsMatchGrid(engine, testCase[0] + " " + testCase[1] + " step " + engine.getStepNumber());
+			}
+
+			assertTrue(births > 0);
+			assertTrue(deaths > 0);
+		}
+	}
+
+	// Tests the statistics are counted again after the grid is changed other than by an update.
+	@Test
+	public void testStatisticsFollowChangesToGrid() throws IOException {
+		BacterialColonyEngine engine = createEngine("absorbent", "default");
+		for (int i=0; i<10; i++) {
+			engine.createUpdatedGrid();
+		}
+
+		engine.setBacteriumAlive(0, 0);
+		engine.setBacteriumDead(39, 29);
+		engine.setNutrientLevelOfCell(5, 0);
+		assertStatisticsMatchGrid(engine, "after setting grid spaces");
+
+		for (int i=0; i<10; i++) {
+			engine.createUpdatedGrid();
+		}
+		assertStatisticsMatchGrid(engine, "after carrying on");
+	}
+}
@@ -0,0 +1,68 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TestingDifferentialTester {
+
+	// Tests the engine matches the reference rules, step by step, on random configs.
+	@Test
+	public void testEngineMatchesReferenceRules() throws IOException {
+		Random random = new Random(2018);
+		for (int c=0; c<50; c++) {
+			SimulationConfig config = DifferentialTester.createRandomConfig(random);
+			DifferentialTester.Divergence divergence = DifferentialTester.compare(config, random.nextLong(), 100, 1e-9, 1);
+			assertNull(String.valueOf(divergence), divergence);
+		}
+	}
+
+	// Tests the engine matches the reference rules when it updates the grid in bands on several threads.
+	@Test
+	public void testEngineOnThreadsMatchesReferenceRules() throws IOException {
+		String[] boundaries = {"reflecting", "absorbent", "periodic"};
+		for (String boundary : boundaries) {
+			SimulationConfig config = new SimulationConfig.Builder()
+					.setGridWidth(50)
+					.setGridHeight(52)
+					.setBoundaryCondition(boundary)
+					.setNutrientLevelPatternChoice("random")
+					.setThresholdForCellDivision(1000)
+					.setNumberOfTimestepsForCellDivision(2)
+					.build();
+			DifferentialTester.Divergence divergence = DifferentialTester.compare(config, 11, 80, 1e-9, 3);
+			assertNull(String.valueOf(divergence), divergence);
+		}
+	}
+
+	// Tests the first grid space where the engine and the rules differ is reported, for states and nutrient.
+	@Test
+	public void testFirstDivergenceIsReported() throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder().setGridWidth(20).setGridHeight(20).build();
+		CellularAutomataBacteriaRules rules = new CellularAutomataBacteriaRules(config, 3);
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 3);
+		for (int step=0; step<3; step++) {
+			rules.createUpdatedGrid(false);
+			engine.createUpdatedGrid();
+		}
+		assertNull(DifferentialTester.findDivergence(rules, engine, 1e-9));
+
+		engine.setNutrientLevelOfCell(engine.returnPositionInNutrientMatrix(4, 7), 50);
+		engine.setBacteriumAlive(2, 9);
+		DifferentialTester.Divergence divergence = DifferentialTester.findDivergence(rules, engine, 1e-9);
+		assertEquals(3, divergence.getStepNumber());
+		assertEquals(4, divergence.getX());
+		assertEquals(7, divergence.getY());
+		assertEquals("nutrient level", divergence.getQuantity());
+		assertEquals(3, divergence.getSeed());
+
+		engine.setNutrientLevelOfCell(engine.returnPositionInNutrientMatrix(4, 7), rules.getNutrientLevelOfCell(rules.returnPositionInNutrientMatrix(4, 7)));
+		divergence = DifferentialTester.findDivergence(rules, engine, 1e-9);
+		assertEquals(2, divergence.getX());
+		assertEquals(9, divergence.getY());
+		assertEquals("bacterium state", divergence.getQuantity());
+		assertTrue(divergence.toString().contains("empty in the reference rules but alive in the engine"));
+	}
+}
@@ -0,0 +1,90 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestingFlightRecorderEvents {
+
+	// Returns the events of the type given in a recording.
+	private static List<RecordedEvent> returnEvents(Path recordingFile, String eventName) throws IOException {
+		List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+			if (event.getEventType().getName().equals(eventName)) events.add(event);
+		}
+		return events;
+	}
+
+	// Tests an event is recorded for each step, holding the step's births, deaths and phase times, and
+	// for writing and reading a checkpoint.
+	@Test
+	public void testStepAndCheckpointEventsAreRecorded() throws IOException {
+		Assume.assumeTrue("The flight recorder events aren't available", FlightRecorderEvents.isAvailable());
+
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(40)
+				.setGridHeight(40)
+				.setProbabilityOfCellDivision(1)
+				.setNumberOfTimestepsForCellDivision(4)
+				.build();
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 2);
+		File checkpoint = File.createTempFile("events", ".ckpt");
+		Path recordingFile = Files.createTempFile("events", ".jfr");
+
+		int births = 0;
+		try (Recording recording = new Recording()) {
+			recording.enable("dg.bacterialcolonygrowth.Step");
+			recording.enable("dg.bacterialcolonygrowth.InputOutput");
+			recording.start();
+
+			for (int i=0; i<20; i++) {
+				engine.createUpdatedGrid();
+				births += engine.getBirthsInLastUpdate();
+			}
+			SimulationCheckpoint.write(engine, checkpoint);
+			SimulationCheckpoint.read(checkpoint);
+
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+
+		List<RecordedEvent> steps = returnEvents(recordingFile, "dg.bacterialcolonygrowth.Step");
+		assertEquals(20, steps.size());
+		int recordedBirths = 0;
+		int cellDivisionSteps = 0;
+		for (int i=0; i<steps.size(); i++) {
+			RecordedEvent step = steps.get(i);
+			assertEquals(i + 1, step.getLong("stepNumber"));
+			assertEquals(40, step.getInt("gridWidth"));
+			assertEquals(1, step.getInt("numberOfBands"));
+			assertTrue(step.getLong("diffusionTime") > 0);
+			assertTrue(step.getLong("diffusionTime") + step.getLong("consumptionAndCellDivisionTime") <= step.getDuration().toNanos());
+			recordedBirths += step.getInt("births");
+			if (step.getBoolean("cellDivisionStep")) cellDivisionSteps++;
+		}
+		assertTrue(births > 0);
+		assertEquals(births, recordedBirths);
+		assertEquals(5, cellDivisionSteps);
+
+		List<RecordedEvent> inputOutput = returnEvents(recordingFile, "dg.bacterialcolonygrowth.InputOutput");
+		assertEquals(2, inputOutput.size());
+		assertEquals("checkpoint write", inputOutput.get(0).getString("operation"));
+		assertEquals("checkpoint read", inputOutput.get(1).getString("operation"));
+		assertEquals(checkpoint.length(), inputOutput.get(0).getLong("bytes"));
+		assertEquals(checkpoint.getPath(), inputOutput.get(1).getString("path"));
+
+		checkpoint.delete();
+		Files.delete(recordingFile);
+	}
+}
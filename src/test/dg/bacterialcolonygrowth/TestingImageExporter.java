@@ -0,0 +1,48 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+public class TestingImageExporter {
+	
+	// Creates a 2 x 2 snapshot with one empty, one alive and one dead bacterium grid space.
+	private SimulationSnapshot createSnapshot() {
+		double[] nutrientLevels = new double[] {0, 50, 100, 150};
+		byte[] bacteriaStates = new byte[] {BacterialColonyEngine.EMPTY, BacterialColonyEngine.ALIVE,
+				BacterialColonyEngine.REMAINS, BacterialColonyEngine.EMPTY};
+		
+		return new SimulationSnapshot(2, 2, 0, nutrientLevels, bacteriaStates);
+	}
+	
+	// Test the bacteria pattern is black where there are alive or dead bacteria, and is scaled correctly.
+	@Test
+	public void testBacteriaPatternImage() {
+		BufferedImage image = ImageExporter.createBacteriaPatternImage(createSnapshot(), 3);
+		
+		assertEquals(6, image.getWidth());
+		assertEquals(6, image.getHeight());
+		
+		// Check every pixel of each grid space has the correct colour.
+		for (int p=0; p<3; p++) {
+			for (int q=0; q<3; q++) {
+				assertEquals(0xFFFFFF, image.getRGB(p, q) & 0xFFFFFF);
+				assertEquals(0x000000, image.getRGB(3 + p, q) & 0xFFFFFF);
+				assertEquals(0x000000, image.getRGB(p, 3 + q) & 0xFFFFFF);
+				assertEquals(0xFFFFFF, image.getRGB(3 + p, 3 + q) & 0xFFFFFF);
+			}
+		}
+	}
+	
+	// Test the nutrient levels are coloured from white to red, with levels above 100 shown as red.
+	@Test
+	public void testNutrientHeatmapImage() {
+		BufferedImage image = ImageExporter.createNutrientHeatmapImage(createSnapshot(), 1);
+		
+		assertEquals(0xFFFFFF, image.getRGB(0, 0) & 0xFFFFFF);
+		assertEquals(0xFF8080, image.getRGB(1, 0) & 0xFFFFFF);
+		assertEquals(0xFF0000, image.getRGB(0, 1) & 0xFFFFFF);
+		assertEquals(0xFF0000, image.getRGB(1, 1) & 0xFFFFFF);
+	}
+}
@@ -0,0 +1,115 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+public class TestingLayoutImageReader {
+
+	private File bacteriaImage;
+	private File nutrientImage;
+
+	@Before
+	public void createFiles() throws IOException {
+		bacteriaImage = File.createTempFile("bacteria", ".pgm");
+		nutrientImage = File.createTempFile("nutrient", ".png");
+	}
+
+	@After
+	public void deleteFiles() {
+		bacteriaImage.delete();
+		nutrientImage.delete();
+	}
+
+	// Tests PNG images of each colour type are read with the same grey values as ImageIO reads them.
+	@Test
+	public void testPngImagesAreReadRowByRow() throws IOException {
+		int[] imageTypes = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_BYTE_BINARY,
+				BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB};
+		Random random = new Random(4);
+
+		for (int imageType : imageTypes) {
+			BufferedImage image = new BufferedImage(37, 21, imageType);
+			for (int y=0; y<image.getHeight(); y++) {
+				for (int x=0; x<image.getWidth(); x++) {
+					// Smooth areas with some noise, so the writer uses a mix of row filters.
+					int grey = x < 18 ? 8*y : random.nextInt(256);
+					image.setRGB(x, y, 0xFF000000 | (grey << 16) | (grey << 8) | grey);
+				}
+			}
+			ImageIO.write(image, "png", nutrientImage);
+
+			try (LayoutImageReader reader = LayoutImageReader.open(nutrientImage)) {
+				assertEquals(37, reader.getWidth());
+				assertEquals(21, reader.getHeight());
+
+				int[] row = new int[reader.getWidth()];
+				for (int y=0; y<reader.getHeight(); y++) {
+					reader.readRow(row);
+					for (int x=0; x<reader.getWidth(); x++) {
+						// Grey images are compared with their samples, and other images with their colours.
+						boolean grey = imageType == BufferedImage.TYPE_BYTE_GRAY || imageType == BufferedImage.TYPE_USHORT_GRAY;
+						int expected = grey ? image.getRaster().getSample(x, y, 0) : image.getRGB(x, y) & 0xFF;
+						int actual = grey ? row[x] : row[x]*255 / reader.getMaximumValue();
+						assertEquals("Image type " + imageType + " at " + x + "," + y, expected, actual, grey ? 0 : 1);
+					}
+				}
+			}
+		}
+	}
+
+	// Tests an engine is started from images of its bacteria and nutrient levels.
+	@Test
+	public void testEngineStartsFromImages() throws IOException {
+		int width = 6;
+		int height = 4;
+		byte[] pixels = new byte[width*height];
+		pixels[0] = 0;					// Alive.
+		pixels[1] = (byte) 128;			// Remains.
+		for (int i=2; i<pixels.length; i++) {
+			pixels[i] = (byte) 255;		// Empty.
+		}
+		try (OutputStream output = new FileOutputStream(bacteriaImage)) {
+			output.write(("P5\n# Initial bacteria\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+			output.write(pixels);
+		}
+
+		BufferedImage nutrient = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		nutrient.getRaster().setSample(5, 3, 0, 51);
+		ImageIO.write(nutrient, "png", nutrientImage);
+
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(width)
+				.setGridHeight(height)
+				.setInitialBacteriaImage(bacteriaImage.getPath())
+				.setInitialNutrientImage(nutrientImage.getPath())
+				.build();
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 1);
+
+		assertEquals(BacterialColonyEngine.ALIVE, engine.getBacteriumState(0, 0));
+		assertEquals(BacterialColonyEngine.REMAINS, engine.getBacteriumState(1, 0));
+		assertEquals(1, engine.countGridSpacesInState(BacterialColonyEngine.ALIVE));
+		assertEquals(1, engine.countGridSpacesInState(BacterialColonyEngine.REMAINS));
+		assertEquals(20.0, engine.getNutrientLevelOfCell(5 + 3*width), 1e-9);
+		assertEquals(20.0, engine.getTotalNutrient(), 1e-9);
+	}
+
+	// Tests an image that isn't the size of the grid is rejected.
+	@Test(expected = IllegalArgumentException.class)
+	public void testImageOfWrongSizeIsRejected() throws IOException {
+		ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY), "png", nutrientImage);
+
+		new BacterialColonyEngine(new SimulationConfig.Builder().setInitialNutrientImage(nutrientImage.getPath()).build(), 1);
+	}
+}
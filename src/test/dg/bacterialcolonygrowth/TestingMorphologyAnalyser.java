@@ -0,0 +1,126 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestingMorphologyAnalyser {
+
+	// A region of the grid.
+	private interface Shape {
+		boolean contains(int x, int y);
+	}
+
+	// Returns the states of a grid in which the grid spaces inside the shape hold remains.
+	private static byte[] createStates(int width, int height, Shape shape) {
+		byte[] states = new byte[width*height];
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				if (shape.contains(x, y)) states[x + y*width] = BacterialColonyEngine.REMAINS;
+			}
+		}
+		return states;
+	}
+
+	// Tests the box counts, worked out on several threads, match boxes counted one grid space at a time,
+	// for a grid whose sides aren't multiples of the box sizes or of 64.
+	@Test
+	public void testBoxCountsMatchDirectCount() throws InterruptedException {
+		final int width = 203;
+		final int height = 97;
+		final Random random = new Random(4);
+		byte[] states = createStates(width, height, new Shape() {
+			@Override
+			public boolean contains(int x, int y) {
+				return random.nextDouble() < 0.01;
+			}
+		});
+
+		try (MorphologyAnalyser analyser = new MorphologyAnalyser(3)) {
+			ColonyMorphology morphology = analyser.analyse(0, states, width, height);
+			int[] boxSizes = morphology.getBoxSizes();
+			long[] boxCounts = morphology.getBoxCounts();
+			assertEquals(256, boxSizes[boxSizes.length - 1]);
+
+			for (int i=0; i<boxSizes.length; i++) {
+				int size = boxSizes[i];
+				long expected = 0;
+				for (int boxY=0; boxY<height; boxY+=size) {
+					for (int boxX=0; boxX<width; boxX+=size) {
+						boolean set = false;
+						for (int y=boxY; y<Math.min(height, boxY + size) && !set; y++) {
+							for (int x=boxX; x<Math.min(width, boxX + size) && !set; x++) {
+								set = states[x + y*width] != BacterialColonyEngine.EMPTY;
+							}
+						}
+						if (set) expected++;
+					}
+				}
+				assertEquals("Box size " + size, expected, boxCounts[i]);
+			}
+		}
+	}
+
+	// Tests a filled disc has a fractal dimension close to 2 and a density of 1, and a straight line has a
+	// fractal dimension close to 1.
+	@Test
+	public void testFractalDimensionOfSimpleShapes() throws InterruptedException {
+		try (MorphologyAnalyser analyser = new MorphologyAnalyser(2)) {
+			ColonyMorphology disc = analyser.analyse(0, createStates(300, 300, new Shape() {
+				@Override
+				public boolean contains(int x, int y) {
+					return (x - 150)*(x - 150) + (y - 150)*(y - 150) <= 120*120;
+				}
+			}), 300, 300);
+			assertEquals(2, disc.getFractalDimension(), 0.1);
+			assertEquals(120, disc.getColonyRadius(), 0);
+			for (int ring=0; ring<100; ring++) {
+				assertEquals(1, disc.getRadialDensity()[ring], 0);
+			}
+			assertEquals(1, disc.getBranchCount());
+
+			ColonyMorphology line = analyser.analyse(0, createStates(300, 300, new Shape() {
+				@Override
+				public boolean contains(int x, int y) {
+					return y == 150 && x >= 150;
+				}
+			}), 300, 300);
+			assertEquals(1, line.getFractalDimension(), 0.1);
+			assertEquals(1, line.getBranchCount());
+		}
+	}
+
+	// Tests the branches of a star are counted at each radius beyond its centre.
+	@Test
+	public void testBranchesOfStar() throws InterruptedException {
+		final int numberOfArms = 6;
+		byte[] states = createStates(201, 201, new Shape() {
+			@Override
+			public boolean contains(int x, int y) {
+				double dx = x - 100;
+				double dy = y - 100;
+				double r = Math.sqrt(dx*dx + dy*dy);
+				if (r > 90) return false;
+				for (int arm=0; arm<numberOfArms; arm++) {
+					double angle = 2 * Math.PI * arm / numberOfArms;
+					// Distance from the line of the arm, for points in front of the centre.
+					double along = dx*Math.cos(angle) + dy*Math.sin(angle);
+					double across = -dx*Math.sin(angle) + dy*Math.cos(angle);
+					if (along >= 0 && Math.abs(across) <= 1.5) return true;
+				}
+				return false;
+			}
+		});
+
+		try (MorphologyAnalyser analyser = new MorphologyAnalyser(4)) {
+			ColonyMorphology star = analyser.analyse(7, states, 201, 201);
+			assertEquals(7, star.getStepNumber());
+			assertEquals(numberOfArms, star.getBranchCount());
+			for (int radius=20; radius<=85; radius++) {
+				assertEquals("Radius " + radius, numberOfArms, star.getRadialBranchCounts()[radius]);
+			}
+			assertTrue(star.createJsonLine().startsWith("{\"step\":7,\"fractal_dimension\":"));
+		}
+	}
+}
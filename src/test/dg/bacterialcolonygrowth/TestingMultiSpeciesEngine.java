@@ -0,0 +1,140 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class TestingMultiSpeciesEngine {
+
+	// Tests a single species and nutrient grows exactly the same colony as BacterialColonyEngine, for each
+	// boundary condition.
+	@Test
+	public void testSingleSpeciesMatchesEngine() throws IOException {
+		String[] boundaries = {"reflecting", "absorbent", "periodic"};
+		String[] patterns = {"random", "absorbingmiddle", "default"};
+		for (int c=0; c<boundaries.length; c++) {
+			SimulationConfig config = new SimulationConfig.Builder()
+					.setGridWidth(70)
+					.setGridHeight(45)
+					.setBoundaryCondition(boundaries[c])
+					.setNutrientLevelPatternChoice(patterns[c])
+					.setThresholdForCellDivision(1000)
+					.setNumberOfTimestepsForCellDivision(2)
+					.build();
+			BacterialColonyEngine engine = new BacterialColonyEngine(config, 8);
+			MultiSpeciesEngine multiSpeciesEngine = new MultiSpeciesEngine(MultiSpeciesConfig.create(config), 8);
+
+			for (int step=0; step<150; step++) {
+				engine.createUpdatedGrid();
+				multiSpeciesEngine.createUpdatedGrid();
+				assertArrayEquals(boundaries[c] + " step " + step, engine.getBacteriaStates(), multiSpeciesEngine.getBacteriaStates());
+				assertArrayEquals(engine.getNutrientLevels(), multiSpeciesEngine.getNutrientLevels(0), 0);
+			}
+			assertTrue(boundaries[c], engine.getNumberOfAliveBacteria() + engine.getNumberOfRemains() > 1);
+			assertEquals(engine.getNumberOfAliveBacteria(), multiSpeciesEngine.getNumberOfAliveBacteria(0));
+		}
+	}
+
+	// Tests each species only eats the nutrient it is given. Species 1 never divides, so with reflecting
+	// boundaries its nutrient only goes down by what its single bacterium eats, while species 2 grows on
+	// the second nutrient.
+	@Test
+	public void testSpeciesOnlyEatTheirOwnNutrient() {
+		SimulationConfig baseConfig = new SimulationConfig.Builder()
+				.setGridWidth(60)
+				.setGridHeight(60)
+				.setNutrientForSustenance(2)
+				.setProbabilityOfCellDivision(0)
+				.build();
+		MultiSpeciesConfig config = new MultiSpeciesConfig.Builder(baseConfig)
+				.setDiffusionRate(1, 0.3)
+				.setNutrientEaten(1, 1)
+				.setProbabilityOfCellDivision(1, 1)
+				.setInitialPosition(1, 10, 12)
+				.build();
+		MultiSpeciesEngine engine = new MultiSpeciesEngine(config, 4);
+		double initialTotal = engine.getTotalNutrient(0);
+
+		int numberOfSteps = 60;
+		for (int step=0; step<numberOfSteps; step++) {
+			engine.createUpdatedGrid();
+		}
+
+		assertEquals(1, engine.getNumberOfAliveBacteria(0));
+		assertEquals(0, engine.getSpeciesOfBacterium(30, 30));
+		assertEquals(initialTotal - 2*numberOfSteps, engine.getTotalNutrient(0), 1e-6);
+		assertTrue(engine.getNumberOfAliveBacteria(1) > 1);
+		assertTrue(engine.getTotalNutrient(1) < initialTotal - 2*numberOfSteps);
+		assertEquals(1, engine.getSpeciesOfBacterium(10, 12));
+		assertEquals(-1, engine.getSpeciesOfBacterium(59, 59));
+	}
+
+	// Tests species 0 draws the same random numbers as BacterialColonyEngine, and that the other species
+	// don't draw the same numbers as a species of a run with a nearby seed, as replicates of a batch are
+	// given consecutive seeds.
+	@Test
+	public void testSpeciesRandomNumbersAreIndependentAcrossSeeds() {
+		long seed = 12;
+		for (int position=0; position<1000; position++) {
+			assertEquals(new CounterBasedRandom(seed).nextDouble(3, position),
+					CounterBasedRandom.createStream(seed, 0).nextDouble(3, position), 0);
+		}
+
+		for (int species=1; species<4; species++) {
+			for (int otherSpecies=0; otherSpecies<4; otherSpecies++) {
+				for (long otherSeed=seed-4; otherSeed<=seed+4; otherSeed++) {
+					if (otherSeed == seed && otherSpecies == species) continue;
+
+					CounterBasedRandom random = CounterBasedRandom.createStream(seed, species);
+					CounterBasedRandom otherRandom = CounterBasedRandom.createStream(otherSeed, otherSpecies);
+					int numberTheSame = 0;
+					for (int position=0; position<1000; position++) {
+						if (random.nextDouble(3, position) == otherRandom.nextDouble(3, position)) numberTheSame++;
+					}
+					assertEquals("species " + species + " and species " + otherSpecies + " of seed " + otherSeed, 0, numberTheSame);
+				}
+			}
+		}
+	}
+
+	// Tests the species and nutrients are read from the numbered lines of an input file, starting with the
+	// parameters of the other lines, and a species without an initial position is rejected.
+	@Test
+	public void testReadMultiSpeciesConfig() throws IOException {
+		File inputFile = File.createTempFile("species", ".txt");
+		FileWriter writer = new FileWriter(inputFile);
+		writer.write("grid width: 40\ngrid height: 40\nnutrient for growth: 20\n"
+				+ "species 2 nutrient: 2\nspecies 2 nutrient for sustenance: 7\n"
+				+ "species 2 crowding function: 0, 1, 2, 3, 4, 5, 6, 7, 8\n"
+				+ "species 2 initial position: 5, 30\nnutrient 2 rate of diffusion: 0.25\n");
+		writer.close();
+
+		MultiSpeciesConfig config = new InputFileReader(inputFile).readMultiSpeciesConfig();
+		assertEquals(2, config.getNumberOfSpecies());
+		assertEquals(2, config.getNumberOfNutrients());
+		assertEquals(0.25, config.getDiffusionRate(1), 0);
+		assertEquals(1, config.getNutrientEaten(1));
+		assertEquals(7, config.getNutrientForSustenance(1));
+		assertEquals(20, config.getNutrientForGrowth(1));
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6, 7, 8}, config.getCrowdingFunctionValues(1));
+		assertEquals(5, config.getInitialX(1));
+		assertEquals(30, config.getInitialY(1));
+		assertEquals(20, config.getInitialX(0));
+		assertEquals(40, config.getBaseConfig().getGridWidth());
+
+		writer = new FileWriter(inputFile);
+		writer.write("species 3 nutrient for growth: 20\nspecies 3 initial position: 1, 1\n");
+		writer.close();
+		try {
+			new InputFileReader(inputFile).readMultiSpeciesConfig();
+			fail("Species 2 has no initial position.");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("Species 2 needs an initial position.", e.getMessage());
+		}
+		inputFile.delete();
+	}
+}
@@ -0,0 +1,180 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestingNeighbourhood {
+
+	private static final String[] TYPES = {Neighbourhood.MOORE, Neighbourhood.VON_NEUMANN, Neighbourhood.HEXAGONAL};
+	private static final String[] BOUNDARIES = {"reflecting", "absorbent", "periodic"};
+
+	// Tests each neighbourhood has the expected number of neighbours, and that on the hexagonal lattice every
+	// grid space is a neighbour of each of its neighbours.
+	@Test
+	public void testNumberOfNeighbours() {
+		int[][] expected = {{8, 24, 48}, {4, 12, 24}, {6, 18, 36}};
+		for (int t=0; t<TYPES.length; t++) {
+			for (int radius=1; radius<=3; radius++) {
+				assertEquals(TYPES[t] + " " + radius, expected[t][radius - 1], new Neighbourhood(TYPES[t], radius).getNumberOfNeighbours());
+			}
+		}
+		assertEquals(4, new Neighbourhood(Neighbourhood.MOORE, 1).getNumberOfCountBits());
+		assertEquals(7, new Neighbourhood(Neighbourhood.MOORE, 4).getNumberOfCountBits());
+
+		Neighbourhood hexagonal = new Neighbourhood(Neighbourhood.HEXAGONAL, 2);
+		for (int y=0; y<2; y++) {
+			int[] xOffsets = hexagonal.returnXOffsets(y);
+			int[] yOffsets = hexagonal.returnYOffsets(y);
+			for (int n=0; n<xOffsets.length; n++) {
+				int[] backX = hexagonal.returnXOffsets(y + yOffsets[n]);
+				int[] backY = hexagonal.returnYOffsets(y + yOffsets[n]);
+				boolean found = false;
+				for (int m=0; m<backX.length; m++) {
+					if (backX[m] == -xOffsets[n] && backY[m] == -yOffsets[n]) found = true;
+				}
+				assertTrue(found);
+			}
+		}
+	}
+
+	// Tests the neighbour counts of a whole word at once match the engine's count of each empty grid space,
+	// for each type of neighbourhood and boundary condition, including grids smaller than the neighbourhood.
+	@Test
+	public void testNeighbourCountsMatchEngine() throws IOException {
+		int[][] sizes = {{1, 2}, {3, 4}, {13, 10}, {64, 34}, {70, 36}, {130, 66}};
+		Random random = new Random(3);
+
+		for (String type : TYPES) {
+			for (int radius=1; radius<=3; radius++) {
+				Neighbourhood neighbourhood = new Neighbourhood(type, radius);
+				long[] counts = new long[neighbourhood.getNumberOfCountBits()];
+
+				for (String boundary : BOUNDARIES) {
+					for (int[] size : sizes) {
+						int width = size[0];
+						int height = size[1];
+						BacterialColonyEngine engine = new BacterialColonyEngine(new SimulationConfig.Builder()
+								.setGridWidth(width).setGridHeight(height).setBoundaryCondition(boundary).build(), 1);
+						engine.setCrowdingNeighbourhood(neighbourhood);
+						byte[] states = engine.getBacteriaStates();
+						for (int i=0; i<states.length; i++) {
+							states[i] = random.nextInt(3) == 0 ? BacterialColonyEngine.ALIVE : BacterialColonyEngine.EMPTY;
+						}
+						BacteriaStatePlanes planes = BacteriaStatePlanes.create(states, width, height);
+
+						for (int y=0; y<height; y++) {
+							for (int k=0; k<planes.getWordsPerRow(); k++) {
+								planes.countAliveNeighbours(y, k, boundary.equals("periodic"), neighbourhood, counts);
+								for (int x=64*k; x<Math.min(width, 64*k + 64); x++) {
+									if (states[x + y*width] == BacterialColonyEngine.ALIVE) continue;
+									assertEquals(neighbourhood + " " + boundary + " " + width + "x" + height + " at " + x + "," + y,
+											engine.returnNumberOfAliveNeighbours(x, y), BacteriaStatePlanes.returnCount(counts, x & 63));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Tests diffusion with each neighbourhood gives the same levels as sharing out each grid space's nutrient
+	// to its neighbours one at a time, and that the nutrient lost is what leaves the grid.
+	@Test
+	public void testDiffusionSharesNutrientWithNeighbours() {
+		int width = 23;
+		int height = 14;
+		double delta = 0.6;
+		Random random = new Random(9);
+		double[] current = new double[width*height];
+		for (int i=0; i<current.length; i++) {
+			current[i] = random.nextInt(101);
+		}
+
+		for (String type : TYPES) {
+			for (int radius=1; radius<=3; radius++) {
+				Neighbourhood neighbourhood = new Neighbourhood(type, radius);
+				double share = delta/neighbourhood.getNumberOfNeighbours();
+
+				for (String boundary : BOUNDARIES) {
+					double[] expected = new double[current.length];
+					double expectedLost = 0;
+					for (int y=0; y<height; y++) {
+						for (int x=0; x<width; x++) {
+							double nutrient = current[x + y*width];
+							expected[x + y*width] += (1 - delta)*nutrient;
+							for (int n=0; n<neighbourhood.getNumberOfNeighbours(); n++) {
+								int neighbourX = x + neighbourhood.returnXOffsets(y)[n];
+								int neighbourY = y + neighbourhood.returnYOffsets(y)[n];
+								boolean outside = neighbourX < 0 || neighbourX >= width || neighbourY < 0 || neighbourY >= height;
+								if (outside && boundary.equals("periodic")) {
+									neighbourX = Math.floorMod(neighbourX, width);
+									neighbourY = Math.floorMod(neighbourY, height);
+								}
+								else if (outside && boundary.equals("reflecting")) {
+									neighbourX = x;
+									neighbourY = y;
+								}
+								else if (outside) {
+									expectedLost += share*nutrient;
+									continue;
+								}
+								expected[neighbourX + neighbourY*width] += share*nutrient;
+							}
+						}
+					}
+
+					double[] updated = new double[current.length];
+					NutrientDiffusion diffusion = new NutrientDiffusion(width, height, delta, boundary, neighbourhood);
+					double lost = diffusion.update(current, updated);
+					for (int i=0; i<expected.length; i++) {
+						assertEquals(neighbourhood + " " + boundary + " at " + i, expected[i], updated[i], 1e-9);
+					}
+					assertEquals(neighbourhood + " " + boundary, expectedLost, lost, 1e-9);
+				}
+			}
+		}
+	}
+
+	// Tests the neighbourhoods are read from an input file, the crowding function must have a value for each
+	// possible number of neighbours, and a hexagonal lattice can only wrap around an even number of rows.
+	@Test
+	public void testNeighbourhoodsAreReadAndChecked() throws IOException {
+		File inputFile = File.createTempFile("neighbourhood", ".txt");
+		FileWriter writer = new FileWriter(inputFile);
+		writer.write("crowding neighbourhood: hexagonal\ncrowding function: 0, 40, 40, 30, 20, 10, 0\n"
+				+ "diffusion neighbourhood: moore\ndiffusion neighbourhood radius: 2\n");
+		writer.close();
+
+		SimulationConfig config = new InputFileReader(inputFile).readConfig();
+		inputFile.delete();
+		assertEquals(new Neighbourhood(Neighbourhood.HEXAGONAL, 1), config.createCrowdingNeighbourhood());
+		assertEquals(new Neighbourhood(Neighbourhood.MOORE, 2), config.createDiffusionNeighbourhood());
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 1);
+		assertEquals(config, engine.createConfig());
+		for (int step=0; step<50; step++) {
+			engine.createUpdatedGrid();
+		}
+		assertTrue(engine.getNumberOfAliveBacteria() > 1);
+
+		try {
+			config.toBuilder().setCrowdingNeighbourhood(Neighbourhood.VON_NEUMANN).build();
+			fail("A crowding function with a value for 6 neighbours should be rejected for 4.");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("There should be 5 values for the crowding function.", e.getMessage());
+		}
+		try {
+			config.toBuilder().setBoundaryCondition("periodic").setGridHeight(81).build();
+			fail("A hexagonal lattice with periodic boundaries and an odd number of rows should be rejected.");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("even"));
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class TestingNpyExporter {
+
+	private File arrayFile;
+
+	@Before
+	public void createArrayFile() throws IOException {
+		arrayFile = File.createTempFile("array", ".npy");
+	}
+
+	@After
+	public void deleteArrayFile() {
+		arrayFile.delete();
+	}
+
+	// Creates a 3 x 2 snapshot.
+	private SimulationSnapshot createSnapshot() {
+		double[] nutrientLevels = new double[] {0, 12.5, 100, -1, 50, 99.75};
+		byte[] bacteriaStates = new byte[] {BacterialColonyEngine.EMPTY, BacterialColonyEngine.ALIVE, BacterialColonyEngine.REMAINS,
+				BacterialColonyEngine.ALIVE, BacterialColonyEngine.EMPTY, BacterialColonyEngine.EMPTY};
+
+		return new SimulationSnapshot(3, 2, 7, nutrientLevels, bacteriaStates);
+	}
+
+	// Reads the header of the array file and returns the file positioned at the start of the array.
+	private ByteBuffer readFile(String expectedHeader) throws IOException {
+		ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(arrayFile.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+
+		assertEquals((byte) 0x93, contents.get());
+		byte[] magic = new byte[5];
+		contents.get(magic);
+		assertEquals("NUMPY", new String(magic, StandardCharsets.US_ASCII));
+		assertEquals(1, contents.get());
+		assertEquals(0, contents.get());
+
+		int headerLength = contents.getShort() & 0xFFFF;
+		byte[] header = new byte[headerLength];
+		contents.get(header);
+		assertEquals(0, contents.position() % 64);
+		assertEquals(expectedHeader, new String(header, StandardCharsets.US_ASCII).trim());
+
+		return contents;
+	}
+
+	// Tests the nutrient levels are saved as a float64 array with one row for each row of the grid.
+	@Test
+	public void testNutrientLevelsAreSavedAsFloat64() throws IOException {
+		SimulationSnapshot snapshot = createSnapshot();
+		NpyExporter.writeNutrientLevels(snapshot, arrayFile);
+
+		ByteBuffer contents = readFile("{'descr': '<f8', 'fortran_order': False, 'shape': (2, 3), }");
+		assertEquals(8*6, contents.remaining());
+		for (double nutrientLevel : snapshot.getNutrientLevels()) {
+			assertEquals(nutrientLevel, contents.getDouble(), 0);
+		}
+	}
+
+	// Tests the bacteria states of an engine are saved as a uint8 array, replacing an existing file.
+	@Test
+	public void testBacteriaStatesAreSavedAsUint8() throws IOException {
+		NpyExporter.writeNutrientLevels(createSnapshot(), arrayFile);
+
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+		engine.setGridWidth(5);
+		engine.setGridHeight(4);
+		engine.setBacteriumAlive(1, 2);
+		engine.setBacteriumDead(4, 3);
+		NpyExporter.writeBacteriaStates(engine, arrayFile);
+
+		ByteBuffer contents = readFile("{'descr': '|u1', 'fortran_order': False, 'shape': (4, 5), }");
+		assertEquals(20, contents.remaining());
+		for (int y=0; y<4; y++) {
+			for (int x=0; x<5; x++) {
+				assertEquals(engine.getBacteriumState(x, y), contents.get());
+			}
+		}
+	}
+}
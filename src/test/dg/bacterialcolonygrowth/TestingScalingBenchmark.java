@@ -0,0 +1,57 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestingScalingBenchmark {
+
+	// Tests the numbers of threads always start from 1 and are in order without repeats.
+	@Test
+	public void testThreadCounts() {
+		assertArrayEquals(new int[] {1, 2, 4, 6}, ScalingBenchmark.returnDefaultThreadCounts(6));
+		assertArrayEquals(new int[] {1}, ScalingBenchmark.returnDefaultThreadCounts(1));
+		assertArrayEquals(new int[] {1, 3, 8}, ScalingBenchmark.returnThreadCounts("8, 3,3"));
+	}
+
+	// Tests the speedup and efficiency of strong and weak scaling, and that both appear in the reports.
+	@Test
+	public void testSpeedupAndReports() {
+		List<ScalingBenchmark.Measurement> measurements = new ArrayList<ScalingBenchmark.Measurement>();
+		ScalingBenchmark.Measurement strongOneThread = new ScalingBenchmark.Measurement(ScalingBenchmark.Scaling.STRONG,
+				100, 100, 1, 1, 4e6, 250000);
+		ScalingBenchmark.Measurement strongFourThreads = new ScalingBenchmark.Measurement(ScalingBenchmark.Scaling.STRONG,
+				100, 100, 4, 4, 2e6, 250000);
+		ScalingBenchmark.Measurement weakOneThread = new ScalingBenchmark.Measurement(ScalingBenchmark.Scaling.WEAK,
+				100, 100, 1, 1, 4e6, 250000);
+		ScalingBenchmark.Measurement weakFourThreads = new ScalingBenchmark.Measurement(ScalingBenchmark.Scaling.WEAK,
+				100, 400, 4, 4, 5e6, 1000000);
+		measurements.addAll(Arrays.asList(strongOneThread, strongFourThreads, weakOneThread, weakFourThreads));
+		strongOneThread.compareWithOneThread(strongOneThread);
+		strongFourThreads.compareWithOneThread(strongOneThread);
+		weakOneThread.compareWithOneThread(weakOneThread);
+		weakFourThreads.compareWithOneThread(weakOneThread);
+
+		// Half the time per step on a fixed grid, and four times the grid in 1.25 times the time.
+		assertEquals(2, strongFourThreads.getSpeedup(), 1e-12);
+		assertEquals(0.5, strongFourThreads.getEfficiency(), 1e-12);
+		assertEquals(3.2, weakFourThreads.getSpeedup(), 1e-12);
+		assertEquals(0.8, weakFourThreads.getEfficiency(), 1e-12);
+		assertEquals(0.2, weakFourThreads.getBandwidth(), 1e-12);
+
+		String markdown = ScalingBenchmark.createMarkdownReport(measurements, Arrays.asList("Cores: 4"));
+		assertTrue(markdown.contains("- Cores: 4\n"));
+		assertTrue(markdown.contains("## Strong scaling"));
+		assertTrue(markdown.contains("| 100 x 100 | 4 | 4 | 2.000 | 5.00e+06 | 2.00 | 50% | 0.13 |\n"));
+		assertTrue(markdown.contains("## Weak scaling"));
+		assertTrue(markdown.contains("| 100 x 400 | 4 | 4 | 5.000 | 8.00e+06 | 3.20 | 80% | 0.20 |\n"));
+
+		String[] csv = ScalingBenchmark.createCsvReport(measurements).split("\n");
+		assertEquals(ScalingBenchmark.CSV_HEADER, csv[0]);
+		assertEquals(5, csv.length);
+		assertEquals("weak,100,400,4,4,5.000000,8000000.0,3.2000,0.8000,0.2000", csv[4]);
+	}
+}
@@ -0,0 +1,81 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class TestingSimulationCheckpoint {
+
+	private File checkpointFile;
+
+	@Before
+	public void createCheckpointFile() throws IOException {
+		checkpointFile = File.createTempFile("checkpoint", ".ckpt");
+	}
+
+	@After
+	public void deleteCheckpointFile() {
+		checkpointFile.delete();
+	}
+
+	// Tests a simulation restored from a checkpoint carries on exactly as the original does.
+	@Test
+	public void testRestoredSimulationMatchesOriginal() throws IOException {
+		BacterialColonyEngine original = new BacterialColonyEngine();
+		original.setGridWidth(30);
+		original.setGridHeight(20);
+		original.setBoundaryCondition("periodic");
+		original.setNumberOfTimestepsForCellDivision(3);
+		original.setCrowdingFunctionValues(new int[] {0, 50, 50, 40, 30, 20, 10, 5, 0});
+		original.setProbabilityOfCellDivision(1);
+		original.setRandomSeed(11);
+		original.setBacteriumAlive(15, 10);
+
+		// Stop part way between cell divisions so the division counter matters.
+		for (int step=0; step<41; step++) {
+			original.createUpdatedGrid();
+		}
+		SimulationCheckpoint.write(original, checkpointFile);
+		assertTrue(SimulationCheckpoint.isCheckpoint(checkpointFile));
+
+		BacterialColonyEngine restored = SimulationCheckpoint.read(checkpointFile);
+		assertEquals(41, restored.getStepNumber());
+		assertEquals(11, restored.getRandomSeed());
+		assertEquals("periodic", restored.getBoundaryCondition());
+		assertArrayEquals(original.getCrowdingFunctionValues(), restored.getCrowdingFunctionValues());
+		assertEquals(original.getTimeStepForCellDivisionCounter(), restored.getTimeStepForCellDivisionCounter());
+
+		for (int step=0; step<40; step++) {
+			original.createUpdatedGrid();
+			restored.createUpdatedGrid();
+		}
+
+		assertTrue(original.countGridSpacesInState(BacterialColonyEngine.EMPTY) < 30*20 - 1);
+		assertArrayEquals(original.getBacteriaStates(), restored.getBacteriaStates());
+		assertArrayEquals(original.getNutrientLevels(), restored.getNutrientLevels(), 0);
+	}
+
+	// Tests files that aren't complete checkpoints are rejected.
+	@Test
+	public void testInvalidCheckpointsAreRejected() throws IOException {
+		assertFalse(SimulationCheckpoint.isCheckpoint(new File("inputParameters.txt")));
+
+		SimulationCheckpoint.write(new BacterialColonyEngine(), checkpointFile);
+		try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+
+		try {
+			SimulationCheckpoint.read(checkpointFile);
+			fail("An incomplete checkpoint should not be read.");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().contains("incomplete"));
+		}
+	}
+}
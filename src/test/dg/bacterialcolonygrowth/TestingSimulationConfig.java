@@ -0,0 +1,62 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestingSimulationConfig {
+
+	// Tests the input file is read into a config, with parameters not in the file left at their defaults.
+	@Test
+	public void testInputFileIsReadIntoConfig() throws IOException {
+		SimulationConfig config = new InputFileReader(new File("inputParameters.txt")).readConfig();
+
+		assertEquals(80, config.getGridHeight());
+		assertEquals(2600, config.getThresholdForCellDivision());
+		assertEquals("reflecting", config.getBoundaryCondition());
+		assertArrayEquals(new int[] {0, 40, 40, 40, 30, 20, 10, 0, 0}, config.getCrowdingFunctionValues());
+
+		SimulationConfig.Builder builder = new SimulationConfig.Builder();
+		assertTrue(InputFileReader.setParameterFromLine(builder, "grid width: 20"));
+		assertFalse(InputFileReader.setParameterFromLine(builder, "not a parameter"));
+		assertEquals(20, builder.build().getGridWidth());
+		assertEquals(80, builder.build().getGridHeight());
+	}
+
+	// Tests invalid values are rejected, both on their own and when they don't make sense together.
+	@Test
+	public void testInvalidValuesAreRejected() {
+		try {
+			new SimulationConfig.Builder().setDiffusionRate(1.5);
+			fail("A rate of diffusion above 1 should be rejected.");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("Rate of diffusion must be between 0 and 1.", e.getMessage());
+		}
+
+		try {
+			new SimulationConfig.Builder().setGridWidth(80).setGridHeight(40).build();
+			fail("A grid too short to place the initial bacterium should be rejected.");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("half the grid width"));
+		}
+	}
+
+	// Tests a config copied into a builder can be changed without changing the original.
+	@Test
+	public void testChangingCopyLeavesOriginalUnchanged() throws IOException {
+		SimulationConfig original = new SimulationConfig.Builder().setGridWidth(30).build();
+		SimulationConfig copy = original.toBuilder().setBoundaryCondition("periodic").build();
+
+		assertEquals("reflecting", original.getBoundaryCondition());
+		assertEquals("periodic", copy.getBoundaryCondition());
+		assertEquals(30, copy.getGridWidth());
+		assertEquals(original, original.toBuilder().build());
+
+		BacterialColonyEngine engine = new BacterialColonyEngine(copy, 1);
+		assertEquals(copy, engine.createConfig());
+	}
+}
@@ -0,0 +1,79 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestingSimulationMetrics {
+
+	// Tests every time is counted in a bucket whose upper bound is at most 12.5% above it.
+	@Test
+	public void testHistogramBuckets() {
+		long[] times = {0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE};
+		for (long time : times) {
+			long upperBound = SimulationMetrics.returnBucketUpperBound(SimulationMetrics.returnBucket(time));
+			assertTrue("Time " + time, upperBound >= time);
+			assertTrue("Time " + time, upperBound - time <= time / 8);
+		}
+	}
+
+	// Tests the percentiles of a phase are reported to within the width of a bucket.
+	@Test
+	public void testPercentiles() {
+		SimulationMetrics metrics = new SimulationMetrics();
+		for (long time=1; time<=1000; time++) {
+			metrics.recordPhase(SimulationMetrics.Phase.DIFFUSION, time * 1000);
+		}
+
+		long median = metrics.returnPercentile(SimulationMetrics.Phase.DIFFUSION, 0.5);
+		long p99 = metrics.returnPercentile(SimulationMetrics.Phase.DIFFUSION, 0.99);
+		assertTrue(median >= 500000 && median <= 500000 * 9 / 8);
+		assertTrue(p99 >= 990000 && p99 <= 1000000);
+		assertEquals(1000000, metrics.returnPercentile(SimulationMetrics.Phase.DIFFUSION, 1));
+		assertEquals(0, metrics.returnPercentile(SimulationMetrics.Phase.RENDERING, 0.5));
+
+		PhaseStatistics statistics = metrics.createPhaseStatistics(SimulationMetrics.Phase.DIFFUSION);
+		assertEquals(1000, statistics.getCount());
+		assertEquals(500.5, statistics.getMeanMicroseconds(), 1e-9);
+		assertEquals(1000, statistics.getMaximumMicroseconds(), 1e-9);
+	}
+
+	// Tests the births and deaths recorded by the engine match the change in the colony, and that
+	// collecting metrics doesn't change the simulation.
+	@Test
+	public void testEngineRecordsBirthsAndDeaths() throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(30)
+				.setGridHeight(30)
+				.setProbabilityOfCellDivision(1)
+				.setNumberOfTimestepsForCellDivision(1)
+				.setNutrientForSustenance(30)
+				.build();
+		BacterialColonyEngine engine = new BacterialColonyEngine(config, 11);
+		BacterialColonyEngine engineWithoutMetrics = new BacterialColonyEngine(config, 11);
+		SimulationMetrics metrics = new SimulationMetrics();
+		engine.setMetrics(metrics);
+
+		long totalBirths = 0;
+		long totalDeaths = 0;
+		for (int i=0; i<20; i++) {
+			int alive = engine.countGridSpacesInState(BacterialColonyEngine.ALIVE);
+			engine.createUpdatedGrid();
+			engineWithoutMetrics.createUpdatedGrid();
+
+			assertEquals(alive + metrics.getBirthsInLastStep() - metrics.getDeathsInLastStep(),
+					engine.countGridSpacesInState(BacterialColonyEngine.ALIVE));
+			totalBirths += metrics.getBirthsInLastStep();
+			totalDeaths += metrics.getDeathsInLastStep();
+		}
+
+		assertTrue(totalBirths > 0);
+		assertTrue(totalDeaths > 0);
+		assertEquals(20, metrics.getSteps());
+		assertEquals(totalBirths / 20.0, metrics.getMeanBirthsPerStep(), 1e-9);
+		assertEquals(20, metrics.createPhaseStatistics(SimulationMetrics.Phase.DIFFUSION).getCount());
+		assertEquals(20, metrics.createPhaseStatistics(SimulationMetrics.Phase.DIVISION).getCount());
+		assertArrayEquals(engineWithoutMetrics.getBacteriaStates(), engine.getBacteriaStates());
+	}
+}
@@ -0,0 +1,98 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestingSnapshotScheduler {
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("snapshots").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	// Creates a small engine whose colony grows quickly.
+	private BacterialColonyEngine createEngine() throws IOException {
+		SimulationConfig config = new SimulationConfig.Builder()
+				.setGridWidth(24)
+				.setGridHeight(24)
+				.setProbabilityOfCellDivision(1)
+				.setNumberOfTimestepsForCellDivision(1)
+				.build();
+		return new BacterialColonyEngine(config, 3);
+	}
+
+	// Tests each snapshot holds the state at the step it was captured, even though the simulation carried
+	// on while it was being saved.
+	@Test
+	public void testSnapshotsMatchStateWhenCaptured() throws IOException, InterruptedException {
+		BacterialColonyEngine engine = createEngine();
+		byte[][] statesAtStep = new byte[21][];
+
+		// Closed before the counts are checked, so every snapshot has been written.
+		SnapshotScheduler snapshots = new SnapshotScheduler(directory, SnapshotScheduler.OutputFormat.BOTH, 5, 0, 1,
+				SnapshotScheduler.BackpressurePolicy.WAIT);
+		try {
+			for (int i=0; i<20; i++) {
+				engine.createUpdatedGrid();
+				statesAtStep[(int) engine.getStepNumber()] = engine.getBacteriaStates().clone();
+				snapshots.captureIfDue(engine);
+			}
+		}
+		finally {
+			snapshots.close();
+		}
+
+		assertEquals(4, snapshots.getSnapshotsCaptured());
+		assertEquals(4, snapshots.getSnapshotsWritten());
+		assertEquals(0, snapshots.getSnapshotsDropped());
+
+		for (int step=5; step<=20; step+=5) {
+			BacterialColonyEngine restored = SimulationCheckpoint.read(new File(directory, String.format("snapshot-%08d.ckpt", step)));
+			assertEquals(step, restored.getStepNumber());
+			assertArrayEquals("Step " + step, statesAtStep[step], restored.getBacteriaStates());
+
+			byte[] npy = Files.readAllBytes(new File(directory, String.format("states-%08d.npy", step)).toPath());
+			assertArrayEquals("Step " + step, statesAtStep[step], Arrays.copyOfRange(npy, npy.length - 24*24, npy.length));
+		}
+	}
+
+	// Tests a simulation restored from a snapshot carries on exactly as the original did.
+	@Test
+	public void testRestoredSnapshotCarriesOn() throws IOException, InterruptedException {
+		BacterialColonyEngine engine = createEngine();
+
+		try (SnapshotScheduler snapshots = new SnapshotScheduler(directory, SnapshotScheduler.OutputFormat.CHECKPOINT, 0, 0, 2,
+				SnapshotScheduler.BackpressurePolicy.COALESCE)) {
+			for (int i=0; i<10; i++) {
+				engine.createUpdatedGrid();
+			}
+			assertTrue(snapshots.capture(engine));
+		}
+
+		BacterialColonyEngine restored = SimulationCheckpoint.read(new File(directory, "snapshot-00000010.ckpt"));
+		for (int i=0; i<10; i++) {
+			engine.createUpdatedGrid();
+			restored.createUpdatedGrid();
+		}
+
+		assertArrayEquals(engine.getBacteriaStates(), restored.getBacteriaStates());
+		assertArrayEquals(engine.getNutrientLevels(), restored.getNutrientLevels(), 0);
+	}
+}
@@ -0,0 +1,89 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestingSparseColonyEngine {
+
+	// Returns a config for a grid of the size given, with cell division on every step so the colony grows
+	// quickly.
+	private static SimulationConfig.Builder createBuilder(int width, int height, String boundary) {
+		return new SimulationConfig.Builder().setGridWidth(width).setGridHeight(height).setBoundaryCondition(boundary)
+				.setNumberOfTimestepsForCellDivision(1).setThresholdForCellDivision(0);
+	}
+
+	// Tests the sparse grid gives exactly the same nutrient levels and bacteria as the dense grid, for each
+	// boundary condition, grid sizes that aren't a multiple of the tile size and a tile size of 1.
+	@Test
+	public void testSparseGridMatchesDenseGrid() throws IOException {
+		int[][] sizesAndTileSizes = {{37, 23, 8}, {50, 41, 16}, {12, 9, 1}, {30, 20, 64}};
+
+		for (String boundary : new String[] {"reflecting", "absorbent", "periodic"}) {
+			for (int[] sizeAndTileSize : sizesAndTileSizes) {
+				int width = sizeAndTileSize[0];
+				int height = sizeAndTileSize[1];
+				SimulationConfig config = createBuilder(width, height, boundary).build();
+				BacterialColonyEngine denseEngine = new BacterialColonyEngine(config, 3);
+				SparseColonyEngine sparseEngine = new SparseColonyEngine(config, 3, sizeAndTileSize[2]);
+
+				for (int step=0; step<120; step++) {
+					denseEngine.createUpdatedGrid();
+					sparseEngine.createUpdatedGrid();
+				}
+				assertTrue(sparseEngine.getNumberOfAliveBacteria() + sparseEngine.getNumberOfRemains() > 10);
+
+				String description = boundary + " " + width + "x" + height;
+				assertEquals(description, denseEngine.getNumberOfAliveBacteria(), sparseEngine.getNumberOfAliveBacteria());
+				assertEquals(description, denseEngine.getNumberOfRemains(), sparseEngine.getNumberOfRemains());
+				for (int y=0; y<height; y++) {
+					for (int x=0; x<width; x++) {
+						String position = description + " at " + x + "," + y;
+						assertEquals(position, denseEngine.getBacteriumState(x, y), sparseEngine.getBacteriumState(x, y));
+						assertEquals(position, denseEngine.getNutrientLevelOfCell(x + y*width), sparseEngine.getNutrientLevel(x, y), 0);
+					}
+				}
+				assertEquals(description, denseEngine.getTotalNutrient(), sparseEngine.getTotalNutrient(), 1e-6*width*height);
+			}
+		}
+	}
+
+	// Tests only the tiles near the colony are materialised on a large grid, and that the grid spaces in
+	// the other tiles are at the background level.
+	@Test
+	public void testOnlyTilesNearColonyAreMaterialised() throws IOException {
+		SparseColonyEngine engine = new SparseColonyEngine(createBuilder(2000, 2000, "reflecting").build(), 5, 32);
+		for (int step=0; step<100; step++) {
+			engine.createUpdatedGrid();
+		}
+
+		// The edges of the grid take 4*63 - 4 tiles, and the colony and its gradient in nutrient about as many
+		// again, out of almost 4000.
+		assertEquals(63*63, engine.getNumberOfTiles());
+		assertTrue(engine.getNumberOfMaterialisedTiles() < 400);
+		assertTrue(engine.getNumberOfAliveBacteria() > 0);
+		assertEquals(100, engine.getNutrientLevel(500, 500), 0);
+		assertEquals(engine.getBackgroundNutrientLevel(), engine.getNutrientLevel(1500, 1200), 0);
+	}
+
+	// Tests configs the sparse grid can't follow exactly are rejected.
+	@Test
+	public void testUnsupportedConfigsAreRejected() {
+		SimulationConfig.Builder[] builders = {
+				createBuilder(20, 20, "reflecting").setNutrientLevelPatternChoice("random"),
+				createBuilder(20, 20, "reflecting").setCrowdingFunctionValues(new int[] {5, 40, 40, 40, 30, 20, 10, 0, 0}),
+				createBuilder(20, 20, "reflecting").setCrowdingNeighbourhood("vonneumann")
+						.setCrowdingFunctionValues(new int[] {0, 40, 40, 30, 20})};
+
+		for (SimulationConfig.Builder builder : builders) {
+			try {
+				new SparseColonyEngine(builder.build(), 1);
+				fail("Expected the config to be rejected.");
+			}
+			catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().contains("sparse grid"));
+			}
+		}
+	}
+}
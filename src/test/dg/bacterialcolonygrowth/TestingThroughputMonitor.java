@@ -0,0 +1,99 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TestingThroughputMonitor {
+
+	private static final long MILLISECOND = 1000000L;
+
+	// A clock that only moves when it is told to.
+	private static class ManualClock implements ThroughputMonitor.Clock {
+		long time = 0;
+
+		@Override
+		public long nanoTime() {
+			return time;
+		}
+	}
+
+	// Tests the rate and the average phase times are worked out over each window, and that a new window is
+	// started after each report.
+	@Test
+	public void testReportAveragesOverWindow() {
+		ManualClock clock = new ManualClock();
+		ThroughputMonitor monitor = new ThroughputMonitor(500, clock);
+
+		for (int i=0; i<50; i++) {
+			monitor.recordStep(1*MILLISECOND, 2*MILLISECOND, 3*MILLISECOND);
+		}
+		monitor.recordRender(4*MILLISECOND);
+		assertFalse(monitor.isReportDue(499*MILLISECOND));
+		assertTrue(monitor.isReportDue(500*MILLISECOND));
+
+		String report = monitor.createReport(500*MILLISECOND);
+		assertTrue(report, report.contains(String.format("Steps/s: %.1f", 100.0)));
+		assertTrue(report, report.contains(String.format("Copy: %.2f ms", 1.0)));
+		assertTrue(report, report.contains(String.format("Diffusion: %.2f ms", 2.0)));
+		assertTrue(report, report.contains(String.format("Consumption: %.2f ms", 3.0)));
+		assertTrue(report, report.contains(String.format("Render: %.2f ms", 4.0)));
+
+		// Only the steps since the last report count towards the next one.
+		for (int i=0; i<10; i++) {
+			monitor.recordStep(0, 0, 0);
+		}
+		assertFalse(monitor.isReportDue(999*MILLISECOND));
+		report = monitor.createReport(1000*MILLISECOND);
+		assertTrue(report, report.contains(String.format("Steps/s: %.1f", 20.0)));
+		assertTrue(report, report.contains(String.format("Render: %.2f ms", 0.0)));
+	}
+
+	// Tests as many steps are fitted into a frame as its time budget allows.
+	@Test
+	public void testStepsFitFrameBudget() {
+		ManualClock clock = new ManualClock();
+		ThroughputMonitor monitor = new ThroughputMonitor(500, clock);
+		long frameBudget = 15*MILLISECOND;
+		long[] stepTimes = {4*MILLISECOND, 2*MILLISECOND, 15*MILLISECOND, 20*MILLISECOND};
+		int[] expectedSteps = {4, 8, 1, 1};
+
+		for (int t=0; t<stepTimes.length; t++) {
+			monitor.startFrame();
+			int steps = 0;
+			while (monitor.hasTimeLeftInFrame(frameBudget)) {
+				steps++;
+				clock.time += stepTimes[t];
+			}
+			assertEquals("Step time " + stepTimes[t], expectedSteps[t], steps);
+			assertNull(monitor.finishFrame());
+		}
+	}
+
+	// Tests a report is only given by the frame that finishes a window, and that it includes the average
+	// time of the frames.
+	@Test
+	public void testFinishFrameReportsOncePerWindow() {
+		ManualClock clock = new ManualClock();
+		ThroughputMonitor monitor = new ThroughputMonitor(500, clock);
+
+		// The 32nd frame of 16 ms finishes at 512 ms, the first time past the end of the window.
+		for (int frame=1; frame<=32; frame++) {
+			monitor.startFrame();
+			monitor.recordStep(0, 0, 0);
+			clock.time += 16*MILLISECOND;
+			String report = monitor.finishFrame();
+			if (frame < 32) {
+				assertNull(report);
+			}
+			else {
+				assertNotNull(report);
+				assertTrue(report, report.contains(String.format("Frame: %.2f ms", 16.0)));
+				assertTrue(report, report.contains(String.format("Steps/s: %.1f", 32/0.512)));
+			}
+		}
+
+		monitor.startFrame();
+		clock.time += 16*MILLISECOND;
+		assertNull(monitor.finishFrame());
+	}
+}
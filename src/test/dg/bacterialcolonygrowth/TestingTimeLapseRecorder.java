@@ -0,0 +1,96 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+public class TestingTimeLapseRecorder {
+	
+	// Test every frame added to a GIF time-lapse is written to the file, in order.
+	@Test
+	public void testAnimatedGifContainsEveryRecordedFrame() throws Exception {
+		File gif = Files.createTempFile("timelapse", ".gif").toFile();
+		gif.deleteOnExit();
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+		engine.setRandomSeed(1);
+		
+		TimeLapseRecorder recorder = new TimeLapseRecorder(gif, TimeLapseRecorder.OutputFormat.ANIMATED_GIF,
+				TimeLapseRecorder.ImageType.BACTERIA_PATTERN, 1, 100, TimeLapseRecorder.BackpressurePolicy.DROP, 10, 1);
+		for (int i=0; i<5; i++) {
+			engine.createUpdatedGrid();
+			assertTrue(recorder.recordFrame(engine));
+		}
+		recorder.close();
+		
+		assertEquals(5, recorder.getFramesWritten());
+		assertEquals(0, recorder.getFramesDropped());
+		
+		ImageInputStream stream = ImageIO.createImageInputStream(gif);
+		ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+		reader.setInput(stream);
+		assertEquals(5, reader.getNumImages(true));
+		assertEquals(80, reader.getWidth(0));
+		stream.close();
+	}
+	
+	// Test frames are dropped rather than waiting when the queue is full, and that the PNG images are
+	// numbered without gaps.
+	@Test
+	public void testFullQueueDropsFramesInsteadOfWaiting() throws Exception {
+		File directory = Files.createTempDirectory("timelapse").toFile();
+		directory.deleteOnExit();
+		SimulationSnapshot snapshot = new BacterialColonyEngine().createSnapshot();
+		
+		TimeLapseRecorder recorder = new TimeLapseRecorder(directory, TimeLapseRecorder.OutputFormat.PNG_SEQUENCE,
+				TimeLapseRecorder.ImageType.NUTRIENT_HEATMAP, 20, 1, TimeLapseRecorder.BackpressurePolicy.COALESCE, 10, 1);
+		for (int i=0; i<200; i++) {
+			recorder.recordFrame(snapshot);
+		}
+		recorder.close();
+		
+		assertTrue(recorder.getFramesDropped() > 0);
+		assertEquals(200, recorder.getFramesWritten() + recorder.getFramesDropped());
+		
+		for (int i=0; i<recorder.getFramesWritten(); i++) {
+			File frame = new File(directory, String.format("frame-%06d.png", i));
+			assertTrue(frame.exists());
+			frame.deleteOnExit();
+		}
+	}
+	
+	// Test the PNG images are numbered in the order the frames were recorded when several threads encode
+	// them. The bacterium in frame i is in column i, so the column shows which frame was saved.
+	@Test
+	public void testPngSequenceKeepsFrameOrderWithSeveralThreads() throws Exception {
+		File directory = Files.createTempDirectory("timelapse").toFile();
+		directory.deleteOnExit();
+		int numberOfFrames = 40;
+		
+		TimeLapseRecorder recorder = new TimeLapseRecorder(directory, TimeLapseRecorder.OutputFormat.PNG_SEQUENCE,
+				TimeLapseRecorder.ImageType.BACTERIA_PATTERN, 1, numberOfFrames, TimeLapseRecorder.BackpressurePolicy.DROP, 10, 4);
+		for (int i=0; i<numberOfFrames; i++) {
+			byte[] states = new byte[numberOfFrames];
+			states[i] = BacterialColonyEngine.ALIVE;
+			assertTrue(recorder.recordFrame(new SimulationSnapshot(numberOfFrames, 1, i, new double[numberOfFrames], states)));
+		}
+		recorder.close();
+		assertEquals(numberOfFrames, recorder.getFramesWritten());
+		
+		for (int i=0; i<numberOfFrames; i++) {
+			File frame = new File(directory, String.format("frame-%06d.png", i));
+			frame.deleteOnExit();
+			BufferedImage image = ImageIO.read(frame);
+			for (int x=0; x<numberOfFrames; x++) {
+				boolean black = (image.getRGB(x, 0) & 0xFFFFFF) == 0;
+				assertEquals("frame " + i + " column " + x, x == i, black);
+			}
+		}
+	}
+}
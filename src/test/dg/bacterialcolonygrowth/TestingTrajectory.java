@@ -0,0 +1,105 @@
+package dg.bacterialcolonygrowth;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestingTrajectory {
+
+	private File trajectoryFile;
+
+	@Before
+	public void createTrajectoryFile() throws IOException {
+		trajectoryFile = File.createTempFile("trajectory", ".traj");
+	}
+
+	@After
+	public void deleteTrajectoryFile() {
+		trajectoryFile.delete();
+	}
+
+	// Runs an engine for the number of steps given, recording every step, and returns the states at each step.
+	private List<byte[]> recordRun(int numberOfSteps, int keyframeInterval) throws IOException, InterruptedException {
+		BacterialColonyEngine engine = new BacterialColonyEngine();
+		engine.setGridWidth(40);
+		engine.setGridHeight(30);
+		engine.setRandomSeed(3);
+		engine.setBacteriumAlive(20, 15);
+
+		List<byte[]> states = new ArrayList<byte[]>();
+		states.add(engine.getBacteriaStates().clone());
+
+		try (TrajectoryWriter writer = new TrajectoryWriter(trajectoryFile, engine, keyframeInterval, 2)) {
+			for (int step=0; step<numberOfSteps; step++) {
+				engine.createUpdatedGrid();
+				writer.recordStep(engine);
+				states.add(engine.getBacteriaStates().clone());
+			}
+		}
+		return states;
+	}
+
+	// Tests every step can be rebuilt from the trajectory, in any order.
+	@Test
+	public void testEveryStepIsRebuilt() throws IOException, InterruptedException {
+		List<byte[]> states = recordRun(120, 25);
+
+		try (TrajectoryReader reader = new TrajectoryReader(trajectoryFile)) {
+			assertTrue(reader.isComplete());
+			assertEquals(0, reader.getFirstStep());
+			assertEquals(120, reader.getLastStep());
+			assertEquals(3, reader.getRandomSeed());
+
+			for (int step=120; step>=0; step-=7) {
+				assertArrayEquals("step " + step, states.get(step), reader.readBacteriaStates(step));
+			}
+			assertArrayEquals(states.get(100), reader.readBacteriaStates(100));
+		}
+	}
+
+	// Tests a trajectory without its index can still be read up to the last complete segment.
+	@Test
+	public void testTrajectoryWithoutIndexIsRead() throws IOException, InterruptedException {
+		List<byte[]> states = recordRun(60, 20);
+
+		// Remove the trailer and index, which hold 4 segments.
+		try (RandomAccessFile file = new RandomAccessFile(trajectoryFile, "rw")) {
+			file.setLength(file.length() - TrajectoryWriter.TRAILER_LENGTH - 4*TrajectoryWriter.INDEX_ENTRY_LENGTH);
+		}
+
+		try (TrajectoryReader reader = new TrajectoryReader(trajectoryFile)) {
+			assertFalse(reader.isComplete());
+			assertEquals(60, reader.getLastStep());
+			assertArrayEquals(states.get(47), reader.readBacteriaStates(47));
+		}
+	}
+
+	// Tests rebuilt steps are kept in memory and the least recently used step is removed when it is full.
+	@Test
+	public void testFrameCacheKeepsRecentlyUsedSteps() throws IOException, InterruptedException {
+		List<byte[]> states = recordRun(30, 10);
+
+		try (TrajectoryReader reader = new TrajectoryReader(trajectoryFile)) {
+			TrajectoryFrameCache cache = new TrajectoryFrameCache(reader, 2);
+
+			assertArrayEquals(states.get(5), cache.getBacteriaStates(5));
+			assertArrayEquals(states.get(25), cache.getBacteriaStates(25));
+			cache.getBacteriaStates(5);
+			assertEquals(1, cache.getHits());
+
+			// Step 25 is now the least recently used so is removed to make space for step 12.
+			assertArrayEquals(states.get(12), cache.getBacteriaStates(12));
+			cache.getBacteriaStates(5);
+			cache.getBacteriaStates(25);
+			assertEquals(2, cache.getHits());
+			assertEquals(4, cache.getMisses());
+		}
+	}
+}